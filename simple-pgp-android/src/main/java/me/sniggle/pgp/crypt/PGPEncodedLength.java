@@ -0,0 +1,135 @@
+package me.sniggle.pgp.crypt;
+
+import me.sniggle.pgp.crypt.internal.io.BufferPool;
+import org.spongycastle.bcpg.CompressionAlgorithmTags;
+
+/**
+ * Upper bounds of the encoded length of the OpenPGP packets written by this library, used to size
+ * output buffers in advance
+ */
+final class PGPEncodedLength {
+
+  /**
+   * the maximum length of the armor header and footer lines (including the version header)
+   */
+  private static final int ARMOR_FRAME_LENGTH = 192;
+
+  /**
+   * the smallest length of the partial body chunks written for packets of unknown length
+   */
+  private static final int PARTIAL_CHUNK_LENGTH = BufferPool.MIN_CHUNK_SIZE;
+
+  /**
+   * the maximum block size of the symmetric algorithms
+   */
+  private static final int MAX_BLOCK_SIZE = 16;
+
+  private PGPEncodedLength() {
+  }
+
+  /**
+   * @param length
+   *    the binary length
+   * @return the length of the ascii-armored data
+   */
+  static long armored(long length) {
+    long characters = 4 * ((length + 2) / 3);
+    long lines = (characters + 63) / 64;
+    return ARMOR_FRAME_LENGTH + characters + lines * System.getProperty("line.separator", "\n").length();
+  }
+
+  /**
+   * @param plainDataLength
+   *    the length of the plain data
+   * @param inputDataNameLength
+   *    the length of the (UTF-8 encoded) data name
+   * @return the length of the definite length literal packet
+   */
+  static long literal(long plainDataLength, int inputDataNameLength) {
+    return 6 + 1 + 1 + inputDataNameLength + 4 + plainDataLength;
+  }
+
+  /**
+   * @param keyBitStrength
+   *    the bit strength of the signing key, 0 if unsigned
+   * @return the length of the one-pass signature and the signature packet
+   */
+  static long signature(int keyBitStrength) {
+    return (keyBitStrength > 0) ? 15 + 64 + 2 * (keyBitStrength / 8 + 3) : 0;
+  }
+
+  /**
+   * @param length
+   *    the length of the data to compress
+   * @param compressionAlgorithm
+   *    the compression algorithm
+   * @return the length of the compressed data packet
+   */
+  static long compressed(long length, int compressionAlgorithm) {
+    long result;
+    switch( compressionAlgorithm ) {
+      case CompressionAlgorithmTags.UNCOMPRESSED:
+        result = length;
+        break;
+      case CompressionAlgorithmTags.BZIP2:
+        result = length + length / 100 + 600;
+        break;
+      default:
+        result = length + (length >>> 12) + (length >>> 14) + (length >>> 25) + 13 + 6;
+        break;
+    }
+    return 2 + result;
+  }
+
+  /**
+   * @param keyBitStrength
+   *    the bit strength of the recipient's encryption key
+   * @return the length of the public key encrypted session key packet
+   */
+  static long sessionKey(int keyBitStrength) {
+    return 16 + 2 * (keyBitStrength / 8 + 3);
+  }
+
+  /**
+   * @param length
+   *    the length of the data to encrypt
+   * @return the length of the integrity protected encrypted data packet
+   */
+  static long encrypted(long length) {
+    long content = 1 + MAX_BLOCK_SIZE + 2 + length + 22;
+    return 1 + content + content / PARTIAL_CHUNK_LENGTH + 5;
+  }
+
+  /**
+   * the upper bound of the length of an encrypted (and optionally signed) message
+   *
+   * @param plainDataLength
+   *    the length of the plain data
+   * @param inputDataNameLength
+   *    the length of the (UTF-8 encoded) data name
+   * @param compressionAlgorithm
+   *    the compression algorithm
+   * @param recipientKeyBitStrengths
+   *    the bit strengths of the recipients' encryption keys
+   * @param signingKeyBitStrength
+   *    the bit strength of the signing key, 0 if unsigned
+   * @return the maximum length of the ascii-armored message
+   */
+  static long encryptedMessage(long plainDataLength, int inputDataNameLength, int compressionAlgorithm, int[] recipientKeyBitStrengths, int signingKeyBitStrength) {
+    long result = encrypted(compressed(literal(plainDataLength, inputDataNameLength) + signature(signingKeyBitStrength), compressionAlgorithm));
+    for( int keyBitStrength : recipientKeyBitStrengths ) {
+      result += sessionKey(keyBitStrength);
+    }
+    return armored(result);
+  }
+
+  /**
+   * @param signingKeyBitStrength
+   *    the bit strength of the signing key
+   * @return the maximum length of the ascii-armored detached signature
+   */
+  static long detachedSignature(int signingKeyBitStrength) {
+    return armored(signature(signingKeyBitStrength));
+  }
+
+}
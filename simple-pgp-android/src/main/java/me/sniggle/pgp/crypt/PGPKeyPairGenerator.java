@@ -1,11 +1,9 @@
 package me.sniggle.pgp.crypt;
 
 import me.sniggle.pgp.crypt.internal.BaseKeyPairGenerator;
-import org.spongycastle.bcpg.ArmoredOutputStream;
 import org.spongycastle.bcpg.HashAlgorithmTags;
 import org.spongycastle.bcpg.sig.KeyFlags;
-import org.spongycastle.crypto.generators.RSAKeyPairGenerator;
-import org.spongycastle.crypto.params.RSAKeyGenerationParameters;
+import org.spongycastle.crypto.AsymmetricCipherKeyPair;
 import org.spongycastle.openpgp.*;
 import org.spongycastle.openpgp.operator.bc.BcPBESecretKeyEncryptorBuilder;
 import org.spongycastle.openpgp.operator.bc.BcPGPContentSignerBuilder;
@@ -16,10 +14,16 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.math.BigInteger;
 import java.security.SecureRandom;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * The the library dependent implementation of a KeyPairGenerator
@@ -30,9 +34,72 @@ public class PGPKeyPairGenerator extends BaseKeyPairGenerator {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(PGPKeyPairGenerator.class);
 
+  /**
+   * the executor used for the key pair generation if none is configured
+   */
+  private static final class DefaultKeyGenerationExecutor {
+
+    static final ExecutorService INSTANCE = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "simple-pgp-key-generation");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+
+  }
+
+  private PGPKeyPairPool keyPairPool;
+
+  private ExecutorService keyGenerationExecutor;
+
   public PGPKeyPairGenerator() {
   }
 
+  /**
+   * enables the use of pre-generated RSA key pairs for the key generation
+   *
+   * @param keyPairPool
+   *    the key pair pool (null disables pooling)
+   */
+  public void setKeyPairPool(PGPKeyPairPool keyPairPool) {
+    this.keyPairPool = keyPairPool;
+  }
+
+  /**
+   * sets the executor generating the primary key pair while the calling thread generates the subkey pair,
+   * the executor must not be the one running the key generation
+   *
+   * @param keyGenerationExecutor
+   *    the executor (null uses a shared daemon pool sized to the available processors)
+   */
+  public void setKeyGenerationExecutor(ExecutorService keyGenerationExecutor) {
+    this.keyGenerationExecutor = keyGenerationExecutor;
+  }
+
+  private ExecutorService getKeyGenerationExecutor() {
+    return (keyGenerationExecutor != null) ? keyGenerationExecutor : DefaultKeyGenerationExecutor.INSTANCE;
+  }
+
+  /**
+   * provides a pooled RSA key pair or generates one if none is pooled
+   *
+   * @param keySize
+   *    the key size used for the keys
+   * @param secureRandom
+   *    the random generator of this key pair
+   * @return the key pair
+   */
+  private AsymmetricCipherKeyPair nextKeyPair(int keySize, SecureRandom secureRandom) {
+    AsymmetricCipherKeyPair result = (keyPairPool != null) ? keyPairPool.take(keySize) : null;
+    if( result == null ) {
+      LOGGER.debug("Generating RSA key pair");
+      result = PGPKeyPairPool.generate(keySize, secureRandom);
+    }
+    return result;
+  }
+
   /**
    * creates and initializes a PGP Key Ring Generator
    *
@@ -44,18 +111,23 @@ public class PGPKeyPairGenerator extends BaseKeyPairGenerator {
    *    the key size used for the keys
    * @return the initialized key ring generator or null if something goes wrong
    */
-  private PGPKeyRingGenerator createKeyRingGenerator(String userId, String password, int keySize) {
+  private PGPKeyRingGenerator createKeyRingGenerator(String userId, String password, final int keySize) {
     LOGGER.trace("createKeyRingGenerator(String, String, int)");
     LOGGER.trace("User ID: {}, Password: {}, Key Size: {}", userId, password == null ? "not set" : "********", keySize);
     PGPKeyRingGenerator generator = null;
     try {
-      LOGGER.debug("Creating RSA key pair generator");
-      RSAKeyPairGenerator generator1 = new RSAKeyPairGenerator();
-      generator1.init(new RSAKeyGenerationParameters(BigInteger.valueOf(0x10001), getSecureRandom(), keySize, 12));
       LOGGER.debug("Generating Signing Key Pair");
-      BcPGPKeyPair signingKeyPair = new BcPGPKeyPair(PGPPublicKey.RSA_SIGN, generator1.generateKeyPair(), new Date());
+      final SecureRandom signingRandom = getSecureRandom();
+      Future<AsymmetricCipherKeyPair> signingRawKeyPair = getKeyGenerationExecutor().submit(new Callable<AsymmetricCipherKeyPair>() {
+        @Override
+        public AsymmetricCipherKeyPair call() {
+          return nextKeyPair(keySize, signingRandom);
+        }
+      });
       LOGGER.debug("Generating Encyption Key Pair");
-      BcPGPKeyPair encryptionKeyPair = new BcPGPKeyPair(PGPPublicKey.RSA_ENCRYPT, generator1.generateKeyPair(), new Date());
+      AsymmetricCipherKeyPair encryptionRawKeyPair = nextKeyPair(keySize, getSecureRandom());
+      BcPGPKeyPair signingKeyPair = new BcPGPKeyPair(PGPPublicKey.RSA_SIGN, signingRawKeyPair.get(), new Date());
+      BcPGPKeyPair encryptionKeyPair = new BcPGPKeyPair(PGPPublicKey.RSA_ENCRYPT, encryptionRawKeyPair, new Date());
       LOGGER.debug("Generating Signature Key Properties");
       PGPSignatureSubpacketGenerator signatureSubpacketGenerator = new PGPSignatureSubpacketGenerator();
       signatureSubpacketGenerator.setKeyFlags(false, KeyFlags.SIGN_DATA | KeyFlags.CERTIFY_OTHER);
@@ -68,10 +140,14 @@ public class PGPKeyPairGenerator extends BaseKeyPairGenerator {
       encryptionSubpacketGenerator.setKeyFlags(false, KeyFlags.ENCRYPT_COMMS | KeyFlags.ENCRYPT_STORAGE);
 
       LOGGER.info("Creating PGP Key Ring Generator");
-      generator = new PGPKeyRingGenerator(PGPPublicKey.RSA_SIGN, signingKeyPair, userId, new BcPGPDigestCalculatorProvider().get(HashAlgorithmTags.SHA1), signatureSubpacketGenerator.generate(), null, new BcPGPContentSignerBuilder(PGPPublicKey.RSA_SIGN, HashAlgorithmTags.SHA256), new BcPBESecretKeyEncryptorBuilder(getEncryptionAlgorithm()).build(password.toCharArray()));
+      generator = new PGPKeyRingGenerator(PGPSignature.POSITIVE_CERTIFICATION, signingKeyPair, userId, new BcPGPDigestCalculatorProvider().get(HashAlgorithmTags.SHA1), signatureSubpacketGenerator.generate(), null, new BcPGPContentSignerBuilder(PGPPublicKey.RSA_SIGN, HashAlgorithmTags.SHA256), new BcPBESecretKeyEncryptorBuilder(getEncryptionAlgorithm(), new BcPGPDigestCalculatorProvider().get(getS2KHashAlgorithm()), getS2KCount()).build(password.toCharArray()));
       generator.addSubKey(encryptionKeyPair, encryptionSubpacketGenerator.generate(), null);
-    } catch (PGPException e) {
+    } catch (PGPException | ExecutionException | RejectedExecutionException e) {
+      LOGGER.error("{}", e.getMessage());
+      generator = null;
+    } catch (InterruptedException e) {
       LOGGER.error("{}", e.getMessage());
+      Thread.currentThread().interrupt();
       generator = null;
     }
     return generator;
@@ -108,20 +184,23 @@ public class PGPKeyPairGenerator extends BaseKeyPairGenerator {
     boolean result = true;
     LOGGER.debug("Generating key ring generator");
     PGPKeyRingGenerator keyRingGenerator = createKeyRingGenerator(userId, password, keySize);
+    if( keyRingGenerator == null ) {
+      return false;
+    }
     LOGGER.debug("Generating public key ring");
     PGPPublicKeyRing publicKeyRing = keyRingGenerator.generatePublicKeyRing();
     LOGGER.debug("Generating secret key ring");
     PGPSecretKeyRing secretKeyRing = keyRingGenerator.generateSecretKeyRing();
-    LOGGER.debug("Wrapping public key target stream in ArmoredOutputStream");
-    try( OutputStream targetStream = new ArmoredOutputStream(publicKey) ) {
+    LOGGER.debug("Wrapping public key target stream in armor stream");
+    try( OutputStream targetStream = PGPArmor.armor(publicKey) ) {
       LOGGER.info("Saving public key ring to public target");
       publicKeyRing.encode(targetStream);
     } catch (IOException e) {
       LOGGER.error("{}", e.getMessage());
       result &= false;
     }
-    LOGGER.debug("Wrapping secret key target stream in ArmoredOutputStream");
-    try( OutputStream targetStream = new ArmoredOutputStream(secrectKey) ) {
+    LOGGER.debug("Wrapping secret key target stream in armor stream");
+    try( OutputStream targetStream = PGPArmor.armor(secrectKey) ) {
       LOGGER.debug("Create secret key ring collection");
       PGPSecretKeyRingCollection secretKeyRingCollection = new PGPSecretKeyRingCollection(Arrays.asList(secretKeyRing));
       LOGGER.info("Saving secret key ring to secret key target");
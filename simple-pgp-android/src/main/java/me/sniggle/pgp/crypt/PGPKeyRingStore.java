@@ -0,0 +1,592 @@
+package me.sniggle.pgp.crypt;
+
+import me.sniggle.pgp.crypt.internal.io.ArmorInputStream;
+import me.sniggle.pgp.crypt.internal.io.MappedHashIndex;
+import org.spongycastle.openpgp.PGPException;
+import org.spongycastle.openpgp.PGPObjectFactory;
+import org.spongycastle.openpgp.PGPPublicKey;
+import org.spongycastle.openpgp.PGPPublicKeyRing;
+import org.spongycastle.openpgp.PGPSecretKey;
+import org.spongycastle.openpgp.PGPSecretKeyRing;
+import org.spongycastle.openpgp.operator.bc.BcKeyFingerprintCalculator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A key ring store for large key populations kept in a directory: the key rings are appended to a data file
+ * and a memory-mapped hash index maps key IDs, fingerprints and (normalized) user IDs to their records.
+ *
+ * A lookup costs a hash probe and reading the matching records, independent of the number of key rings
+ * stored. The index is persistent, so opening the store only indexes the records appended since the index
+ * was last written. Records are never rewritten, a key ring added again is appended and supersedes the
+ * previous record.
+ *
+ * Lookups may run concurrently, adding key rings is exclusive.
+ */
+public class PGPKeyRingStore implements KeyRingStore {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PGPKeyRingStore.class);
+
+  private static final String DATA_FILE = "keyrings.dat";
+  private static final String INDEX_FILE = "keyrings.idx";
+
+  private static final int KEY_ID = 1;
+  private static final int FINGERPRINT = 2;
+  private static final int USER_ID = 3;
+  private static final int SECRET = 0x100;
+
+  /**
+   * the length prefix of a record
+   */
+  private static final int RECORD_HEADER_SIZE = 4;
+
+  private static final int SECRET_KEY_TAG = 5;
+
+  private final Path directory;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private int initialIndexCapacity = 1 << 16;
+  private FileChannel data;
+  private MappedHashIndex index;
+
+  /**
+   * @param directory
+   *    the directory of the data and index file
+   */
+  public PGPKeyRingStore(Path directory) {
+    this.directory = directory;
+  }
+
+  /**
+   * set the number of index slots allocated for a new index, the index grows if required
+   *
+   * @param initialIndexCapacity
+   *    the number of slots
+   */
+  public void setInitialIndexCapacity(int initialIndexCapacity) {
+    this.initialIndexCapacity = initialIndexCapacity;
+  }
+
+  /**
+   * opens the store, creates the files if required and indexes the key rings not yet covered by the index;
+   * an incomplete record at the end of the data file (e.g. of an interrupted write) is removed, complete
+   * records that cannot be parsed are skipped
+   *
+   * @return true if the store has been opened
+   */
+  public boolean open() {
+    LOGGER.trace("open()");
+    boolean result = false;
+    lock.writeLock().lock();
+    try {
+      Files.createDirectories(directory);
+      data = FileChannel.open(directory.resolve(DATA_FILE), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      index = MappedHashIndex.open(directory.resolve(INDEX_FILE), initialIndexCapacity);
+      if( index.getIndexedLength() > data.size() ) {
+        LOGGER.warn("Index covers more than the data file, rebuilding index");
+        index.clear();
+      }
+      indexRecords(index.getIndexedLength());
+      result = true;
+    } catch (IOException e) {
+      LOGGER.error("{}", e.getMessage());
+    } finally {
+      lock.writeLock().unlock();
+    }
+    return result;
+  }
+
+  /**
+   * indexes the records starting at the given position up to the end of the data file
+   *
+   * @param position
+   *    the position of the first record
+   * @throws IOException
+   */
+  private void indexRecords(long position) throws IOException {
+    LOGGER.trace("indexRecords(long)");
+    long dataLength = data.size();
+    int indexed = 0;
+    while( position < dataLength ) {
+      byte[] record;
+      try {
+        record = readRecord(position);
+      } catch (EOFException e) {
+        LOGGER.warn("Removing incomplete record at {}: {}", position, e.getMessage());
+        data.truncate(position);
+        break;
+      }
+      Object keyRing = null;
+      try {
+        keyRing = parseRecord(record);
+      } catch (IOException | RuntimeException e) {
+        LOGGER.warn("Skipping invalid record at {}: {}", position, e.getMessage());
+      }
+      if( keyRing != null ) {
+        indexRecord(keyRing, position);
+        indexed++;
+      }
+      position += RECORD_HEADER_SIZE + record.length;
+    }
+    index.setIndexedLength(position);
+    index.force();
+    LOGGER.debug("Indexed {} key ring(s)", indexed);
+  }
+
+  /**
+   * @see KeyRingStore#addKeyRings(InputStream)
+   *
+   * @param keyRings
+   *    the (ascii-armored or binary) public or secret key rings
+   * @return
+   */
+  @Override
+  public int addKeyRings(InputStream keyRings) {
+    LOGGER.trace("addKeyRings(InputStream)");
+    LOGGER.trace("Key Rings: {}", keyRings == null ? "not set" : "set");
+    int result = -1;
+    lock.writeLock().lock();
+    try( InputStream in = ArmorInputStream.decode(keyRings) ) {
+      ensureOpen();
+      PGPObjectFactory objectFactory = new PGPObjectFactory(in, new BcKeyFingerprintCalculator());
+      List<Object> parsedKeyRings = new ArrayList<>();
+      Object pgpObject;
+      while( (pgpObject = objectFactory.nextObject()) != null ) {
+        if( pgpObject instanceof PGPPublicKeyRing || pgpObject instanceof PGPSecretKeyRing ) {
+          parsedKeyRings.add(pgpObject);
+        }
+      }
+      long position = data.size();
+      for( Object keyRing : parsedKeyRings ) {
+        byte[] record = (keyRing instanceof PGPSecretKeyRing) ? ((PGPSecretKeyRing) keyRing).getEncoded() : ((PGPPublicKeyRing) keyRing).getEncoded();
+        writeRecord(record, position);
+        indexRecord(keyRing, position);
+        position += RECORD_HEADER_SIZE + record.length;
+      }
+      data.force(false);
+      index.setIndexedLength(position);
+      index.force();
+      result = parsedKeyRings.size();
+      LOGGER.debug("Added {} key ring(s)", result);
+    } catch (IOException e) {
+      LOGGER.error("{}", e.getMessage());
+    } finally {
+      lock.writeLock().unlock();
+    }
+    return result;
+  }
+
+  /**
+   * @see KeyRingStore#findPublicKeyRing(long)
+   *
+   * @param keyId
+   *    the ID of the key
+   * @return
+   */
+  @Override
+  public InputStream findPublicKeyRing(final long keyId) {
+    LOGGER.trace("findPublicKeyRing(long)");
+    return findKeyRing(hash(KEY_ID, keyId), 0, new RecordFilter() {
+      @Override
+      public boolean accept(Object keyRing) {
+        return keyRing instanceof PGPPublicKeyRing && ((PGPPublicKeyRing) keyRing).getPublicKey(keyId) != null;
+      }
+    });
+  }
+
+  /**
+   * @see KeyRingStore#findPublicKeyRing(byte[])
+   *
+   * @param fingerprint
+   *    the fingerprint of the key
+   * @return
+   */
+  @Override
+  public InputStream findPublicKeyRing(final byte[] fingerprint) {
+    LOGGER.trace("findPublicKeyRing(byte[])");
+    return findKeyRing(hash(FINGERPRINT, fingerprint), 0, new RecordFilter() {
+      @Override
+      public boolean accept(Object keyRing) {
+        return keyRing instanceof PGPPublicKeyRing && containsFingerprint(((PGPPublicKeyRing) keyRing).getPublicKeys(), fingerprint);
+      }
+    });
+  }
+
+  /**
+   * @see KeyRingStore#findPublicKeyRings(String)
+   *
+   * @param userId
+   *    the user ID or e-mail address
+   * @return
+   */
+  @Override
+  public InputStream findPublicKeyRings(String userId) {
+    LOGGER.trace("findPublicKeyRings(String)");
+    return findKeyRings(userId, 0);
+  }
+
+  /**
+   * @see KeyRingStore#findSecretKeyRing(long)
+   *
+   * @param keyId
+   *    the ID of the key
+   * @return
+   */
+  @Override
+  public InputStream findSecretKeyRing(final long keyId) {
+    LOGGER.trace("findSecretKeyRing(long)");
+    return findKeyRing(hash(KEY_ID | SECRET, keyId), SECRET, new RecordFilter() {
+      @Override
+      public boolean accept(Object keyRing) {
+        return keyRing instanceof PGPSecretKeyRing && ((PGPSecretKeyRing) keyRing).getSecretKey(keyId) != null;
+      }
+    });
+  }
+
+  /**
+   * @see KeyRingStore#findSecretKeyRings(String)
+   *
+   * @param userId
+   *    the user ID or e-mail address
+   * @return
+   */
+  @Override
+  public InputStream findSecretKeyRings(String userId) {
+    LOGGER.trace("findSecretKeyRings(String)");
+    return findKeyRings(userId, SECRET);
+  }
+
+  /**
+   * @see KeyRingStore#close()
+   */
+  @Override
+  public void close() {
+    LOGGER.trace("close()");
+    lock.writeLock().lock();
+    try {
+      if( index != null ) {
+        index.close();
+        index = null;
+      }
+      if( data != null ) {
+        data.close();
+        data = null;
+      }
+    } catch (IOException e) {
+      LOGGER.error("{}", e.getMessage());
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private void ensureOpen() throws IOException {
+    if( index == null ) {
+      throw new IOException("Key ring store not open");
+    }
+  }
+
+  /**
+   * verifies a record found by its hash
+   */
+  private interface RecordFilter {
+
+    boolean accept(Object keyRing);
+
+  }
+
+  /**
+   * looks up the key ring matching the hash and the filter, only the latest record of a key ring decides
+   * whether it matches
+   *
+   * @param hash
+   *    the hash of the key ID or fingerprint
+   * @param secret
+   *    SECRET to look up secret key rings, 0 otherwise
+   * @param filter
+   *    the verification of the record
+   * @return the key ring stream or null
+   */
+  private InputStream findKeyRing(long hash, int secret, RecordFilter filter) {
+    InputStream result = null;
+    lock.readLock().lock();
+    try {
+      ensureOpen();
+      long[] offsets = index.get(hash);
+      Set<Long> primaryKeyIds = new HashSet<>();
+      for( int i = offsets.length - 1; i >= 0 && result == null; i-- ) {
+        byte[] record = readRecord(offsets[i]);
+        Object keyRing = parseRecord(record);
+        long primaryKeyId = primaryKeyOf(keyRing).getKeyID();
+        if( filter.accept(keyRing) && primaryKeyIds.add(primaryKeyId) ) {
+          long latestOffset = findLatestRecord(primaryKeyId, secret);
+          if( latestOffset != offsets[i] ) {
+            record = readRecord(latestOffset);
+            keyRing = parseRecord(record);
+          }
+          if( filter.accept(keyRing) ) {
+            result = new ByteArrayInputStream(record);
+          }
+        }
+      }
+    } catch (IOException e) {
+      LOGGER.error("{}", e.getMessage());
+    } finally {
+      lock.readLock().unlock();
+    }
+    return result;
+  }
+
+  /**
+   * looks up the key rings of the user, the latest record of a key ring decides whether it matches
+   *
+   * @param userId
+   *    the user ID or e-mail address
+   * @param secret
+   *    SECRET to look up secret key rings, 0 otherwise
+   * @return the stream of the key rings or null
+   */
+  private InputStream findKeyRings(String userId, int secret) {
+    LOGGER.trace("User ID: {}", userId == null ? "not set" : "set");
+    InputStream result = null;
+    if( userId != null ) {
+      String normalizedUserId = normalize(userId);
+      lock.readLock().lock();
+      try {
+        ensureOpen();
+        long[] offsets = index.get(hash(USER_ID | secret, normalizedUserId.getBytes(StandardCharsets.UTF_8)));
+        Set<Long> primaryKeyIds = new HashSet<>();
+        ByteArrayOutputStream keyRings = new ByteArrayOutputStream();
+        for( int i = offsets.length - 1; i >= 0; i-- ) {
+          byte[] record = readRecord(offsets[i]);
+          Object keyRing = parseRecord(record);
+          long primaryKeyId = primaryKeyOf(keyRing).getKeyID();
+          if( (secret != 0) == (keyRing instanceof PGPSecretKeyRing) && primaryKeyIds.add(primaryKeyId) ) {
+            long latestOffset = findLatestRecord(primaryKeyId, secret);
+            if( latestOffset != offsets[i] ) {
+              record = readRecord(latestOffset);
+              keyRing = parseRecord(record);
+            }
+            if( userIdsOf(primaryKeyOf(keyRing)).contains(normalizedUserId) ) {
+              keyRings.write(record);
+            }
+          }
+        }
+        if( keyRings.size() > 0 ) {
+          result = new ByteArrayInputStream(keyRings.toByteArray());
+        }
+      } catch (IOException e) {
+        LOGGER.error("{}", e.getMessage());
+      } finally {
+        lock.readLock().unlock();
+      }
+    }
+    return result;
+  }
+
+  /**
+   * looks up the latest record of the key ring
+   *
+   * @param primaryKeyId
+   *    the ID of the primary key of the key ring
+   * @param secret
+   *    SECRET to look up secret key rings, 0 otherwise
+   * @return the position of the record
+   * @throws IOException
+   *    if no record of the key ring is indexed
+   */
+  private long findLatestRecord(long primaryKeyId, int secret) throws IOException {
+    long result = -1L;
+    long[] offsets = index.get(hash(KEY_ID | secret, primaryKeyId));
+    for( int i = offsets.length - 1; i >= 0 && result < 0; i-- ) {
+      Object keyRing = parseRecord(readRecord(offsets[i]));
+      if( (secret != 0) == (keyRing instanceof PGPSecretKeyRing) && primaryKeyOf(keyRing).getKeyID() == primaryKeyId ) {
+        result = offsets[i];
+      }
+    }
+    if( result < 0 ) {
+      throw new IOException("Key ring " + Long.toHexString(primaryKeyId) + " not indexed");
+    }
+    return result;
+  }
+
+  private static PGPPublicKey primaryKeyOf(Object keyRing) {
+    return (keyRing instanceof PGPSecretKeyRing) ? ((PGPSecretKeyRing) keyRing).getPublicKey() : ((PGPPublicKeyRing) keyRing).getPublicKey();
+  }
+
+  /**
+   * maps key IDs, fingerprints and user IDs of the key ring to the record
+   *
+   * @param keyRing
+   *    the public or secret key ring
+   * @param position
+   *    the position of the record
+   * @throws IOException
+   */
+  private void indexRecord(Object keyRing, long position) throws IOException {
+    int secret = (keyRing instanceof PGPSecretKeyRing) ? SECRET : 0;
+    PGPPublicKey primaryKey;
+    if( secret != 0 ) {
+      PGPSecretKeyRing secretKeyRing = (PGPSecretKeyRing) keyRing;
+      primaryKey = secretKeyRing.getPublicKey();
+      Iterator<PGPSecretKey> secretKeys = secretKeyRing.getSecretKeys();
+      while( secretKeys.hasNext() ) {
+        indexKey(secretKeys.next().getPublicKey(), secret, position);
+      }
+    } else {
+      PGPPublicKeyRing publicKeyRing = (PGPPublicKeyRing) keyRing;
+      primaryKey = publicKeyRing.getPublicKey();
+      Iterator<PGPPublicKey> publicKeys = publicKeyRing.getPublicKeys();
+      while( publicKeys.hasNext() ) {
+        indexKey(publicKeys.next(), secret, position);
+      }
+    }
+    for( String userId : userIdsOf(primaryKey) ) {
+      index.put(hash(USER_ID | secret, userId.getBytes(StandardCharsets.UTF_8)), position);
+    }
+  }
+
+  private void indexKey(PGPPublicKey key, int secret, long position) throws IOException {
+    index.put(hash(KEY_ID | secret, key.getKeyID()), position);
+    index.put(hash(FINGERPRINT | secret, key.getFingerprint()), position);
+  }
+
+  /**
+   * collects the normalized user IDs and e-mail addresses of the key
+   *
+   * @param primaryKey
+   *    the primary key
+   * @return the user IDs
+   */
+  static Set<String> userIdsOf(PGPPublicKey primaryKey) {
+    Set<String> result = new HashSet<>();
+    Iterator<?> userIds = primaryKey.getUserIDs();
+    while( userIds.hasNext() ) {
+      String userId = normalize((String) userIds.next());
+      result.add(userId);
+      int start = userId.lastIndexOf('<');
+      int end = userId.lastIndexOf('>');
+      if( start >= 0 && end > start + 1 ) {
+        result.add(userId.substring(start + 1, end));
+      }
+    }
+    return result;
+  }
+
+  static String normalize(String userId) {
+    return userId.trim().toLowerCase(Locale.ROOT);
+  }
+
+  private static boolean containsFingerprint(Iterator<PGPPublicKey> keys, byte[] fingerprint) {
+    boolean result = false;
+    while( keys.hasNext() && !result ) {
+      result = Arrays.equals(keys.next().getFingerprint(), fingerprint);
+    }
+    return result;
+  }
+
+  private void writeRecord(byte[] record, long position) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + record.length);
+    buffer.putInt(record.length).put(record).flip();
+    while( buffer.hasRemaining() ) {
+      position += data.write(buffer, position);
+    }
+  }
+
+  private void readFully(ByteBuffer buffer, long position) throws IOException {
+    while( buffer.hasRemaining() ) {
+      int read = data.read(buffer, position);
+      if( read < 0 ) {
+        throw new EOFException("Incomplete key ring record");
+      }
+      position += read;
+    }
+    buffer.flip();
+  }
+
+  /**
+   * reads the key ring record at the position
+   *
+   * @param position
+   *    the position of the record
+   * @return the encoded key ring
+   * @throws EOFException
+   *    if the record is incomplete or its length prefix is invalid
+   * @throws IOException
+   */
+  private byte[] readRecord(long position) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+    readFully(header, position);
+    int length = header.getInt();
+    if( length <= 0 || position + RECORD_HEADER_SIZE + length > data.size() ) {
+      throw new EOFException("Incomplete key ring record");
+    }
+    ByteBuffer record = ByteBuffer.allocate(length);
+    readFully(record, position + RECORD_HEADER_SIZE);
+    return record.array();
+  }
+
+  /**
+   * parses the encoded key ring, secret and public key rings are distinguished by the tag of the first packet
+   *
+   * @param record
+   *    the encoded key ring
+   * @return the public or secret key ring
+   * @throws IOException
+   */
+  private static Object parseRecord(byte[] record) throws IOException {
+    int tag = ((record[0] & 0x40) != 0) ? record[0] & 0x3f : (record[0] & 0x3f) >> 2;
+    Object result;
+    try {
+      result = (tag == SECRET_KEY_TAG) ? new PGPSecretKeyRing(record, new BcKeyFingerprintCalculator()) : new PGPPublicKeyRing(record, new BcKeyFingerprintCalculator());
+    } catch (PGPException e) {
+      throw new IOException(e.getMessage(), e);
+    }
+    return result;
+  }
+
+  /**
+   * avalanches the bits of the value (the finalizer of MurmurHash3)
+   */
+  private static long mix(long value) {
+    value ^= value >>> 33;
+    value *= 0xff51afd7ed558ccdL;
+    value ^= value >>> 33;
+    value *= 0xc4ceb9fe1a85ec53L;
+    value ^= value >>> 33;
+    return value;
+  }
+
+  private static long hash(int kind, long value) {
+    return mix(mix(kind) ^ value);
+  }
+
+  private static long hash(int kind, byte[] value) {
+    long result = 0xcbf29ce484222325L ^ kind;
+    for( byte b : value ) {
+      result ^= b & 0xff;
+      result *= 0x100000001b3L;
+    }
+    return mix(result);
+  }
+
+}
@@ -0,0 +1,559 @@
+package me.sniggle.pgp.crypt;
+
+import me.sniggle.pgp.crypt.internal.io.ArmorInputStream;
+import me.sniggle.pgp.crypt.internal.io.KeyRingPacketFilter;
+import me.sniggle.pgp.crypt.internal.io.KeyRingSplitter;
+import org.spongycastle.crypto.digests.SHA256Digest;
+import org.spongycastle.openpgp.PGPException;
+import org.spongycastle.openpgp.PGPPublicKey;
+import org.spongycastle.openpgp.PGPPublicKeyRing;
+import org.spongycastle.openpgp.PGPSecretKey;
+import org.spongycastle.openpgp.PGPSecretKeyRing;
+import org.spongycastle.openpgp.operator.bc.BcKeyFingerprintCalculator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A key ring store fed by a key ring file or a directory of key ring files, the files are watched and changes
+ * are loaded without a restart.
+ *
+ * A changed file is split into its key rings, only the key rings not loaded before are parsed. The changes of a
+ * file are published to the lookups as one snapshot of a {@link PGPKeyDirectory}, lookups running during a
+ * reload are neither blocked nor see a partially reloaded file. A file that cannot be read (e.g. while it is
+ * being written) keeps its previous key rings until the next change.
+ *
+ * The public and secret key ring of a primary key are expected in the same file: a change of either key ring
+ * reloads both of them from the file. Pooled session keys of changed or removed keys are discarded if a
+ * session key pool is set, the key usability evaluations of the engines are keyed by content and need no
+ * invalidation.
+ */
+public class PGPKeyRingWatcher implements KeyRingStore {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PGPKeyRingWatcher.class);
+
+  private static final int SECRET_KEY_TAG = 5;
+
+  /**
+   * a key ring split from a file
+   */
+  private static final class KeyRing {
+
+    private final ByteBuffer digest;
+    private final byte[] encoded;
+    private Object parsed;
+    private long[] keyIds;
+
+    KeyRing(ByteBuffer digest, byte[] encoded) {
+      this.digest = digest;
+      this.encoded = encoded;
+    }
+
+  }
+
+  private final Path path;
+  private final Path directory;
+  private final boolean watchDirectory;
+  private final PGPKeyDirectory keyDirectory = new PGPKeyDirectory();
+  /**
+   * the key IDs (the primary key ID first) of the loaded key rings per file and key ring digest
+   */
+  private final Map<Path, Map<ByteBuffer, long[]>> loadedFiles = new HashMap<>();
+  private final Lock reloadLock = new ReentrantLock();
+  private final Lock lock = new ReentrantLock();
+  private final AtomicLong reloadCount = new AtomicLong();
+  private final AtomicLong totalReloadNanos = new AtomicLong();
+  private volatile long lastReloadNanos = 0;
+
+  private long debounceInterval = 100;
+  private boolean skipCertifications = true;
+  private KeyRingReloadListener reloadListener;
+  private PGPSessionKeyPool sessionKeyPool;
+  private WatchService watchService;
+  private Thread watchThread;
+
+  /**
+   * @param path
+   *    the key ring file or the directory of key ring files (hidden files are ignored)
+   */
+  public PGPKeyRingWatcher(Path path) {
+    this.path = path.toAbsolutePath();
+    this.watchDirectory = Files.isDirectory(this.path);
+    this.directory = watchDirectory ? this.path : this.path.getParent();
+  }
+
+  /**
+   * set the time changes are collected before a reload, editors and deployments often write a file in
+   * several steps
+   *
+   * @param debounceInterval
+   *    the interval in milliseconds (default 100)
+   */
+  public void setDebounceInterval(long debounceInterval) {
+    this.debounceInterval = debounceInterval;
+  }
+
+  /**
+   * set whether certifications issued by other keys, user attributes and trust packets are skipped when the
+   * files are read
+   *
+   * @param skipCertifications
+   *    true (default) to skip the packets
+   */
+  public void setSkipCertifications(boolean skipCertifications) {
+    this.skipCertifications = skipCertifications;
+  }
+
+  /**
+   * set the listener notified about every reload of a file
+   *
+   * @param reloadListener
+   *    the reload listener (may be null)
+   */
+  public void setReloadListener(KeyRingReloadListener reloadListener) {
+    this.reloadListener = reloadListener;
+  }
+
+  /**
+   * set the session key pool whose pooled session keys of changed or removed keys are discarded
+   *
+   * @param sessionKeyPool
+   *    the session key pool (may be null)
+   */
+  public void setSessionKeyPool(PGPSessionKeyPool sessionKeyPool) {
+    this.sessionKeyPool = sessionKeyPool;
+  }
+
+  /**
+   * @return the number of file reloads so far
+   */
+  public long getReloadCount() {
+    return reloadCount.get();
+  }
+
+  /**
+   * @return the time the last file reload took
+   */
+  public long getLastReloadNanos() {
+    return lastReloadNanos;
+  }
+
+  /**
+   * @return the time all file reloads took
+   */
+  public long getTotalReloadNanos() {
+    return totalReloadNanos.get();
+  }
+
+  /**
+   * @return the number of primary keys loaded
+   */
+  public int size() {
+    return keyDirectory.size();
+  }
+
+  /**
+   * loads the key ring files and starts watching them for changes
+   *
+   * @return true if the files are watched
+   */
+  public boolean start() {
+    LOGGER.trace("start()");
+    boolean result = false;
+    lock.lock();
+    try {
+      if( watchThread == null ) {
+        watchService = directory.getFileSystem().newWatchService();
+        try {
+          directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+          watchService.close();
+          watchService = null;
+          throw e;
+        }
+        reload();
+        final WatchService service = watchService;
+        watchThread = new Thread(new Runnable() {
+          @Override
+          public void run() {
+            watch(service);
+          }
+        }, "simple-pgp-key-ring-watcher");
+        watchThread.setDaemon(true);
+        watchThread.start();
+      }
+      result = true;
+    } catch (IOException e) {
+      LOGGER.error("{}", e.getMessage());
+    } finally {
+      lock.unlock();
+    }
+    return result;
+  }
+
+  /**
+   * waits for changes and reloads the changed files until the watch service is closed
+   *
+   * @param service
+   *    the watch service
+   */
+  private void watch(WatchService service) {
+    try {
+      while( !Thread.currentThread().isInterrupted() ) {
+        WatchKey watchKey = service.take();
+        Thread.sleep(debounceInterval);
+        Set<Path> changedFiles = new LinkedHashSet<>();
+        boolean overflow = false;
+        while( watchKey != null ) {
+          for( WatchEvent<?> event : watchKey.pollEvents() ) {
+            if( event.kind() == StandardWatchEventKinds.OVERFLOW ) {
+              overflow = true;
+            } else {
+              Path file = directory.resolve((Path) event.context());
+              if( isWatched(file) ) {
+                changedFiles.add(file);
+              }
+            }
+          }
+          watchKey.reset();
+          watchKey = service.poll();
+        }
+        if( overflow ) {
+          try {
+            reload();
+          } catch (RuntimeException e) {
+            LOGGER.error("Reloading {} failed: {}", path, e.getMessage());
+          }
+        } else {
+          for( Path file : changedFiles ) {
+            try {
+              reload(file);
+            } catch (RuntimeException e) {
+              LOGGER.error("Reloading {} failed: {}", file, e.getMessage());
+            }
+          }
+        }
+      }
+    } catch (InterruptedException | ClosedWatchServiceException e) {
+      LOGGER.debug("Stopped watching {}", path);
+    }
+  }
+
+  private boolean isWatched(Path file) {
+    return watchDirectory ? !file.getFileName().toString().startsWith(".") : file.equals(path);
+  }
+
+  /**
+   * reloads all key ring files, files deleted since the last reload are removed
+   *
+   * @return the number of files reloaded or -1 if the directory cannot be listed
+   */
+  public int reload() {
+    LOGGER.trace("reload()");
+    int result = -1;
+    Set<Path> files = new LinkedHashSet<>();
+    try {
+      if( watchDirectory ) {
+        try( DirectoryStream<Path> directoryStream = Files.newDirectoryStream(directory) ) {
+          for( Path file : directoryStream ) {
+            if( isWatched(file) && Files.isRegularFile(file) ) {
+              files.add(file);
+            }
+          }
+        }
+      } else {
+        files.add(path);
+      }
+      reloadLock.lock();
+      try {
+        files.addAll(loadedFiles.keySet());
+      } finally {
+        reloadLock.unlock();
+      }
+      result = 0;
+      for( Path file : files ) {
+        if( reload(file) != null ) {
+          result++;
+        }
+      }
+    } catch (IOException e) {
+      LOGGER.error("{}", e.getMessage());
+    }
+    return result;
+  }
+
+  /**
+   * reloads the key ring file, a file that does not exist (any longer) has no key rings
+   *
+   * @param file
+   *    the key ring file
+   * @return the statistics of the reload or null if the file cannot be read
+   */
+  public ReloadResult reload(Path file) {
+    LOGGER.trace("reload(Path)");
+    LOGGER.trace("File: {}", file == null ? "not set" : file);
+    ReloadResult result = null;
+    Path absoluteFile = file.toAbsolutePath();
+    long start = System.nanoTime();
+    reloadLock.lock();
+    try {
+      List<KeyRing> keyRings = Files.isRegularFile(absoluteFile) ? split(absoluteFile) : Collections.<KeyRing>emptyList();
+      Map<ByteBuffer, long[]> previous = loadedFiles.get(absoluteFile);
+      if( previous == null ) {
+        previous = Collections.emptyMap();
+      }
+      Map<ByteBuffer, long[]> current = new HashMap<>();
+      Set<Long> currentPrimaryKeyIds = new HashSet<>();
+      Set<Long> changedPrimaryKeyIds = new HashSet<>();
+      Set<Long> invalidatedKeyIds = new HashSet<>();
+      int changed = 0;
+      for( KeyRing keyRing : keyRings ) {
+        keyRing.keyIds = previous.get(keyRing.digest);
+        if( keyRing.keyIds == null ) {
+          parse(keyRing);
+          changedPrimaryKeyIds.add(keyRing.keyIds[0]);
+          changed++;
+        }
+        current.put(keyRing.digest, keyRing.keyIds);
+        currentPrimaryKeyIds.add(keyRing.keyIds[0]);
+      }
+      int removed = 0;
+      for( Map.Entry<ByteBuffer, long[]> loaded : previous.entrySet() ) {
+        if( !current.containsKey(loaded.getKey()) ) {
+          changedPrimaryKeyIds.add(loaded.getValue()[0]);
+          for( long keyId : loaded.getValue() ) {
+            invalidatedKeyIds.add(keyId);
+          }
+          if( !currentPrimaryKeyIds.contains(loaded.getValue()[0]) ) {
+            removed++;
+          }
+        }
+      }
+      if( !changedPrimaryKeyIds.isEmpty() ) {
+        List<Object> reloadedKeyRings = new ArrayList<>();
+        for( KeyRing keyRing : keyRings ) {
+          if( changedPrimaryKeyIds.contains(keyRing.keyIds[0]) ) {
+            if( keyRing.parsed == null ) {
+              parse(keyRing);
+            }
+            reloadedKeyRings.add(keyRing.parsed);
+          }
+        }
+        keyDirectory.update(changedPrimaryKeyIds, reloadedKeyRings);
+        invalidate(invalidatedKeyIds);
+      }
+      if( current.isEmpty() ) {
+        loadedFiles.remove(absoluteFile);
+      } else {
+        loadedFiles.put(absoluteFile, current);
+      }
+      long elapsedNanos = System.nanoTime() - start;
+      lastReloadNanos = elapsedNanos;
+      totalReloadNanos.addAndGet(elapsedNanos);
+      reloadCount.incrementAndGet();
+      result = new ReloadResult(absoluteFile, keyRings.size(), changed, removed, elapsedNanos);
+      LOGGER.info("Reloaded {} key ring(s) of {}, {} changed, {} removed", keyRings.size(), absoluteFile, changed, removed);
+    } catch (IOException | PGPException | RuntimeException e) {
+      LOGGER.error("{}", e.getMessage());
+    } finally {
+      reloadLock.unlock();
+    }
+    if( result != null && reloadListener != null ) {
+      try {
+        reloadListener.onReload(result);
+      } catch (RuntimeException e) {
+        LOGGER.error("Reload listener failed: {}", e.getMessage());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * splits the file into its key rings
+   *
+   * @param file
+   *    the key ring file
+   * @return the encoded key rings
+   * @throws IOException
+   */
+  private List<KeyRing> split(Path file) throws IOException {
+    List<KeyRing> result = new ArrayList<>();
+    try( InputStream in = ArmorInputStream.decode(Files.newInputStream(file)) ) {
+      KeyRingSplitter splitter = new KeyRingSplitter(skipCertifications ? new KeyRingPacketFilter(in) : in);
+      byte[] encoded;
+      while( (encoded = splitter.next()) != null ) {
+        SHA256Digest digest = new SHA256Digest();
+        digest.update(encoded, 0, encoded.length);
+        byte[] hash = new byte[digest.getDigestSize()];
+        digest.doFinal(hash, 0);
+        result.add(new KeyRing(ByteBuffer.wrap(hash), encoded));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * parses the encoded key ring and collects its key IDs
+   *
+   * @param keyRing
+   *    the key ring
+   * @throws IOException
+   * @throws PGPException
+   */
+  private static void parse(KeyRing keyRing) throws IOException, PGPException {
+    List<Long> keyIds = new ArrayList<>();
+    int tag = ((keyRing.encoded[0] & 0x40) != 0) ? keyRing.encoded[0] & 0x3f : (keyRing.encoded[0] & 0x3f) >> 2;
+    if( tag == SECRET_KEY_TAG ) {
+      PGPSecretKeyRing secretKeyRing = new PGPSecretKeyRing(keyRing.encoded, new BcKeyFingerprintCalculator());
+      Iterator<PGPSecretKey> secretKeys = secretKeyRing.getSecretKeys();
+      while( secretKeys.hasNext() ) {
+        keyIds.add(secretKeys.next().getKeyID());
+      }
+      keyRing.parsed = secretKeyRing;
+    } else {
+      PGPPublicKeyRing publicKeyRing = new PGPPublicKeyRing(keyRing.encoded, new BcKeyFingerprintCalculator());
+      Iterator<PGPPublicKey> publicKeys = publicKeyRing.getPublicKeys();
+      while( publicKeys.hasNext() ) {
+        keyIds.add(publicKeys.next().getKeyID());
+      }
+      keyRing.parsed = publicKeyRing;
+    }
+    keyRing.keyIds = new long[keyIds.size()];
+    for( int i = 0; i < keyRing.keyIds.length; i++ ) {
+      keyRing.keyIds[i] = keyIds.get(i);
+    }
+  }
+
+  /**
+   * discards the pooled session keys of the keys
+   */
+  private void invalidate(Set<Long> keyIds) {
+    PGPSessionKeyPool pool = sessionKeyPool;
+    if( pool != null ) {
+      for( Long keyId : keyIds ) {
+        pool.removeRecipient(keyId);
+      }
+    }
+  }
+
+  /**
+   * @see KeyRingStore#addKeyRings(InputStream)
+   *
+   * the key rings are not backed by a file, a reload of a file containing the same primary key replaces them
+   *
+   * @param keyRings
+   *    the (ascii-armored or binary) public or secret key rings
+   * @return
+   */
+  @Override
+  public int addKeyRings(InputStream keyRings) {
+    return keyDirectory.addKeyRings(keyRings);
+  }
+
+  /**
+   * @see KeyRingStore#findPublicKeyRing(long)
+   *
+   * @param keyId
+   *    the ID of the key
+   * @return
+   */
+  @Override
+  public InputStream findPublicKeyRing(long keyId) {
+    return keyDirectory.findPublicKeyRing(keyId);
+  }
+
+  /**
+   * @see KeyRingStore#findPublicKeyRing(byte[])
+   *
+   * @param fingerprint
+   *    the fingerprint of the key
+   * @return
+   */
+  @Override
+  public InputStream findPublicKeyRing(byte[] fingerprint) {
+    return keyDirectory.findPublicKeyRing(fingerprint);
+  }
+
+  /**
+   * @see KeyRingStore#findPublicKeyRings(String)
+   *
+   * @param userId
+   *    the user ID or e-mail address
+   * @return
+   */
+  @Override
+  public InputStream findPublicKeyRings(String userId) {
+    return keyDirectory.findPublicKeyRings(userId);
+  }
+
+  /**
+   * @see KeyRingStore#findSecretKeyRing(long)
+   *
+   * @param keyId
+   *    the ID of the key
+   * @return
+   */
+  @Override
+  public InputStream findSecretKeyRing(long keyId) {
+    return keyDirectory.findSecretKeyRing(keyId);
+  }
+
+  /**
+   * @see KeyRingStore#findSecretKeyRings(String)
+   *
+   * @param userId
+   *    the user ID or e-mail address
+   * @return
+   */
+  @Override
+  public InputStream findSecretKeyRings(String userId) {
+    return keyDirectory.findSecretKeyRings(userId);
+  }
+
+  /**
+   * stops watching the files, the loaded key rings remain available
+   */
+  @Override
+  public void close() {
+    LOGGER.trace("close()");
+    lock.lock();
+    try {
+      if( watchThread != null ) {
+        watchThread.interrupt();
+        watchThread = null;
+      }
+      if( watchService != null ) {
+        watchService.close();
+        watchService = null;
+      }
+    } catch (IOException e) {
+      LOGGER.error("{}", e.getMessage());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+}
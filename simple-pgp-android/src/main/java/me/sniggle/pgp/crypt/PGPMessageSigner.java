@@ -1,9 +1,10 @@
 package me.sniggle.pgp.crypt;
 
 import me.sniggle.pgp.crypt.internal.BasePGPCommon;
+import me.sniggle.pgp.crypt.internal.io.ArmorInputStream;
+import me.sniggle.pgp.crypt.internal.io.ByteBufferOutputStream;
+import me.sniggle.pgp.crypt.internal.io.ChunkOutputStream;
 import me.sniggle.pgp.crypt.internal.io.IOUtils;
-import org.spongycastle.bcpg.ArmoredInputStream;
-import org.spongycastle.bcpg.ArmoredOutputStream;
 import org.spongycastle.bcpg.BCPGOutputStream;
 import org.spongycastle.bcpg.HashAlgorithmTags;
 import org.spongycastle.openpgp.*;
@@ -13,10 +14,17 @@ import org.spongycastle.openpgp.operator.bc.BcPGPContentVerifierBuilderProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 
 /**
  * The the library dependent implementation of a MessageSigner
@@ -27,6 +35,104 @@ public class PGPMessageSigner extends BasePGPCommon implements MessageSigner {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(PGPMessageSigner.class);
 
+  /**
+   * a ChunkProcessor feeding the pushed chunks into signatures, prepared when the first chunk arrives
+   */
+  private abstract class SignatureChunkProcessor implements ChunkProcessor {
+
+    protected final ChunkSubscriber<Boolean> subscriber;
+    private boolean prepared = false;
+    private boolean terminated = false;
+
+    SignatureChunkProcessor(ChunkSubscriber<Boolean> subscriber) {
+      this.subscriber = subscriber;
+    }
+
+    /**
+     * prepares the signatures
+     *
+     * @throws IOException
+     * @throws PGPException
+     */
+    protected abstract void prepare() throws IOException, PGPException;
+
+    /**
+     * updates the signatures with the data
+     */
+    protected abstract void update(byte[] buffer, int offset, int length);
+
+    /**
+     * completes the signatures
+     *
+     * @return the result signalled to the subscriber
+     * @throws IOException
+     * @throws PGPException
+     */
+    protected abstract boolean finish() throws IOException, PGPException;
+
+    private void ensurePrepared() throws IOException, PGPException {
+      if( !prepared ) {
+        prepare();
+        prepared = true;
+      }
+    }
+
+    private void fail(Exception cause) {
+      LOGGER.error("{}", cause.getMessage());
+      terminated = true;
+      subscriber.onError(cause);
+    }
+
+    @Override
+    public void onNext(ByteBuffer chunk) {
+      if( !terminated ) {
+        try {
+          ensurePrepared();
+          if( chunk.hasArray() ) {
+            update(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+            chunk.position(chunk.limit());
+          } else {
+            byte[] buffer = getBufferPool().acquire();
+            try {
+              while( chunk.hasRemaining() ) {
+                int length = Math.min(chunk.remaining(), buffer.length);
+                chunk.get(buffer, 0, length);
+                update(buffer, 0, length);
+              }
+            } finally {
+              getBufferPool().release(buffer);
+            }
+          }
+        } catch (IOException | PGPException e) {
+          fail(e);
+        }
+      }
+    }
+
+    @Override
+    public void onComplete() {
+      if( !terminated ) {
+        try {
+          ensurePrepared();
+          boolean result = finish();
+          terminated = true;
+          subscriber.onComplete(result);
+        } catch (IOException | PGPException e) {
+          fail(e);
+        }
+      }
+    }
+
+    @Override
+    public void onError(Throwable cause) {
+      if( !terminated ) {
+        terminated = true;
+        subscriber.onError(cause);
+      }
+    }
+
+  }
+
   /**
    * @see MessageSigner#verifyMessage(InputStream, InputStream, InputStream)
    *
@@ -44,8 +150,8 @@ public class PGPMessageSigner extends BasePGPCommon implements MessageSigner {
     LOGGER.trace("Public Key: {}, Data: {}, Signature: {}",
         publicKeyOfSender == null ? "not set" : "set", message == null ? "not set" : "set", signatureStream == null ? "not set" : "set");
     boolean result = false;
-    LOGGER.debug("Wrapping signature stream in ArmoredInputStream");
-    try( InputStream armordPublicKeyStream = new ArmoredInputStream(signatureStream) ) {
+    LOGGER.debug("Wrapping signature stream in armor stream");
+    try( InputStream armordPublicKeyStream = new ArmorInputStream(signatureStream) ) {
       Object pgpObject;
       PGPObjectFactory pgpObjectFactory = new PGPObjectFactory(armordPublicKeyStream, new BcKeyFingerprintCalculator());
       LOGGER.debug("Iterating over PGP objects in stream");
@@ -58,7 +164,8 @@ public class PGPMessageSigner extends BasePGPCommon implements MessageSigner {
           while( signatureIterator.hasNext() ) {
             LOGGER.debug("Checking next signature");
             final PGPSignature signature = signatureIterator.next();
-            PGPPublicKey pgpPublicKey = findPublicKey(publicKeyOfSender, new KeyFilter<PGPPublicKey>() {
+            InputStream publicKey = publicKeyRingOf(publicKeyOfSender, signature.getKeyID());
+            PGPPublicKey pgpPublicKey = (publicKey == null) ? null : findPublicKey(publicKey, new KeyFilter<PGPPublicKey>() {
               @Override
               public boolean accept(PGPPublicKey pgpKey) {
                 return pgpKey.getKeyID() == signature.getKeyID();
@@ -72,7 +179,7 @@ public class PGPMessageSigner extends BasePGPCommon implements MessageSigner {
                 public void handleStreamBuffer(byte[] buffer, int offset, int length) throws IOException {
                   signature.update(buffer, offset, length);
                 }
-              });
+              }, getBufferPool());
               result = signature.verify();
               LOGGER.info("Verify Signature: {}", result);
             } else {
@@ -111,43 +218,301 @@ public class PGPMessageSigner extends BasePGPCommon implements MessageSigner {
         message == null ? "not set" : "set", signature == null ? "not set" : "set");
     boolean result = false;
     try {
-      LOGGER.debug("Retrieving Private Key");
-      PGPPrivateKey privateKey = findPrivateKey(privateKeyOfSender, passwordOfPrivateKey,  new KeyFilter<PGPSecretKey>() {
+      writeSignature(findSigningKey(privateKeyOfSender, userIdForPrivateKey, passwordOfPrivateKey), message, signature);
+      result = true;
+    } catch (IOException | PGPException e) {
+      result &= false;
+      LOGGER.error("{}", e.getMessage());
+    }
+    return result;
+  }
 
-        @Override
-        public boolean accept(PGPSecretKey secretKey) {
-          boolean result = secretKey.isSigningKey();
-          if( result ) {
-            Iterator<String> userIdIterator = secretKey.getUserIDs();
-            boolean containsUserId = false;
-            while( userIdIterator.hasNext() && !containsUserId ) {
-              containsUserId |= userIdForPrivateKey.equals(userIdIterator.next());
-            }
+  /**
+   * retrieves the signing key of the user
+   *
+   * @param privateKeyOfSender
+   *    the private key of the sender
+   * @param userIdForPrivateKey
+   *    the user id of the sender
+   * @param passwordOfPrivateKey
+   *    the password for the private key
+   * @return the signing key
+   * @throws IOException
+   * @throws PGPException
+   */
+  private PGPPrivateKey findSigningKey(InputStream privateKeyOfSender, final String userIdForPrivateKey, String passwordOfPrivateKey) throws IOException, PGPException {
+    LOGGER.trace("findSigningKey(InputStream, String, String)");
+    LOGGER.debug("Retrieving Private Key");
+    final KeyFilter<PGPSecretKey> signingKeyFilter = createSigningKeyFilter();
+    PGPPrivateKey result = findPrivateKey(privateKeyOfSender, passwordOfPrivateKey,  new KeyFilter<PGPSecretKey>() {
+
+      @Override
+      public boolean accept(PGPSecretKey secretKey) {
+        boolean result = signingKeyFilter.accept(secretKey);
+        if( result ) {
+          Iterator<String> userIdIterator = secretKey.getUserIDs();
+          boolean containsUserId = false;
+          while( userIdIterator.hasNext() && !containsUserId ) {
+            containsUserId |= userIdForPrivateKey.equals(userIdIterator.next());
           }
-          return result;
         }
-      });
-      LOGGER.debug("Initializing signature generator");
-      final PGPSignatureGenerator signatureGenerator = new PGPSignatureGenerator(new BcPGPContentSignerBuilder(privateKey.getPublicKeyPacket().getAlgorithm(), HashAlgorithmTags.SHA256));
-      signatureGenerator.init(PGPSignature.BINARY_DOCUMENT, privateKey);
-      LOGGER.debug("Wrapping signature stream in ArmoredOutputStream and PGOutputStream");
-      try( BCPGOutputStream outputStream = new BCPGOutputStream( new ArmoredOutputStream(signature)) ) {
-        IOUtils.process(message, new IOUtils.StreamHandler() {
-
-          @Override
-          public void handleStreamBuffer(byte[] buffer, int offset, int length) throws IOException {
-            signatureGenerator.update(buffer, offset, length);
-          }
-
-        });
-        LOGGER.info("Writing signature out");
-        signatureGenerator.generate().encode(outputStream);
+        return result;
       }
-      result = true;
+    });
+    if( result == null ) {
+      throw new PGPException("No signing key found");
+    }
+    return result;
+  }
+
+  /**
+   * signs the message and writes the armored detached signature
+   *
+   * @param privateKey
+   *    the signing key
+   * @param message
+   *    the message / data to sign
+   * @param signature
+   *    the (detached) signature target
+   * @throws IOException
+   * @throws PGPException
+   */
+  private void writeSignature(PGPPrivateKey privateKey, InputStream message, OutputStream signature) throws IOException, PGPException {
+    LOGGER.trace("writeSignature(PGPPrivateKey, InputStream, OutputStream)");
+    LOGGER.debug("Initializing signature generator");
+    final PGPSignatureGenerator signatureGenerator = new PGPSignatureGenerator(new BcPGPContentSignerBuilder(privateKey.getPublicKeyPacket().getAlgorithm(), HashAlgorithmTags.SHA256));
+    signatureGenerator.init(PGPSignature.BINARY_DOCUMENT, privateKey);
+    LOGGER.debug("Wrapping signature stream in armor stream and PGOutputStream");
+    try( BCPGOutputStream outputStream = new BCPGOutputStream(PGPArmor.armor(signature)) ) {
+      IOUtils.process(message, new IOUtils.StreamHandler() {
+
+        @Override
+        public void handleStreamBuffer(byte[] buffer, int offset, int length) throws IOException {
+          signatureGenerator.update(buffer, offset, length);
+        }
+
+      }, getBufferPool());
+      LOGGER.info("Writing signature out");
+      signatureGenerator.generate().encode(outputStream);
+    }
+  }
+
+  /**
+   * @see MessageSigner#verifyMessage(InputStream, Path, Path)
+   *
+   * @param publicKeyOfSender
+   *    the public key of the sender of the message
+   * @param message
+   *    the message / data file to verify
+   * @param signature
+   *    the (detached) signature file
+   * @return
+   */
+  @Override
+  public boolean verifyMessage(InputStream publicKeyOfSender, Path message, Path signature) {
+    LOGGER.trace("verifyMessage(InputStream, Path, Path)");
+    LOGGER.trace("Public Key: {}, Data File: {}, Signature File: {}", publicKeyOfSender == null ? "not set" : "set", message, signature);
+    boolean result;
+    try( InputStream messageStream = IOUtils.openInputStream(message);
+         InputStream signatureStream = Files.newInputStream(signature) ) {
+      result = verifyMessage(publicKeyOfSender, messageStream, signatureStream);
+    } catch (IOException e) {
+      LOGGER.error("{}", e.getMessage());
+      result = false;
+    }
+    return result;
+  }
+
+  /**
+   * @see MessageSigner#signMessage(InputStream, String, String, Path, Path)
+   *
+   * @param privateKeyOfSender
+   *    the private key of the sender
+   * @param userIdForPrivateKey
+   *    the user id of the sender
+   * @param passwordOfPrivateKey
+   *    the password for the private key
+   * @param message
+   *    the message / data file to sign
+   * @param signature
+   *    the (detached) signature target file
+   * @return
+   */
+  @Override
+  public boolean signMessage(InputStream privateKeyOfSender, String userIdForPrivateKey, String passwordOfPrivateKey, Path message, Path signature) {
+    LOGGER.trace("signMessage(InputStream, String, String, Path, Path)");
+    LOGGER.trace("Private Key: {}, User ID: {}, Password: {}, Data File: {}, Signature File: {}",
+        privateKeyOfSender == null ? "not set" : "set", userIdForPrivateKey, passwordOfPrivateKey == null ? "not set" : "********", message, signature);
+    boolean result;
+    try( InputStream messageStream = IOUtils.openInputStream(message);
+         OutputStream signatureStream = IOUtils.openOutputStream(signature, 0L) ) {
+      result = signMessage(privateKeyOfSender, userIdForPrivateKey, passwordOfPrivateKey, messageStream, signatureStream);
+    } catch (IOException e) {
+      LOGGER.error("{}", e.getMessage());
+      result = false;
+    }
+    return result;
+  }
+
+  /**
+   * @see MessageSigner#verifyMessage(InputStream, byte[], byte[])
+   *
+   * @param publicKeyOfSender
+   *    the public key of the sender of the message
+   * @param message
+   *    the message / data to verify
+   * @param signature
+   *    the (detached) signature
+   * @return
+   */
+  @Override
+  public boolean verifyMessage(InputStream publicKeyOfSender, byte[] message, byte[] signature) {
+    LOGGER.trace("verifyMessage(InputStream, byte[], byte[])");
+    return verifyMessage(publicKeyOfSender, new ByteArrayInputStream(message), new ByteArrayInputStream(signature));
+  }
+
+  /**
+   * @see MessageSigner#signMessage(InputStream, String, String, byte[])
+   *
+   * @param privateKeyOfSender
+   *    the private key of the sender
+   * @param userIdForPrivateKey
+   *    the user id of the sender
+   * @param passwordOfPrivateKey
+   *    the password for the private key
+   * @param message
+   *    the message / data to sign
+   * @return
+   */
+  @Override
+  public byte[] signMessage(InputStream privateKeyOfSender, String userIdForPrivateKey, String passwordOfPrivateKey, byte[] message) {
+    LOGGER.trace("signMessage(InputStream, String, String, byte[])");
+    LOGGER.trace("Private Key: {}, User ID: {}, Password: {}, Data: {}",
+        privateKeyOfSender == null ? "not set" : "set", userIdForPrivateKey, passwordOfPrivateKey == null ? "not set" : "********", message == null ? "not set" : "set");
+    byte[] result = null;
+    try {
+      PGPPrivateKey privateKey = findSigningKey(privateKeyOfSender, userIdForPrivateKey, passwordOfPrivateKey);
+      int bitStrength = new PGPPublicKey(privateKey.getPublicKeyPacket(), new BcKeyFingerprintCalculator()).getBitStrength();
+      ByteBuffer signature = ByteBuffer.allocate((int) PGPEncodedLength.detachedSignature(bitStrength));
+      writeSignature(privateKey, new ByteArrayInputStream(message), new ByteBufferOutputStream(signature));
+      result = Arrays.copyOf(signature.array(), signature.position());
     } catch (IOException | PGPException e) {
-      result &= false;
       LOGGER.error("{}", e.getMessage());
     }
     return result;
   }
+
+  /**
+   * @see MessageSigner#signingProcessor(InputStream, String, String, ChunkSubscriber)
+   *
+   * @param privateKeyOfSender
+   *    the private key of the sender
+   * @param userIdForPrivateKey
+   *    the user id of the sender
+   * @param passwordOfPrivateKey
+   *    the password for the private key
+   * @param subscriber
+   *    the subscriber of the signature
+   * @return
+   */
+  @Override
+  public ChunkProcessor signingProcessor(final InputStream privateKeyOfSender, final String userIdForPrivateKey, final String passwordOfPrivateKey, ChunkSubscriber<Boolean> subscriber) {
+    LOGGER.trace("signingProcessor(InputStream, String, String, ChunkSubscriber)");
+    LOGGER.trace("Private Key: {}, User ID: {}, Password: {}, Subscriber: {}",
+        privateKeyOfSender == null ? "not set" : "set", userIdForPrivateKey, passwordOfPrivateKey == null ? "not set" : "********", subscriber == null ? "not set" : "set");
+    return new SignatureChunkProcessor(subscriber) {
+
+      private PGPSignatureGenerator signatureGenerator;
+
+      @Override
+      protected void prepare() throws IOException, PGPException {
+        PGPPrivateKey privateKey = findSigningKey(privateKeyOfSender, userIdForPrivateKey, passwordOfPrivateKey);
+        LOGGER.debug("Initializing signature generator");
+        signatureGenerator = new PGPSignatureGenerator(new BcPGPContentSignerBuilder(privateKey.getPublicKeyPacket().getAlgorithm(), HashAlgorithmTags.SHA256));
+        signatureGenerator.init(PGPSignature.BINARY_DOCUMENT, privateKey);
+      }
+
+      @Override
+      protected void update(byte[] buffer, int offset, int length) {
+        signatureGenerator.update(buffer, offset, length);
+      }
+
+      @Override
+      protected boolean finish() throws IOException, PGPException {
+        LOGGER.info("Writing signature out");
+        try( BCPGOutputStream outputStream = new BCPGOutputStream(PGPArmor.armor(new ChunkOutputStream(subscriber))) ) {
+          signatureGenerator.generate().encode(outputStream);
+        }
+        return true;
+      }
+    };
+  }
+
+  /**
+   * @see MessageSigner#verifyingProcessor(InputStream, InputStream, ChunkSubscriber)
+   *
+   * @param publicKeyOfSender
+   *    the public key of the sender of the message
+   * @param signature
+   *    the (detached) signature
+   * @param subscriber
+   *    the subscriber of the verdict
+   * @return
+   */
+  @Override
+  public ChunkProcessor verifyingProcessor(final InputStream publicKeyOfSender, final InputStream signature, ChunkSubscriber<Boolean> subscriber) {
+    LOGGER.trace("verifyingProcessor(InputStream, InputStream, ChunkSubscriber)");
+    LOGGER.trace("Public Key: {}, Signature: {}, Subscriber: {}",
+        publicKeyOfSender == null ? "not set" : "set", signature == null ? "not set" : "set", subscriber == null ? "not set" : "set");
+    return new SignatureChunkProcessor(subscriber) {
+
+      private final List<PGPSignature> signatures = new ArrayList<>();
+
+      @Override
+      protected void prepare() throws IOException, PGPException {
+        LOGGER.debug("Wrapping signature stream in armor stream");
+        try( InputStream armoredSignatureStream = new ArmorInputStream(signature) ) {
+          Object pgpObject;
+          PGPObjectFactory pgpObjectFactory = new PGPObjectFactory(armoredSignatureStream, new BcKeyFingerprintCalculator());
+          while( (pgpObject = pgpObjectFactory.nextObject()) != null ) {
+            if( pgpObject instanceof PGPSignatureList ) {
+              for( final PGPSignature pgpSignature : (PGPSignatureList) pgpObject ) {
+                InputStream publicKey = publicKeyRingOf(publicKeyOfSender, pgpSignature.getKeyID());
+                PGPPublicKey pgpPublicKey = (publicKey == null) ? null : findPublicKey(publicKey, new KeyFilter<PGPPublicKey>() {
+                  @Override
+                  public boolean accept(PGPPublicKey pgpKey) {
+                    return pgpKey.getKeyID() == pgpSignature.getKeyID();
+                  }
+                });
+                if( pgpPublicKey != null ) {
+                  pgpSignature.init(new BcPGPContentVerifierBuilderProvider(), pgpPublicKey);
+                  signatures.add(pgpSignature);
+                } else {
+                  LOGGER.warn("No public key found for signature. Key ID: {}", pgpSignature.getKeyID());
+                }
+              }
+            }
+          }
+        }
+      }
+
+      @Override
+      protected void update(byte[] buffer, int offset, int length) {
+        for( PGPSignature pgpSignature : signatures ) {
+          pgpSignature.update(buffer, offset, length);
+        }
+      }
+
+      @Override
+      protected boolean finish() throws PGPException {
+        boolean result = !signatures.isEmpty();
+        for( PGPSignature pgpSignature : signatures ) {
+          result &= pgpSignature.verify();
+        }
+        LOGGER.info("Verify Signature: {}", result);
+        return result;
+      }
+    };
+  }
+
 }
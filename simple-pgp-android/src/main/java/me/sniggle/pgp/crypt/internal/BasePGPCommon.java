@@ -1,6 +1,9 @@
 package me.sniggle.pgp.crypt.internal;
 
-import org.spongycastle.bcpg.ArmoredInputStream;
+import me.sniggle.pgp.crypt.KeyRingStore;
+import me.sniggle.pgp.crypt.internal.io.ArmorInputStream;
+import me.sniggle.pgp.crypt.internal.io.BufferPool;
+import me.sniggle.pgp.crypt.internal.io.KeyRingPacketFilter;
 import org.spongycastle.openpgp.*;
 import org.spongycastle.openpgp.operator.PBESecretKeyDecryptor;
 import org.spongycastle.openpgp.operator.bc.BcKeyFingerprintCalculator;
@@ -12,7 +15,9 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.io.InputStream;
 import java.security.SecureRandom;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 /**
  * Helper class centralizing access to commonly used PGP function by (all) PGP classes
@@ -40,8 +45,43 @@ public abstract class BasePGPCommon {
 
   }
 
+  /**
+   * Selects the keys usable for encryption or signing at a point in time, the primary key of a key ring has
+   * to be passed before its subkeys (the order the keys of a key ring are iterated in)
+   */
+  private final class KeyUsabilityFilter {
+
+    private final boolean encryption;
+    private final long time;
+    private PGPPublicKey primaryKey;
+    private boolean primaryKeyValid = false;
+
+    KeyUsabilityFilter(boolean encryption, long time) {
+      this.encryption = encryption;
+      this.time = time;
+    }
+
+    boolean accept(PGPPublicKey key) {
+      if( key.isMasterKey() ) {
+        primaryKey = key;
+        primaryKeyValid = keyUsabilityCache.getUsability(key, key).isValid(time);
+      }
+      boolean result = false;
+      if( primaryKey != null && primaryKeyValid ) {
+        KeyUsabilityCache.KeyUsability usability = keyUsabilityCache.getUsability(primaryKey, key);
+        result = encryption ? usability.isUsableForEncryption(time) : usability.isUsableForSigning(time);
+      }
+      return result;
+    }
+
+  }
+
   private boolean unlimitedEncryptionStrength = false;
   private int compressionAlgorithm = AlgorithmSelection.getDefaultCompressionAlgorithm();
+  private BufferPool bufferPool = BufferPool.getDefault();
+  private KeyRingStore keyRingStore;
+  private boolean skipCertifications = true;
+  private KeyUsabilityCache keyUsabilityCache = KeyUsabilityCache.getDefault();
 
   protected BasePGPCommon() {
   }
@@ -65,6 +105,145 @@ public abstract class BasePGPCommon {
     this.compressionAlgorithm = compressionAlgorithm;
   }
 
+  /**
+   * accessor to the pool providing the processing buffers
+   *
+   * @return the buffer pool
+   */
+  protected BufferPool getBufferPool() {
+    return bufferPool;
+  }
+
+  /**
+   * set the pool providing the processing buffers
+   *
+   * @param bufferPool
+   *    the buffer pool
+   */
+  public void setBufferPool(BufferPool bufferPool) {
+    this.bufferPool = bufferPool;
+  }
+
+  /**
+   * accessor to the store keys referenced by messages are looked up in
+   *
+   * @return the key ring store or null if none is set
+   */
+  protected KeyRingStore getKeyRingStore() {
+    return keyRingStore;
+  }
+
+  /**
+   * set the store keys referenced by messages (e.g. the key of a signature or the key a message is encrypted
+   * for) are looked up in if the corresponding key stream is not set
+   *
+   * @param keyRingStore
+   *    the key ring store (may be null)
+   */
+  public void setKeyRingStore(KeyRingStore keyRingStore) {
+    this.keyRingStore = keyRingStore;
+  }
+
+  /**
+   * set whether packets not required to use the keys (certifications issued by other keys, user attributes
+   * and trust packets) are skipped when key streams are read, skipping them speeds up reading heavily
+   * certified keys
+   *
+   * @param skipCertifications
+   *    true (default) to skip the packets
+   */
+  public void setSkipCertifications(boolean skipCertifications) {
+    this.skipCertifications = skipCertifications;
+  }
+
+  /**
+   * set the cache of the evaluated key usability (binding signatures, key flags, expiration and revocation)
+   * used to select the encryption and signing keys
+   *
+   * @param keyUsabilityCache
+   *    the key usability cache
+   */
+  public void setKeyUsabilityCache(KeyUsabilityCache keyUsabilityCache) {
+    this.keyUsabilityCache = keyUsabilityCache;
+  }
+
+  /**
+   * creates a filter selecting the public keys usable for encryption now, the filter must not be shared
+   * between lookups
+   *
+   * @return the key filter
+   */
+  protected KeyFilter<PGPPublicKey> createEncryptionKeyFilter() {
+    final KeyUsabilityFilter usabilityFilter = new KeyUsabilityFilter(true, System.currentTimeMillis());
+    return new KeyFilter<PGPPublicKey>() {
+      @Override
+      public boolean accept(PGPPublicKey pgpKey) {
+        return usabilityFilter.accept(pgpKey);
+      }
+    };
+  }
+
+  /**
+   * creates a filter selecting the secret keys usable for signing now, the filter must not be shared
+   * between lookups
+   *
+   * @return the key filter
+   */
+  protected KeyFilter<PGPSecretKey> createSigningKeyFilter() {
+    final KeyUsabilityFilter usabilityFilter = new KeyUsabilityFilter(false, System.currentTimeMillis());
+    return new KeyFilter<PGPSecretKey>() {
+      @Override
+      public boolean accept(PGPSecretKey pgpKey) {
+        return usabilityFilter.accept(pgpKey.getPublicKey()) && !pgpKey.isPrivateKeyEmpty();
+      }
+    };
+  }
+
+  /**
+   * provides the binary key rings of a possibly armored key stream
+   *
+   * @param keys
+   *    the key stream
+   * @return the binary key ring stream, filtered unless certifications are to be kept
+   * @throws IOException
+   */
+  protected InputStream decodeKeyRings(InputStream keys) throws IOException {
+    InputStream result = ArmorInputStream.decode(keys);
+    return skipCertifications ? new KeyRingPacketFilter(result) : result;
+  }
+
+  /**
+   * provides the public key stream or, if it is not set, the stored public key ring of the key
+   *
+   * @param publicKey
+   *    the public key stream (may be null)
+   * @param keyId
+   *    the ID of the key referenced by the message
+   * @return the key stream or null if neither is available
+   */
+  protected InputStream publicKeyRingOf(InputStream publicKey, long keyId) {
+    return (publicKey == null && keyRingStore != null) ? keyRingStore.findPublicKeyRing(keyId) : publicKey;
+  }
+
+  /**
+   * looks up the secret key in the key ring store
+   *
+   * @param keyId
+   *    the ID of the key referenced by the message
+   * @return the secret key or null if no store is set or it does not contain the key
+   * @throws IOException
+   * @throws PGPException
+   */
+  protected PGPSecretKey findStoredSecretKey(long keyId) throws IOException, PGPException {
+    LOGGER.trace("findStoredSecretKey(long)");
+    PGPSecretKey result = null;
+    InputStream secretKey = (keyRingStore != null) ? keyRingStore.findSecretKeyRing(keyId) : null;
+    if( secretKey != null ) {
+      result = readSecretKeyRingCollection(secretKey).getSecretKey(keyId);
+    }
+    return result;
+  }
+
   /**
    *  retrieve the appropriate secret key from the secret key ring collection
    *  based on the key filter
@@ -164,12 +343,25 @@ public abstract class BasePGPCommon {
    */
   protected PGPSecretKey findSecretKey(InputStream secretKey, KeyFilter<PGPSecretKey> keyFilter) throws IOException, PGPException {
     LOGGER.trace("findSecretKey(InputStream, KeyFilter<PGPSecretKey>)");
-    PGPSecretKey result = null;
-    LOGGER.debug("Wrapping secret key stream in ArmoredInputStream");
-    try( InputStream armoredSecretKey = new ArmoredInputStream(secretKey) ) {
+    return retrieveSecretKey(readSecretKeyRingCollection(secretKey), keyFilter);
+  }
+
+  /**
+   * reads the complete secret key ring collection from the given stream
+   *
+   * @param secretKey
+   *    the secret key stream
+   * @return the secret key ring collection
+   * @throws IOException
+   * @throws PGPException
+   */
+  protected PGPSecretKeyRingCollection readSecretKeyRingCollection(InputStream secretKey) throws IOException, PGPException {
+    LOGGER.trace("readSecretKeyRingCollection(InputStream)");
+    PGPSecretKeyRingCollection result = null;
+    LOGGER.debug("Wrapping secret key stream in decoder stream");
+    try( InputStream armoredSecretKey = decodeKeyRings(secretKey) ) {
       LOGGER.debug("Creating PGPSecretKeyRingCollection");
-      PGPSecretKeyRingCollection keyRingCollection = new PGPSecretKeyRingCollection(armoredSecretKey, new BcKeyFingerprintCalculator());
-      result = retrieveSecretKey(keyRingCollection, keyFilter);
+      result = new PGPSecretKeyRingCollection(armoredSecretKey, new BcKeyFingerprintCalculator());
     }
     return result;
   }
@@ -255,16 +447,18 @@ public abstract class BasePGPCommon {
    *    the secret key
    * @param password
    *    the password to unlock the private key
-   * @return the unlocked private key
+   * @return the unlocked private key or null if no secret key is given
    * @throws PGPException
    */
   protected PGPPrivateKey findPrivateKey(PGPSecretKey pgpSecretKey, String password) throws PGPException {
     LOGGER.trace("findPrivateKey(PGPSecretKey, String)");
     LOGGER.trace("Secret Key: {}, Password: {}", pgpSecretKey == null ? "not set" : "set", password == null ? "not set" : "********");
     PGPPrivateKey result = null;
-    PBESecretKeyDecryptor pbeSecretKeyDecryptor = new BcPBESecretKeyDecryptorBuilder(new BcPGPDigestCalculatorProvider()).build(password.toCharArray());
-    LOGGER.info("Extracting private key");
-    result = pgpSecretKey.extractPrivateKey(pbeSecretKeyDecryptor);
+    if( pgpSecretKey != null ) {
+      PBESecretKeyDecryptor pbeSecretKeyDecryptor = new BcPBESecretKeyDecryptorBuilder(new BcPGPDigestCalculatorProvider()).build(password.toCharArray());
+      LOGGER.info("Extracting private key");
+      result = pgpSecretKey.extractPrivateKey(pbeSecretKeyDecryptor);
+    }
     if( result == null && LOGGER.isErrorEnabled() ) {
       LOGGER.error("No private key could be extracted");
     }
@@ -283,7 +477,59 @@ public abstract class BasePGPCommon {
   protected PGPPublicKey findPublicKey(InputStream publicKey, KeyFilter<PGPPublicKey> keyFilter ) {
     LOGGER.trace("findPublicKey(InputStream, KeyFilter<PGPPublicKey>)");
     LOGGER.trace("Public Key: {}, Key Filter: {}", publicKey == null ? "not set" : "set", keyFilter == null ? "not set" : "set");
-    return retrievePublicKey(readPublicKeyRing(publicKey), keyFilter);
+    PGPPublicKeyRing publicKeyRing = readPublicKeyRing(publicKey);
+    return (publicKeyRing != null) ? retrievePublicKey(publicKeyRing, keyFilter) : null;
+  }
+
+  /**
+   * reads the complete public key ring collection from the given stream
+   *
+   * @param publicKey
+   *    the public key stream (may be null)
+   * @return the public key ring collection or null if no stream is provided
+   * @throws IOException
+   * @throws PGPException
+   */
+  protected PGPPublicKeyRingCollection readPublicKeyRingCollection(InputStream publicKey) throws IOException, PGPException {
+    LOGGER.trace("readPublicKeyRingCollection(InputStream)");
+    PGPPublicKeyRingCollection result = null;
+    if( publicKey != null ) {
+      LOGGER.debug("Wrapping public key in decoder stream");
+      try( InputStream armoredInputStream = decodeKeyRings(publicKey) ) {
+        result = new PGPPublicKeyRingCollection(armoredInputStream, new BcKeyFingerprintCalculator());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * reads all public key rings from the given stream and applies the key filter to each of them
+   *
+   * @param publicKeys
+   *    the input key stream (may contain several key rings)
+   * @param keyFilter
+   *    the filter to apply
+   * @return the first matching public key of every key ring, empty if none matches
+   * @throws IOException
+   * @throws PGPException
+   */
+  protected List<PGPPublicKey> findPublicKeys(InputStream publicKeys, KeyFilter<PGPPublicKey> keyFilter) throws IOException, PGPException {
+    LOGGER.trace("findPublicKeys(InputStream, KeyFilter<PGPPublicKey>)");
+    LOGGER.trace("Public Keys: {}, Key Filter: {}", publicKeys == null ? "not set" : "set", keyFilter == null ? "not set" : "set");
+    List<PGPPublicKey> result = new ArrayList<>();
+    LOGGER.debug("Wrapping public key stream in decoder stream");
+    try( InputStream decoderStream = decodeKeyRings(publicKeys) ) {
+      PGPPublicKeyRingCollection publicKeyRingCollection = new PGPPublicKeyRingCollection(decoderStream, new BcKeyFingerprintCalculator());
+      Iterator<PGPPublicKeyRing> publicKeyRingIterator = publicKeyRingCollection.getKeyRings();
+      LOGGER.debug("Iterating public key rings");
+      while( publicKeyRingIterator.hasNext() ) {
+        PGPPublicKey key = retrievePublicKey(publicKeyRingIterator.next(), keyFilter);
+        if( key != null ) {
+          result.add(key);
+        }
+      }
+    }
+    return result;
   }
 
   /**
@@ -323,7 +569,7 @@ public abstract class BasePGPCommon {
     LOGGER.trace("readPublicKeyRing(InputStream)");
     PGPPublicKeyRing result = null;
     LOGGER.debug("Wrapping public key stream in decoder stream");
-    try( InputStream decoderStream = PGPUtil.getDecoderStream(publicKey) ) {
+    try( InputStream decoderStream = decodeKeyRings(publicKey) ) {
       LOGGER.debug("Creating PGP Object Factory");
       PGPObjectFactory pgpObjectFactory = new PGPObjectFactory(decoderStream, new BcKeyFingerprintCalculator());
       Object o = null;
@@ -0,0 +1,65 @@
+package me.sniggle.pgp.crypt;
+
+import org.spongycastle.openpgp.PGPPublicKeyRing;
+import org.spongycastle.openpgp.PGPPublicKeyRingCollection;
+import org.spongycastle.openpgp.PGPSecretKeyRing;
+import org.spongycastle.openpgp.PGPSecretKeyRingCollection;
+import org.spongycastle.openpgp.PGPUtil;
+import org.spongycastle.openpgp.operator.bc.BcKeyFingerprintCalculator;
+
+import java.io.InputStream;
+
+/**
+ * Reads the key rings of the test resources and of generated keys
+ */
+final class KeyRingFixtures {
+
+  private KeyRingFixtures() {
+    super();
+  }
+
+  /**
+   * @param filename
+   *    the name of the (ascii-armored or binary) test resource
+   * @return the first public key ring of the resource
+   * @throws Exception
+   */
+  static PGPPublicKeyRing readPublicKeyRing(String filename) throws Exception {
+    return readPublicKeyRing(KeyRingFixtures.class.getResourceAsStream(filename));
+  }
+
+  /**
+   * @param keyRings
+   *    the (ascii-armored or binary) public key rings
+   * @return the first public key ring of the stream
+   * @throws Exception
+   */
+  static PGPPublicKeyRing readPublicKeyRing(InputStream keyRings) throws Exception {
+    try( InputStream in = PGPUtil.getDecoderStream(keyRings) ) {
+      return new PGPPublicKeyRingCollection(in, new BcKeyFingerprintCalculator()).getKeyRings().next();
+    }
+  }
+
+  /**
+   * @param filename
+   *    the name of the (ascii-armored or binary) test resource
+   * @return the first secret key ring of the resource
+   * @throws Exception
+   */
+  static PGPSecretKeyRing readSecretKeyRing(String filename) throws Exception {
+    return readSecretKeyRing(KeyRingFixtures.class.getResourceAsStream(filename));
+  }
+
+  /**
+   * @param keyRings
+   *    the (ascii-armored or binary) secret key rings
+   * @return the first secret key ring of the stream
+   * @throws Exception
+   */
+  static PGPSecretKeyRing readSecretKeyRing(InputStream keyRings) throws Exception {
+    try( InputStream in = PGPUtil.getDecoderStream(keyRings) ) {
+      return new PGPSecretKeyRingCollection(in, new BcKeyFingerprintCalculator()).getKeyRings().next();
+    }
+  }
+
+}
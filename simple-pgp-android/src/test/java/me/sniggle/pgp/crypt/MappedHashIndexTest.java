@@ -0,0 +1,35 @@
+package me.sniggle.pgp.crypt;
+
+import me.sniggle.pgp.crypt.internal.io.MappedHashIndex;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the memory-mapped hash index of the key ring store
+ */
+public class MappedHashIndexTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testGrowKeepsInsertionOrder() throws Exception {
+    try( MappedHashIndex index = MappedHashIndex.open(temporaryFolder.newFolder().toPath().resolve("test.idx"), 16) ) {
+      // the probe sequence of the last slot wraps to the start of the table
+      long hash = 15L;
+      for( long offset = 0; offset < 3; offset++ ) {
+        index.put(hash, offset);
+      }
+      for( long filler = 4; filler < 12; filler++ ) {
+        index.put(filler, 100 + filler);
+      }
+      assertEquals(11, index.size());
+      assertArrayEquals(new long[] { 0, 1, 2 }, index.get(hash));
+    }
+  }
+
+}
@@ -0,0 +1,127 @@
+package me.sniggle.pgp.crypt;
+
+import me.sniggle.pgp.crypt.internal.io.ArmorInputStream;
+import me.sniggle.pgp.crypt.internal.io.CRC24;
+import org.spongycastle.bcpg.ArmoredInputStream;
+import org.spongycastle.bcpg.ArmoredOutputStream;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Tests the armor codec against the armor streams of the crypto provider
+ */
+@RunWith(Parameterized.class)
+public class PGPArmorTest {
+
+  private final byte[] data;
+
+  public PGPArmorTest(int firstByte, int length) {
+    this.data = new byte[length];
+    new Random(length).nextBytes(data);
+    if( length > 0 ) {
+      data[0] = (byte) firstByte;
+    }
+  }
+
+  @Parameterized.Parameters
+  public static Collection<Object[]> data() {
+    return Arrays.asList( new Object[][] {
+        { 0x85, 0 },
+        { 0x85, 1 },
+        { 0x85, 2 },
+        { 0x99, 3 },
+        { 0x95, 47 },
+        { 0x89, 48 },
+        { 0xc2, 49 },
+        { 0x85, 100 },
+        { 0x85, 100003 }
+    });
+  }
+
+  private static byte[] readFully(InputStream in) throws IOException {
+    ByteArrayOutputStream result = new ByteArrayOutputStream();
+    byte[] buffer = new byte[777];
+    int read;
+    while( (read = in.read(buffer)) != -1 ) {
+      result.write(buffer, 0, read);
+    }
+    return result.toByteArray();
+  }
+
+  private byte[] providerArmor() throws IOException {
+    ByteArrayOutputStream result = new ByteArrayOutputStream();
+    try( OutputStream out = new ArmoredOutputStream(result) ) {
+      out.write(data);
+    }
+    return result.toByteArray();
+  }
+
+  @Test
+  public void testEncodingMatchesProvider() throws IOException {
+    ByteArrayOutputStream armored = new ByteArrayOutputStream();
+    try( OutputStream out = PGPArmor.armor(armored) ) {
+      out.write(data);
+    }
+    assertEquals(new String(providerArmor(), StandardCharsets.US_ASCII), new String(armored.toByteArray(), StandardCharsets.US_ASCII));
+
+    ByteArrayOutputStream bytewise = new ByteArrayOutputStream();
+    try( OutputStream out = PGPArmor.armor(bytewise) ) {
+      for( byte b : data ) {
+        out.write(b);
+      }
+    }
+    assertArrayEquals(armored.toByteArray(), bytewise.toByteArray());
+  }
+
+  @Test
+  public void testDecodingMatchesProvider() throws IOException {
+    byte[] armored = providerArmor();
+    if( data.length > 0 ) {
+      assertArrayEquals(data, readFully(new ArmorInputStream(new ByteArrayInputStream(armored))));
+      assertArrayEquals(data, readFully(ArmorInputStream.decode(new ByteArrayInputStream(armored))));
+      assertArrayEquals(readFully(new ArmoredInputStream(new ByteArrayInputStream(armored))), readFully(new ArmorInputStream(new ByteArrayInputStream(armored))));
+    }
+    assertArrayEquals(data, readFully(ArmorInputStream.decode(new ByteArrayInputStream(data))));
+  }
+
+  @Test(expected = IOException.class)
+  public void testChecksumMismatch() throws IOException {
+    assumeTrue(data.length > 0);
+    String armored = new String(providerArmor(), StandardCharsets.US_ASCII);
+    int checksum = armored.lastIndexOf("\n=") + 2;
+    char replacement = (armored.charAt(checksum) == 'A') ? 'B' : 'A';
+    readFully(new ArmorInputStream(new ByteArrayInputStream((armored.substring(0, checksum) + replacement + armored.substring(checksum + 1)).getBytes(StandardCharsets.US_ASCII))));
+  }
+
+  @Test
+  public void testChecksumMatchesProvider() {
+    CRC24 crc = new CRC24();
+    org.spongycastle.bcpg.CRC24 providerCrc = new org.spongycastle.bcpg.CRC24();
+    for( byte b : data ) {
+      providerCrc.update(b);
+    }
+    crc.update(data, 0, data.length);
+    assertEquals(providerCrc.getValue(), crc.getValue());
+    crc.reset();
+    for( byte b : data ) {
+      crc.update(b);
+    }
+    assertEquals(providerCrc.getValue(), crc.getValue());
+  }
+
+}
@@ -0,0 +1,249 @@
+package me.sniggle.pgp.crypt;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the asynchronous operations and the backpressure of the bounded executors
+ */
+@RunWith(Parameterized.class)
+public class PGPAsyncEngineTest {
+
+  private AsyncExecutors executors;
+  private AsyncMessageEncryptor messageEncryptor;
+  private AsyncMessageSigner messageSigner;
+  private final String publicKeyFilename;
+  private final String privateKeyFilename;
+  private final String userId;
+  private final byte[] plainData = "asynchronous plain data".getBytes();
+
+  public PGPAsyncEngineTest(String publicKeyFilename, String privateKeyFilename, String userId) {
+    this.publicKeyFilename = publicKeyFilename;
+    this.privateKeyFilename = privateKeyFilename;
+    this.userId = userId;
+  }
+
+  @Parameterized.Parameters
+  public static Collection<Object[]> data() {
+    return Arrays.asList( new Object[][] {
+        { "testcase-1-pub.asc", "testcase-1-sec.asc", "Test Case 1 (PGP key for simple-pgp testcase) <testcase-1@sniggleme.info>" },
+        { "testcase-2-pub.asc", "testcase-2-sec.asc", "Test Case 2 (PGP key for test case of simple-pgp) <testcase-2@sniggleme.info>" }
+    });
+  }
+
+  @Before
+  public void setUp() {
+    executors = new AsyncExecutors();
+    messageEncryptor = new AsyncMessageEncryptor(PGPWrapperFactory.getEncyptor(), executors);
+    messageSigner = new AsyncMessageSigner(PGPWrapperFactory.getSigner(), executors);
+  }
+
+  @Test
+  public void testEncryptDecrypt() throws InterruptedException, ExecutionException {
+    byte[] encryptedData = messageEncryptor.encrypt(getClass().getResourceAsStream(publicKeyFilename), getClass().getResourceAsStream(privateKeyFilename), userId, "testpassword", "data.txt", plainData, null).get();
+    assertNotNull(encryptedData);
+    final AtomicReference<byte[]> notified = new AtomicReference<>();
+    final CountDownLatch completed = new CountDownLatch(1);
+    ByteArrayOutputStream target = new ByteArrayOutputStream();
+    Future<Boolean> result = messageEncryptor.decrypt("testpassword", getClass().getResourceAsStream(privateKeyFilename), getClass().getResourceAsStream(publicKeyFilename), new ByteArrayInputStream(encryptedData), target, null);
+    assertTrue(result.get());
+    assertArrayEquals(plainData, target.toByteArray());
+    messageEncryptor.decrypt("testpassword", getClass().getResourceAsStream(privateKeyFilename), getClass().getResourceAsStream(publicKeyFilename), encryptedData, new AsyncCallback<byte[]>() {
+      @Override
+      public void onSuccess(byte[] result) {
+        notified.set(result);
+        completed.countDown();
+      }
+
+      @Override
+      public void onFailure(Throwable cause) {
+        completed.countDown();
+      }
+    });
+    assertTrue(completed.await(30, TimeUnit.SECONDS));
+    assertArrayEquals(plainData, notified.get());
+  }
+
+  @Test
+  public void testSignVerify() throws InterruptedException, ExecutionException {
+    byte[] signature = messageSigner.signMessage(getClass().getResourceAsStream(privateKeyFilename), userId, "testpassword", plainData, null).get();
+    assertNotNull(signature);
+    assertTrue(messageSigner.verifyMessage(getClass().getResourceAsStream(publicKeyFilename), plainData, signature, null).get());
+    assertTrue(messageSigner.verifyMessage(getClass().getResourceAsStream(publicKeyFilename), new ByteArrayInputStream(plainData), new ByteArrayInputStream(signature), null).get());
+  }
+
+  /**
+   * occupies the only thread of the CPU executor until the latch is released
+   */
+  private Future<SessionKey> block(final CountDownLatch release) throws InterruptedException {
+    executors.setCpuThreads(1);
+    executors.setCpuQueueCapacity(1);
+    final CountDownLatch running = new CountDownLatch(1);
+    InputStream blockingData = new InputStream() {
+      @Override
+      public int read() throws IOException {
+        running.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        }
+        return -1;
+      }
+    };
+    Future<SessionKey> result = messageEncryptor.extractSessionKey("testpassword", getClass().getResourceAsStream(privateKeyFilename), blockingData, null);
+    assertTrue(running.await(30, TimeUnit.SECONDS));
+    return result;
+  }
+
+  private static void assertRejected(Future<?> operation) throws InterruptedException {
+    assertTrue(operation.isDone());
+    try {
+      operation.get();
+      fail();
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof RejectedExecutionException);
+    }
+  }
+
+  @Test
+  public void testSaturatedExecutorRejects() throws InterruptedException, ExecutionException {
+    final CountDownLatch release = new CountDownLatch(1);
+    Future<SessionKey> blocked = block(release);
+    Future<byte[]> queued = messageSigner.signMessage(getClass().getResourceAsStream(privateKeyFilename), userId, "testpassword", plainData, null);
+    assertEquals(1, executors.getCpuQueueDepth());
+    final AtomicReference<Throwable> notified = new AtomicReference<>();
+    Future<byte[]> rejected = messageSigner.signMessage(getClass().getResourceAsStream(privateKeyFilename), userId, "testpassword", plainData, new AsyncCallback<byte[]>() {
+      @Override
+      public void onSuccess(byte[] result) {
+      }
+
+      @Override
+      public void onFailure(Throwable cause) {
+        notified.set(cause);
+      }
+    });
+    assertTrue(rejected.isDone());
+    assertTrue(notified.get() instanceof RejectedExecutionException);
+    assertEquals(1, executors.getRejectedCount());
+    try {
+      rejected.get();
+      fail();
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof RejectedExecutionException);
+    }
+    release.countDown();
+    blocked.get();
+    assertNotNull(queued.get());
+    assertEquals(0, executors.getCpuQueueDepth());
+  }
+
+  @Test
+  public void testDiscardedOperationsFail() throws InterruptedException, ExecutionException {
+    executors.setRejectionPolicy(new ThreadPoolExecutor.DiscardPolicy());
+    final CountDownLatch release = new CountDownLatch(1);
+    Future<SessionKey> blocked = block(release);
+    Future<byte[]> queued = messageSigner.signMessage(getClass().getResourceAsStream(privateKeyFilename), userId, "testpassword", plainData, null);
+    final AtomicReference<Throwable> notified = new AtomicReference<>();
+    Future<byte[]> discarded = messageSigner.signMessage(getClass().getResourceAsStream(privateKeyFilename), userId, "testpassword", plainData, new AsyncCallback<byte[]>() {
+      @Override
+      public void onSuccess(byte[] result) {
+      }
+
+      @Override
+      public void onFailure(Throwable cause) {
+        notified.set(cause);
+      }
+    });
+    assertRejected(discarded);
+    assertTrue(notified.get() instanceof RejectedExecutionException);
+    release.countDown();
+    blocked.get();
+    assertNotNull(queued.get());
+  }
+
+  @Test
+  public void testDiscardedOldestOperationFails() throws InterruptedException, ExecutionException {
+    executors.setRejectionPolicy(new ThreadPoolExecutor.DiscardOldestPolicy());
+    final CountDownLatch release = new CountDownLatch(1);
+    Future<SessionKey> blocked = block(release);
+    Future<byte[]> oldest = messageSigner.signMessage(getClass().getResourceAsStream(privateKeyFilename), userId, "testpassword", plainData, null);
+    Future<byte[]> newest = messageSigner.signMessage(getClass().getResourceAsStream(privateKeyFilename), userId, "testpassword", plainData, null);
+    assertRejected(oldest);
+    assertEquals(1, executors.getCpuQueueDepth());
+    release.countDown();
+    blocked.get();
+    assertNotNull(newest.get());
+  }
+
+  @Test
+  public void testOperationsSubmittedDuringShutdownComplete() throws InterruptedException {
+    final List<Future<?>> submitted = new CopyOnWriteArrayList<>();
+    final AtomicReference<Throwable> escaped = new AtomicReference<>();
+    Thread submitter = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          for( int i = 0; i < 200; i++ ) {
+            submitted.add(messageEncryptor.extractSessionKey("testpassword", new ByteArrayInputStream(new byte[0]), new ByteArrayInputStream(new byte[0]), null));
+            submitted.add(messageEncryptor.decrypt("testpassword", new ByteArrayInputStream(new byte[0]), new ByteArrayInputStream(new byte[0]), new ByteArrayInputStream(new byte[0]), new ByteArrayOutputStream(), null));
+          }
+        } catch (RuntimeException e) {
+          escaped.set(e);
+        }
+      }
+    });
+    submitter.start();
+    while( submitter.isAlive() ) {
+      executors.shutdown();
+    }
+    submitter.join();
+    assertNull(escaped.get());
+    for( Future<?> operation : submitted ) {
+      try {
+        operation.get(30, TimeUnit.SECONDS);
+      } catch (ExecutionException e) {
+        assertNotNull(e.getCause());
+      } catch (TimeoutException e) {
+        fail("operation submitted during shutdown never completed");
+      }
+    }
+    assertEquals(0, executors.getIoInFlightCount());
+  }
+
+  @After
+  public void tearDown() {
+    executors.shutdown();
+    executors = null;
+    messageEncryptor = null;
+    messageSigner = null;
+  }
+
+}
@@ -0,0 +1,200 @@
+package me.sniggle.pgp.crypt;
+
+import me.sniggle.pgp.crypt.internal.io.BufferPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Tests streaming operations on executors without a queue bound: many concurrent slow streams on virtual
+ * threads (Java 21 and later only), the bound of concurrent operations and the buffer reuse across threads
+ */
+@RunWith(Parameterized.class)
+public class PGPAsyncEngineVirtualThreadTest {
+
+  private final String publicKeyFilename;
+  private final int concurrentStreams;
+  private AsyncExecutors executors;
+  private AsyncMessageEncryptor messageEncryptor;
+  private byte[] publicKey;
+  private final byte[] plainData = new byte[4096];
+
+  /**
+   * a slow client: every stream blocks on its first read until all streams are in flight
+   */
+  private static final class SlowInputStream extends InputStream {
+
+    private final InputStream data;
+    private final CountDownLatch started;
+    private final CountDownLatch release;
+    private boolean waited = false;
+
+    SlowInputStream(byte[] data, CountDownLatch started, CountDownLatch release) {
+      this.data = new ByteArrayInputStream(data);
+      this.started = started;
+      this.release = release;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] single = new byte[1];
+      return (read(single, 0, 1) == -1) ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      if( !waited ) {
+        waited = true;
+        started.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        }
+      }
+      return data.read(buffer, offset, length);
+    }
+
+  }
+
+  public PGPAsyncEngineVirtualThreadTest(String publicKeyFilename, int concurrentStreams) {
+    this.publicKeyFilename = publicKeyFilename;
+    this.concurrentStreams = concurrentStreams;
+  }
+
+  @Parameterized.Parameters
+  public static Collection<Object[]> data() {
+    return Arrays.asList( new Object[][] {
+        { "testcase-1-pub.asc", 10000 },
+        { "testcase-2-pub.asc", 10000 }
+    });
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    executors = new AsyncExecutors();
+    messageEncryptor = new AsyncMessageEncryptor(PGPWrapperFactory.getEncyptor(), executors);
+    ByteArrayOutputStream key = new ByteArrayOutputStream();
+    try( InputStream in = getClass().getResourceAsStream(publicKeyFilename) ) {
+      byte[] buffer = new byte[4096];
+      int read;
+      while( (read = in.read(buffer)) != -1 ) {
+        key.write(buffer, 0, read);
+      }
+    }
+    publicKey = key.toByteArray();
+  }
+
+  private static ExecutorService newVirtualThreadPerTaskExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return null;
+    }
+  }
+
+  @Test
+  public void testConcurrentSlowStreamsOnVirtualThreads() throws InterruptedException, ExecutionException {
+    ExecutorService virtualThreads = newVirtualThreadPerTaskExecutor();
+    assumeTrue(virtualThreads != null);
+    executors.setIoExecutor(virtualThreads);
+    BufferPool bufferPool = new BufferPool();
+    bufferPool.setThreadLocalCaching(false);
+    PGPMessageEncryptor messageEncryptor = new PGPMessageEncryptor();
+    messageEncryptor.setBufferPool(bufferPool);
+    this.messageEncryptor = new AsyncMessageEncryptor(messageEncryptor, executors);
+    CountDownLatch started = new CountDownLatch(concurrentStreams);
+    CountDownLatch release = new CountDownLatch(1);
+    List<Future<Boolean>> results = new ArrayList<>();
+    for( int i = 0; i < concurrentStreams; i++ ) {
+      results.add(this.messageEncryptor.encrypt(new ByteArrayInputStream(publicKey), "data.bin", new SlowInputStream(plainData, started, release), new ByteArrayOutputStream(), null));
+    }
+    assertTrue(started.await(120, TimeUnit.SECONDS));
+    assertEquals(concurrentStreams, executors.getIoInFlightCount());
+    assertTrue(ManagementFactory.getThreadMXBean().getThreadCount() < 256);
+    release.countDown();
+    for( Future<Boolean> result : results ) {
+      assertTrue(result.get());
+    }
+    assertEquals(0, executors.getIoInFlightCount());
+    virtualThreads.shutdown();
+  }
+
+  @Test
+  public void testMaxConcurrentIoOperations() throws InterruptedException, ExecutionException {
+    ExecutorService threads = Executors.newCachedThreadPool();
+    executors.setIoExecutor(threads);
+    executors.setMaxConcurrentIoOperations(2);
+    CountDownLatch started = new CountDownLatch(2);
+    CountDownLatch release = new CountDownLatch(1);
+    List<ByteArrayOutputStream> targets = new ArrayList<>();
+    List<Future<Boolean>> results = new ArrayList<>();
+    for( int i = 0; i < 3; i++ ) {
+      targets.add(new ByteArrayOutputStream());
+      results.add(messageEncryptor.encrypt(new ByteArrayInputStream(publicKey), "data.bin", new SlowInputStream(plainData, started, release), targets.get(i), null));
+    }
+    assertTrue(started.await(30, TimeUnit.SECONDS));
+    assertTrue(results.get(2).isDone());
+    assertEquals(1, executors.getRejectedCount());
+    release.countDown();
+    assertTrue(results.get(0).get());
+    assertTrue(results.get(1).get());
+    assertEquals(0, executors.getIoInFlightCount());
+    Future<Boolean> admitted = messageEncryptor.encrypt(new ByteArrayInputStream(publicKey), "data.bin", new ByteArrayInputStream(plainData), new ByteArrayOutputStream(), null);
+    assertTrue(admitted.get());
+    threads.shutdown();
+  }
+
+  @Test
+  public void testSharedBufferCache() throws InterruptedException {
+    final BufferPool bufferPool = new BufferPool();
+    bufferPool.setThreadLocalCaching(false);
+    for( int i = 0; i < 4; i++ ) {
+      Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          bufferPool.release(bufferPool.acquire());
+          bufferPool.releaseDirect(bufferPool.acquireDirect());
+        }
+      });
+      thread.start();
+      thread.join();
+    }
+    assertEquals(4, bufferPool.getAcquisitions());
+    assertEquals(1, bufferPool.getAllocations());
+    assertEquals(1, bufferPool.getDirectAllocations());
+    bufferPool.acquire();
+    assertEquals(5, bufferPool.getAcquisitions());
+    assertEquals(1, bufferPool.getAllocations());
+  }
+
+  @After
+  public void tearDown() {
+    executors.shutdown();
+    executors = null;
+    messageEncryptor = null;
+  }
+
+}
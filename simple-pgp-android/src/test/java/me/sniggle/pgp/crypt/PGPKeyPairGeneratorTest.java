@@ -0,0 +1,96 @@
+package me.sniggle.pgp.crypt;
+
+import org.spongycastle.openpgp.PGPPublicKey;
+import org.spongycastle.openpgp.PGPSignature;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static me.sniggle.pgp.crypt.KeyRingFixtures.readPublicKeyRing;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the concurrent generation of the primary key and subkey pairs
+ */
+public class PGPKeyPairGeneratorTest {
+
+  private static final int KEY_SIZE = 1024;
+  private static final String USER_ID = "Concurrent Key <concurrent@sniggleme.info>";
+
+  private final AtomicInteger threadsCreated = new AtomicInteger();
+  private ExecutorService keyGenerationExecutor;
+  private PGPKeyPairGenerator keyPairGenerator;
+
+  @Before
+  public void setUp() {
+    keyGenerationExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        threadsCreated.incrementAndGet();
+        return new Thread(runnable);
+      }
+    });
+    keyPairGenerator = new PGPKeyPairGenerator();
+  }
+
+  @After
+  public void tearDown() {
+    keyGenerationExecutor.shutdownNow();
+  }
+
+  private void assertEncryptDecrypt(byte[] publicKey, byte[] secretKey) {
+    byte[] message = "message".getBytes(StandardCharsets.UTF_8);
+    PGPMessageEncryptor messageEncryptor = new PGPMessageEncryptor();
+    byte[] encrypted = messageEncryptor.encrypt(new ByteArrayInputStream(publicKey), new ByteArrayInputStream(secretKey), USER_ID, "testpassword", "message.txt", message);
+    assertNotNull(encrypted);
+    assertArrayEquals(message, messageEncryptor.decrypt("testpassword", new ByteArrayInputStream(secretKey), new ByteArrayInputStream(publicKey), encrypted));
+  }
+
+  @Test
+  public void testGenerateOnKeyGenerationExecutor() {
+    keyPairGenerator.setKeyGenerationExecutor(keyGenerationExecutor);
+    ByteArrayOutputStream publicKey = new ByteArrayOutputStream();
+    ByteArrayOutputStream secretKey = new ByteArrayOutputStream();
+    assertTrue(keyPairGenerator.generateKeyPair(USER_ID, "testpassword", KEY_SIZE, publicKey, secretKey));
+    assertEquals(1, threadsCreated.get());
+    assertEncryptDecrypt(publicKey.toByteArray(), secretKey.toByteArray());
+  }
+
+  @Test
+  public void testGenerateOnDefaultExecutor() {
+    ByteArrayOutputStream publicKey = new ByteArrayOutputStream();
+    ByteArrayOutputStream secretKey = new ByteArrayOutputStream();
+    assertTrue(keyPairGenerator.generateKeyPair(USER_ID, "testpassword", KEY_SIZE, publicKey, secretKey));
+    assertEquals(0, threadsCreated.get());
+    assertEncryptDecrypt(publicKey.toByteArray(), secretKey.toByteArray());
+  }
+
+  @Test
+  public void testPositiveSelfCertification() throws Exception {
+    ByteArrayOutputStream publicKey = new ByteArrayOutputStream();
+    assertTrue(keyPairGenerator.generateKeyPair(USER_ID, "testpassword", KEY_SIZE, publicKey, new ByteArrayOutputStream()));
+    PGPPublicKey primaryKey = readPublicKeyRing(new ByteArrayInputStream(publicKey.toByteArray())).getPublicKey();
+    PGPSignature selfCertification = (PGPSignature) primaryKey.getSignaturesForID(USER_ID).next();
+    assertEquals(PGPSignature.POSITIVE_CERTIFICATION, selfCertification.getSignatureType());
+  }
+
+  @Test
+  public void testGenerateOnShutdownExecutorFails() {
+    keyGenerationExecutor.shutdown();
+    keyPairGenerator.setKeyGenerationExecutor(keyGenerationExecutor);
+    assertFalse(keyPairGenerator.generateKeyPair(USER_ID, "testpassword", KEY_SIZE, new ByteArrayOutputStream(), new ByteArrayOutputStream()));
+  }
+
+}
@@ -0,0 +1,107 @@
+package me.sniggle.pgp.crypt;
+
+import org.spongycastle.bcpg.HashAlgorithmTags;
+import org.spongycastle.bcpg.S2K;
+import org.spongycastle.openpgp.PGPSecretKey;
+import org.spongycastle.openpgp.PGPSecretKeyRing;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+
+import static me.sniggle.pgp.crypt.KeyRingFixtures.readSecretKeyRing;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the S2K configuration, calibration and the re-protection of secret keys
+ */
+@RunWith(Parameterized.class)
+public class PGPKeyProtectorTest {
+
+  private final String userId;
+  private final String privateKeyFilename;
+  private final String publicKeyFilename;
+
+  public PGPKeyProtectorTest(String userId, String privateKeyFilename, String publicKeyFilename) {
+    this.userId = userId;
+    this.privateKeyFilename = privateKeyFilename;
+    this.publicKeyFilename = publicKeyFilename;
+  }
+
+  @Parameterized.Parameters
+  public static Collection<Object[]> data() {
+    return Arrays.asList( new Object[][] {
+        { "Test Case 1 (PGP key for simple-pgp testcase) <testcase-1@sniggleme.info>", "testcase-1-sec.asc", "testcase-1-pub.asc" },
+        { "Test Case 2 (PGP key for test case of simple-pgp) <testcase-2@sniggleme.info>", "testcase-2-sec.asc", "testcase-2-pub.asc" }
+    });
+  }
+
+  private static void assertS2K(PGPSecretKeyRing secretKeyRing, int hashAlgorithm, int s2kCount) {
+    Iterator<PGPSecretKey> secretKeys = secretKeyRing.getSecretKeys();
+    while( secretKeys.hasNext() ) {
+      S2K s2k = secretKeys.next().getS2K();
+      assertEquals(S2K.SALTED_AND_ITERATED, s2k.getType());
+      assertEquals(hashAlgorithm, s2k.getHashAlgorithm());
+      assertEquals(PGPKeyProtector.getS2KIterations(s2kCount), s2k.getIterationCount());
+    }
+  }
+
+  @Test
+  public void testS2KCountCoding() {
+    assertEquals(1024, PGPKeyProtector.getS2KIterations(0));
+    assertEquals(65536, PGPKeyProtector.getS2KIterations(0x60));
+    assertEquals(65011712, PGPKeyProtector.getS2KIterations(0xff));
+    assertEquals(0, PGPKeyProtector.toS2KCount(1));
+    assertEquals(0x60, PGPKeyProtector.toS2KCount(65536));
+    assertEquals(0x61, PGPKeyProtector.toS2KCount(65537));
+    assertEquals(0xff, PGPKeyProtector.toS2KCount(Long.MAX_VALUE));
+  }
+
+  @Test
+  public void testCalibrate() {
+    KeyProtector keyProtector = PGPWrapperFactory.getKeyProtector();
+    int fast = keyProtector.calibrate(1);
+    int slow = keyProtector.calibrate(100);
+    assertTrue(fast >= 0);
+    assertTrue(slow <= 0xff);
+    assertTrue(fast < slow);
+  }
+
+  @Test
+  public void testReprotect() throws Exception {
+    PGPKeyProtector keyProtector = new PGPKeyProtector();
+    keyProtector.setS2KHashAlgorithm(HashAlgorithmTags.SHA256);
+    keyProtector.setS2KCount(0x20);
+    ByteArrayOutputStream reprotected = new ByteArrayOutputStream();
+    assertTrue(keyProtector.reprotect(getClass().getResourceAsStream(privateKeyFilename), "testpassword", "newpassword", reprotected));
+    assertS2K(readSecretKeyRing(new ByteArrayInputStream(reprotected.toByteArray())), HashAlgorithmTags.SHA256, 0x20);
+
+    MessageSigner messageSigner = PGPWrapperFactory.getSigner();
+    byte[] message = "message".getBytes(StandardCharsets.UTF_8);
+    ByteArrayOutputStream signature = new ByteArrayOutputStream();
+    assertFalse(messageSigner.signMessage(new ByteArrayInputStream(reprotected.toByteArray()), userId, "testpassword", new ByteArrayInputStream(message), new ByteArrayOutputStream()));
+    assertTrue(messageSigner.signMessage(new ByteArrayInputStream(reprotected.toByteArray()), userId, "newpassword", new ByteArrayInputStream(message), signature));
+    assertTrue(messageSigner.verifyMessage(getClass().getResourceAsStream(publicKeyFilename), new ByteArrayInputStream(message), new ByteArrayInputStream(signature.toByteArray())));
+
+    assertFalse(keyProtector.reprotect(getClass().getResourceAsStream(privateKeyFilename), "wrongpassword", null, new ByteArrayOutputStream()));
+  }
+
+  @Test
+  public void testGenerateWithS2KParameters() throws Exception {
+    PGPKeyPairGenerator keyPairGenerator = new PGPKeyPairGenerator();
+    keyPairGenerator.setS2KHashAlgorithm(HashAlgorithmTags.SHA512);
+    keyPairGenerator.setS2KCount(0x10);
+    ByteArrayOutputStream secretKey = new ByteArrayOutputStream();
+    assertTrue(keyPairGenerator.generateKeyPair(userId, "testpassword", 1024, new ByteArrayOutputStream(), secretKey));
+    assertS2K(readSecretKeyRing(new ByteArrayInputStream(secretKey.toByteArray())), HashAlgorithmTags.SHA512, 0x10);
+  }
+
+}
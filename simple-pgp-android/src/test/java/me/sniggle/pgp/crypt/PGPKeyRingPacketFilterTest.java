@@ -0,0 +1,150 @@
+package me.sniggle.pgp.crypt;
+
+import me.sniggle.pgp.crypt.internal.io.KeyRingPacketFilter;
+import org.spongycastle.bcpg.HashAlgorithmTags;
+import org.spongycastle.bcpg.attr.ImageAttribute;
+import org.spongycastle.openpgp.PGPPrivateKey;
+import org.spongycastle.openpgp.PGPPublicKey;
+import org.spongycastle.openpgp.PGPPublicKeyRing;
+import org.spongycastle.openpgp.PGPSecretKey;
+import org.spongycastle.openpgp.PGPSecretKeyRing;
+import org.spongycastle.openpgp.PGPSignature;
+import org.spongycastle.openpgp.PGPSignatureGenerator;
+import org.spongycastle.openpgp.PGPUserAttributeSubpacketVector;
+import org.spongycastle.openpgp.PGPUserAttributeSubpacketVectorGenerator;
+import org.spongycastle.openpgp.operator.bc.BcKeyFingerprintCalculator;
+import org.spongycastle.openpgp.operator.bc.BcPBESecretKeyDecryptorBuilder;
+import org.spongycastle.openpgp.operator.bc.BcPGPContentSignerBuilder;
+import org.spongycastle.openpgp.operator.bc.BcPGPDigestCalculatorProvider;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+
+import static me.sniggle.pgp.crypt.KeyRingFixtures.readPublicKeyRing;
+import static me.sniggle.pgp.crypt.KeyRingFixtures.readSecretKeyRing;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests skipping third-party certifications and user attributes when reading key rings
+ */
+@RunWith(Parameterized.class)
+public class PGPKeyRingPacketFilterTest {
+
+  private static final int CERTIFICATIONS = 100;
+
+  private final String publicKeyFilename;
+  private final String privateKeyFilename;
+  private final String certifierKeyFilename;
+  private final String userId;
+  private PGPPublicKeyRing publicKeyRing;
+  private PGPSecretKeyRing secretKeyRing;
+  private PGPPublicKeyRing certifiedPublicKeyRing;
+  private PGPSecretKeyRing certifiedSecretKeyRing;
+
+  public PGPKeyRingPacketFilterTest(String publicKeyFilename, String privateKeyFilename, String certifierKeyFilename, String userId) {
+    this.publicKeyFilename = publicKeyFilename;
+    this.privateKeyFilename = privateKeyFilename;
+    this.certifierKeyFilename = certifierKeyFilename;
+    this.userId = userId;
+  }
+
+  @Parameterized.Parameters
+  public static Collection<Object[]> data() {
+    return Arrays.asList( new Object[][] {
+        { "testcase-1-pub.asc", "testcase-1-sec.asc", "testcase-2-sec.asc", "Test Case 1 (PGP key for simple-pgp testcase) <testcase-1@sniggleme.info>" },
+        { "testcase-2-pub.asc", "testcase-2-sec.asc", "testcase-1-sec.asc", "Test Case 2 (PGP key for test case of simple-pgp) <testcase-2@sniggleme.info>" }
+    });
+  }
+
+  private static PGPPrivateKey extractPrivateKey(PGPSecretKey secretKey) throws Exception {
+    return secretKey.extractPrivateKey(new BcPBESecretKeyDecryptorBuilder(new BcPGPDigestCalculatorProvider()).build("testpassword".toCharArray()));
+  }
+
+  private static PGPSignatureGenerator signatureGenerator(PGPSecretKey secretKey, int signatureType) throws Exception {
+    PGPSignatureGenerator result = new PGPSignatureGenerator(new BcPGPContentSignerBuilder(secretKey.getPublicKey().getAlgorithm(), HashAlgorithmTags.SHA256));
+    result.init(signatureType, extractPrivateKey(secretKey));
+    return result;
+  }
+
+  /**
+   * adds third-party certifications and a self-certified photo ID to the primary key
+   */
+  @Before
+  public void setUp() throws Exception {
+    publicKeyRing = readPublicKeyRing(publicKeyFilename);
+    secretKeyRing = readSecretKeyRing(privateKeyFilename);
+    PGPSignatureGenerator certifier = signatureGenerator(readSecretKeyRing(certifierKeyFilename).getSecretKey(), PGPSignature.CASUAL_CERTIFICATION);
+    PGPPublicKey primaryKey = publicKeyRing.getPublicKey();
+    for( int i = 0; i < CERTIFICATIONS; i++ ) {
+      PGPSignature certification = certifier.generateCertification(userId, primaryKey);
+      primaryKey = PGPPublicKey.addCertification(primaryKey, userId, certification);
+    }
+    PGPUserAttributeSubpacketVectorGenerator attributeGenerator = new PGPUserAttributeSubpacketVectorGenerator();
+    attributeGenerator.setImageAttribute(ImageAttribute.JPEG, new byte[16 * 1024]);
+    PGPUserAttributeSubpacketVector photoId = attributeGenerator.generate();
+    PGPSignature photoIdCertification = signatureGenerator(secretKeyRing.getSecretKey(), PGPSignature.POSITIVE_CERTIFICATION).generateCertification(photoId, primaryKey);
+    primaryKey = PGPPublicKey.addCertification(primaryKey, photoId, photoIdCertification);
+    certifiedPublicKeyRing = PGPPublicKeyRing.insertPublicKey(publicKeyRing, primaryKey);
+    certifiedSecretKeyRing = PGPSecretKeyRing.insertSecretKey(secretKeyRing, PGPSecretKey.replacePublicKey(secretKeyRing.getSecretKey(), primaryKey));
+  }
+
+  private static byte[] filter(byte[] keyRing, int expectedSkippedPackets) throws Exception {
+    ByteArrayOutputStream result = new ByteArrayOutputStream();
+    try( KeyRingPacketFilter filter = new KeyRingPacketFilter(new ByteArrayInputStream(keyRing)) ) {
+      byte[] buffer = new byte[100];
+      int read;
+      while( (read = filter.read(buffer)) != -1 ) {
+        result.write(buffer, 0, read);
+      }
+      assertEquals(expectedSkippedPackets, filter.getSkippedPackets());
+    }
+    return result.toByteArray();
+  }
+
+  @Test
+  public void testUncertifiedKeysUnchanged() throws Exception {
+    assertArrayEquals(publicKeyRing.getEncoded(), filter(publicKeyRing.getEncoded(), 0));
+    assertArrayEquals(secretKeyRing.getEncoded(), filter(secretKeyRing.getEncoded(), 0));
+  }
+
+  @Test
+  public void testCertificationsSkipped() throws Exception {
+    byte[] certified = certifiedPublicKeyRing.getEncoded();
+    byte[] filtered = filter(certified, CERTIFICATIONS + 2);
+    assertTrue(filtered.length * 10 < certified.length);
+    assertArrayEquals(publicKeyRing.getEncoded(), filtered);
+    PGPPublicKeyRing filteredKeyRing = new PGPPublicKeyRing(filtered, new BcKeyFingerprintCalculator());
+    assertFalse(filteredKeyRing.getPublicKey().getUserAttributes().hasNext());
+    Iterator<?> signatures = filteredKeyRing.getPublicKey().getSignaturesForID(userId);
+    while( signatures.hasNext() ) {
+      assertEquals(filteredKeyRing.getPublicKey().getKeyID(), ((PGPSignature) signatures.next()).getKeyID());
+    }
+    assertArrayEquals(secretKeyRing.getEncoded(), filter(certifiedSecretKeyRing.getEncoded(), CERTIFICATIONS + 2));
+  }
+
+  @Test
+  public void testEnginesReadCertifiedKeys() throws Exception {
+    byte[] message = "message".getBytes(StandardCharsets.UTF_8);
+    for( boolean skipCertifications : new boolean[] { true, false } ) {
+      PGPMessageEncryptor messageEncryptor = new PGPMessageEncryptor();
+      messageEncryptor.setSkipCertifications(skipCertifications);
+      byte[] encrypted = messageEncryptor.encrypt(new ByteArrayInputStream(certifiedPublicKeyRing.getEncoded()), new ByteArrayInputStream(certifiedSecretKeyRing.getEncoded()), userId, "testpassword", "message.txt", message);
+      assertNotNull(encrypted);
+      byte[] decrypted = messageEncryptor.decrypt("testpassword", new ByteArrayInputStream(certifiedSecretKeyRing.getEncoded()), new ByteArrayInputStream(certifiedPublicKeyRing.getEncoded()), encrypted);
+      assertArrayEquals(message, decrypted);
+    }
+  }
+
+}
@@ -0,0 +1,194 @@
+package me.sniggle.pgp.crypt;
+
+import org.spongycastle.bcpg.SymmetricKeyAlgorithmTags;
+import org.spongycastle.openpgp.PGPPublicKey;
+import org.spongycastle.openpgp.PGPPublicKeyRing;
+import org.spongycastle.openpgp.PGPSecretKeyRing;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static me.sniggle.pgp.crypt.KeyRingFixtures.readPublicKeyRing;
+import static me.sniggle.pgp.crypt.KeyRingFixtures.readSecretKeyRing;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests loading, reloading and watching key ring files
+ */
+public class PGPKeyRingWatcherTest {
+
+  private static final String EMAIL_1 = "testcase-1@sniggleme.info";
+  private static final String EMAIL_2 = "testcase-2@sniggleme.info";
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private PGPPublicKeyRing publicKeyRing1;
+  private PGPPublicKeyRing publicKeyRing2;
+  private PGPSecretKeyRing secretKeyRing2;
+  private Path directory;
+  private PGPKeyRingWatcher keyRingWatcher;
+
+  @Before
+  public void setUp() throws Exception {
+    publicKeyRing1 = readPublicKeyRing("testcase-1-pub.asc");
+    publicKeyRing2 = readPublicKeyRing("testcase-2-pub.asc");
+    secretKeyRing2 = readSecretKeyRing("testcase-2-sec.asc");
+    directory = temporaryFolder.newFolder().toPath();
+    Files.copy(getClass().getResourceAsStream("testcase-1-pub.asc"), directory.resolve("testcase-1.asc"));
+    write("testcase-2.gpg", publicKeyRing2.getEncoded(), secretKeyRing2.getEncoded());
+    keyRingWatcher = new PGPKeyRingWatcher(directory);
+  }
+
+  @After
+  public void tearDown() {
+    keyRingWatcher.close();
+  }
+
+  private Path write(String filename, byte[]... keyRings) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for( byte[] keyRing : keyRings ) {
+      out.write(keyRing);
+    }
+    Path tmp = directory.resolve(".tmp-" + filename);
+    Files.write(tmp, out.toByteArray());
+    return Files.move(tmp, directory.resolve(filename), StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  @Test
+  public void testReload() throws Exception {
+    assertEquals(2, keyRingWatcher.reload());
+    assertEquals(2, keyRingWatcher.size());
+    assertNotNull(keyRingWatcher.findPublicKeyRings(EMAIL_1));
+    assertNotNull(keyRingWatcher.findSecretKeyRing(secretKeyRing2.getSecretKey().getKeyID()));
+    assertEquals(2, keyRingWatcher.getReloadCount());
+    assertTrue(keyRingWatcher.getLastReloadNanos() > 0);
+
+    ReloadResult unchanged = keyRingWatcher.reload(directory.resolve("testcase-2.gpg"));
+    assertEquals(2, unchanged.getKeyRingsRead());
+    assertEquals(0, unchanged.getKeyRingsChanged());
+    assertEquals(0, unchanged.getKeyRingsRemoved());
+
+    ReloadResult publicOnly = keyRingWatcher.reload(write("testcase-2.gpg", publicKeyRing2.getEncoded()));
+    assertEquals(1, publicOnly.getKeyRingsRead());
+    assertEquals(0, publicOnly.getKeyRingsChanged());
+    assertNotNull(keyRingWatcher.findPublicKeyRings(EMAIL_2));
+    assertNull(keyRingWatcher.findSecretKeyRing(secretKeyRing2.getSecretKey().getKeyID()));
+
+    Files.delete(directory.resolve("testcase-1.asc"));
+    ReloadResult deleted = keyRingWatcher.reload(directory.resolve("testcase-1.asc"));
+    assertEquals(0, deleted.getKeyRingsRead());
+    assertEquals(1, deleted.getKeyRingsRemoved());
+    assertNull(keyRingWatcher.findPublicKeyRings(EMAIL_1));
+    assertEquals(1, keyRingWatcher.size());
+  }
+
+  @Test
+  public void testUnreadableFileKeepsKeyRings() throws Exception {
+    keyRingWatcher.reload();
+    byte[] encoded = publicKeyRing2.getEncoded();
+    assertNull(keyRingWatcher.reload(write("testcase-2.gpg", Arrays.copyOf(encoded, encoded.length - 10))));
+    assertNotNull(keyRingWatcher.findPublicKeyRings(EMAIL_2));
+    assertNotNull(keyRingWatcher.findSecretKeyRing(secretKeyRing2.getSecretKey().getKeyID()));
+  }
+
+  @Test
+  public void testPooledSessionKeysDiscarded() throws Exception {
+    keyRingWatcher.reload();
+    PGPPublicKey encryptionKey = null;
+    Iterator<PGPPublicKey> keys = publicKeyRing1.getPublicKeys();
+    while( keys.hasNext() ) {
+      PGPPublicKey key = keys.next();
+      if( !key.isMasterKey() ) {
+        encryptionKey = key;
+      }
+    }
+    PGPSessionKeyPool sessionKeyPool = new PGPSessionKeyPool(SymmetricKeyAlgorithmTags.AES_256);
+    keyRingWatcher.setSessionKeyPool(sessionKeyPool);
+    assertNull(sessionKeyPool.take(encryptionKey, SymmetricKeyAlgorithmTags.AES_256));
+    sessionKeyPool.refill();
+    assertNotNull(sessionKeyPool.take(encryptionKey, SymmetricKeyAlgorithmTags.AES_256));
+
+    Files.delete(directory.resolve("testcase-1.asc"));
+    keyRingWatcher.reload(directory.resolve("testcase-1.asc"));
+    assertFalse(sessionKeyPool.removeRecipient(encryptionKey.getKeyID()));
+  }
+
+  @Test
+  public void testWatchingSurvivesFailingListener() throws Exception {
+    final BlockingQueue<ReloadResult> reloads = new LinkedBlockingQueue<>();
+    keyRingWatcher.setReloadListener(new KeyRingReloadListener() {
+      @Override
+      public void onReload(ReloadResult reload) {
+        reloads.add(reload);
+        throw new IllegalStateException("listener failed");
+      }
+    });
+    keyRingWatcher.setDebounceInterval(10);
+    assertTrue(keyRingWatcher.start());
+    reloads.clear();
+
+    write("testcase-2.gpg", publicKeyRing2.getEncoded());
+    ReloadResult reload = reloads.poll(10, TimeUnit.SECONDS);
+    assertNotNull(reload);
+    assertEquals(directory.resolve("testcase-2.gpg"), reload.getFile());
+
+    Files.delete(directory.resolve("testcase-1.asc"));
+    reload = reloads.poll(10, TimeUnit.SECONDS);
+    assertNotNull(reload);
+    assertEquals(1, reload.getKeyRingsRemoved());
+    assertNull(keyRingWatcher.findPublicKeyRings(EMAIL_1));
+  }
+
+  @Test
+  public void testChangesWatched() throws Exception {
+    Files.delete(directory.resolve("testcase-2.gpg"));
+    final BlockingQueue<ReloadResult> reloads = new LinkedBlockingQueue<>();
+    keyRingWatcher.setReloadListener(new KeyRingReloadListener() {
+      @Override
+      public void onReload(ReloadResult reload) {
+        reloads.add(reload);
+      }
+    });
+    keyRingWatcher.setDebounceInterval(10);
+    assertTrue(keyRingWatcher.start());
+    assertEquals(1, keyRingWatcher.size());
+    ReloadResult initial = reloads.poll(10, TimeUnit.SECONDS);
+    assertNotNull(initial);
+    assertEquals(1, initial.getKeyRingsChanged());
+
+    PGPMessageSigner messageSigner = new PGPMessageSigner();
+    messageSigner.setKeyRingStore(keyRingWatcher);
+    byte[] message = "message".getBytes(StandardCharsets.UTF_8);
+    ByteArrayOutputStream signature = new ByteArrayOutputStream();
+    assertTrue(messageSigner.signMessage(getClass().getResourceAsStream("testcase-2-sec.asc"), "Test Case 2 (PGP key for test case of simple-pgp) <testcase-2@sniggleme.info>", "testpassword", new ByteArrayInputStream(message), signature));
+    assertFalse(messageSigner.verifyMessage(null, new ByteArrayInputStream(message), new ByteArrayInputStream(signature.toByteArray())));
+
+    write("testcase-2.gpg", publicKeyRing2.getEncoded());
+    ReloadResult reload = reloads.poll(10, TimeUnit.SECONDS);
+    assertNotNull(reload);
+    assertEquals(directory.resolve("testcase-2.gpg"), reload.getFile());
+    assertEquals(1, reload.getKeyRingsChanged());
+    assertEquals(2, keyRingWatcher.size());
+    assertTrue(messageSigner.verifyMessage(null, new ByteArrayInputStream(message), new ByteArrayInputStream(signature.toByteArray())));
+  }
+
+}
@@ -0,0 +1,163 @@
+package me.sniggle.pgp.crypt;
+
+import me.sniggle.pgp.crypt.internal.KeyUsabilityCache;
+import org.spongycastle.bcpg.HashAlgorithmTags;
+import org.spongycastle.openpgp.PGPPublicKey;
+import org.spongycastle.openpgp.PGPPublicKeyRing;
+import org.spongycastle.openpgp.PGPSecretKey;
+import org.spongycastle.openpgp.PGPSecretKeyRing;
+import org.spongycastle.openpgp.PGPSignature;
+import org.spongycastle.openpgp.PGPSignatureGenerator;
+import org.spongycastle.openpgp.PGPSignatureSubpacketGenerator;
+import org.spongycastle.openpgp.operator.bc.BcKeyFingerprintCalculator;
+import org.spongycastle.openpgp.operator.bc.BcPBESecretKeyDecryptorBuilder;
+import org.spongycastle.openpgp.operator.bc.BcPGPContentSignerBuilder;
+import org.spongycastle.openpgp.operator.bc.BcPGPDigestCalculatorProvider;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+
+import static me.sniggle.pgp.crypt.KeyRingFixtures.readPublicKeyRing;
+import static me.sniggle.pgp.crypt.KeyRingFixtures.readSecretKeyRing;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the cached evaluation of the keys usable for encryption and signing
+ */
+@RunWith(Parameterized.class)
+public class PGPKeyUsabilityTest {
+
+  private final String userId;
+  private final String publicKeyFilename;
+  private final String privateKeyFilename;
+  private PGPPublicKeyRing publicKeyRing;
+  private PGPSecretKeyRing secretKeyRing;
+  private PGPPublicKey primaryKey;
+  private PGPPublicKey subkey;
+  private KeyUsabilityCache keyUsabilityCache;
+
+  public PGPKeyUsabilityTest(String userId, String publicKeyFilename, String privateKeyFilename) {
+    this.userId = userId;
+    this.publicKeyFilename = publicKeyFilename;
+    this.privateKeyFilename = privateKeyFilename;
+  }
+
+  @Parameterized.Parameters
+  public static Collection<Object[]> data() {
+    return Arrays.asList( new Object[][] {
+        { "Test Case 1 (PGP key for simple-pgp testcase) <testcase-1@sniggleme.info>", "testcase-1-pub.asc", "testcase-1-sec.asc" },
+        { "Test Case 2 (PGP key for test case of simple-pgp) <testcase-2@sniggleme.info>", "testcase-2-pub.asc", "testcase-2-sec.asc" },
+        { "Test Case 3 (PGP key of the legacy simple-pgp generator) <testcase-3@sniggleme.info>", "testcase-3-pub.asc", "testcase-3-sec.asc" }
+    });
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    publicKeyRing = readPublicKeyRing(publicKeyFilename);
+    secretKeyRing = readSecretKeyRing(privateKeyFilename);
+    primaryKey = publicKeyRing.getPublicKey();
+    Iterator<PGPPublicKey> keys = publicKeyRing.getPublicKeys();
+    while( keys.hasNext() ) {
+      PGPPublicKey key = keys.next();
+      if( !key.isMasterKey() ) {
+        subkey = key;
+      }
+    }
+    keyUsabilityCache = new KeyUsabilityCache(16);
+  }
+
+  private PGPSignatureGenerator signatureGenerator(int signatureType) throws Exception {
+    PGPSecretKey secretKey = secretKeyRing.getSecretKey();
+    PGPSignatureGenerator result = new PGPSignatureGenerator(new BcPGPContentSignerBuilder(secretKey.getPublicKey().getAlgorithm(), HashAlgorithmTags.SHA256));
+    result.init(signatureType, secretKey.extractPrivateKey(new BcPBESecretKeyDecryptorBuilder(new BcPGPDigestCalculatorProvider()).build("testpassword".toCharArray())));
+    return result;
+  }
+
+  @Test
+  public void testUsability() {
+    long now = System.currentTimeMillis();
+    KeyUsabilityCache.KeyUsability primaryKeyUsability = keyUsabilityCache.getUsability(primaryKey, primaryKey);
+    KeyUsabilityCache.KeyUsability subkeyUsability = keyUsabilityCache.getUsability(primaryKey, subkey);
+    assertTrue(primaryKeyUsability.isUsableForSigning(now));
+    assertFalse(primaryKeyUsability.isUsableForEncryption(now));
+    assertTrue(subkeyUsability.isUsableForEncryption(now));
+    assertFalse(subkeyUsability.isUsableForSigning(now));
+    assertFalse(subkeyUsability.isValid(subkey.getCreationTime().getTime() - 1));
+  }
+
+  @Test
+  public void testSignAndEncrypt() throws Exception {
+    byte[] message = "message".getBytes(StandardCharsets.UTF_8);
+    PGPMessageEncryptor messageEncryptor = new PGPMessageEncryptor();
+    messageEncryptor.setKeyUsabilityCache(keyUsabilityCache);
+    assertNotNull(messageEncryptor.encrypt(new ByteArrayInputStream(publicKeyRing.getEncoded()), null, userId, null, "message.txt", message));
+    PGPMessageSigner messageSigner = new PGPMessageSigner();
+    messageSigner.setKeyUsabilityCache(keyUsabilityCache);
+    assertTrue(messageSigner.signMessage(new ByteArrayInputStream(secretKeyRing.getEncoded()), userId, "testpassword", new ByteArrayInputStream(message), new ByteArrayOutputStream()));
+  }
+
+  @Test
+  public void testRevokedUserIdNotBinding() throws Exception {
+    PGPSignature revocation = signatureGenerator(PGPSignature.CERTIFICATION_REVOCATION).generateCertification(userId, primaryKey);
+    PGPPublicKey unbound = PGPPublicKey.addCertification(PGPPublicKey.removeCertification(primaryKey, userId), userId, revocation);
+    assertFalse(keyUsabilityCache.getUsability(unbound, unbound).isValid(System.currentTimeMillis()));
+  }
+
+  @Test
+  public void testEvaluationCached() throws Exception {
+    KeyUsabilityCache.KeyUsability usability = keyUsabilityCache.getUsability(primaryKey, subkey);
+    assertSame(usability, keyUsabilityCache.getUsability(primaryKey, subkey));
+    PGPPublicKeyRing reread = new PGPPublicKeyRing(publicKeyRing.getEncoded(), new BcKeyFingerprintCalculator());
+    assertSame(usability, keyUsabilityCache.getUsability(reread.getPublicKey(), reread.getPublicKey(subkey.getKeyID())));
+    assertEquals(1, keyUsabilityCache.size());
+    keyUsabilityCache.clear();
+    assertEquals(0, keyUsabilityCache.size());
+  }
+
+  @Test
+  public void testRevokedSubkeyNotUsedForEncryption() throws Exception {
+    PGPSignature revocation = signatureGenerator(PGPSignature.SUBKEY_REVOCATION).generateCertification(primaryKey, subkey);
+    PGPPublicKeyRing revoked = PGPPublicKeyRing.insertPublicKey(publicKeyRing, PGPPublicKey.addCertification(subkey, revocation));
+    long now = System.currentTimeMillis();
+    assertTrue(keyUsabilityCache.getUsability(primaryKey, subkey).isUsableForEncryption(now));
+    assertFalse(keyUsabilityCache.getUsability(revoked.getPublicKey(), revoked.getPublicKey(subkey.getKeyID())).isUsableForEncryption(now));
+    assertEquals(2, keyUsabilityCache.size());
+
+    PGPMessageEncryptor messageEncryptor = new PGPMessageEncryptor();
+    messageEncryptor.setKeyUsabilityCache(keyUsabilityCache);
+    byte[] message = "message".getBytes(StandardCharsets.UTF_8);
+    assertNotNull(messageEncryptor.encrypt(new ByteArrayInputStream(publicKeyRing.getEncoded()), null, userId, null, "message.txt", message));
+    assertNull(messageEncryptor.encrypt(new ByteArrayInputStream(revoked.getEncoded()), null, userId, null, "message.txt", message));
+  }
+
+  @Test
+  public void testExpiredKeyNotUsedForSigning() throws Exception {
+    PGPSignatureGenerator signatureGenerator = signatureGenerator(PGPSignature.POSITIVE_CERTIFICATION);
+    PGPSignatureSubpacketGenerator subpacketGenerator = new PGPSignatureSubpacketGenerator();
+    subpacketGenerator.setKeyExpirationTime(true, 1);
+    signatureGenerator.setHashedSubpackets(subpacketGenerator.generate());
+    PGPPublicKey expiredPrimaryKey = PGPPublicKey.addCertification(primaryKey, userId, signatureGenerator.generateCertification(userId, primaryKey));
+    PGPSecretKeyRing expired = PGPSecretKeyRing.insertSecretKey(secretKeyRing, PGPSecretKey.replacePublicKey(secretKeyRing.getSecretKey(), expiredPrimaryKey));
+    assertFalse(keyUsabilityCache.getUsability(expiredPrimaryKey, expiredPrimaryKey).isValid(System.currentTimeMillis()));
+
+    PGPMessageSigner messageSigner = new PGPMessageSigner();
+    messageSigner.setKeyUsabilityCache(keyUsabilityCache);
+    byte[] message = "message".getBytes(StandardCharsets.UTF_8);
+    assertTrue(messageSigner.signMessage(new ByteArrayInputStream(secretKeyRing.getEncoded()), userId, "testpassword", new ByteArrayInputStream(message), new ByteArrayOutputStream()));
+    assertFalse(messageSigner.signMessage(new ByteArrayInputStream(expired.getEncoded()), userId, "testpassword", new ByteArrayInputStream(message), new ByteArrayOutputStream()));
+  }
+
+}
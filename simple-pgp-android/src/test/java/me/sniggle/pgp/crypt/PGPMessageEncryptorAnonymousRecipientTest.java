@@ -0,0 +1,122 @@
+package me.sniggle.pgp.crypt;
+
+import org.spongycastle.bcpg.ArmoredOutputStream;
+import org.spongycastle.openpgp.PGPUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the decryption of messages for anonymous (wildcard key id) recipients
+ */
+@RunWith(Parameterized.class)
+public class PGPMessageEncryptorAnonymousRecipientTest {
+
+  private MessageEncryptor messageEncryptor;
+  private final String publicKeyFilename;
+  private final String privateKeyFilename;
+  private final String otherPrivateKeyFilename;
+
+  public PGPMessageEncryptorAnonymousRecipientTest(String publicKeyFilename, String privateKeyFilename, String otherPrivateKeyFilename) {
+    this.publicKeyFilename = publicKeyFilename;
+    this.privateKeyFilename = privateKeyFilename;
+    this.otherPrivateKeyFilename = otherPrivateKeyFilename;
+  }
+
+  @Parameterized.Parameters
+  public static Collection<Object[]> data() {
+    return Arrays.asList( new Object[][] {
+        { "testcase-1-pub.asc", "testcase-1-sec.asc", "testcase-2-sec.asc" },
+        { "testcase-2-pub.asc", "testcase-2-sec.asc", "testcase-1-sec.asc" }
+    });
+  }
+
+  @Before
+  public void setUp() {
+    messageEncryptor = PGPWrapperFactory.getEncyptor();
+  }
+
+  private static byte[] readDecoded(InputStream armored) throws IOException {
+    ByteArrayOutputStream result = new ByteArrayOutputStream();
+    try( InputStream in = PGPUtil.getDecoderStream(armored) ) {
+      byte[] buffer = new byte[4096];
+      int read;
+      while( (read = in.read(buffer)) != -1 ) {
+        result.write(buffer, 0, read);
+      }
+    }
+    return result.toByteArray();
+  }
+
+  private static byte[] armor(byte[]... data) throws IOException {
+    ByteArrayOutputStream result = new ByteArrayOutputStream();
+    try( OutputStream out = new ArmoredOutputStream(result) ) {
+      for( byte[] block : data ) {
+        out.write(block);
+      }
+    }
+    return result.toByteArray();
+  }
+
+  /**
+   * replaces the key id of the leading (old format) public key encrypted session key packet with the wildcard key id
+   */
+  private static byte[] anonymize(byte[] encrypted) throws IOException {
+    byte[] message = readDecoded(new ByteArrayInputStream(encrypted));
+    int lengthType = message[0] & 0x03;
+    int headerLength = 1 + ((lengthType == 0) ? 1 : (lengthType == 1) ? 2 : 4);
+    Arrays.fill(message, headerLength + 1, headerLength + 9, (byte) 0);
+    return armor(message);
+  }
+
+  private InputStream secretKeyRings() throws IOException {
+    return new ByteArrayInputStream(armor(readDecoded(getClass().getResourceAsStream(otherPrivateKeyFilename)),
+        readDecoded(getClass().getResourceAsStream(privateKeyFilename))));
+  }
+
+  @Test
+  public void testDecryptAnonymousRecipient() throws IOException {
+    ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+    assertTrue(messageEncryptor.encrypt(getClass().getResourceAsStream(publicKeyFilename), "test-message.txt", getClass().getResourceAsStream("test-message.txt"), encrypted));
+    long recipientKeyId = messageEncryptor.inspect(new ByteArrayInputStream(encrypted.toByteArray())).getRecipientKeyIds().get(0);
+    byte[] anonymous = anonymize(encrypted.toByteArray());
+    assertTrue(messageEncryptor.inspect(new ByteArrayInputStream(anonymous)).hasAnonymousRecipient());
+
+    VerificationResult result = messageEncryptor.verify("testpassword", secretKeyRings(), null, new ByteArrayInputStream(anonymous));
+    assertTrue(result.isValid());
+    assertEquals(recipientKeyId, result.getDecryptionKeyId());
+
+    ByteArrayOutputStream plainText = new ByteArrayOutputStream();
+    assertTrue(messageEncryptor.decrypt("testpassword", secretKeyRings(), new ByteArrayInputStream(anonymous), plainText));
+    assertEquals("Hello World!", new String(plainText.toByteArray()));
+
+    SessionKey sessionKey = messageEncryptor.extractSessionKey("testpassword", secretKeyRings(), new ByteArrayInputStream(anonymous));
+    assertNotNull(sessionKey);
+    plainText = new ByteArrayOutputStream();
+    assertTrue(messageEncryptor.decrypt(sessionKey, null, new ByteArrayInputStream(anonymous), plainText));
+    assertEquals("Hello World!", new String(plainText.toByteArray()));
+
+    assertFalse(messageEncryptor.verify("testpassword", getClass().getResourceAsStream(otherPrivateKeyFilename), null, new ByteArrayInputStream(anonymous)).isValid());
+  }
+
+  @After
+  public void tearDown() {
+    messageEncryptor = null;
+  }
+
+}
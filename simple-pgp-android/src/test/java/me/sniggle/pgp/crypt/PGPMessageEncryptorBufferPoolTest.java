@@ -0,0 +1,92 @@
+package me.sniggle.pgp.crypt;
+
+import me.sniggle.pgp.crypt.internal.io.BufferPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the reuse of pooled processing buffers by the message encryptor
+ */
+@RunWith(Parameterized.class)
+public class PGPMessageEncryptorBufferPoolTest {
+
+  private PGPMessageEncryptor messageEncryptor;
+  private BufferPool bufferPool;
+  private final String publicKeyFilename;
+  private final String privateKeyFilename;
+  private final String userId;
+  private final int chunkSize;
+
+  public PGPMessageEncryptorBufferPoolTest(String publicKeyFilename, String privateKeyFilename, String userId, int chunkSize) {
+    this.publicKeyFilename = publicKeyFilename;
+    this.privateKeyFilename = privateKeyFilename;
+    this.userId = userId;
+    this.chunkSize = chunkSize;
+  }
+
+  @Parameterized.Parameters
+  public static Collection<Object[]> data() {
+    return Arrays.asList( new Object[][] {
+        { "testcase-1-pub.asc", "testcase-1-sec.asc", "Test Case 1 (PGP key for simple-pgp testcase) <testcase-1@sniggleme.info>", BufferPool.MIN_CHUNK_SIZE },
+        { "testcase-2-pub.asc", "testcase-2-sec.asc", "Test Case 2 (PGP key for test case of simple-pgp) <testcase-2@sniggleme.info>", 64 * 1024 }
+    });
+  }
+
+  @Before
+  public void setUp() {
+    bufferPool = new BufferPool();
+    bufferPool.setChunkSize(chunkSize);
+    messageEncryptor = (PGPMessageEncryptor) PGPWrapperFactory.getEncyptor();
+    messageEncryptor.setBufferPool(bufferPool);
+  }
+
+  private byte[] encrypt(byte[] plainData) {
+    ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+    assertTrue(messageEncryptor.encrypt(getClass().getResourceAsStream(publicKeyFilename), getClass().getResourceAsStream(privateKeyFilename), userId, "testpassword",
+        "data.bin", new ByteArrayInputStream(plainData), encrypted));
+    return encrypted.toByteArray();
+  }
+
+  @Test
+  public void testSteadyStateReusesBuffers() {
+    byte[] plainData = new byte[3 * chunkSize + 11];
+    new Random(chunkSize).nextBytes(plainData);
+    encrypt(plainData);
+    long allocations = bufferPool.getAllocations();
+    long acquisitions = bufferPool.getAcquisitions();
+    for( int i = 0; i < 5; i++ ) {
+      byte[] encrypted = encrypt(plainData);
+      ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+      assertTrue(messageEncryptor.decrypt("testpassword", getClass().getResourceAsStream(privateKeyFilename), getClass().getResourceAsStream(publicKeyFilename),
+          new ByteArrayInputStream(encrypted), decrypted));
+      assertArrayEquals(plainData, decrypted.toByteArray());
+    }
+    assertTrue(bufferPool.getAcquisitions() > acquisitions);
+    assertEquals(allocations, bufferPool.getAllocations());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testChunkSizeTooSmall() {
+    bufferPool.setChunkSize(BufferPool.MIN_CHUNK_SIZE - 1);
+  }
+
+  @After
+  public void tearDown() {
+    messageEncryptor = null;
+    bufferPool = null;
+  }
+
+}
@@ -0,0 +1,111 @@
+package me.sniggle.pgp.crypt;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.Collection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests reading the plain data of encrypted messages from a stream
+ */
+@RunWith(Parameterized.class)
+public class PGPMessageEncryptorDecryptingStreamTest {
+
+  private MessageEncryptor messageEncryptor;
+  private final String publicKeyFilename;
+  private final String privateKeyFilename;
+  private final String userId;
+  private final String encryptedDataFilename;
+  private final String otherPrivateKeyFilename;
+
+  public PGPMessageEncryptorDecryptingStreamTest(String publicKeyFilename, String privateKeyFilename, String userId, String encryptedDataFilename, String otherPrivateKeyFilename) {
+    this.publicKeyFilename = publicKeyFilename;
+    this.privateKeyFilename = privateKeyFilename;
+    this.userId = userId;
+    this.encryptedDataFilename = encryptedDataFilename;
+    this.otherPrivateKeyFilename = otherPrivateKeyFilename;
+  }
+
+  @Parameterized.Parameters
+  public static Collection<Object[]> data() {
+    return Arrays.asList( new Object[][] {
+        { "testcase-1-pub.asc", "testcase-1-sec.asc", "Test Case 1 (PGP key for simple-pgp testcase) <testcase-1@sniggleme.info>", "test-message.txt.tc1.gpg", "testcase-2-sec.asc" },
+        { "testcase-2-pub.asc", "testcase-2-sec.asc", "Test Case 2 (PGP key for test case of simple-pgp) <testcase-2@sniggleme.info>", "test-message.txt.tc2.gpg", "testcase-1-sec.asc" }
+    });
+  }
+
+  @Before
+  public void setUp() {
+    messageEncryptor = PGPWrapperFactory.getEncyptor();
+  }
+
+  @Test
+  public void testDecryptingStream() throws IOException {
+    try( DecryptingInputStream decryptingStream = messageEncryptor.decryptingStream("testpassword", getClass().getResourceAsStream(privateKeyFilename), null, getClass().getResourceAsStream(encryptedDataFilename)) ) {
+      assertNotNull(decryptingStream);
+      assertFalse(decryptingStream.isFinished());
+      assertNull(decryptingStream.getVerificationResult());
+      ByteArrayOutputStream plainText = new ByteArrayOutputStream();
+      int read;
+      while( (read = decryptingStream.read()) != -1 ) {
+        plainText.write(read);
+      }
+      assertEquals("Hello World!", new String(plainText.toByteArray()));
+      assertTrue(decryptingStream.isFinished());
+      assertTrue(decryptingStream.getVerificationResult().isValid());
+      assertEquals(plainText.size(), decryptingStream.getVerificationResult().getLength());
+    }
+  }
+
+  @Test
+  public void testDecryptingChannel() throws IOException {
+    ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+    assertTrue(messageEncryptor.encrypt(getClass().getResourceAsStream(publicKeyFilename), getClass().getResourceAsStream(privateKeyFilename), userId, "testpassword",
+        "test-message.txt", getClass().getResourceAsStream("test-message.txt"), encrypted));
+    for( ByteBuffer buffer : new ByteBuffer[] { ByteBuffer.allocate(5), ByteBuffer.allocateDirect(5) } ) {
+      DecryptingInputStream decryptingStream = messageEncryptor.decryptingStream("testpassword", getClass().getResourceAsStream(privateKeyFilename),
+          getClass().getResourceAsStream(publicKeyFilename), new ByteArrayInputStream(encrypted.toByteArray()));
+      ByteArrayOutputStream plainText = new ByteArrayOutputStream();
+      ReadableByteChannel channel = decryptingStream.getChannel();
+      while( channel.read(buffer) != -1 ) {
+        buffer.flip();
+        while( buffer.hasRemaining() ) {
+          plainText.write(buffer.get());
+        }
+        buffer.clear();
+      }
+      channel.close();
+      assertFalse(channel.isOpen());
+      assertEquals("Hello World!", new String(plainText.toByteArray()));
+      VerificationResult result = decryptingStream.getVerificationResult();
+      assertTrue(result.isValid());
+      assertTrue(result.isSignatureVerified());
+    }
+  }
+
+  @Test
+  public void testDecryptingStreamWithWrongKey() {
+    assertNull(messageEncryptor.decryptingStream("testpassword", getClass().getResourceAsStream(otherPrivateKeyFilename), null, getClass().getResourceAsStream(encryptedDataFilename)));
+  }
+
+  @After
+  public void tearDown() {
+    messageEncryptor = null;
+  }
+
+}
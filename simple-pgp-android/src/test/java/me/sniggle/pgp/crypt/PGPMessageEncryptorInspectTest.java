@@ -0,0 +1,81 @@
+package me.sniggle.pgp.crypt;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Collection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests reading the recipients of encrypted messages without decrypting them
+ */
+@RunWith(Parameterized.class)
+public class PGPMessageEncryptorInspectTest {
+
+  private MessageEncryptor messageEncryptor;
+  private final String publicKeyFilename;
+  private final String encryptedDataFilename;
+  private final String otherPublicKeyFilename;
+
+  public PGPMessageEncryptorInspectTest(String publicKeyFilename, String encryptedDataFilename, String otherPublicKeyFilename) {
+    this.publicKeyFilename = publicKeyFilename;
+    this.encryptedDataFilename = encryptedDataFilename;
+    this.otherPublicKeyFilename = otherPublicKeyFilename;
+  }
+
+  @Parameterized.Parameters
+  public static Collection<Object[]> data() {
+    return Arrays.asList( new Object[][] {
+        { "testcase-1-pub.asc", "test-message.txt.tc1.gpg", "testcase-2-pub.asc" },
+        { "testcase-2-pub.asc", "test-message.txt.tc2.gpg", "testcase-1-pub.asc" }
+    });
+  }
+
+  @Before
+  public void setUp() {
+    messageEncryptor = PGPWrapperFactory.getEncyptor();
+  }
+
+  private EncryptedMessageInfo inspectEncrypted(String publicKeyFilename) {
+    ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+    assertTrue(messageEncryptor.encrypt(getClass().getResourceAsStream(publicKeyFilename), "test-message.txt", getClass().getResourceAsStream("test-message.txt"), encrypted));
+    return messageEncryptor.inspect(new ByteArrayInputStream(encrypted.toByteArray()));
+  }
+
+  @Test
+  public void testInspect() {
+    EncryptedMessageInfo messageInfo = messageEncryptor.inspect(getClass().getResourceAsStream(encryptedDataFilename));
+    assertNotNull(messageInfo);
+    assertEquals(1, messageInfo.getRecipientKeyIds().size());
+    assertTrue(messageInfo.getSymmetricAlgorithms().isEmpty());
+    assertTrue(messageInfo.isIntegrityProtected());
+    assertFalse(messageInfo.hasAnonymousRecipient());
+
+    EncryptedMessageInfo encryptedMessageInfo = inspectEncrypted(publicKeyFilename);
+    assertEquals(messageInfo.getRecipientKeyIds(), encryptedMessageInfo.getRecipientKeyIds());
+    assertTrue(encryptedMessageInfo.isIntegrityProtected());
+    assertFalse(messageInfo.getRecipientKeyIds().equals(inspectEncrypted(otherPublicKeyFilename).getRecipientKeyIds()));
+  }
+
+  @Test
+  public void testInspectUnencrypted() {
+    assertNull(messageEncryptor.inspect(getClass().getResourceAsStream("test-message.txt.tc1.sig")));
+  }
+
+  @After
+  public void tearDown() {
+    messageEncryptor = null;
+  }
+
+}
@@ -0,0 +1,69 @@
+package me.sniggle.pgp.crypt;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Collection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests re-addressing encrypted messages to new recipients
+ */
+@RunWith(Parameterized.class)
+public class PGPMessageEncryptorRewrapTest {
+
+  private MessageEncryptor messageEncryptor;
+  private final String privateKeyFilename;
+  private final String encryptedDataFilename;
+  private final String newPublicKeyFilename;
+  private final String newPrivateKeyFilename;
+
+  public PGPMessageEncryptorRewrapTest(String privateKeyFilename, String encryptedDataFilename, String newPublicKeyFilename, String newPrivateKeyFilename) {
+    this.privateKeyFilename = privateKeyFilename;
+    this.encryptedDataFilename = encryptedDataFilename;
+    this.newPublicKeyFilename = newPublicKeyFilename;
+    this.newPrivateKeyFilename = newPrivateKeyFilename;
+  }
+
+  @Parameterized.Parameters
+  public static Collection<Object[]> data() {
+    return Arrays.asList( new Object[][] {
+        { "testcase-1-sec.asc", "test-message.txt.tc1.gpg", "testcase-2-pub.asc", "testcase-2-sec.asc" },
+        { "testcase-2-sec.asc", "test-message.txt.tc2.gpg", "testcase-1-pub.asc", "testcase-1-sec.asc" }
+    });
+  }
+
+  @Before
+  public void setUp() {
+    messageEncryptor = PGPWrapperFactory.getEncyptor();
+  }
+
+  @Test
+  public void testRewrap() {
+    ByteArrayOutputStream rewrapped = new ByteArrayOutputStream();
+    assertTrue(messageEncryptor.rewrap("testpassword", getClass().getResourceAsStream(privateKeyFilename), getClass().getResourceAsStream(newPublicKeyFilename), getClass().getResourceAsStream(encryptedDataFilename), rewrapped));
+    ByteArrayOutputStream plainText = new ByteArrayOutputStream();
+    assertTrue(messageEncryptor.decrypt("testpassword", getClass().getResourceAsStream(newPrivateKeyFilename), new ByteArrayInputStream(rewrapped.toByteArray()), plainText));
+    assertEquals("Hello World!", new String(plainText.toByteArray()));
+  }
+
+  @Test
+  public void testRewrapWithWrongPrivateKey() {
+    assertFalse(messageEncryptor.rewrap("testpassword", getClass().getResourceAsStream(newPrivateKeyFilename), getClass().getResourceAsStream(newPublicKeyFilename), getClass().getResourceAsStream(encryptedDataFilename), new ByteArrayOutputStream()));
+  }
+
+  @After
+  public void tearDown() {
+    messageEncryptor = null;
+  }
+
+}
@@ -0,0 +1,112 @@
+package me.sniggle.pgp.crypt;
+
+import org.spongycastle.crypto.generators.RSAKeyPairGenerator;
+import org.spongycastle.crypto.params.RSAKeyGenerationParameters;
+import org.spongycastle.openpgp.PGPEncryptedData;
+import org.spongycastle.openpgp.PGPException;
+import org.spongycastle.openpgp.PGPPublicKey;
+import org.spongycastle.openpgp.operator.bc.BcPGPKeyPair;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the encryption with pre-generated session keys
+ */
+@RunWith(Parameterized.class)
+public class PGPMessageEncryptorSessionKeyPoolTest {
+
+  private PGPMessageEncryptor messageEncryptor;
+  private PGPSessionKeyPool sessionKeyPool;
+  private final String publicKeyFilename;
+  private final String privateKeyFilename;
+
+  public PGPMessageEncryptorSessionKeyPoolTest(String publicKeyFilename, String privateKeyFilename) {
+    this.publicKeyFilename = publicKeyFilename;
+    this.privateKeyFilename = privateKeyFilename;
+  }
+
+  @Parameterized.Parameters
+  public static Collection<Object[]> data() {
+    return Arrays.asList( new Object[][] {
+        { "testcase-1-pub.asc", "testcase-1-sec.asc" },
+        { "testcase-2-pub.asc", "testcase-2-sec.asc" }
+    });
+  }
+
+  @Before
+  public void setUp() {
+    messageEncryptor = new PGPMessageEncryptor();
+    sessionKeyPool = new PGPSessionKeyPool(PGPEncryptedData.AES_128);
+    sessionKeyPool.setPoolSize(2);
+    messageEncryptor.setSessionKeyPool(sessionKeyPool);
+  }
+
+  private byte[] encrypt() {
+    ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+    assertTrue(messageEncryptor.encrypt(getClass().getResourceAsStream(publicKeyFilename), "test-message.txt", getClass().getResourceAsStream("test-message.txt"), encrypted));
+    return encrypted.toByteArray();
+  }
+
+  private void assertDecrypts(byte[] encrypted) {
+    ByteArrayOutputStream plainText = new ByteArrayOutputStream();
+    assertTrue(messageEncryptor.decrypt("testpassword", getClass().getResourceAsStream(privateKeyFilename), new ByteArrayInputStream(encrypted), plainText));
+    assertEquals("Hello World!", new String(plainText.toByteArray()));
+  }
+
+  @Test
+  public void testEncryptWithPooledSessionKeys() {
+    assertDecrypts(encrypt());
+    assertEquals(0, sessionKeyPool.getHits());
+    assertEquals(1, sessionKeyPool.getMisses());
+
+    sessionKeyPool.refill();
+    byte[] first = encrypt();
+    byte[] second = encrypt();
+    assertEquals(2, sessionKeyPool.getHits());
+    assertDecrypts(first);
+    assertDecrypts(second);
+    SessionKey firstSessionKey = messageEncryptor.extractSessionKey("testpassword", getClass().getResourceAsStream(privateKeyFilename), new ByteArrayInputStream(first));
+    SessionKey secondSessionKey = messageEncryptor.extractSessionKey("testpassword", getClass().getResourceAsStream(privateKeyFilename), new ByteArrayInputStream(second));
+    assertFalse(firstSessionKey.equals(secondSessionKey));
+
+    assertDecrypts(encrypt());
+    assertEquals(2, sessionKeyPool.getHits());
+    assertEquals(2, sessionKeyPool.getMisses());
+  }
+
+  @Test
+  public void testRefillSkipsUnusableRecipient() throws PGPException {
+    RSAKeyPairGenerator generator = new RSAKeyPairGenerator();
+    generator.init(new RSAKeyGenerationParameters(BigInteger.valueOf(0x10001), new SecureRandom(), 128, 12));
+    PGPPublicKey unusableKey = new BcPGPKeyPair(PGPPublicKey.RSA_GENERAL, generator.generateKeyPair(), new Date()).getPublicKey();
+    assertNull(sessionKeyPool.take(unusableKey, PGPEncryptedData.AES_128));
+    assertDecrypts(encrypt());
+    sessionKeyPool.refill();
+    byte[] encrypted = encrypt();
+    assertEquals(1, sessionKeyPool.getHits());
+    assertDecrypts(encrypted);
+  }
+
+  @After
+  public void tearDown() {
+    sessionKeyPool.shutdown();
+    messageEncryptor = null;
+  }
+
+}
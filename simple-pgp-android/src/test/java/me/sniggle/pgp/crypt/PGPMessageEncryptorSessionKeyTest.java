@@ -0,0 +1,133 @@
+package me.sniggle.pgp.crypt;
+
+import org.spongycastle.bcpg.SymmetricKeyAlgorithmTags;
+import org.spongycastle.openpgp.PGPEncryptedDataGenerator;
+import org.spongycastle.openpgp.PGPLiteralData;
+import org.spongycastle.openpgp.PGPLiteralDataGenerator;
+import org.spongycastle.openpgp.PGPPublicKey;
+import org.spongycastle.openpgp.operator.bc.BcPBEKeyEncryptionMethodGenerator;
+import org.spongycastle.openpgp.operator.bc.BcPGPDataEncryptorBuilder;
+import org.spongycastle.openpgp.operator.bc.BcPublicKeyKeyEncryptionMethodGenerator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
+
+import static me.sniggle.pgp.crypt.KeyRingFixtures.readPublicKeyRing;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests session key extraction and decryption with an extracted session key
+ */
+@RunWith(Parameterized.class)
+public class PGPMessageEncryptorSessionKeyTest {
+
+  private MessageEncryptor messageEncryptor;
+  private final String publicKeyFilename;
+  private final String privateKeyFilename;
+  private final String userId;
+  private final String encryptedDataFilename;
+  private final String otherPrivateKeyFilename;
+
+  public PGPMessageEncryptorSessionKeyTest(String publicKeyFilename, String privateKeyFilename, String userId, String encryptedDataFilename, String otherPrivateKeyFilename) {
+    this.publicKeyFilename = publicKeyFilename;
+    this.privateKeyFilename = privateKeyFilename;
+    this.userId = userId;
+    this.encryptedDataFilename = encryptedDataFilename;
+    this.otherPrivateKeyFilename = otherPrivateKeyFilename;
+  }
+
+  @Parameterized.Parameters
+  public static Collection<Object[]> data() {
+    return Arrays.asList( new Object[][] {
+        { "testcase-1-pub.asc", "testcase-1-sec.asc", "testcase-1@sniggleme.info", "test-message.txt.tc1.gpg", "testcase-2-sec.asc" },
+        { "testcase-2-pub.asc", "testcase-2-sec.asc", "testcase-2@sniggleme.info", "test-message.txt.tc2.gpg", "testcase-1-sec.asc" }
+    });
+  }
+
+  @Before
+  public void setUp() {
+    messageEncryptor = PGPWrapperFactory.getEncyptor();
+  }
+
+  @Test
+  public void testDecryptWithSessionKey() {
+    SessionKey sessionKey = messageEncryptor.extractSessionKey("testpassword", getClass().getResourceAsStream(privateKeyFilename), getClass().getResourceAsStream(encryptedDataFilename));
+    assertNotNull(sessionKey);
+    for( int i = 0; i < 2; i++ ) {
+      ByteArrayOutputStream plainText = new ByteArrayOutputStream();
+      assertTrue(messageEncryptor.decrypt(sessionKey, null, getClass().getResourceAsStream(encryptedDataFilename), plainText));
+      assertEquals("Hello World!", new String(plainText.toByteArray()));
+    }
+  }
+
+  @Test
+  public void testDecryptSignedWithSessionKey() {
+    ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+    assertTrue(messageEncryptor.encrypt(getClass().getResourceAsStream(publicKeyFilename), getClass().getResourceAsStream(privateKeyFilename), userId, "testpassword",
+        "test-message.txt", getClass().getResourceAsStream("test-message.txt"), encrypted));
+    SessionKey sessionKey = messageEncryptor.extractSessionKey("testpassword", getClass().getResourceAsStream(privateKeyFilename), new ByteArrayInputStream(encrypted.toByteArray()));
+    assertNotNull(sessionKey);
+    ByteArrayOutputStream plainText = new ByteArrayOutputStream();
+    assertTrue(messageEncryptor.decrypt(sessionKey, getClass().getResourceAsStream(publicKeyFilename), new ByteArrayInputStream(encrypted.toByteArray()), plainText));
+    assertEquals("Hello World!", new String(plainText.toByteArray()));
+  }
+
+  @Test
+  public void testDecryptWithSessionKeyPasswordPacketFirst() throws Exception {
+    PGPPublicKey encryptionKey = null;
+    Iterator<PGPPublicKey> publicKeys = readPublicKeyRing(publicKeyFilename).getPublicKeys();
+    while( publicKeys.hasNext() ) {
+      PGPPublicKey publicKey = publicKeys.next();
+      if( publicKey.isEncryptionKey() ) {
+        encryptionKey = publicKey;
+      }
+    }
+    ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+    PGPEncryptedDataGenerator encryptedDataGenerator = new PGPEncryptedDataGenerator(new BcPGPDataEncryptorBuilder(SymmetricKeyAlgorithmTags.AES_256).setWithIntegrityPacket(true).setSecureRandom(new SecureRandom()));
+    encryptedDataGenerator.addMethod(new BcPBEKeyEncryptionMethodGenerator("messagepassword".toCharArray()));
+    encryptedDataGenerator.addMethod(new BcPublicKeyKeyEncryptionMethodGenerator(encryptionKey));
+    try( OutputStream encryptingStream = encryptedDataGenerator.open(encrypted, new byte[4096]);
+         OutputStream literalDataStream = new PGPLiteralDataGenerator().open(encryptingStream, PGPLiteralData.BINARY, "test-message.txt", new Date(), new byte[4096]) ) {
+      literalDataStream.write("Hello World!".getBytes());
+    }
+    SessionKey sessionKey = messageEncryptor.extractSessionKey("testpassword", getClass().getResourceAsStream(privateKeyFilename), new ByteArrayInputStream(encrypted.toByteArray()));
+    assertNotNull(sessionKey);
+    ByteArrayOutputStream plainText = new ByteArrayOutputStream();
+    assertTrue(messageEncryptor.decrypt(sessionKey, null, new ByteArrayInputStream(encrypted.toByteArray()), plainText));
+    assertEquals("Hello World!", new String(plainText.toByteArray()));
+  }
+
+  @Test
+  public void testDecryptWithWrongSessionKey() {
+    SessionKey sessionKey = messageEncryptor.extractSessionKey("testpassword", getClass().getResourceAsStream(privateKeyFilename), getClass().getResourceAsStream(encryptedDataFilename));
+    byte[] key = sessionKey.getKey();
+    key[0] ^= 0x01;
+    assertFalse(messageEncryptor.decrypt(new SessionKey(sessionKey.getAlgorithm(), key), null, getClass().getResourceAsStream(encryptedDataFilename), new ByteArrayOutputStream()));
+  }
+
+  @Test
+  public void testExtractSessionKeyWithWrongPrivateKey() {
+    assertNull(messageEncryptor.extractSessionKey("testpassword", getClass().getResourceAsStream(otherPrivateKeyFilename), getClass().getResourceAsStream(encryptedDataFilename)));
+  }
+
+  @After
+  public void tearDown() {
+    messageEncryptor = null;
+  }
+
+}
@@ -0,0 +1,174 @@
+package me.sniggle.pgp.crypt;
+
+import me.sniggle.pgp.crypt.internal.io.BufferPool;
+import me.sniggle.pgp.crypt.internal.io.ByteBufferInputStream;
+import me.sniggle.pgp.crypt.internal.io.IOUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Tests the stream copy and processing loops, in steady state an operation must not allocate per buffer
+ * iteration and file backed streams are transferred without an intermediate buffer
+ */
+@RunWith(Parameterized.class)
+public class PGPStreamProcessingTest {
+
+  private static final int OPERATIONS = 2000;
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final int dataLength;
+  private com.sun.management.ThreadMXBean threadMXBean;
+  private BufferPool bufferPool;
+  private ByteArrayInputStream input;
+  private long processed;
+
+  private final IOUtils.StreamHandler handler = new IOUtils.StreamHandler() {
+    @Override
+    public void handleStreamBuffer(byte[] buffer, int offset, int length) {
+      processed += length;
+    }
+  };
+
+  private final OutputStream sink = new OutputStream() {
+    @Override
+    public void write(int b) {
+      processed++;
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int length) {
+      processed += length;
+    }
+  };
+
+  public PGPStreamProcessingTest(int dataLength) {
+    this.dataLength = dataLength;
+  }
+
+  @Parameterized.Parameters
+  public static Collection<Object[]> data() {
+    return Arrays.asList( new Object[][] {
+        { 100 },
+        { 1024 * 1024 }
+    });
+  }
+
+  @Before
+  public void setUp() {
+    bufferPool = new BufferPool();
+    bufferPool.setChunkSize(4096);
+    input = new ByteArrayInputStream(new byte[dataLength]);
+  }
+
+  private long allocatedPerOperation(Runnable operation) {
+    ThreadMXBean mxBean = ManagementFactory.getThreadMXBean();
+    assumeTrue(mxBean instanceof com.sun.management.ThreadMXBean);
+    threadMXBean = (com.sun.management.ThreadMXBean) mxBean;
+    assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+    threadMXBean.setThreadAllocatedMemoryEnabled(true);
+    for( int i = 0; i < OPERATIONS; i++ ) {
+      operation.run();
+    }
+    long threadId = Thread.currentThread().getId();
+    long before = threadMXBean.getThreadAllocatedBytes(threadId);
+    for( int i = 0; i < OPERATIONS; i++ ) {
+      operation.run();
+    }
+    return (threadMXBean.getThreadAllocatedBytes(threadId) - before) / OPERATIONS;
+  }
+
+  @Test
+  public void testProcessAllocation() {
+    processed = 0L;
+    long allocated = allocatedPerOperation(new Runnable() {
+      @Override
+      public void run() {
+        input.reset();
+        try {
+          IOUtils.process(input, handler, bufferPool);
+        } catch (IOException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    });
+    assertEquals(2L * OPERATIONS * dataLength, processed);
+    assertTrue("allocated " + allocated + " bytes per operation", allocated < 64);
+  }
+
+  @Test
+  public void testCopyAllocation() {
+    processed = 0L;
+    long allocated = allocatedPerOperation(new Runnable() {
+      @Override
+      public void run() {
+        input.reset();
+        try {
+          IOUtils.copy(input, sink, bufferPool);
+        } catch (IOException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    });
+    assertEquals(2L * OPERATIONS * dataLength, processed);
+    assertTrue("allocated " + allocated + " bytes per operation", allocated < 64);
+  }
+
+  @Test
+  public void testTransferFileToFile() throws IOException {
+    byte[] data = new byte[dataLength];
+    new Random(dataLength).nextBytes(data);
+    Path source = temporaryFolder.newFile().toPath();
+    Files.write(source, data);
+    Path target = temporaryFolder.newFile().toPath();
+    try( InputStream in = IOUtils.openInputStream(source);
+         OutputStream out = IOUtils.openOutputStream(target, dataLength) ) {
+      out.write(7);
+      IOUtils.copy(in, out, bufferPool);
+    }
+    byte[] copied = Files.readAllBytes(target);
+    assertEquals(dataLength + 1, copied.length);
+    assertEquals(7, copied[0]);
+    assertArrayEquals(data, Arrays.copyOfRange(copied, 1, copied.length));
+  }
+
+  @Test
+  public void testTransferDirectBufferToFile() throws IOException {
+    ByteBuffer data = ByteBuffer.allocateDirect(dataLength);
+    while( data.hasRemaining() ) {
+      data.put((byte) data.position());
+    }
+    data.flip();
+    Path target = temporaryFolder.newFile().toPath();
+    try( OutputStream out = IOUtils.openOutputStream(target, 0L) ) {
+      IOUtils.copy(new ByteBufferInputStream(data), out, bufferPool);
+    }
+    byte[] copied = Files.readAllBytes(target);
+    assertEquals(dataLength, copied.length);
+    assertEquals((byte) (dataLength - 1), copied[dataLength - 1]);
+  }
+
+}
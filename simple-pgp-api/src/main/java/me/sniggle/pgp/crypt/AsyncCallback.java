@@ -0,0 +1,27 @@
+package me.sniggle.pgp.crypt;
+
+/**
+ * Notified when an asynchronous operation completes, the notification runs on the thread completing
+ * the operation and should not block
+ *
+ * @param <T> the result type of the operation
+ */
+public interface AsyncCallback<T> {
+
+  /**
+   * the operation completed, a failed operation of a boolean method completes with false
+   *
+   * @param result
+   *    the result of the operation
+   */
+  void onSuccess(T result);
+
+  /**
+   * the operation could not be executed, e.g. because the executor rejected it
+   *
+   * @param cause
+   *    the cause of the failure
+   */
+  void onFailure(Throwable cause);
+
+}
@@ -0,0 +1,434 @@
+package me.sniggle.pgp.crypt;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The bounded executors running the asynchronous operations: one for CPU bound work (public key operations,
+ * key derivation, key generation) and one for operations streaming from and to the caller's streams.
+ *
+ * Both executors have a bounded queue, an operation submitted to a saturated executor is handled by the
+ * rejection policy. The default policy fails the operation immediately with a RejectedExecutionException,
+ * so overload surfaces as backpressure instead of growing latency. Operations a policy discards are failed
+ * with a RejectedExecutionException too, so their futures and callbacks always complete.
+ *
+ * Streaming operations mostly wait for slow peers, on Java 21 and later they can run on virtual threads by
+ * setting Executors.newVirtualThreadPerTaskExecutor() as I/O executor, bounded by
+ * #setMaxConcurrentIoOperations(int) instead of a queue. The engines avoid monitors on their streaming
+ * paths, so the virtual threads are not pinned to their carrier threads.
+ */
+public class AsyncExecutors {
+
+  private int cpuThreads = Runtime.getRuntime().availableProcessors();
+  private int cpuQueueCapacity = 64 * Runtime.getRuntime().availableProcessors();
+  private int ioThreads = 2 * Runtime.getRuntime().availableProcessors();
+  private int ioQueueCapacity = 64 * Runtime.getRuntime().availableProcessors();
+  private RejectedExecutionHandler rejectionPolicy = new ThreadPoolExecutor.AbortPolicy();
+  private ThreadFactory ioThreadFactory;
+  private int maxConcurrentIoOperations = 0;
+  private final AtomicLong rejected = new AtomicLong();
+  private final AtomicInteger ioInFlight = new AtomicInteger();
+  private final Lock lock = new ReentrantLock();
+  private volatile ThreadPoolExecutor cpuExecutor;
+  private volatile ExecutorService ioExecutor;
+  private volatile Semaphore ioPermits;
+  private volatile boolean started = false;
+
+  /**
+   * an operation notifying its callback on completion
+   */
+  private static final class CallbackTask<T> extends FutureTask<T> {
+
+    private final AsyncCallback<T> callback;
+    private final Runnable completion;
+    private final AtomicBoolean completed = new AtomicBoolean();
+
+    CallbackTask(Callable<T> operation, AsyncCallback<T> callback, Runnable completion) {
+      super(operation);
+      this.callback = callback;
+      this.completion = completion;
+    }
+
+    void reject(RejectedExecutionException cause) {
+      setException(cause);
+    }
+
+    /**
+     * runs the completion once, before the result is visible to the caller
+     */
+    private void complete() {
+      if( completion != null && completed.compareAndSet(false, true) ) {
+        completion.run();
+      }
+    }
+
+    @Override
+    protected void set(T result) {
+      complete();
+      super.set(result);
+    }
+
+    @Override
+    protected void setException(Throwable cause) {
+      complete();
+      super.setException(cause);
+    }
+
+    @Override
+    protected void done() {
+      complete();
+      if( callback != null && !isCancelled() ) {
+        try {
+          callback.onSuccess(get());
+        } catch (ExecutionException e) {
+          callback.onFailure(e.getCause());
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          callback.onFailure(e);
+        }
+      }
+    }
+
+  }
+
+  /**
+   * the number of threads of the CPU executor, takes effect on #start()
+   *
+   * @param cpuThreads
+   *    the number of threads
+   */
+  public void setCpuThreads(int cpuThreads) {
+    this.cpuThreads = cpuThreads;
+  }
+
+  /**
+   * the maximum number of operations waiting for the CPU executor, takes effect on #start()
+   *
+   * @param cpuQueueCapacity
+   *    the queue capacity
+   */
+  public void setCpuQueueCapacity(int cpuQueueCapacity) {
+    this.cpuQueueCapacity = cpuQueueCapacity;
+  }
+
+  /**
+   * the number of threads of the I/O executor, takes effect on #start()
+   *
+   * @param ioThreads
+   *    the number of threads
+   */
+  public void setIoThreads(int ioThreads) {
+    this.ioThreads = ioThreads;
+  }
+
+  /**
+   * the maximum number of operations waiting for the I/O executor, takes effect on #start()
+   *
+   * @param ioQueueCapacity
+   *    the queue capacity
+   */
+  public void setIoQueueCapacity(int ioQueueCapacity) {
+    this.ioQueueCapacity = ioQueueCapacity;
+  }
+
+  /**
+   * the factory of the threads of the I/O executor, takes effect on #start()
+   *
+   * @param ioThreadFactory
+   *    the thread factory (null creates daemon platform threads)
+   */
+  public void setIoThreadFactory(ThreadFactory ioThreadFactory) {
+    this.ioThreadFactory = ioThreadFactory;
+  }
+
+  /**
+   * the maximum number of streaming operations executed or waiting at a time, operations exceeding it are
+   * rejected, takes effect on #start()
+   *
+   * @param maxConcurrentIoOperations
+   *    the number of operations (0 bounds by the I/O queue capacity only)
+   */
+  public void setMaxConcurrentIoOperations(int maxConcurrentIoOperations) {
+    this.maxConcurrentIoOperations = maxConcurrentIoOperations;
+  }
+
+  /**
+   * the policy applied to operations submitted to a saturated executor, takes effect on #start(); an operation
+   * the policy neither runs nor queues is failed, a custom policy must not remove queued operations
+   *
+   * @param rejectionPolicy
+   *    the policy (e.g. ThreadPoolExecutor.CallerRunsPolicy to run the operation on the calling thread)
+   */
+  public void setRejectionPolicy(RejectedExecutionHandler rejectionPolicy) {
+    this.rejectionPolicy = rejectionPolicy;
+  }
+
+  /**
+   * replaces the CPU executor, an executor set before #start() is kept
+   *
+   * @param cpuExecutor
+   *    the executor
+   */
+  public void setCpuExecutor(ThreadPoolExecutor cpuExecutor) {
+    lock.lock();
+    try {
+      this.cpuExecutor = cpuExecutor;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * replaces the I/O executor, an executor set before #start() is kept, queue depth and active count are
+   * only available for a ThreadPoolExecutor
+   *
+   * @param ioExecutor
+   *    the executor (e.g. a virtual thread per task executor)
+   */
+  public void setIoExecutor(ExecutorService ioExecutor) {
+    lock.lock();
+    try {
+      this.ioExecutor = ioExecutor;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private ThreadPoolExecutor createExecutor(final String name, int threads, int queueCapacity, ThreadFactory threadFactory) {
+    final RejectedExecutionHandler policy = rejectionPolicy;
+    if( threadFactory == null ) {
+      threadFactory = new ThreadFactory() {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }
+      };
+    }
+    return new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(queueCapacity), threadFactory, new RejectedExecutionHandler() {
+      @Override
+      public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+        rejected.incrementAndGet();
+        if( policy instanceof ThreadPoolExecutor.DiscardOldestPolicy ) {
+          if( !executor.isShutdown() ) {
+            discard(executor.getQueue().poll());
+            executor.execute(runnable);
+          } else {
+            discard(runnable);
+          }
+        } else {
+          policy.rejectedExecution(runnable, executor);
+          if( !executor.getQueue().contains(runnable) ) {
+            discard(runnable);
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * fails an operation dropped by the rejection policy, completed operations are not affected
+   *
+   * @param runnable
+   *    the dropped operation (may be null)
+   */
+  private static void discard(Runnable runnable) {
+    if( runnable instanceof CallbackTask && !((CallbackTask<?>) runnable).isDone() ) {
+      ((CallbackTask<?>) runnable).reject(new RejectedExecutionException("Operation discarded by the rejection policy"));
+    }
+  }
+
+  /**
+   * creates the executors not set explicitly, called on the first submitted operation if necessary
+   */
+  public void start() {
+    lock.lock();
+    try {
+      if( cpuExecutor == null ) {
+        cpuExecutor = createExecutor("simple-pgp-cpu", cpuThreads, cpuQueueCapacity, null);
+      }
+      if( ioExecutor == null ) {
+        ioExecutor = createExecutor("simple-pgp-io", ioThreads, ioQueueCapacity, ioThreadFactory);
+      }
+      if( ioPermits == null && maxConcurrentIoOperations > 0 ) {
+        ioPermits = new Semaphore(maxConcurrentIoOperations);
+      }
+      started = true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * stops both executors, queued operations are not executed but failed with a RejectedExecutionException
+   */
+  public void shutdown() {
+    lock.lock();
+    try {
+      if( cpuExecutor != null ) {
+        for( Runnable runnable : cpuExecutor.shutdownNow() ) {
+          discard(runnable);
+        }
+        cpuExecutor = null;
+      }
+      if( ioExecutor != null ) {
+        for( Runnable runnable : ioExecutor.shutdownNow() ) {
+          discard(runnable);
+        }
+        ioExecutor = null;
+      }
+      ioPermits = null;
+      started = false;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private static <T> Future<T> submit(ExecutorService executor, CallbackTask<T> operation) {
+    try {
+      if( executor == null ) {
+        throw new RejectedExecutionException("Executors have been shut down");
+      }
+      executor.execute(operation);
+    } catch (RejectedExecutionException e) {
+      operation.reject(e);
+    }
+    return operation;
+  }
+
+  /**
+   * submits a CPU bound operation
+   *
+   * @param operation
+   *    the operation
+   * @param callback
+   *    the callback notified on completion (may be null)
+   * @return the future result
+   */
+  <T> Future<T> submitCpu(Callable<T> operation, AsyncCallback<T> callback) {
+    ThreadPoolExecutor executor = cpuExecutor;
+    if( !started || executor == null ) {
+      lock.lock();
+      try {
+        if( !started ) {
+          start();
+        }
+        executor = cpuExecutor;
+      } finally {
+        lock.unlock();
+      }
+    }
+    return submit(executor, new CallbackTask<>(operation, callback, null));
+  }
+
+  /**
+   * submits a streaming operation
+   *
+   * @param operation
+   *    the operation
+   * @param callback
+   *    the callback notified on completion (may be null)
+   * @return the future result
+   */
+  <T> Future<T> submitIo(Callable<T> operation, AsyncCallback<T> callback) {
+    ExecutorService executor = ioExecutor;
+    Semaphore semaphore = ioPermits;
+    if( !started || executor == null ) {
+      lock.lock();
+      try {
+        if( !started ) {
+          start();
+        }
+        executor = ioExecutor;
+        semaphore = ioPermits;
+      } finally {
+        lock.unlock();
+      }
+    }
+    final Semaphore permits = semaphore;
+    final boolean permitted = permits == null || permits.tryAcquire();
+    ioInFlight.incrementAndGet();
+    CallbackTask<T> result = new CallbackTask<>(operation, callback, new Runnable() {
+      @Override
+      public void run() {
+        ioInFlight.decrementAndGet();
+        if( permits != null && permitted ) {
+          permits.release();
+        }
+      }
+    });
+    if( permitted ) {
+      submit(executor, result);
+    } else {
+      rejected.incrementAndGet();
+      result.reject(new RejectedExecutionException("Maximum number of concurrent I/O operations reached"));
+    }
+    return result;
+  }
+
+  /**
+   * @return the number of operations waiting for the CPU executor
+   */
+  public int getCpuQueueDepth() {
+    ThreadPoolExecutor executor = cpuExecutor;
+    return (executor != null) ? executor.getQueue().size() : 0;
+  }
+
+  /**
+   * @return the number of operations waiting for the I/O executor
+   */
+  public int getIoQueueDepth() {
+    ExecutorService executor = ioExecutor;
+    return (executor instanceof ThreadPoolExecutor) ? ((ThreadPoolExecutor) executor).getQueue().size() : 0;
+  }
+
+  /**
+   * @return the number of operations currently executed by the CPU executor
+   */
+  public int getCpuActiveCount() {
+    ThreadPoolExecutor executor = cpuExecutor;
+    return (executor != null) ? executor.getActiveCount() : 0;
+  }
+
+  /**
+   * @return the number of operations currently executed by the I/O executor
+   */
+  public int getIoActiveCount() {
+    ExecutorService executor = ioExecutor;
+    return (executor instanceof ThreadPoolExecutor) ? ((ThreadPoolExecutor) executor).getActiveCount() : 0;
+  }
+
+  /**
+   * @return the number of streaming operations submitted and not yet completed
+   */
+  public int getIoInFlightCount() {
+    return ioInFlight.get();
+  }
+
+  /**
+   * @return the number of operations rejected by the executors created by this instance
+   */
+  public long getRejectedCount() {
+    return rejected.get();
+  }
+
+}
@@ -0,0 +1,70 @@
+package me.sniggle.pgp.crypt;
+
+import java.io.OutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+/**
+ * Non-blocking variants of the KeyPairGenerator operations, executed by the CPU executor.
+ *
+ * The target streams are written on an executor thread and must not be used or closed by the caller
+ * before the operation completed.
+ */
+public class AsyncKeyPairGenerator {
+
+  private final KeyPairGenerator keyPairGenerator;
+  private final AsyncExecutors executors;
+
+  /**
+   * @param keyPairGenerator
+   *    the generator executing the operations
+   * @param executors
+   *    the executors running the operations
+   */
+  public AsyncKeyPairGenerator(KeyPairGenerator keyPairGenerator, AsyncExecutors executors) {
+    this.keyPairGenerator = keyPairGenerator;
+    this.executors = executors;
+  }
+
+  /**
+   * @see KeyPairGenerator#generateKeyPair(String, String, OutputStream, OutputStream)
+   *
+   * @param userId
+   * @param password
+   * @param publicKey
+   * @param secrectKey
+   * @param callback
+   *    notified on completion (may be null)
+   * @return the future result
+   */
+  public Future<Boolean> generateKeyPair(final String userId, final String password, final OutputStream publicKey, final OutputStream secrectKey, AsyncCallback<Boolean> callback) {
+    return executors.submitCpu(new Callable<Boolean>() {
+      @Override
+      public Boolean call() {
+        return keyPairGenerator.generateKeyPair(userId, password, publicKey, secrectKey);
+      }
+    }, callback);
+  }
+
+  /**
+   * @see KeyPairGenerator#generateKeyPair(String, String, int, OutputStream, OutputStream)
+   *
+   * @param userId
+   * @param password
+   * @param keySize
+   * @param publicKey
+   * @param secrectKey
+   * @param callback
+   *    notified on completion (may be null)
+   * @return the future result
+   */
+  public Future<Boolean> generateKeyPair(final String userId, final String password, final int keySize, final OutputStream publicKey, final OutputStream secrectKey, AsyncCallback<Boolean> callback) {
+    return executors.submitCpu(new Callable<Boolean>() {
+      @Override
+      public Boolean call() {
+        return keyPairGenerator.generateKeyPair(userId, password, keySize, publicKey, secrectKey);
+      }
+    }, callback);
+  }
+
+}
@@ -0,0 +1,221 @@
+package me.sniggle.pgp.crypt;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+/**
+ * Non-blocking variants of the MessageEncryptor operations, in-memory operations are executed by the CPU
+ * executor, operations on streams and files by the I/O executor.
+ *
+ * The streams passed in are read and written on an executor thread and must not be used or closed by the
+ * caller before the operation completed. The results equal those of the blocking operations, i.e. a failed
+ * operation completes with false or null, the future fails only if the operation could not be executed.
+ */
+public class AsyncMessageEncryptor {
+
+  private final MessageEncryptor messageEncryptor;
+  private final AsyncExecutors executors;
+
+  /**
+   * @param messageEncryptor
+   *    the engine executing the operations
+   * @param executors
+   *    the executors running the operations
+   */
+  public AsyncMessageEncryptor(MessageEncryptor messageEncryptor, AsyncExecutors executors) {
+    this.messageEncryptor = messageEncryptor;
+    this.executors = executors;
+  }
+
+  /**
+   * @see MessageEncryptor#encrypt(InputStream, String, InputStream, OutputStream)
+   *
+   * @param publicKeyOfRecipient
+   * @param inputDataName
+   * @param plainInputData
+   * @param target
+   * @param callback
+   *    notified on completion (may be null)
+   * @return the future result
+   */
+  public Future<Boolean> encrypt(final InputStream publicKeyOfRecipient, final String inputDataName, final InputStream plainInputData, final OutputStream target, AsyncCallback<Boolean> callback) {
+    return executors.submitIo(new Callable<Boolean>() {
+      @Override
+      public Boolean call() {
+        return messageEncryptor.encrypt(publicKeyOfRecipient, inputDataName, plainInputData, target);
+      }
+    }, callback);
+  }
+
+  /**
+   * @see MessageEncryptor#encrypt(InputStream, InputStream, String, String, String, InputStream, OutputStream)
+   *
+   * @param publicKeyOfRecipient
+   * @param privateKeyOfSender
+   * @param userIdOfSender
+   * @param passwordOfSendersPrivateKey
+   * @param inputDataName
+   * @param plainInputData
+   * @param target
+   * @param callback
+   *    notified on completion (may be null)
+   * @return the future result
+   */
+  public Future<Boolean> encrypt(final InputStream publicKeyOfRecipient, final InputStream privateKeyOfSender, final String userIdOfSender, final String passwordOfSendersPrivateKey, final String inputDataName, final InputStream plainInputData, final OutputStream target, AsyncCallback<Boolean> callback) {
+    return executors.submitIo(new Callable<Boolean>() {
+      @Override
+      public Boolean call() {
+        return messageEncryptor.encrypt(publicKeyOfRecipient, privateKeyOfSender, userIdOfSender, passwordOfSendersPrivateKey, inputDataName, plainInputData, target);
+      }
+    }, callback);
+  }
+
+  /**
+   * @see MessageEncryptor#encrypt(InputStream, InputStream, String, String, Path, Path)
+   *
+   * @param publicKeyOfRecipient
+   * @param privateKeyOfSender
+   * @param userIdOfSender
+   * @param passwordOfSendersPrivateKey
+   * @param plainInputFile
+   * @param target
+   * @param callback
+   *    notified on completion (may be null)
+   * @return the future result
+   */
+  public Future<Boolean> encrypt(final InputStream publicKeyOfRecipient, final InputStream privateKeyOfSender, final String userIdOfSender, final String passwordOfSendersPrivateKey, final Path plainInputFile, final Path target, AsyncCallback<Boolean> callback) {
+    return executors.submitIo(new Callable<Boolean>() {
+      @Override
+      public Boolean call() {
+        return messageEncryptor.encrypt(publicKeyOfRecipient, privateKeyOfSender, userIdOfSender, passwordOfSendersPrivateKey, plainInputFile, target);
+      }
+    }, callback);
+  }
+
+  /**
+   * @see MessageEncryptor#encrypt(InputStream, InputStream, String, String, String, byte[])
+   *
+   * @param publicKeyOfRecipient
+   * @param privateKeyOfSender
+   * @param userIdOfSender
+   * @param passwordOfSendersPrivateKey
+   * @param inputDataName
+   * @param plainData
+   * @param callback
+   *    notified on completion (may be null)
+   * @return the future result
+   */
+  public Future<byte[]> encrypt(final InputStream publicKeyOfRecipient, final InputStream privateKeyOfSender, final String userIdOfSender, final String passwordOfSendersPrivateKey, final String inputDataName, final byte[] plainData, AsyncCallback<byte[]> callback) {
+    return executors.submitCpu(new Callable<byte[]>() {
+      @Override
+      public byte[] call() {
+        return messageEncryptor.encrypt(publicKeyOfRecipient, privateKeyOfSender, userIdOfSender, passwordOfSendersPrivateKey, inputDataName, plainData);
+      }
+    }, callback);
+  }
+
+  /**
+   * @see MessageEncryptor#decrypt(String, InputStream, InputStream, InputStream, OutputStream)
+   *
+   * @param passwordOfReceiversPrivateKey
+   * @param privateKeyOfReceiver
+   * @param publicKeyOfSender
+   * @param encryptedData
+   * @param target
+   * @param callback
+   *    notified on completion (may be null)
+   * @return the future result
+   */
+  public Future<Boolean> decrypt(final String passwordOfReceiversPrivateKey, final InputStream privateKeyOfReceiver, final InputStream publicKeyOfSender, final InputStream encryptedData, final OutputStream target, AsyncCallback<Boolean> callback) {
+    return executors.submitIo(new Callable<Boolean>() {
+      @Override
+      public Boolean call() {
+        return messageEncryptor.decrypt(passwordOfReceiversPrivateKey, privateKeyOfReceiver, publicKeyOfSender, encryptedData, target);
+      }
+    }, callback);
+  }
+
+  /**
+   * @see MessageEncryptor#decrypt(String, InputStream, InputStream, Path, Path)
+   *
+   * @param passwordOfReceiversPrivateKey
+   * @param privateKeyOfReceiver
+   * @param publicKeyOfSender
+   * @param encryptedFile
+   * @param target
+   * @param callback
+   *    notified on completion (may be null)
+   * @return the future result
+   */
+  public Future<Boolean> decrypt(final String passwordOfReceiversPrivateKey, final InputStream privateKeyOfReceiver, final InputStream publicKeyOfSender, final Path encryptedFile, final Path target, AsyncCallback<Boolean> callback) {
+    return executors.submitIo(new Callable<Boolean>() {
+      @Override
+      public Boolean call() {
+        return messageEncryptor.decrypt(passwordOfReceiversPrivateKey, privateKeyOfReceiver, publicKeyOfSender, encryptedFile, target);
+      }
+    }, callback);
+  }
+
+  /**
+   * @see MessageEncryptor#decrypt(String, InputStream, InputStream, byte[])
+   *
+   * @param passwordOfReceiversPrivateKey
+   * @param privateKeyOfReceiver
+   * @param publicKeyOfSender
+   * @param encryptedData
+   * @param callback
+   *    notified on completion (may be null)
+   * @return the future result
+   */
+  public Future<byte[]> decrypt(final String passwordOfReceiversPrivateKey, final InputStream privateKeyOfReceiver, final InputStream publicKeyOfSender, final byte[] encryptedData, AsyncCallback<byte[]> callback) {
+    return executors.submitCpu(new Callable<byte[]>() {
+      @Override
+      public byte[] call() {
+        return messageEncryptor.decrypt(passwordOfReceiversPrivateKey, privateKeyOfReceiver, publicKeyOfSender, encryptedData);
+      }
+    }, callback);
+  }
+
+  /**
+   * @see MessageEncryptor#extractSessionKey(String, InputStream, InputStream)
+   *
+   * @param passwordOfReceiversPrivateKey
+   * @param privateKeyOfReceiver
+   * @param encryptedData
+   * @param callback
+   *    notified on completion (may be null)
+   * @return the future result
+   */
+  public Future<SessionKey> extractSessionKey(final String passwordOfReceiversPrivateKey, final InputStream privateKeyOfReceiver, final InputStream encryptedData, AsyncCallback<SessionKey> callback) {
+    return executors.submitCpu(new Callable<SessionKey>() {
+      @Override
+      public SessionKey call() {
+        return messageEncryptor.extractSessionKey(passwordOfReceiversPrivateKey, privateKeyOfReceiver, encryptedData);
+      }
+    }, callback);
+  }
+
+  /**
+   * @see MessageEncryptor#verify(String, InputStream, InputStream, InputStream)
+   *
+   * @param passwordOfReceiversPrivateKey
+   * @param privateKeyOfReceiver
+   * @param publicKeyOfSender
+   * @param encryptedData
+   * @param callback
+   *    notified on completion (may be null)
+   * @return the future result
+   */
+  public Future<VerificationResult> verify(final String passwordOfReceiversPrivateKey, final InputStream privateKeyOfReceiver, final InputStream publicKeyOfSender, final InputStream encryptedData, AsyncCallback<VerificationResult> callback) {
+    return executors.submitIo(new Callable<VerificationResult>() {
+      @Override
+      public VerificationResult call() {
+        return messageEncryptor.verify(passwordOfReceiversPrivateKey, privateKeyOfReceiver, publicKeyOfSender, encryptedData);
+      }
+    }, callback);
+  }
+
+}
@@ -0,0 +1,151 @@
+package me.sniggle.pgp.crypt;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+/**
+ * Non-blocking variants of the MessageSigner operations, in-memory operations are executed by the CPU
+ * executor, operations on streams and files by the I/O executor.
+ *
+ * The streams passed in are read and written on an executor thread and must not be used or closed by the
+ * caller before the operation completed.
+ */
+public class AsyncMessageSigner {
+
+  private final MessageSigner messageSigner;
+  private final AsyncExecutors executors;
+
+  /**
+   * @param messageSigner
+   *    the engine executing the operations
+   * @param executors
+   *    the executors running the operations
+   */
+  public AsyncMessageSigner(MessageSigner messageSigner, AsyncExecutors executors) {
+    this.messageSigner = messageSigner;
+    this.executors = executors;
+  }
+
+  /**
+   * @see MessageSigner#verifyMessage(InputStream, InputStream, InputStream)
+   *
+   * @param publicKeyOfSender
+   * @param message
+   * @param signatureStream
+   * @param callback
+   *    notified on completion (may be null)
+   * @return the future result
+   */
+  public Future<Boolean> verifyMessage(final InputStream publicKeyOfSender, final InputStream message, final InputStream signatureStream, AsyncCallback<Boolean> callback) {
+    return executors.submitIo(new Callable<Boolean>() {
+      @Override
+      public Boolean call() {
+        return messageSigner.verifyMessage(publicKeyOfSender, message, signatureStream);
+      }
+    }, callback);
+  }
+
+  /**
+   * @see MessageSigner#verifyMessage(InputStream, Path, Path)
+   *
+   * @param publicKeyOfSender
+   * @param message
+   * @param signature
+   * @param callback
+   *    notified on completion (may be null)
+   * @return the future result
+   */
+  public Future<Boolean> verifyMessage(final InputStream publicKeyOfSender, final Path message, final Path signature, AsyncCallback<Boolean> callback) {
+    return executors.submitIo(new Callable<Boolean>() {
+      @Override
+      public Boolean call() {
+        return messageSigner.verifyMessage(publicKeyOfSender, message, signature);
+      }
+    }, callback);
+  }
+
+  /**
+   * @see MessageSigner#verifyMessage(InputStream, byte[], byte[])
+   *
+   * @param publicKeyOfSender
+   * @param message
+   * @param signature
+   * @param callback
+   *    notified on completion (may be null)
+   * @return the future result
+   */
+  public Future<Boolean> verifyMessage(final InputStream publicKeyOfSender, final byte[] message, final byte[] signature, AsyncCallback<Boolean> callback) {
+    return executors.submitCpu(new Callable<Boolean>() {
+      @Override
+      public Boolean call() {
+        return messageSigner.verifyMessage(publicKeyOfSender, message, signature);
+      }
+    }, callback);
+  }
+
+  /**
+   * @see MessageSigner#signMessage(InputStream, String, String, InputStream, OutputStream)
+   *
+   * @param privateKeyOfSender
+   * @param userIdForPrivateKey
+   * @param passwordOfPrivateKey
+   * @param message
+   * @param signature
+   * @param callback
+   *    notified on completion (may be null)
+   * @return the future result
+   */
+  public Future<Boolean> signMessage(final InputStream privateKeyOfSender, final String userIdForPrivateKey, final String passwordOfPrivateKey, final InputStream message, final OutputStream signature, AsyncCallback<Boolean> callback) {
+    return executors.submitIo(new Callable<Boolean>() {
+      @Override
+      public Boolean call() {
+        return messageSigner.signMessage(privateKeyOfSender, userIdForPrivateKey, passwordOfPrivateKey, message, signature);
+      }
+    }, callback);
+  }
+
+  /**
+   * @see MessageSigner#signMessage(InputStream, String, String, Path, Path)
+   *
+   * @param privateKeyOfSender
+   * @param userIdForPrivateKey
+   * @param passwordOfPrivateKey
+   * @param message
+   * @param signature
+   * @param callback
+   *    notified on completion (may be null)
+   * @return the future result
+   */
+  public Future<Boolean> signMessage(final InputStream privateKeyOfSender, final String userIdForPrivateKey, final String passwordOfPrivateKey, final Path message, final Path signature, AsyncCallback<Boolean> callback) {
+    return executors.submitIo(new Callable<Boolean>() {
+      @Override
+      public Boolean call() {
+        return messageSigner.signMessage(privateKeyOfSender, userIdForPrivateKey, passwordOfPrivateKey, message, signature);
+      }
+    }, callback);
+  }
+
+  /**
+   * @see MessageSigner#signMessage(InputStream, String, String, byte[])
+   *
+   * @param privateKeyOfSender
+   * @param userIdForPrivateKey
+   * @param passwordOfPrivateKey
+   * @param message
+   * @param callback
+   *    notified on completion (may be null)
+   * @return the future result
+   */
+  public Future<byte[]> signMessage(final InputStream privateKeyOfSender, final String userIdForPrivateKey, final String passwordOfPrivateKey, final byte[] message, AsyncCallback<byte[]> callback) {
+    return executors.submitCpu(new Callable<byte[]>() {
+      @Override
+      public byte[] call() {
+        return messageSigner.signMessage(privateKeyOfSender, userIdForPrivateKey, passwordOfPrivateKey, message);
+      }
+    }, callback);
+  }
+
+}
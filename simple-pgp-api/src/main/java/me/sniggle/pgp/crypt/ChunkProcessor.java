@@ -0,0 +1,37 @@
+package me.sniggle.pgp.crypt;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Processes a message pushed in chunks (e.g. by a reactive publisher) and pushes the output to its
+ * ChunkSubscriber.
+ *
+ * Every chunk is processed on the calling thread without blocking, output resulting from a chunk is pushed
+ * before the call returns. Requesting the next input chunk only once the call returned therefore bounds the
+ * data in flight by the subscriber's consumption (demand of one chunk at a time). After a terminal signal
+ * further calls are ignored.
+ */
+public interface ChunkProcessor {
+
+  /**
+   * processes the next input chunk, the chunk is consumed completely
+   *
+   * @param chunk
+   *    the input data between position and limit
+   */
+  void onNext(ByteBuffer chunk);
+
+  /**
+   * the input is complete, completes the operation and signals its result to the subscriber
+   */
+  void onComplete();
+
+  /**
+   * the input failed, the operation is abandoned and the failure is signalled to the subscriber
+   *
+   * @param cause
+   *    the cause of the failure
+   */
+  void onError(Throwable cause);
+
+}
@@ -0,0 +1,37 @@
+package me.sniggle.pgp.crypt;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Receives the output of a ChunkProcessor: any number of output chunks followed by exactly one terminal
+ * signal, either the result of the operation or its failure
+ *
+ * @param <R> the result type of the operation
+ */
+public interface ChunkSubscriber<R> {
+
+  /**
+   * receives the next output chunk, the chunk is only valid for the duration of the call
+   *
+   * @param chunk
+   *    the output data between position and limit
+   */
+  void onNext(ByteBuffer chunk);
+
+  /**
+   * the operation completed, no further chunks follow
+   *
+   * @param result
+   *    the result of the operation
+   */
+  void onComplete(R result);
+
+  /**
+   * the operation failed, no further chunks follow
+   *
+   * @param cause
+   *    the cause of the failure
+   */
+  void onError(Throwable cause);
+
+}
@@ -0,0 +1,80 @@
+package me.sniggle.pgp.crypt;
+
+import me.sniggle.pgp.crypt.internal.io.BufferPool;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * A stream providing the plain data of an encrypted message as it is read, the integrity and signature
+ * verdict is available once the end of the stream has been reached
+ */
+public abstract class DecryptingInputStream extends InputStream {
+
+  /**
+   * the verdict of the message, available once the stream has been read completely
+   *
+   * @return the verdict or null if the end of the stream has not been reached yet
+   */
+  public abstract VerificationResult getVerificationResult();
+
+  /**
+   * @return true if the end of the plain data has been reached and the verdict is available
+   */
+  public boolean isFinished() {
+    return getVerificationResult() != null;
+  }
+
+  /**
+   * provides the plain data as channel, reading from and closing the channel reads from and closes this stream
+   *
+   * @return the channel
+   */
+  public ReadableByteChannel getChannel() {
+    return new ReadableByteChannel() {
+
+      private boolean open = true;
+
+      @Override
+      public int read(ByteBuffer target) throws IOException {
+        if( !open ) {
+          throw new ClosedChannelException();
+        }
+        int result;
+        if( target.hasArray() ) {
+          result = DecryptingInputStream.this.read(target.array(), target.arrayOffset() + target.position(), target.remaining());
+          if( result > 0 ) {
+            target.position(target.position() + result);
+          }
+        } else {
+          BufferPool bufferPool = BufferPool.getDefault();
+          byte[] buffer = bufferPool.acquire();
+          try {
+            result = DecryptingInputStream.this.read(buffer, 0, Math.min(target.remaining(), buffer.length));
+            if( result > 0 ) {
+              target.put(buffer, 0, result);
+            }
+          } finally {
+            bufferPool.release(buffer);
+          }
+        }
+        return result;
+      }
+
+      @Override
+      public boolean isOpen() {
+        return open;
+      }
+
+      @Override
+      public void close() throws IOException {
+        open = false;
+        DecryptingInputStream.this.close();
+      }
+    };
+  }
+
+}
@@ -0,0 +1,73 @@
+package me.sniggle.pgp.crypt;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The information available from the leading (unencrypted) packets of an encrypted message
+ */
+public final class EncryptedMessageInfo {
+
+  /**
+   * the key id used by anonymous (hidden) recipients
+   */
+  public static final long WILDCARD_KEY_ID = 0L;
+
+  private final List<Long> recipientKeyIds;
+  private final List<Integer> symmetricAlgorithms;
+  private final boolean integrityProtected;
+
+  /**
+   * @param recipientKeyIds
+   *    the key ids of the public key recipients
+   * @param symmetricAlgorithms
+   *    the symmetric algorithms of the password recipients
+   * @param integrityProtected
+   *    true if the encrypted data carries a modification detection code
+   */
+  public EncryptedMessageInfo(List<Long> recipientKeyIds, List<Integer> symmetricAlgorithms, boolean integrityProtected) {
+    this.recipientKeyIds = Collections.unmodifiableList(new ArrayList<>(recipientKeyIds));
+    this.symmetricAlgorithms = Collections.unmodifiableList(new ArrayList<>(symmetricAlgorithms));
+    this.integrityProtected = integrityProtected;
+  }
+
+  /**
+   * the key ids of the (encryption sub) keys the message is encrypted for
+   *
+   * @return the key ids, WILDCARD_KEY_ID for anonymous recipients
+   */
+  public List<Long> getRecipientKeyIds() {
+    return recipientKeyIds;
+  }
+
+  /**
+   * the symmetric algorithms announced by password (symmetric key) recipients, the symmetric
+   * algorithm of public key recipients is part of the encrypted session key and not available
+   *
+   * @return the symmetric algorithm constants
+   */
+  public List<Integer> getSymmetricAlgorithms() {
+    return symmetricAlgorithms;
+  }
+
+  /**
+   * @return true if the encrypted data carries a modification detection code
+   */
+  public boolean isIntegrityProtected() {
+    return integrityProtected;
+  }
+
+  /**
+   * @return true if at least one recipient is anonymous
+   */
+  public boolean hasAnonymousRecipient() {
+    return recipientKeyIds.contains(WILDCARD_KEY_ID);
+  }
+
+  @Override
+  public String toString() {
+    return "EncryptedMessageInfo{recipientKeyIds=" + recipientKeyIds + ", symmetricAlgorithms=" + symmetricAlgorithms + ", integrityProtected=" + integrityProtected + "}";
+  }
+
+}
@@ -0,0 +1,65 @@
+package me.sniggle.pgp.crypt;
+
+import me.sniggle.pgp.crypt.internal.io.BufferPool;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A stream encrypting the plain data as it is written, the message is completed (signature and integrity
+ * packet) when the stream is closed
+ */
+public abstract class EncryptingOutputStream extends OutputStream {
+
+  /**
+   * provides the stream as channel, writing to and closing the channel writes to and closes this stream
+   *
+   * @return the channel
+   */
+  public WritableByteChannel getChannel() {
+    return new WritableByteChannel() {
+
+      private boolean open = true;
+
+      @Override
+      public int write(ByteBuffer source) throws IOException {
+        if( !open ) {
+          throw new ClosedChannelException();
+        }
+        int result = source.remaining();
+        if( source.hasArray() ) {
+          EncryptingOutputStream.this.write(source.array(), source.arrayOffset() + source.position(), result);
+          source.position(source.limit());
+        } else {
+          BufferPool bufferPool = BufferPool.getDefault();
+          byte[] buffer = bufferPool.acquire();
+          try {
+            while( source.hasRemaining() ) {
+              int length = Math.min(source.remaining(), buffer.length);
+              source.get(buffer, 0, length);
+              EncryptingOutputStream.this.write(buffer, 0, length);
+            }
+          } finally {
+            bufferPool.release(buffer);
+          }
+        }
+        return result;
+      }
+
+      @Override
+      public boolean isOpen() {
+        return open;
+      }
+
+      @Override
+      public void close() throws IOException {
+        open = false;
+        EncryptingOutputStream.this.close();
+      }
+    };
+  }
+
+}
@@ -0,0 +1,17 @@
+package me.sniggle.pgp.crypt;
+
+/**
+ * Notified about the progress of a bulk import, the notification runs on the importing thread and should
+ * not block
+ */
+public interface ImportProgressListener {
+
+  /**
+   * a batch of key rings has been written to the store
+   *
+   * @param progress
+   *    the statistics of the import so far
+   */
+  void onProgress(ImportResult progress);
+
+}
@@ -0,0 +1,112 @@
+package me.sniggle.pgp.crypt;
+
+/**
+ * The statistics of a (running or completed) bulk import of key rings
+ */
+public final class ImportResult {
+
+  private final long keyRingsRead;
+  private final long keyRingsImported;
+  private final long keyRingsRejected;
+  private final long userIdsDropped;
+  private final long subkeysDropped;
+  private final long bytesRead;
+  private final long elapsedNanos;
+
+  /**
+   * @param keyRingsRead
+   *    the number of key rings read from the input
+   * @param keyRingsImported
+   *    the number of key rings written to the store
+   * @param keyRingsRejected
+   *    the number of key rings dropped as invalid, expired or revoked
+   * @param userIdsDropped
+   *    the number of user IDs dropped from imported key rings
+   * @param subkeysDropped
+   *    the number of subkeys dropped from imported key rings
+   * @param bytesRead
+   *    the number of (binary) key ring bytes read
+   * @param elapsedNanos
+   *    the time elapsed since the import started
+   */
+  public ImportResult(long keyRingsRead, long keyRingsImported, long keyRingsRejected, long userIdsDropped, long subkeysDropped, long bytesRead, long elapsedNanos) {
+    this.keyRingsRead = keyRingsRead;
+    this.keyRingsImported = keyRingsImported;
+    this.keyRingsRejected = keyRingsRejected;
+    this.userIdsDropped = userIdsDropped;
+    this.subkeysDropped = subkeysDropped;
+    this.bytesRead = bytesRead;
+    this.elapsedNanos = elapsedNanos;
+  }
+
+  /**
+   * @return the number of key rings read from the input
+   */
+  public long getKeyRingsRead() {
+    return keyRingsRead;
+  }
+
+  /**
+   * @return the number of key rings written to the store
+   */
+  public long getKeyRingsImported() {
+    return keyRingsImported;
+  }
+
+  /**
+   * @return the number of key rings dropped as invalid, expired or revoked
+   */
+  public long getKeyRingsRejected() {
+    return keyRingsRejected;
+  }
+
+  /**
+   * @return the number of user IDs without valid self-certification dropped from imported key rings
+   */
+  public long getUserIdsDropped() {
+    return userIdsDropped;
+  }
+
+  /**
+   * @return the number of subkeys without valid binding signature, expired or revoked dropped from imported
+   * key rings
+   */
+  public long getSubkeysDropped() {
+    return subkeysDropped;
+  }
+
+  /**
+   * @return the number of (binary) key ring bytes read
+   */
+  public long getBytesRead() {
+    return bytesRead;
+  }
+
+  /**
+   * @return the time elapsed since the import started in nanoseconds
+   */
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+
+  /**
+   * @return the number of key rings read per second
+   */
+  public double getKeyRingsPerSecond() {
+    return (elapsedNanos > 0) ? keyRingsRead * 1e9 / elapsedNanos : 0.0;
+  }
+
+  /**
+   * @return the number of bytes read per second
+   */
+  public double getBytesPerSecond() {
+    return (elapsedNanos > 0) ? bytesRead * 1e9 / elapsedNanos : 0.0;
+  }
+
+  @Override
+  public String toString() {
+    return "ImportResult{keyRingsRead=" + keyRingsRead + ", keyRingsImported=" + keyRingsImported + ", keyRingsRejected=" + keyRingsRejected
+        + ", userIdsDropped=" + userIdsDropped + ", subkeysDropped=" + subkeysDropped + ", bytesRead=" + bytesRead + ", elapsedNanos=" + elapsedNanos + "}";
+  }
+
+}
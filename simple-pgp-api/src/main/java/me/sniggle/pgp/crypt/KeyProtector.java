@@ -0,0 +1,36 @@
+package me.sniggle.pgp.crypt;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Definition of the tuning of the password protection (S2K function) of secret keys
+ */
+public interface KeyProtector {
+
+  /**
+   * measures the time the S2K function takes on the current machine and determines the iteration count
+   * matching the target time to unlock a secret key
+   *
+   * @param targetMillis
+   *    the target unlock time in milliseconds, e.g. 50
+   * @return the coded S2K count (0 to 255) or -1 if the measurement failed
+   */
+  int calibrate(long targetMillis);
+
+  /**
+   * re-encrypts all secret keys of the key rings with the configured S2K parameters
+   *
+   * @param secretKey
+   *    the (ascii-armored or binary) secret key rings
+   * @param password
+   *    the current password of the secret keys
+   * @param newPassword
+   *    the password to protect the secret keys with (the current password if null)
+   * @param target
+   *    the target stream for the re-protected secret key rings
+   * @return true if all secret key rings have been re-protected
+   */
+  boolean reprotect(InputStream secretKey, String password, String newPassword, OutputStream target);
+
+}
@@ -0,0 +1,22 @@
+package me.sniggle.pgp.crypt;
+
+import java.io.InputStream;
+
+/**
+ * Definition of a bulk importer of key rings, e.g. of a key dump of a partner
+ */
+public interface KeyRingImporter {
+
+  /**
+   * imports the key rings of the stream into the store, key rings are validated (self-signatures, subkey
+   * bindings, expiry and revocation) and invalid material is dropped
+   *
+   * @param keyRings
+   *    the (ascii-armored or binary) public or secret key rings
+   * @param target
+   *    the store the valid key rings are added to
+   * @return the statistics of the import or null if the import failed
+   */
+  ImportResult importKeyRings(InputStream keyRings, KeyRingStore target);
+
+}
@@ -0,0 +1,17 @@
+package me.sniggle.pgp.crypt;
+
+/**
+ * Notified about the reload of a watched key ring file, the notification runs on the watching thread and
+ * should not block
+ */
+public interface KeyRingReloadListener {
+
+  /**
+   * the changes of a key ring file have been published to the lookups
+   *
+   * @param reload
+   *    the statistics of the reload
+   */
+  void onReload(ReloadResult reload);
+
+}
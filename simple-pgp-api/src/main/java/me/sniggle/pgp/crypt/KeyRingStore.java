@@ -0,0 +1,77 @@
+package me.sniggle.pgp.crypt;
+
+import java.io.Closeable;
+import java.io.InputStream;
+
+/**
+ * A persistent store of public and secret key rings, indexed by key ID, fingerprint and user ID.
+ *
+ * The key rings found are provided as (binary) key streams accepted by the key parameters of the engines.
+ * Engines configured with a store look up the keys a message refers to (e.g. the key of a signature) in the
+ * store if the corresponding key stream is not set.
+ */
+public interface KeyRingStore extends Closeable {
+
+  /**
+   * adds the key rings of the stream, a key ring added again (e.g. with new signatures) supersedes the
+   * stored one
+   *
+   * @param keyRings
+   *    the (ascii-armored or binary) public or secret key rings
+   * @return the number of key rings added or -1 if the key rings cannot be read
+   */
+  int addKeyRings(InputStream keyRings);
+
+  /**
+   * looks up the public key ring containing the (primary or sub) key
+   *
+   * @param keyId
+   *    the ID of the key
+   * @return the key ring stream or null if no key ring contains the key
+   */
+  InputStream findPublicKeyRing(long keyId);
+
+  /**
+   * looks up the public key ring containing the (primary or sub) key
+   *
+   * @param fingerprint
+   *    the fingerprint of the key
+   * @return the key ring stream or null if no key ring contains the key
+   */
+  InputStream findPublicKeyRing(byte[] fingerprint);
+
+  /**
+   * looks up the public key rings of the user, user IDs are compared case insensitive, a plain e-mail
+   * address matches the address part of a user ID
+   *
+   * @param userId
+   *    the user ID or e-mail address
+   * @return the stream of all matching key rings or null if none matches
+   */
+  InputStream findPublicKeyRings(String userId);
+
+  /**
+   * looks up the secret key ring containing the (primary or sub) key
+   *
+   * @param keyId
+   *    the ID of the key
+   * @return the key ring stream or null if no key ring contains the key
+   */
+  InputStream findSecretKeyRing(long keyId);
+
+  /**
+   * looks up the secret key rings of the user, user IDs are compared as for #findPublicKeyRings(String)
+   *
+   * @param userId
+   *    the user ID or e-mail address
+   * @return the stream of all matching key rings or null if none matches
+   */
+  InputStream findSecretKeyRings(String userId);
+
+  /**
+   * closes the store, the index is written to disk
+   */
+  @Override
+  void close();
+
+}
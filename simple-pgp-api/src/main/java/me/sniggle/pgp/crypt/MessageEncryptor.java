@@ -2,6 +2,8 @@ package me.sniggle.pgp.crypt;
 
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 
 /**
  * The definition of a simple PGP message encryptor
@@ -46,6 +48,116 @@ public interface MessageEncryptor {
    */
   boolean encrypt(InputStream publicKeyOfRecipient, InputStream privateKeyOfSender, String userIdOfSender, String passwordOfSendersPrivateKey, String inputDataName, InputStream plainInputData, OutputStream target);
 
+  /**
+   * opens a stream encrypting the plain data as it is written, the message is completed when the stream is closed
+   *
+   * @param publicKeyOfRecipient
+   *    the public key stream of the message recipient
+   * @param inputDataName
+   *    the (file)name of the input data
+   * @param target
+   *    the encrypted (ascii-armored) target stream, not closed with the returned stream
+   * @return the encrypting stream or null if the encryption cannot be set up
+   */
+  EncryptingOutputStream encryptingStream(InputStream publicKeyOfRecipient, String inputDataName, OutputStream target);
+
+  /**
+   * opens a stream encrypting the plain data with the public key <b>and</b> signing it with the private key as
+   * it is written, signature and integrity packet are written when the stream is closed
+   *
+   * @param publicKeyOfRecipient
+   *    the public key stream of the message recipient
+   * @param privateKeyOfSender
+   *    the private key stream of the message sender
+   * @param userIdOfSender
+   *    the user id of the message sender
+   * @param passwordOfSendersPrivateKey
+   *    the password for the private key of the sender
+   * @param inputDataName
+   *    the (file)name of the input data
+   * @param target
+   *    the encrypted (ascii-armored) target stream, not closed with the returned stream
+   * @return the encrypting stream or null if the encryption cannot be set up
+   */
+  EncryptingOutputStream encryptingStream(InputStream publicKeyOfRecipient, InputStream privateKeyOfSender, String userIdOfSender, String passwordOfSendersPrivateKey, String inputDataName, OutputStream target);
+
+  /**
+   * encrypts the plain input file with the public key, large files are memory mapped and the target file
+   * is written through a file channel
+   *
+   * @param publicKeyOfRecipient
+   *    the public key stream of the message recipient
+   * @param plainInputFile
+   *    the plain input file, its name is used as data name
+   * @param target
+   *    the encrypted (ascii-armored) target file
+   * @return true if encryption successful
+   */
+  boolean encrypt(InputStream publicKeyOfRecipient, Path plainInputFile, Path target);
+
+  /**
+   * encrypts the plain input file with the public key <b>and</b> signs it with the private key, large files
+   * are memory mapped and the target file is written through a file channel
+   *
+   * @param publicKeyOfRecipient
+   *    the public key stream of the message recipient
+   * @param privateKeyOfSender
+   *    the private key stream of the message sender
+   * @param userIdOfSender
+   *    the user id of the message sender
+   * @param passwordOfSendersPrivateKey
+   *    the password for the private key of the sender
+   * @param plainInputFile
+   *    the plain input file, its name is used as data name
+   * @param target
+   *    the encrypted (ascii-armored) target file
+   * @return true if encryption successful
+   */
+  boolean encrypt(InputStream publicKeyOfRecipient, InputStream privateKeyOfSender, String userIdOfSender, String passwordOfSendersPrivateKey, Path plainInputFile, Path target);
+
+  /**
+   * encrypts the in-memory plain data with the public key and signs it with the private key (if provided), the
+   * message is written into a single buffer sized to the maximum encrypted length in advance
+   *
+   * @param publicKeyOfRecipient
+   *    the public key stream of the message recipient
+   * @param privateKeyOfSender
+   *    the private key stream of the message sender (null if unsigned)
+   * @param userIdOfSender
+   *    the user id of the message sender
+   * @param passwordOfSendersPrivateKey
+   *    the password for the private key of the sender
+   * @param inputDataName
+   *    the (file)name of the input data
+   * @param plainData
+   *    the plain data
+   * @return the encrypted (ascii-armored) data or null if the encryption failed
+   */
+  byte[] encrypt(InputStream publicKeyOfRecipient, InputStream privateKeyOfSender, String userIdOfSender, String passwordOfSendersPrivateKey, String inputDataName, byte[] plainData);
+
+  /**
+   * encrypts the remaining plain data of the buffer with the public key and signs it with the private key (if
+   * provided) directly into the (heap or direct) target buffer
+   *
+   * @param publicKeyOfRecipient
+   *    the public key stream of the message recipient
+   * @param privateKeyOfSender
+   *    the private key stream of the message sender (null if unsigned)
+   * @param userIdOfSender
+   *    the user id of the message sender
+   * @param passwordOfSendersPrivateKey
+   *    the password for the private key of the sender
+   * @param inputDataName
+   *    the (file)name of the input data
+   * @param plainData
+   *    the plain data, read from its position to its limit
+   * @param target
+   *    the target buffer, written from its position
+   * @return the number of bytes written or -1 if the encryption failed or the target buffer has less remaining
+   *    space than the maximum encrypted length (checked before encrypting)
+   */
+  int encrypt(InputStream publicKeyOfRecipient, InputStream privateKeyOfSender, String userIdOfSender, String passwordOfSendersPrivateKey, String inputDataName, ByteBuffer plainData, ByteBuffer target);
+
   /**
    * decrypts the encypted data stream with the recipients private key
    *
@@ -79,4 +191,192 @@ public interface MessageEncryptor {
    */
   boolean decrypt(String passwordOfReceiversPrivateKey, InputStream privateKeyOfReceiver, InputStream publicKeyOfSender, InputStream encryptedData, OutputStream target);
 
+  /**
+   * decrypts the encrypted file with the receivers private key and verifies the signature (if signed and the
+   * public key of the sender is provided), large files are memory mapped and the target file is written
+   * through a file channel
+   *
+   * @param passwordOfReceiversPrivateKey
+   *    the password of the receivers private key
+   * @param privateKeyOfReceiver
+   *    the receiver's private key
+   * @param publicKeyOfSender
+   *    the sender's public key (optional)
+   * @param encryptedFile
+   *    the encrypted file
+   * @param target
+   *    the plain target file
+   * @return true if decryption and verification successful
+   */
+  boolean decrypt(String passwordOfReceiversPrivateKey, InputStream privateKeyOfReceiver, InputStream publicKeyOfSender, Path encryptedFile, Path target);
+
+  /**
+   * decrypts the in-memory encrypted data with the receivers private key and verifies integrity and signature (if
+   * signed and the public key of the sender is provided)
+   *
+   * @param passwordOfReceiversPrivateKey
+   *    the password of the receivers private key
+   * @param privateKeyOfReceiver
+   *    the receiver's private key
+   * @param publicKeyOfSender
+   *    the sender's public key (optional)
+   * @param encryptedData
+   *    the encrypted data
+   * @return the plain data or null if decryption or verification failed
+   */
+  byte[] decrypt(String passwordOfReceiversPrivateKey, InputStream privateKeyOfReceiver, InputStream publicKeyOfSender, byte[] encryptedData);
+
+  /**
+   * decrypts the remaining encrypted data of the buffer with the receivers private key directly into the (heap or
+   * direct) target buffer and verifies integrity and signature (if signed and the public key of the sender is provided)
+   *
+   * @param passwordOfReceiversPrivateKey
+   *    the password of the receivers private key
+   * @param privateKeyOfReceiver
+   *    the receiver's private key
+   * @param publicKeyOfSender
+   *    the sender's public key (optional)
+   * @param encryptedData
+   *    the encrypted data, read from its position to its limit
+   * @param target
+   *    the target buffer, written from its position
+   * @return the number of bytes written or -1 if decryption or verification failed or the target buffer is too small
+   */
+  int decrypt(String passwordOfReceiversPrivateKey, InputStream privateKeyOfReceiver, InputStream publicKeyOfSender, ByteBuffer encryptedData, ByteBuffer target);
+
+  /**
+   * re-addresses an encrypted message to a new set of recipients without re-encrypting the message itself:
+   * only the session key is decrypted with the current receiver's private key and encrypted again for every
+   * new recipient, the encrypted data packet is copied unchanged
+   *
+   * @param passwordOfReceiversPrivateKey
+   *    the password for the current receiver's private key
+   * @param privateKeyOfReceiver
+   *    the current receiver's private key
+   * @param publicKeysOfRecipients
+   *    the public key stream of the new recipients (may contain several key rings)
+   * @param encryptedData
+   *    the encrypted data
+   * @param target
+   *    the re-addressed encrypted (ascii-armored) target stream
+   * @return true if the session key could be recovered and was re-encrypted for all recipients
+   */
+  boolean rewrap(String passwordOfReceiversPrivateKey, InputStream privateKeyOfReceiver, InputStream publicKeysOfRecipients, InputStream encryptedData, OutputStream target);
+
+  /**
+   * decrypts the session key of the encrypted data with the recipients private key, only the leading
+   * session key packets of the encrypted data are read
+   *
+   * @param passwordOfReceiversPrivateKey
+   *    the password for the receiver's private key
+   * @param privateKeyOfReceiver
+   *    the receiver's private key
+   * @param encryptedData
+   *    the encrypted data
+   * @return the session key or null if it could not be decrypted
+   */
+  SessionKey extractSessionKey(String passwordOfReceiversPrivateKey, InputStream privateKeyOfReceiver, InputStream encryptedData);
+
+  /**
+   * decrypts and verifies (if signed and the public key is provided) the encrypted data with a
+   * previously extracted session key, no private key operation is performed
+   *
+   * @param sessionKey
+   *    the session key of the encrypted data
+   * @param publicKeyOfSender
+   *    the sender's public key (optional)
+   * @param encryptedData
+   *    the encrypted data
+   * @param target
+   *    the plain data stream
+   * @return true if decryption and verification (if signed) was successful
+   */
+  boolean decrypt(SessionKey sessionKey, InputStream publicKeyOfSender, InputStream encryptedData, OutputStream target);
+
+  /**
+   * reads the recipients of the encrypted data, only the leading session key packets and the header of the
+   * encrypted data packet are read, nothing is decrypted
+   *
+   * @param encryptedData
+   *    the encrypted data
+   * @return the message information or null if the data is not an encrypted message
+   */
+  EncryptedMessageInfo inspect(InputStream encryptedData);
+
+  /**
+   * decrypts and verifies the encrypted data without producing the plain data: the session key is decrypted,
+   * the data is decrypted and decompressed, the integrity and the signature (if signed and the public key of the
+   * sender is provided) are verified and the plain data is discarded
+   *
+   * Implementations are thread-safe, several messages may be verified concurrently. Messages for anonymous
+   * recipients (wildcard key id) are decrypted by trying the decryption keys of the receiver, the matching key
+   * is reported in the verdict
+   *
+   * @param passwordOfReceiversPrivateKey
+   *    the password of the receivers private key
+   * @param privateKeyOfReceiver
+   *    the receiver's private key
+   * @param publicKeyOfSender
+   *    the sender's public key (optional)
+   * @param encryptedData
+   *    the encrypted data
+   * @return the verdict
+   */
+  VerificationResult verify(String passwordOfReceiversPrivateKey, InputStream privateKeyOfReceiver, InputStream publicKeyOfSender, InputStream encryptedData);
+
+  /**
+   * opens a stream providing the plain data of the encrypted data as it is read, the data is decrypted and
+   * decompressed lazily without intermediate buffering, integrity and signature (if signed and the public key
+   * of the sender is provided) are verified once the end of the stream is reached
+   *
+   * @param passwordOfReceiversPrivateKey
+   *    the password of the receivers private key
+   * @param privateKeyOfReceiver
+   *    the receiver's private key
+   * @param publicKeyOfSender
+   *    the sender's public key (optional)
+   * @param encryptedData
+   *    the encrypted data, closed with the returned stream
+   * @return the plain data stream or null if the data cannot be decrypted
+   */
+  DecryptingInputStream decryptingStream(String passwordOfReceiversPrivateKey, InputStream privateKeyOfReceiver, InputStream publicKeyOfSender, InputStream encryptedData);
+
+  /**
+   * creates a processor encrypting the plain data pushed in chunks, the encrypted (ascii-armored) data is
+   * pushed to the subscriber, which receives true once the message is complete. The keys are read when
+   * the first chunk arrives, failures are signalled to the subscriber.
+   *
+   * @param publicKeyOfRecipient
+   *    the public key stream of the message recipient
+   * @param privateKeyOfSender
+   *    the private key stream of the message sender (optional, the message is signed if set)
+   * @param userIdOfSender
+   *    the user id of the message sender
+   * @param passwordOfSendersPrivateKey
+   *    the password for the private key of the sender
+   * @param inputDataName
+   *    the (file)name of the input data
+   * @param subscriber
+   *    the subscriber of the encrypted data
+   * @return the processor receiving the plain data
+   */
+  ChunkProcessor encryptingProcessor(InputStream publicKeyOfRecipient, InputStream privateKeyOfSender, String userIdOfSender, String passwordOfSendersPrivateKey, String inputDataName, ChunkSubscriber<Boolean> subscriber);
+
+  /**
+   * creates a processor decrypting the encrypted data pushed in chunks, the plain data is pushed to the
+   * subscriber as it is decrypted, which receives the integrity and signature verdict once the input is
+   * complete. Decryption lags the input by a bounded read-ahead, so it never waits for data not yet pushed.
+   *
+   * @param passwordOfReceiversPrivateKey
+   *    the password of the receivers private key
+   * @param privateKeyOfReceiver
+   *    the receiver's private key
+   * @param publicKeyOfSender
+   *    the sender's public key (optional)
+   * @param subscriber
+   *    the subscriber of the plain data
+   * @return the processor receiving the encrypted data
+   */
+  ChunkProcessor decryptingProcessor(String passwordOfReceiversPrivateKey, InputStream privateKeyOfReceiver, InputStream publicKeyOfSender, ChunkSubscriber<VerificationResult> subscriber);
+
 }
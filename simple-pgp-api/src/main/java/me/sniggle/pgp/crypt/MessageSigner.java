@@ -2,6 +2,7 @@ package me.sniggle.pgp.crypt;
 
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Path;
 
 /**
  * The definition of a simple PGP message signer
@@ -23,6 +24,19 @@ public interface MessageSigner {
    */
   boolean verifyMessage(InputStream publicKeyOfSender, InputStream message, InputStream signatureStream);
 
+  /**
+   * verifies the message file with the (detached) signature file, large files are memory mapped
+   *
+   * @param publicKeyOfSender
+   *    the public key of the sender of the message
+   * @param message
+   *    the message / data file to verify
+   * @param signature
+   *    the (detached) signature file
+   * @return true if verification successful
+   */
+  boolean verifyMessage(InputStream publicKeyOfSender, Path message, Path signature);
+
   /**
    * signs the given message to enable the receiver to verify the data authenticity
    *
@@ -40,4 +54,80 @@ public interface MessageSigner {
    */
   boolean signMessage(InputStream privateKeyOfSender, String userIdForPrivateKey, String passwordOfPrivateKey, InputStream message, OutputStream signature);
 
+  /**
+   * signs the given message file, large files are memory mapped
+   *
+   * @param privateKeyOfSender
+   *    the private key of the sender
+   * @param userIdForPrivateKey
+   *    the user id of the sender
+   * @param passwordOfPrivateKey
+   *    the password for the private key
+   * @param message
+   *    the message / data file to sign
+   * @param signature
+   *    the (detached) signature target file
+   * @return true if message/data was signed successfully
+   */
+  boolean signMessage(InputStream privateKeyOfSender, String userIdForPrivateKey, String passwordOfPrivateKey, Path message, Path signature);
+
+  /**
+   * verifies the in-memory message against the in-memory (detached) signature
+   *
+   * @param publicKeyOfSender
+   *    the public key of the sender of the message
+   * @param message
+   *    the message / data to verify
+   * @param signature
+   *    the (detached) signature
+   * @return true if the message is verified by the signature
+   */
+  boolean verifyMessage(InputStream publicKeyOfSender, byte[] message, byte[] signature);
+
+  /**
+   * creates a (detached) signature of the in-memory message, written into a buffer sized to the maximum signature
+   * length in advance
+   *
+   * @param privateKeyOfSender
+   *    the private key of the sender
+   * @param userIdForPrivateKey
+   *    the user id of the sender
+   * @param passwordOfPrivateKey
+   *    the password for the private key
+   * @param message
+   *    the message / data to sign
+   * @return the (ascii-armored) signature or null if signing failed
+   */
+  byte[] signMessage(InputStream privateKeyOfSender, String userIdForPrivateKey, String passwordOfPrivateKey, byte[] message);
+
+  /**
+   * creates a processor signing the message pushed in chunks, the (ascii-armored, detached) signature is
+   * pushed to the subscriber once the input is complete, followed by true
+   *
+   * @param privateKeyOfSender
+   *    the private key of the sender
+   * @param userIdForPrivateKey
+   *    the user id of the sender
+   * @param passwordOfPrivateKey
+   *    the password for the private key
+   * @param subscriber
+   *    the subscriber of the signature
+   * @return the processor receiving the message
+   */
+  ChunkProcessor signingProcessor(InputStream privateKeyOfSender, String userIdForPrivateKey, String passwordOfPrivateKey, ChunkSubscriber<Boolean> subscriber);
+
+  /**
+   * creates a processor verifying the message pushed in chunks against a (detached) signature, the
+   * subscriber receives the verdict once the input is complete
+   *
+   * @param publicKeyOfSender
+   *    the public key of the sender of the message
+   * @param signature
+   *    the (detached) signature
+   * @param subscriber
+   *    the subscriber of the verdict
+   * @return the processor receiving the message
+   */
+  ChunkProcessor verifyingProcessor(InputStream publicKeyOfSender, InputStream signature, ChunkSubscriber<Boolean> subscriber);
+
 }
@@ -0,0 +1,71 @@
+package me.sniggle.pgp.crypt;
+
+import java.nio.file.Path;
+
+/**
+ * The statistics of the reload of a watched key ring file
+ */
+public final class ReloadResult {
+
+  private final Path file;
+  private final int keyRingsRead;
+  private final int keyRingsChanged;
+  private final int keyRingsRemoved;
+  private final long elapsedNanos;
+
+  /**
+   * @param file
+   *    the reloaded file
+   * @param keyRingsRead
+   *    the number of key rings in the file (0 if it has been deleted)
+   * @param keyRingsChanged
+   *    the number of new or changed key rings parsed
+   * @param keyRingsRemoved
+   *    the number of key rings no longer in the file
+   * @param elapsedNanos
+   *    the time the reload took
+   */
+  public ReloadResult(Path file, int keyRingsRead, int keyRingsChanged, int keyRingsRemoved, long elapsedNanos) {
+    this.file = file;
+    this.keyRingsRead = keyRingsRead;
+    this.keyRingsChanged = keyRingsChanged;
+    this.keyRingsRemoved = keyRingsRemoved;
+    this.elapsedNanos = elapsedNanos;
+  }
+
+  /**
+   * @return the reloaded file
+   */
+  public Path getFile() {
+    return file;
+  }
+
+  /**
+   * @return the number of key rings in the file (0 if it has been deleted)
+   */
+  public int getKeyRingsRead() {
+    return keyRingsRead;
+  }
+
+  /**
+   * @return the number of new or changed key rings parsed
+   */
+  public int getKeyRingsChanged() {
+    return keyRingsChanged;
+  }
+
+  /**
+   * @return the number of key rings no longer in the file
+   */
+  public int getKeyRingsRemoved() {
+    return keyRingsRemoved;
+  }
+
+  /**
+   * @return the time the reload took
+   */
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+
+}
@@ -0,0 +1,74 @@
+package me.sniggle.pgp.crypt;
+
+import java.util.Arrays;
+
+/**
+ * The symmetric session key of an encrypted message, allows repeated decryption of the
+ * same message without the receiver's private key
+ *
+ * Session keys grant access to the message content and need to be stored as securely as private keys!
+ */
+public final class SessionKey {
+
+  private final int algorithm;
+  private final byte[] key;
+
+  /**
+   * @param algorithm
+   *    the symmetric encryption algorithm constant
+   * @param key
+   *    the raw key bytes
+   */
+  public SessionKey(int algorithm, byte[] key) {
+    this.algorithm = algorithm;
+    this.key = Arrays.copyOf(key, key.length);
+  }
+
+  /**
+   * the symmetric encryption algorithm of the message
+   *
+   * @return the algorithm constant (see AlgorithmSelection)
+   */
+  public int getAlgorithm() {
+    return algorithm;
+  }
+
+  /**
+   * the raw key bytes
+   *
+   * @return a copy of the key bytes
+   */
+  public byte[] getKey() {
+    return Arrays.copyOf(key, key.length);
+  }
+
+  /**
+   * overwrites the key bytes, the session key cannot be used afterwards
+   */
+  public void clear() {
+    Arrays.fill(key, (byte)0);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if( this == o ) {
+      return true;
+    }
+    if( !(o instanceof SessionKey) ) {
+      return false;
+    }
+    SessionKey that = (SessionKey) o;
+    return algorithm == that.algorithm && Arrays.equals(key, that.key);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * algorithm + Arrays.hashCode(key);
+  }
+
+  @Override
+  public String toString() {
+    return "SessionKey{algorithm=" + algorithm + ", key=********}";
+  }
+
+}
@@ -0,0 +1,156 @@
+package me.sniggle.pgp.crypt;
+
+/**
+ * The verdict of decrypting and verifying an encrypted message
+ */
+public final class VerificationResult {
+
+  private final boolean decrypted;
+  private final boolean integrityProtected;
+  private final boolean integrityVerified;
+  private final boolean signed;
+  private final boolean signatureChecked;
+  private final boolean signatureVerified;
+  private final long signerKeyId;
+  private final long decryptionKeyId;
+  private final long length;
+  private final String failure;
+
+  /**
+   * @param decrypted
+   *    true if the data was decrypted completely
+   * @param integrityProtected
+   *    true if the encrypted data carries a modification detection code
+   * @param integrityVerified
+   *    true if the modification detection code was verified successfully
+   * @param signed
+   *    true if the message carries a (one-pass) signature
+   * @param signatureChecked
+   *    true if the signature was checked against the sender's public key
+   * @param signatureVerified
+   *    true if the signature was verified successfully
+   * @param signerKeyId
+   *    the key id of the signer, 0 if unsigned
+   * @param decryptionKeyId
+   *    the key id of the private key which decrypted the session key, 0 if not decrypted
+   * @param length
+   *    the length of the plain data in bytes
+   * @param failure
+   *    the reason of the failure, null if none occured
+   */
+  public VerificationResult(boolean decrypted, boolean integrityProtected, boolean integrityVerified, boolean signed, boolean signatureChecked,
+                            boolean signatureVerified, long signerKeyId, long decryptionKeyId, long length, String failure) {
+    this.decrypted = decrypted;
+    this.integrityProtected = integrityProtected;
+    this.integrityVerified = integrityVerified;
+    this.signed = signed;
+    this.signatureChecked = signatureChecked;
+    this.signatureVerified = signatureVerified;
+    this.signerKeyId = signerKeyId;
+    this.decryptionKeyId = decryptionKeyId;
+    this.length = length;
+    this.failure = failure;
+  }
+
+  /**
+   * creates the verdict of a message that could not be processed
+   *
+   * @param failure
+   *    the reason of the failure
+   * @return the failed verdict
+   */
+  public static VerificationResult failed(String failure) {
+    return new VerificationResult(false, false, false, false, false, false, 0L, 0L, 0L, failure);
+  }
+
+  /**
+   * @return true if the data was decrypted completely
+   */
+  public boolean isDecrypted() {
+    return decrypted;
+  }
+
+  /**
+   * @return true if the encrypted data carries a modification detection code
+   */
+  public boolean isIntegrityProtected() {
+    return integrityProtected;
+  }
+
+  /**
+   * @return true if the modification detection code was verified successfully
+   */
+  public boolean isIntegrityVerified() {
+    return integrityVerified;
+  }
+
+  /**
+   * @return true if the message carries a (one-pass) signature
+   */
+  public boolean isSigned() {
+    return signed;
+  }
+
+  /**
+   * @return true if the signature was checked, i.e. the sender's public key was provided
+   */
+  public boolean isSignatureChecked() {
+    return signatureChecked;
+  }
+
+  /**
+   * @return true if the signature was verified successfully
+   */
+  public boolean isSignatureVerified() {
+    return signatureVerified;
+  }
+
+  /**
+   * @return the key id of the signer, 0 if unsigned
+   */
+  public long getSignerKeyId() {
+    return signerKeyId;
+  }
+
+  /**
+   * the key which decrypted the session key, for anonymous recipients the key found by trial decryption
+   *
+   * @return the key id of the decryption key, 0 if not decrypted
+   */
+  public long getDecryptionKeyId() {
+    return decryptionKeyId;
+  }
+
+  /**
+   * @return the length of the plain data in bytes
+   */
+  public long getLength() {
+    return length;
+  }
+
+  /**
+   * @return the reason of the failure, null if none occured
+   */
+  public String getFailure() {
+    return failure;
+  }
+
+  /**
+   * the overall verdict: decrypted, integrity verified (if protected) and signature verified (if signed and checked)
+   *
+   * @return true if the message is valid
+   */
+  public boolean isValid() {
+    return decrypted && failure == null
+        && (!integrityProtected || integrityVerified)
+        && (!signed || !signatureChecked || signatureVerified);
+  }
+
+  @Override
+  public String toString() {
+    return "VerificationResult{decrypted=" + decrypted + ", integrityProtected=" + integrityProtected + ", integrityVerified=" + integrityVerified
+        + ", signed=" + signed + ", signatureChecked=" + signatureChecked + ", signatureVerified=" + signatureVerified
+        + ", signerKeyId=" + signerKeyId + ", decryptionKeyId=" + decryptionKeyId + ", length=" + length + ", failure=" + failure + "}";
+  }
+
+}
@@ -93,6 +93,26 @@ public final class AlgorithmSelection {
     };
   }
 
+  /**
+   * the hash algorithm of the S2K function protecting secret keys, the default of the OpenPGP libraries
+   *
+   * @return SHA-1
+   */
+  public static int getDefaultS2KHashAlgorithm() {
+    //HashAlgorithmTags.SHA1
+    return 2;
+  }
+
+  /**
+   * the coded iteration count of the S2K function protecting secret keys (RFC 4880, 3.7.1.3), the default of
+   * the OpenPGP libraries
+   *
+   * @return 0x60 (65536 hashed octets)
+   */
+  public static int getDefaultS2KCount() {
+    return 0x60;
+  }
+
   /**
    * the strongest suggested symmetric encryption algorithm
    *
@@ -20,6 +20,8 @@ public abstract class BaseKeyPairGenerator implements KeyPairGenerator {
    * flag to indicate whether the the Java Unlimited Strength library is installed, needs to be set manually!
    */
   private boolean unlimitedStrengthEncryption = false;
+  private int s2kHashAlgorithm = AlgorithmSelection.getDefaultS2KHashAlgorithm();
+  private int s2kCount = AlgorithmSelection.getDefaultS2KCount();
 
   protected BaseKeyPairGenerator() {
     super();
@@ -104,6 +106,45 @@ public abstract class BaseKeyPairGenerator implements KeyPairGenerator {
     this.unlimitedStrengthEncryption = unlimitedStrengthEncryption;
   }
 
+  /**
+   * accessor to the hash algorithm of the S2K function protecting the secret keys
+   *
+   * @return the hash algorithm constant
+   */
+  protected int getS2KHashAlgorithm() {
+    return s2kHashAlgorithm;
+  }
+
+  /**
+   * set the hash algorithm of the S2K function protecting the secret keys
+   *
+   * @param s2kHashAlgorithm
+   *    the hash algorithm constant
+   */
+  public void setS2KHashAlgorithm(int s2kHashAlgorithm) {
+    this.s2kHashAlgorithm = s2kHashAlgorithm;
+  }
+
+  /**
+   * accessor to the coded iteration count of the S2K function protecting the secret keys
+   *
+   * @return the coded count (0 to 255)
+   */
+  protected int getS2KCount() {
+    return s2kCount;
+  }
+
+  /**
+   * set the coded iteration count of the S2K function protecting the secret keys (RFC 4880, 3.7.1.3), the
+   * count determines the time needed to unlock a secret key, see KeyProtector#calibrate(long)
+   *
+   * @param s2kCount
+   *    the coded count (0 to 255)
+   */
+  public void setS2KCount(int s2kCount) {
+    this.s2kCount = s2kCount;
+  }
+
   /**
    * @see KeyPairGenerator#generateKeyPair(String, String, OutputStream, OutputStream)
    *
@@ -0,0 +1,291 @@
+package me.sniggle.pgp.crypt.internal.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads OpenPGP ascii-armor (RFC 4880, 6.2) decoding the data in blocks instead of byte by byte.
+ *
+ * Text preceding the armor header line is skipped, armor headers are collected and the checksum is verified
+ * when the end of the armored data is reached. Only the first armored block of the stream is read, clear
+ * signed messages are not supported.
+ */
+public class ArmorInputStream extends InputStream {
+
+  private static final byte[] DECODING_TABLE = new byte[128];
+
+  static {
+    for( int i = 0; i < DECODING_TABLE.length; i++ ) {
+      DECODING_TABLE[i] = -1;
+    }
+    for( int i = 0; i < ArmorOutputStream.ENCODING_TABLE.length; i++ ) {
+      DECODING_TABLE[ArmorOutputStream.ENCODING_TABLE[i]] = (byte) i;
+    }
+  }
+
+  /**
+   * the size of the encoded input read at once
+   */
+  private static final int BUFFER_SIZE = 8192;
+
+  private final InputStream in;
+  private final byte[] input = new byte[BUFFER_SIZE];
+  private final byte[] decoded = new byte[BUFFER_SIZE];
+  private final byte[] single = new byte[1];
+  private final CRC24 crc = new CRC24();
+  private final List<String> armorHeaders = new ArrayList<>();
+  private String armorHeaderLine;
+  private int inputPosition = 0;
+  private int inputLength = 0;
+  private int decodedPosition = 0;
+  private int decodedLength = 0;
+  private int quad = 0;
+  private int quadLength = 0;
+  private boolean lineStart = true;
+  private boolean started = false;
+  private boolean finished = false;
+
+  /**
+   * @param in
+   *    the armored stream
+   */
+  public ArmorInputStream(InputStream in) {
+    this.in = in;
+  }
+
+  /**
+   * provides the binary data of a possibly armored stream, a stream is considered binary if its first byte
+   * is a valid packet tag
+   *
+   * @param in
+   *    the armored or binary stream
+   * @return the stream of binary data
+   * @throws IOException
+   */
+  public static InputStream decode(InputStream in) throws IOException {
+    PushbackInputStream result = new PushbackInputStream(in, 1);
+    int first = result.read();
+    if( first != -1 ) {
+      result.unread(first);
+    }
+    return ((first & 0x80) != 0) ? result : new ArmorInputStream(result);
+  }
+
+  /**
+   * @return the armor header line (e.g. -----BEGIN PGP MESSAGE-----) or null if it has not been read yet
+   */
+  public String getArmorHeaderLine() {
+    return armorHeaderLine;
+  }
+
+  /**
+   * @return the armor headers (e.g. Version: ...) read so far
+   */
+  public List<String> getArmorHeaders() {
+    return Collections.unmodifiableList(armorHeaders);
+  }
+
+  private boolean fillInput() throws IOException {
+    inputPosition = 0;
+    inputLength = Math.max(0, in.read(input, 0, input.length));
+    return inputLength > 0;
+  }
+
+  private int nextInput() throws IOException {
+    return (inputPosition < inputLength || fillInput()) ? input[inputPosition++] & 0xff : -1;
+  }
+
+  /**
+   * reads a line of the armor frame
+   *
+   * @return the line without line separator or null at the end of the stream
+   * @throws IOException
+   */
+  private String readLine() throws IOException {
+    StringBuilder result = new StringBuilder();
+    int c;
+    while( (c = nextInput()) != -1 && c != '\n' ) {
+      if( c != '\r' ) {
+        result.append((char) c);
+      }
+    }
+    return (c == -1 && result.length() == 0) ? null : result.toString();
+  }
+
+  /**
+   * skips to the armor header line and reads the armor headers
+   *
+   * @throws IOException
+   */
+  private void start() throws IOException {
+    started = true;
+    String line;
+    while( (line = readLine()) != null && !line.startsWith("-----BEGIN PGP ") ) {
+    }
+    if( line == null ) {
+      throw new IOException("No armor header line found");
+    }
+    if( line.startsWith("-----BEGIN PGP SIGNED MESSAGE") ) {
+      throw new IOException("Clear signed messages are not supported");
+    }
+    armorHeaderLine = line.trim();
+    while( (line = readLine()) != null && line.trim().length() > 0 && line.indexOf(':') > 0 ) {
+      armorHeaders.add(line);
+    }
+    if( line != null && line.trim().length() > 0 ) {
+      decodeLine(line);
+    }
+  }
+
+  /**
+   * decodes a body line read as armor header line (missing blank line after the armor headers)
+   */
+  private void decodeLine(String line) throws IOException {
+    for( int i = 0; i < line.length(); i++ ) {
+      decodeCharacter(line.charAt(i));
+    }
+    lineStart = true;
+    crc.update(decoded, 0, decodedLength);
+  }
+
+  private void decodeCharacter(int c) throws IOException {
+    if( c == '=' ) {
+      flushQuad();
+    } else if( c != ' ' && c != '\t' && c != '\r' ) {
+      int value = (c < DECODING_TABLE.length) ? DECODING_TABLE[c] : -1;
+      if( value < 0 ) {
+        throw new IOException("Invalid character in armored data: " + c);
+      }
+      quad = (quad << 6) | value;
+      if( ++quadLength == 4 ) {
+        decoded[decodedLength++] = (byte) (quad >>> 16);
+        decoded[decodedLength++] = (byte) (quad >>> 8);
+        decoded[decodedLength++] = (byte) quad;
+        quadLength = 0;
+      }
+    }
+  }
+
+  /**
+   * decodes the incomplete final quad of the data
+   */
+  private void flushQuad() {
+    if( quadLength == 2 ) {
+      decoded[decodedLength++] = (byte) (quad >>> 4);
+    } else if( quadLength == 3 ) {
+      decoded[decodedLength++] = (byte) (quad >>> 10);
+      decoded[decodedLength++] = (byte) (quad >>> 2);
+    }
+    quadLength = 0;
+  }
+
+  /**
+   * decodes the next block of the armored data
+   *
+   * @throws IOException
+   */
+  private void fill() throws IOException {
+    decodedPosition = 0;
+    decodedLength = 0;
+    boolean endOfData = false;
+    while( decodedLength == 0 && !endOfData ) {
+      if( inputPosition == inputLength && !fillInput() ) {
+        throw new EOFException("Unexpected end of armored data");
+      }
+      int limit = Math.min(inputLength, inputPosition + (decoded.length - 3) / 3 * 4);
+      int i = inputPosition;
+      while( i < limit ) {
+        int c = input[i] & 0xff;
+        if( c == '\n' ) {
+          lineStart = true;
+        } else if( lineStart && (c == '=' || c == '-') ) {
+          endOfData = true;
+          break;
+        } else if( c != '\r' ) {
+          lineStart = false;
+          decodeCharacter(c);
+        }
+        i++;
+      }
+      inputPosition = i;
+    }
+    if( endOfData ) {
+      flushQuad();
+    }
+    crc.update(decoded, 0, decodedLength);
+    if( endOfData ) {
+      finish();
+    }
+  }
+
+  /**
+   * reads checksum and armor tail line
+   *
+   * @throws IOException
+   */
+  private void finish() throws IOException {
+    finished = true;
+    String line = readLine();
+    if( line != null && line.startsWith("=") ) {
+      String checksum = line.trim();
+      int value = 0;
+      for( int i = 1; i < 5 && i < checksum.length(); i++ ) {
+        int c = checksum.charAt(i);
+        int sextet = (c < DECODING_TABLE.length) ? DECODING_TABLE[c] : -1;
+        if( sextet < 0 ) {
+          throw new IOException("Invalid armor checksum");
+        }
+        value = (value << 6) | sextet;
+      }
+      if( checksum.length() != 5 || value != crc.getValue() ) {
+        throw new IOException("Armor checksum verification failed");
+      }
+      line = readLine();
+    }
+    if( line == null || !line.startsWith("-----END PGP ") ) {
+      throw new IOException("No armor tail line found");
+    }
+  }
+
+  @Override
+  public int read() throws IOException {
+    return (read(single, 0, 1) == -1) ? -1 : single[0] & 0xff;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int length) throws IOException {
+    if( !started ) {
+      start();
+    }
+    int result = -1;
+    if( length == 0 ) {
+      result = 0;
+    } else {
+      if( decodedPosition == decodedLength && !finished ) {
+        fill();
+      }
+      if( decodedPosition < decodedLength ) {
+        result = Math.min(length, decodedLength - decodedPosition);
+        System.arraycopy(decoded, decodedPosition, buffer, offset, result);
+        decodedPosition += result;
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public int available() {
+    return decodedLength - decodedPosition;
+  }
+
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+
+}
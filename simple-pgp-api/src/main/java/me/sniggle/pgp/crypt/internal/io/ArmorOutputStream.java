@@ -0,0 +1,196 @@
+package me.sniggle.pgp.crypt.internal.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes OpenPGP ascii-armor (RFC 4880, 6.2) encoding the data in blocks instead of byte by byte.
+ *
+ * The output matches the armor written by the crypto provider: the armor type is derived from the tag of the
+ * first packet, the header is written with the first byte and lines hold 64 characters. Closing the stream
+ * writes checksum and footer but does not close the target stream.
+ */
+public class ArmorOutputStream extends OutputStream {
+
+  static final byte[] ENCODING_TABLE = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(StandardCharsets.US_ASCII);
+
+  /**
+   * the number of base64 characters per line
+   */
+  private static final int LINE_LENGTH = 64;
+
+  /**
+   * the number of encoded lines collected before they are written to the target
+   */
+  private static final int LINES_PER_WRITE = 64;
+
+  private static final String LINE_SEPARATOR = System.getProperty("line.separator", "\n");
+
+  private final OutputStream out;
+  private final String version;
+  private final byte[] lineSeparator = LINE_SEPARATOR.getBytes(StandardCharsets.US_ASCII);
+  private final byte[] encoded;
+  private final byte[] pending = new byte[3];
+  private final byte[] single = new byte[1];
+  private final CRC24 crc = new CRC24();
+  private String type;
+  private int pendingLength = 0;
+  private int encodedLength = 0;
+  private int lineLength = 0;
+  private boolean closed = false;
+
+  /**
+   * @param out
+   *    the target stream
+   * @param version
+   *    the value of the version header, null if the header is omitted
+   */
+  public ArmorOutputStream(OutputStream out, String version) {
+    this.out = out;
+    this.version = version;
+    this.encoded = new byte[LINES_PER_WRITE * (LINE_LENGTH + lineSeparator.length)];
+  }
+
+  /**
+   * determines the armor type of the packet tag
+   *
+   * @param firstByte
+   *    the first byte of the packet stream
+   * @return the armor type
+   */
+  private static String armorType(int firstByte) {
+    int tag = ((firstByte & 0x40) != 0) ? firstByte & 0x3f : (firstByte & 0x3f) >> 2;
+    String result;
+    switch( tag ) {
+      case 2:
+        result = "SIGNATURE";
+        break;
+      case 5:
+        result = "PRIVATE KEY BLOCK";
+        break;
+      case 6:
+        result = "PUBLIC KEY BLOCK";
+        break;
+      default:
+        result = "MESSAGE";
+        break;
+    }
+    return result;
+  }
+
+  private void writeAscii(String text) throws IOException {
+    out.write(text.getBytes(StandardCharsets.US_ASCII));
+  }
+
+  private void writeHeader(int firstByte) throws IOException {
+    type = armorType(firstByte);
+    writeAscii("-----BEGIN PGP " + type + "-----" + LINE_SEPARATOR);
+    if( version != null ) {
+      writeAscii("Version: " + version + LINE_SEPARATOR);
+    }
+    writeAscii(LINE_SEPARATOR);
+  }
+
+  private void drain() throws IOException {
+    if( encodedLength > 0 ) {
+      out.write(encoded, 0, encodedLength);
+      encodedLength = 0;
+    }
+  }
+
+  /**
+   * encodes three bytes as four characters, breaks the line if it is complete
+   */
+  private void encodeTriple(int b1, int b2, int b3) throws IOException {
+    if( encodedLength + 4 + lineSeparator.length > encoded.length ) {
+      drain();
+    }
+    encoded[encodedLength++] = ENCODING_TABLE[b1 >>> 2];
+    encoded[encodedLength++] = ENCODING_TABLE[((b1 << 4) | (b2 >>> 4)) & 0x3f];
+    encoded[encodedLength++] = ENCODING_TABLE[((b2 << 2) | (b3 >>> 6)) & 0x3f];
+    encoded[encodedLength++] = ENCODING_TABLE[b3 & 0x3f];
+    lineLength += 4;
+    if( lineLength == LINE_LENGTH ) {
+      for( byte separator : lineSeparator ) {
+        encoded[encodedLength++] = separator;
+      }
+      lineLength = 0;
+    }
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    single[0] = (byte) b;
+    write(single, 0, 1);
+  }
+
+  @Override
+  public void write(byte[] buffer, int offset, int length) throws IOException {
+    if( closed ) {
+      throw new IOException("Armor stream closed");
+    }
+    if( length > 0 ) {
+      if( type == null ) {
+        writeHeader(buffer[offset]);
+      }
+      crc.update(buffer, offset, length);
+      int end = offset + length;
+      while( pendingLength > 0 && pendingLength < 3 && offset < end ) {
+        pending[pendingLength++] = buffer[offset++];
+      }
+      if( pendingLength == 3 ) {
+        encodeTriple(pending[0] & 0xff, pending[1] & 0xff, pending[2] & 0xff);
+        pendingLength = 0;
+      }
+      while( end - offset >= 3 ) {
+        encodeTriple(buffer[offset] & 0xff, buffer[offset + 1] & 0xff, buffer[offset + 2] & 0xff);
+        offset += 3;
+      }
+      while( offset < end ) {
+        pending[pendingLength++] = buffer[offset++];
+      }
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+    drain();
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if( !closed ) {
+      closed = true;
+      if( type != null ) {
+        if( pendingLength > 0 ) {
+          int b1 = pending[0] & 0xff;
+          int b2 = (pendingLength > 1) ? pending[1] & 0xff : 0;
+          if( encodedLength + 4 > encoded.length ) {
+            drain();
+          }
+          encoded[encodedLength++] = ENCODING_TABLE[b1 >>> 2];
+          encoded[encodedLength++] = ENCODING_TABLE[((b1 << 4) | (b2 >>> 4)) & 0x3f];
+          encoded[encodedLength++] = (pendingLength > 1) ? ENCODING_TABLE[(b2 << 2) & 0x3f] : (byte) '=';
+          encoded[encodedLength++] = (byte) '=';
+          lineLength += 4;
+        }
+        drain();
+        if( lineLength > 0 ) {
+          out.write(lineSeparator);
+        }
+        int checksum = crc.getValue();
+        out.write('=');
+        out.write(ENCODING_TABLE[(checksum >>> 18) & 0x3f]);
+        out.write(ENCODING_TABLE[(checksum >>> 12) & 0x3f]);
+        out.write(ENCODING_TABLE[(checksum >>> 6) & 0x3f]);
+        out.write(ENCODING_TABLE[checksum & 0x3f]);
+        out.write(lineSeparator);
+        writeAscii("-----END PGP " + type + "-----" + LINE_SEPARATOR);
+      }
+      out.flush();
+    }
+  }
+
+}
@@ -0,0 +1,271 @@
+package me.sniggle.pgp.crypt.internal.io;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pool of fixed size processing buffers, heap chunks for the stream paths and direct (off-heap) chunks
+ * for the NIO paths.
+ *
+ * Released chunks are cached per thread, so acquiring and releasing a chunk does neither allocate nor
+ * contend with other threads once a thread has reached its steady state. Chunks not matching the current
+ * chunk size (e.g. after reconfiguration) and chunks exceeding the per thread cache are handed to a
+ * shared lock-free cache, chunks exceeding that one as well are left to the garbage collector.
+ *
+ * Short-lived threads (e.g. a virtual thread per operation) never reach a steady state, the per thread
+ * cache can be disabled for them so all chunks are reused through the shared cache.
+ */
+public class BufferPool {
+
+  /**
+   * the smallest supported chunk size, the minimum length of the first partial packet body
+   */
+  public static final int MIN_CHUNK_SIZE = 512;
+
+  private static volatile BufferPool defaultPool = new BufferPool();
+
+  private final ThreadLocal<Deque<byte[]>> heapChunks = new ThreadLocal<Deque<byte[]>>() {
+    @Override
+    protected Deque<byte[]> initialValue() {
+      return new ArrayDeque<>();
+    }
+  };
+  private final ThreadLocal<Deque<ByteBuffer>> directChunks = new ThreadLocal<Deque<ByteBuffer>>() {
+    @Override
+    protected Deque<ByteBuffer> initialValue() {
+      return new ArrayDeque<>();
+    }
+  };
+  private final Queue<byte[]> sharedHeapChunks = new ConcurrentLinkedQueue<>();
+  private final Queue<ByteBuffer> sharedDirectChunks = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger sharedHeapChunkCount = new AtomicInteger();
+  private final AtomicInteger sharedDirectChunkCount = new AtomicInteger();
+  private final AtomicLong acquisitions = new AtomicLong();
+  private final AtomicLong allocations = new AtomicLong();
+  private final AtomicLong directAcquisitions = new AtomicLong();
+  private final AtomicLong directAllocations = new AtomicLong();
+
+  private volatile int chunkSize = 16 * 1024;
+  private volatile int directChunkSize = 256 * 1024;
+  private volatile int maxChunksPerThread = 8;
+  private volatile int maxSharedChunks = 64;
+  private volatile boolean threadLocalCaching = true;
+
+  /**
+   * accessor to the pool used by default
+   *
+   * @return the default pool
+   */
+  public static BufferPool getDefault() {
+    return defaultPool;
+  }
+
+  /**
+   * replaces the pool used by default, engines created afterwards use the new pool
+   *
+   * @param bufferPool
+   *    the new default pool
+   */
+  public static void setDefault(BufferPool bufferPool) {
+    if( bufferPool == null ) {
+      throw new IllegalArgumentException("Buffer pool must not be null");
+    }
+    defaultPool = bufferPool;
+  }
+
+  /**
+   * the size of the heap chunks, should be a power of two as it is used for partial packet bodies
+   *
+   * @param chunkSize
+   *    the size in bytes (at least #MIN_CHUNK_SIZE)
+   */
+  public void setChunkSize(int chunkSize) {
+    if( chunkSize < MIN_CHUNK_SIZE ) {
+      throw new IllegalArgumentException("Chunk size must be at least " + MIN_CHUNK_SIZE + " bytes");
+    }
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * accessor to the size of the heap chunks
+   *
+   * @return the size in bytes
+   */
+  public int getChunkSize() {
+    return chunkSize;
+  }
+
+  /**
+   * the size of the direct chunks
+   *
+   * @param directChunkSize
+   *    the size in bytes (at least #MIN_CHUNK_SIZE)
+   */
+  public void setDirectChunkSize(int directChunkSize) {
+    if( directChunkSize < MIN_CHUNK_SIZE ) {
+      throw new IllegalArgumentException("Chunk size must be at least " + MIN_CHUNK_SIZE + " bytes");
+    }
+    this.directChunkSize = directChunkSize;
+  }
+
+  /**
+   * accessor to the size of the direct chunks
+   *
+   * @return the size in bytes
+   */
+  public int getDirectChunkSize() {
+    return directChunkSize;
+  }
+
+  /**
+   * the maximum number of released chunks (per kind) cached per thread
+   *
+   * @param maxChunksPerThread
+   *    the number of chunks
+   */
+  public void setMaxChunksPerThread(int maxChunksPerThread) {
+    this.maxChunksPerThread = maxChunksPerThread;
+  }
+
+  /**
+   * the maximum number of released chunks (per kind) cached for all threads
+   *
+   * @param maxSharedChunks
+   *    the number of chunks
+   */
+  public void setMaxSharedChunks(int maxSharedChunks) {
+    this.maxSharedChunks = maxSharedChunks;
+  }
+
+  /**
+   * enables or disables the per thread cache, should be disabled if the buffers are used by short-lived
+   * threads (e.g. virtual threads)
+   *
+   * @param threadLocalCaching
+   *    false to cache released chunks in the shared cache only
+   */
+  public void setThreadLocalCaching(boolean threadLocalCaching) {
+    this.threadLocalCaching = threadLocalCaching;
+  }
+
+  private static <T> T poll(Queue<T> sharedChunks, AtomicInteger sharedChunkCount) {
+    T result = sharedChunks.poll();
+    if( result != null ) {
+      sharedChunkCount.decrementAndGet();
+    }
+    return result;
+  }
+
+  private <T> void offer(Queue<T> sharedChunks, AtomicInteger sharedChunkCount, T chunk) {
+    if( sharedChunkCount.incrementAndGet() <= maxSharedChunks ) {
+      sharedChunks.offer(chunk);
+    } else {
+      sharedChunkCount.decrementAndGet();
+    }
+  }
+
+  /**
+   * takes a heap chunk from the pool, allocates a new one if none is cached
+   *
+   * @return the chunk of #getChunkSize() bytes
+   */
+  public byte[] acquire() {
+    acquisitions.incrementAndGet();
+    byte[] result = threadLocalCaching ? heapChunks.get().pollFirst() : null;
+    if( result == null ) {
+      result = poll(sharedHeapChunks, sharedHeapChunkCount);
+    }
+    if( result == null || result.length != chunkSize ) {
+      allocations.incrementAndGet();
+      result = new byte[chunkSize];
+    }
+    return result;
+  }
+
+  /**
+   * returns a heap chunk to the pool, the chunk must not be used afterwards
+   *
+   * @param chunk
+   *    the chunk (may be null)
+   */
+  public void release(byte[] chunk) {
+    if( chunk != null && chunk.length == chunkSize ) {
+      Deque<byte[]> cache = threadLocalCaching ? heapChunks.get() : null;
+      if( cache != null && cache.size() < maxChunksPerThread ) {
+        cache.offerFirst(chunk);
+      } else {
+        offer(sharedHeapChunks, sharedHeapChunkCount, chunk);
+      }
+    }
+  }
+
+  /**
+   * takes a cleared direct chunk from the pool, allocates a new one if none is cached
+   *
+   * @return the chunk of #getDirectChunkSize() bytes
+   */
+  public ByteBuffer acquireDirect() {
+    directAcquisitions.incrementAndGet();
+    ByteBuffer result = threadLocalCaching ? directChunks.get().pollFirst() : null;
+    if( result == null ) {
+      result = poll(sharedDirectChunks, sharedDirectChunkCount);
+    }
+    if( result == null || result.capacity() != directChunkSize ) {
+      directAllocations.incrementAndGet();
+      result = ByteBuffer.allocateDirect(directChunkSize);
+    }
+    result.clear();
+    return result;
+  }
+
+  /**
+   * returns a direct chunk to the pool, the chunk must not be used afterwards
+   *
+   * @param chunk
+   *    the chunk (may be null)
+   */
+  public void releaseDirect(ByteBuffer chunk) {
+    if( chunk != null && chunk.isDirect() && chunk.capacity() == directChunkSize ) {
+      Deque<ByteBuffer> cache = threadLocalCaching ? directChunks.get() : null;
+      if( cache != null && cache.size() < maxChunksPerThread ) {
+        cache.offerFirst(chunk);
+      } else {
+        offer(sharedDirectChunks, sharedDirectChunkCount, chunk);
+      }
+    }
+  }
+
+  /**
+   * @return the number of heap chunks acquired
+   */
+  public long getAcquisitions() {
+    return acquisitions.get();
+  }
+
+  /**
+   * @return the number of heap chunks allocated because none was cached
+   */
+  public long getAllocations() {
+    return allocations.get();
+  }
+
+  /**
+   * @return the number of direct chunks acquired
+   */
+  public long getDirectAcquisitions() {
+    return directAcquisitions.get();
+  }
+
+  /**
+   * @return the number of direct chunks allocated because none was cached
+   */
+  public long getDirectAllocations() {
+    return directAllocations.get();
+  }
+
+}
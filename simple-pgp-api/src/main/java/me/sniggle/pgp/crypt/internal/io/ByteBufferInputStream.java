@@ -0,0 +1,73 @@
+package me.sniggle.pgp.crypt.internal.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads directly from a (heap or direct) byte buffer
+ */
+public class ByteBufferInputStream extends InputStream {
+
+  private final ByteBuffer source;
+
+  /**
+   * @param source
+   *    the buffer to read from, starting at its position
+   */
+  public ByteBufferInputStream(ByteBuffer source) {
+    this.source = source;
+  }
+
+  @Override
+  public int read() {
+    return source.hasRemaining() ? (source.get() & 0xff) : -1;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int length) {
+    int result = -1;
+    if( length == 0 ) {
+      result = 0;
+    } else if( source.hasRemaining() ) {
+      result = Math.min(length, source.remaining());
+      source.get(buffer, offset, result);
+    }
+    return result;
+  }
+
+  @Override
+  public long skip(long n) {
+    int result = (int) Math.max(0, Math.min(n, source.remaining()));
+    source.position(source.position() + result);
+    return result;
+  }
+
+  @Override
+  public int available() {
+    return source.remaining();
+  }
+
+  /**
+   * writes the remaining data to the target without an intermediate buffer
+   *
+   * @param target
+   *    the target stream
+   * @return true if the data has been written, false if the buffer is not accessible without a copy
+   * @throws IOException
+   */
+  boolean writeTo(OutputStream target) throws IOException {
+    boolean result = true;
+    if( source.hasArray() ) {
+      target.write(source.array(), source.arrayOffset() + source.position(), source.remaining());
+      source.position(source.limit());
+    } else if( target instanceof FileChannelOutputStream ) {
+      ((FileChannelOutputStream) target).write(source);
+    } else {
+      result = false;
+    }
+    return result;
+  }
+
+}
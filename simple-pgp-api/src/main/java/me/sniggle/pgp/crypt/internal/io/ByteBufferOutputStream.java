@@ -0,0 +1,38 @@
+package me.sniggle.pgp.crypt.internal.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes directly into a (heap or direct) byte buffer of fixed capacity
+ */
+public class ByteBufferOutputStream extends OutputStream {
+
+  private final ByteBuffer target;
+
+  /**
+   * @param target
+   *    the buffer to write to, starting at its position
+   */
+  public ByteBufferOutputStream(ByteBuffer target) {
+    this.target = target;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    if( !target.hasRemaining() ) {
+      throw new IOException("Target buffer too small");
+    }
+    target.put((byte) b);
+  }
+
+  @Override
+  public void write(byte[] buffer, int offset, int length) throws IOException {
+    if( target.remaining() < length ) {
+      throw new IOException("Target buffer too small");
+    }
+    target.put(buffer, offset, length);
+  }
+
+}
@@ -0,0 +1,86 @@
+package me.sniggle.pgp.crypt.internal.io;
+
+/**
+ * The OpenPGP armor checksum (RFC 4880, 6.1) computed eight bytes at a time (slicing-by-8).
+ *
+ * The 24 bit register is kept left aligned in an int, so the tables are those of a non-reflected
+ * 32 bit CRC with the generator shifted by eight bits.
+ */
+public final class CRC24 {
+
+  private static final int INITIAL_VALUE = 0xb704ce;
+  private static final int GENERATOR = 0x864cfb << 8;
+
+  private static final int[][] TABLES = new int[8][256];
+
+  static {
+    for( int i = 0; i < 256; i++ ) {
+      int crc = i << 24;
+      for( int bit = 0; bit < 8; bit++ ) {
+        crc = ((crc & 0x80000000) != 0) ? (crc << 1) ^ GENERATOR : crc << 1;
+      }
+      TABLES[0][i] = crc;
+    }
+    for( int table = 1; table < 8; table++ ) {
+      for( int i = 0; i < 256; i++ ) {
+        int previous = TABLES[table - 1][i];
+        TABLES[table][i] = (previous << 8) ^ TABLES[0][previous >>> 24];
+      }
+    }
+  }
+
+  private int crc = INITIAL_VALUE << 8;
+
+  /**
+   * updates the checksum with a single byte
+   *
+   * @param b
+   *    the byte
+   */
+  public void update(int b) {
+    crc = (crc << 8) ^ TABLES[0][((crc >>> 24) ^ b) & 0xff];
+  }
+
+  /**
+   * updates the checksum with the given bytes
+   *
+   * @param buffer
+   *    the data
+   * @param offset
+   *    the offset of the first byte
+   * @param length
+   *    the number of bytes
+   */
+  public void update(byte[] buffer, int offset, int length) {
+    int[] t0 = TABLES[0], t1 = TABLES[1], t2 = TABLES[2], t3 = TABLES[3];
+    int[] t4 = TABLES[4], t5 = TABLES[5], t6 = TABLES[6], t7 = TABLES[7];
+    int value = crc;
+    int end = offset + length;
+    while( end - offset >= 8 ) {
+      int high = value ^ ((buffer[offset] & 0xff) << 24 | (buffer[offset + 1] & 0xff) << 16 | (buffer[offset + 2] & 0xff) << 8 | (buffer[offset + 3] & 0xff));
+      int low = (buffer[offset + 4] & 0xff) << 24 | (buffer[offset + 5] & 0xff) << 16 | (buffer[offset + 6] & 0xff) << 8 | (buffer[offset + 7] & 0xff);
+      value = t7[high >>> 24] ^ t6[(high >>> 16) & 0xff] ^ t5[(high >>> 8) & 0xff] ^ t4[high & 0xff]
+          ^ t3[low >>> 24] ^ t2[(low >>> 16) & 0xff] ^ t1[(low >>> 8) & 0xff] ^ t0[low & 0xff];
+      offset += 8;
+    }
+    while( offset < end ) {
+      value = (value << 8) ^ t0[((value >>> 24) ^ buffer[offset++]) & 0xff];
+    }
+    crc = value;
+  }
+
+  /**
+   * @return the 24 bit checksum
+   */
+  public int getValue() {
+    return crc >>> 8;
+  }
+
+  /**
+   * resets the checksum to its initial value
+   */
+  public void reset() {
+    crc = INITIAL_VALUE << 8;
+  }
+
+}
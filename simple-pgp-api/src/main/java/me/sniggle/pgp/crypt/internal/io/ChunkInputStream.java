@@ -0,0 +1,89 @@
+package me.sniggle.pgp.crypt.internal.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An input stream reading data pushed in chunks, reading never blocks: reading beyond the pushed data
+ * before the input has been completed fails with an IOException, so readers have to ensure enough data is
+ * available (see #available())
+ */
+public class ChunkInputStream extends InputStream {
+
+  private byte[] buffer;
+  private int position = 0;
+  private int limit = 0;
+  private boolean completed = false;
+
+  /**
+   * @param initialCapacity
+   *    the initial capacity of the buffer in bytes
+   */
+  public ChunkInputStream(int initialCapacity) {
+    this.buffer = new byte[initialCapacity];
+  }
+
+  /**
+   * appends the remaining data of the chunk
+   *
+   * @param chunk
+   *    the chunk, consumed completely
+   */
+  public void append(ByteBuffer chunk) {
+    int length = chunk.remaining();
+    if( limit + length > buffer.length ) {
+      int available = limit - position;
+      if( available + length > buffer.length ) {
+        byte[] grown = new byte[Math.max(2 * buffer.length, available + length)];
+        System.arraycopy(buffer, position, grown, 0, available);
+        buffer = grown;
+      } else {
+        System.arraycopy(buffer, position, buffer, 0, available);
+      }
+      position = 0;
+      limit = available;
+    }
+    chunk.get(buffer, limit, length);
+    limit += length;
+  }
+
+  /**
+   * marks the input as complete, reading beyond the pushed data signals the end of the stream
+   */
+  public void complete() {
+    completed = true;
+  }
+
+  @Override
+  public int read() throws IOException {
+    int result = -1;
+    if( position < limit ) {
+      result = buffer[position++] & 0xff;
+    } else if( !completed ) {
+      throw new IOException("Input underrun, more data needs to be pushed before reading");
+    }
+    return result;
+  }
+
+  @Override
+  public int read(byte[] target, int offset, int length) throws IOException {
+    int result = -1;
+    if( length == 0 ) {
+      result = 0;
+    } else if( position < limit ) {
+      result = Math.min(length, limit - position);
+      System.arraycopy(buffer, position, target, offset, result);
+      position += result;
+    } else if( !completed ) {
+      throw new IOException("Input underrun, more data needs to be pushed before reading");
+    }
+    return result;
+  }
+
+  @Override
+  public int available() {
+    return limit - position;
+  }
+
+}
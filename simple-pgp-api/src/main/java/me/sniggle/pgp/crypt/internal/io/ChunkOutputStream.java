@@ -0,0 +1,38 @@
+package me.sniggle.pgp.crypt.internal.io;
+
+import me.sniggle.pgp.crypt.ChunkSubscriber;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An output stream pushing the written data as chunks to a subscriber, closing the stream does not signal
+ * the subscriber
+ */
+public class ChunkOutputStream extends OutputStream {
+
+  private final ChunkSubscriber<?> subscriber;
+  private final byte[] single = new byte[1];
+
+  /**
+   * @param subscriber
+   *    the subscriber receiving the written data
+   */
+  public ChunkOutputStream(ChunkSubscriber<?> subscriber) {
+    this.subscriber = subscriber;
+  }
+
+  @Override
+  public void write(int b) {
+    single[0] = (byte) b;
+    write(single, 0, 1);
+  }
+
+  @Override
+  public void write(byte[] buffer, int offset, int length) {
+    if( length > 0 ) {
+      subscriber.onNext(ByteBuffer.wrap(buffer, offset, length).asReadOnlyBuffer());
+    }
+  }
+
+}
@@ -0,0 +1,139 @@
+package me.sniggle.pgp.crypt.internal.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a file through a file channel using a large pooled direct buffer, the file can be preallocated to the
+ * expected size and is truncated to the written size when closed
+ */
+public class FileChannelOutputStream extends OutputStream {
+
+  private final FileChannel channel;
+  private final BufferPool bufferPool;
+  private final ByteBuffer buffer;
+  private boolean closed = false;
+
+  /**
+   * @param path
+   *    the file to write (created or truncated)
+   * @param expectedSize
+   *    the expected size of the file used for preallocation, 0 if unknown
+   * @throws IOException
+   */
+  public FileChannelOutputStream(Path path, long expectedSize) throws IOException {
+    this(path, expectedSize, BufferPool.getDefault());
+  }
+
+  /**
+   * @param path
+   *    the file to write (created or truncated)
+   * @param expectedSize
+   *    the expected size of the file used for preallocation, 0 if unknown
+   * @param bufferPool
+   *    the pool providing the direct write buffer
+   * @throws IOException
+   */
+  public FileChannelOutputStream(Path path, long expectedSize, BufferPool bufferPool) throws IOException {
+    this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    try {
+      if( expectedSize > 0 ) {
+        channel.write(ByteBuffer.wrap(new byte[1]), expectedSize - 1);
+      }
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+    this.bufferPool = bufferPool;
+    this.buffer = bufferPool.acquireDirect();
+  }
+
+  /**
+   * writes the buffered data to the channel
+   *
+   * @throws IOException
+   */
+  private void drain() throws IOException {
+    buffer.flip();
+    while( buffer.hasRemaining() ) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    if( !buffer.hasRemaining() ) {
+      drain();
+    }
+    buffer.put((byte) b);
+  }
+
+  @Override
+  public void write(byte[] data, int offset, int length) throws IOException {
+    while( length > 0 ) {
+      int chunk = Math.min(length, buffer.remaining());
+      buffer.put(data, offset, chunk);
+      offset += chunk;
+      length -= chunk;
+      if( !buffer.hasRemaining() ) {
+        drain();
+      }
+    }
+  }
+
+  /**
+   * writes the buffered data and provides the channel for direct writes
+   *
+   * @return the channel, positioned at the end of the written data
+   * @throws IOException
+   */
+  FileChannel flushToChannel() throws IOException {
+    drain();
+    return channel;
+  }
+
+  /**
+   * writes the remaining data of the buffer, larger buffers are written to the channel directly
+   *
+   * @param source
+   *    the data to write
+   * @throws IOException
+   */
+  void write(ByteBuffer source) throws IOException {
+    if( source.remaining() <= buffer.remaining() ) {
+      buffer.put(source);
+    } else {
+      drain();
+      while( source.hasRemaining() ) {
+        channel.write(source);
+      }
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+    drain();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if( !closed ) {
+      closed = true;
+      try {
+        drain();
+        if( channel.size() > channel.position() ) {
+          channel.truncate(channel.position());
+        }
+      } finally {
+        bufferPool.releaseDirect(buffer);
+        channel.close();
+      }
+    }
+  }
+
+}
@@ -3,9 +3,15 @@ package me.sniggle.pgp.crypt.internal.io;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 /**
  * Helper class to unify stream handling
@@ -18,9 +24,14 @@ public class IOUtils {
   private static final Logger LOGGER = LoggerFactory.getLogger(IOUtils.class);
 
   /**
-   * the default buffer size when handling stream data
+   * files of at least this size are memory mapped for reading
    */
-  private static final int BUFFER_SIZE = 4096;
+  private static final long MAPPING_THRESHOLD = 256 * 1024;
+
+  /**
+   * the size of the buffer used to skip bytes of streams not supporting skip
+   */
+  private static final int SKIP_BUFFER_SIZE = 4096;
 
   /**
    *  StreamHandler defines a generic method to handle the stream data
@@ -53,7 +64,31 @@ public class IOUtils {
    */
   public static void copy(InputStream inputStream, OutputStream outputStream) throws IOException {
     LOGGER.trace("copy(InputStream, OutputStream)");
-    copy(inputStream, outputStream, new byte[BUFFER_SIZE]);
+    copy(inputStream, outputStream, BufferPool.getDefault());
+  }
+
+  /**
+   * copies the input stream to the output stream using a buffer of the pool, file and byte buffer backed streams
+   * are transferred without the buffer
+   *
+   * @param inputStream
+   *    the source stream
+   * @param outputStream
+   *    the target stream
+   * @param bufferPool
+   *    the pool providing the buffer
+   * @throws IOException
+   */
+  public static void copy(InputStream inputStream, OutputStream outputStream, BufferPool bufferPool) throws IOException {
+    LOGGER.trace("copy(InputStream, OutputStream, BufferPool)");
+    if( !transfer(inputStream, outputStream) ) {
+      byte[] buffer = bufferPool.acquire();
+      try {
+        copy(inputStream, outputStream, buffer, null);
+      } finally {
+        bufferPool.release(buffer);
+      }
+    }
   }
 
   /**
@@ -85,19 +120,54 @@ public class IOUtils {
    *    a stream handler that allows additional handling of the stream
    * @throws IOException
    */
-  public static void copy(InputStream inputStream, final OutputStream outputStream, byte[] buffer, final StreamHandler addtionalHandling) throws IOException {
+  public static void copy(InputStream inputStream, OutputStream outputStream, byte[] buffer, StreamHandler addtionalHandling) throws IOException {
     LOGGER.trace("copy(InputStream, OutputStream, byte[], StreamHandler)");
-    LOGGER.debug("buffer size: {} bytes", (buffer!=null) ? buffer.length : "null");
-    process(inputStream, new StreamHandler() {
-      @Override
-      public void handleStreamBuffer(byte[] buffer, int offset, int length) throws IOException {
-        outputStream.write(buffer, offset, length);
-        if( addtionalHandling != null ) {
-          addtionalHandling.handleStreamBuffer(buffer, offset, length);
-        }
+    long total = 0L;
+    int read;
+    while( (read = inputStream.read(buffer)) != -1 ) {
+      outputStream.write(buffer, 0, read);
+      if( addtionalHandling != null ) {
+        addtionalHandling.handleStreamBuffer(buffer, 0, read);
       }
+      total += read;
+    }
+    if( LOGGER.isDebugEnabled() ) {
+      LOGGER.debug("{} bytes copied using a buffer of {} bytes", total, buffer.length);
+    }
+  }
 
-    }, buffer);
+  /**
+   * transfers the input stream to the output stream without an intermediate heap buffer if both
+   * are backed by files or the input is backed by a byte buffer
+   *
+   * @param inputStream
+   *    the source stream
+   * @param outputStream
+   *    the target stream
+   * @return true if the stream has been transferred, false if the streams require a buffered copy
+   * @throws IOException
+   */
+  private static boolean transfer(InputStream inputStream, OutputStream outputStream) throws IOException {
+    boolean result = true;
+    if( inputStream instanceof FileInputStream && outputStream instanceof FileOutputStream ) {
+      LOGGER.debug("Transferring file channel to file channel");
+      FileChannel source = ((FileInputStream) inputStream).getChannel();
+      FileChannel target = ((FileOutputStream) outputStream).getChannel();
+      long position = source.position();
+      long size = source.size();
+      while( position < size ) {
+        position += source.transferTo(position, size - position, target);
+      }
+      source.position(position);
+    } else if( inputStream instanceof MappedFileInputStream && outputStream instanceof FileChannelOutputStream ) {
+      LOGGER.debug("Transferring mapped file to file channel");
+      ((MappedFileInputStream) inputStream).writeTo(((FileChannelOutputStream) outputStream).flushToChannel());
+    } else if( inputStream instanceof ByteBufferInputStream ) {
+      result = ((ByteBufferInputStream) inputStream).writeTo(outputStream);
+    } else {
+      result = false;
+    }
+    return result;
   }
 
   /**
@@ -111,7 +181,28 @@ public class IOUtils {
    */
   public static void process(InputStream inputStream, StreamHandler handler) throws IOException {
     LOGGER.trace("process(InputStream, StreamHandler)");
-    process(inputStream, handler, new byte[BUFFER_SIZE]);
+    process(inputStream, handler, BufferPool.getDefault());
+  }
+
+  /**
+   * generic processing of a stream with a buffer of the pool
+   *
+   * @param inputStream
+   *    the input stream to process
+   * @param handler
+   *    the handler to apply on the stream
+   * @param bufferPool
+   *    the pool providing the buffer
+   * @throws IOException
+   */
+  public static void process(InputStream inputStream, StreamHandler handler, BufferPool bufferPool) throws IOException {
+    LOGGER.trace("process(InputStream, StreamHandler, BufferPool)");
+    byte[] buffer = bufferPool.acquire();
+    try {
+      process(inputStream, handler, buffer);
+    } finally {
+      bufferPool.release(buffer);
+    }
   }
 
   /**
@@ -127,11 +218,76 @@ public class IOUtils {
    */
   public static void process(InputStream inputStream, StreamHandler handler, byte[] buffer) throws IOException {
     LOGGER.trace("process(InputStream, StreamHandler, byte[])");
-    LOGGER.debug("buffer size: {} bytes", buffer != null ? buffer.length : "null");
-    int read = -1;
+    long total = 0L;
+    int read;
     while( (read = inputStream.read(buffer)) != -1 ) {
-      LOGGER.debug("{} bytes read from stream", read);
       handler.handleStreamBuffer(buffer, 0, read);
+      total += read;
+    }
+    if( LOGGER.isDebugEnabled() ) {
+      LOGGER.debug("{} bytes processed using a buffer of {} bytes", total, buffer.length);
+    }
+  }
+
+  /**
+   * opens a file for reading, large files are memory mapped
+   *
+   * @param path
+   *    the file to read
+   * @return the input stream of the file
+   * @throws IOException
+   */
+  public static InputStream openInputStream(Path path) throws IOException {
+    LOGGER.trace("openInputStream(Path)");
+    InputStream result;
+    if( Files.size(path) >= MAPPING_THRESHOLD ) {
+      LOGGER.debug("Memory mapping {}", path);
+      result = new MappedFileInputStream(path);
+    } else {
+      result = Files.newInputStream(path);
+    }
+    return result;
+  }
+
+  /**
+   * opens a file for writing through a file channel
+   *
+   * @param path
+   *    the file to write (created or truncated)
+   * @param expectedSize
+   *    the expected size of the file used for preallocation, 0 if unknown
+   * @return the output stream of the file
+   * @throws IOException
+   */
+  public static OutputStream openOutputStream(Path path, long expectedSize) throws IOException {
+    LOGGER.trace("openOutputStream(Path, long)");
+    return new FileChannelOutputStream(path, expectedSize);
+  }
+
+  /**
+   * skips exactly the given number of bytes of the stream
+   *
+   * @param inputStream
+   *    the source stream
+   * @param count
+   *    the number of bytes to skip
+   * @throws IOException
+   *    if the stream ends before
+   */
+  public static void skipFully(InputStream inputStream, long count) throws IOException {
+    byte[] buffer = null;
+    while( count > 0 ) {
+      long skipped = inputStream.skip(count);
+      if( skipped <= 0 ) {
+        if( buffer == null ) {
+          buffer = new byte[SKIP_BUFFER_SIZE];
+        }
+        skipped = inputStream.read(buffer, 0, (int) Math.min(buffer.length, count));
+        if( skipped == -1 ) {
+          throw new EOFException("Unexpected end of stream");
+        }
+      }
+      count -= skipped;
     }
   }
 
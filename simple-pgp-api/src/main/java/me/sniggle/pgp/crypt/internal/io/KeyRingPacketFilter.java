@@ -0,0 +1,343 @@
+package me.sniggle.pgp.crypt.internal.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Filters a binary key ring stream (RFC 4880, 11.1 and 11.2) down to the packets required to use the keys.
+ *
+ * Only packet headers are scanned, the packets passed on are copied unparsed: key and user ID packets, the
+ * self-signatures (user ID certifications, binding, direct key and revocation signatures issued by the primary
+ * key) and any packet not known to the filter. Certifications issued by other keys, user attributes (e.g. photo
+ * IDs) including their signatures and trust packets are skipped without being buffered.
+ *
+ * A signature is only recognized as third-party certification if the primary key is a version 4 key and the
+ * signature names its issuer, otherwise it is passed on. Packets of indeterminate or partial length end the
+ * filtering, the rest of the stream is passed on unchanged.
+ */
+public class KeyRingPacketFilter extends InputStream {
+
+  private static final int SIGNATURE_TAG = 2;
+  private static final int SECRET_KEY_TAG = 5;
+  private static final int PUBLIC_KEY_TAG = 6;
+  private static final int TRUST_TAG = 12;
+  private static final int USER_ATTRIBUTE_TAG = 17;
+
+  private static final int ISSUER_SUBPACKET = 16;
+  private static final int ISSUER_FINGERPRINT_SUBPACKET = 33;
+
+  private static final int CERTIFICATION_REVOCATION = 0x30;
+
+  private final InputStream in;
+  private final byte[] single = new byte[1];
+  private byte[] packet = new byte[512];
+  private int position = 0;
+  private int length = 0;
+  private long primaryKeyId;
+  private boolean primaryKeyIdKnown = false;
+  private boolean userAttribute = false;
+  private boolean passThrough = false;
+  private boolean finished = false;
+  private int skippedPackets = 0;
+
+  /**
+   * @param in
+   *    the binary key ring stream
+   */
+  public KeyRingPacketFilter(InputStream in) {
+    this.in = in;
+  }
+
+  /**
+   * @return the number of packets skipped so far
+   */
+  public int getSkippedPackets() {
+    return skippedPackets;
+  }
+
+  private int readByte() throws IOException {
+    int result = in.read();
+    if( result == -1 ) {
+      throw new EOFException("Unexpected end of key ring packet");
+    }
+    return result;
+  }
+
+  private void readFully(byte[] buffer, int offset, int count) throws IOException {
+    while( count > 0 ) {
+      int read = in.read(buffer, offset, count);
+      if( read == -1 ) {
+        throw new EOFException("Unexpected end of key ring packet");
+      }
+      offset += read;
+      count -= read;
+    }
+  }
+
+  /**
+   * reads the next packet header and either buffers the packet for output or skips it
+   *
+   * @throws IOException
+   */
+  private void nextPacket() throws IOException {
+    position = 0;
+    length = 0;
+    int first = in.read();
+    if( first == -1 ) {
+      finished = true;
+      return;
+    }
+    if( (first & 0x80) == 0 ) {
+      throw new IOException("Invalid packet tag: " + first);
+    }
+    packet[length++] = (byte) first;
+    int tag;
+    long bodyLength = -1;
+    if( (first & 0x40) != 0 ) {
+      tag = first & 0x3f;
+      int octet = readByte();
+      packet[length++] = (byte) octet;
+      if( octet < 192 ) {
+        bodyLength = octet;
+      } else if( octet < 224 ) {
+        int second = readByte();
+        packet[length++] = (byte) second;
+        bodyLength = ((octet - 192) << 8) + second + 192;
+      } else if( octet == 255 ) {
+        bodyLength = 0;
+        for( int i = 0; i < 4; i++ ) {
+          int next = readByte();
+          packet[length++] = (byte) next;
+          bodyLength = (bodyLength << 8) | next;
+        }
+      }
+    } else {
+      tag = (first >> 2) & 0x0f;
+      int lengthType = first & 0x03;
+      if( lengthType != 3 ) {
+        bodyLength = 0;
+        for( int i = 0; i < (1 << lengthType); i++ ) {
+          int next = readByte();
+          packet[length++] = (byte) next;
+          bodyLength = (bodyLength << 8) | next;
+        }
+      }
+    }
+    if( bodyLength < 0 ) {
+      passThrough = true;
+    } else if( tag == USER_ATTRIBUTE_TAG || tag == TRUST_TAG || (tag == SIGNATURE_TAG && userAttribute) ) {
+      userAttribute = userAttribute || tag == USER_ATTRIBUTE_TAG;
+      dropPacket(bodyLength);
+    } else {
+      if( bodyLength > Integer.MAX_VALUE - length ) {
+        throw new IOException("Key ring packet too large");
+      }
+      int headerLength = length;
+      if( packet.length < headerLength + bodyLength ) {
+        packet = Arrays.copyOf(packet, (int) Math.max(2L * packet.length, headerLength + bodyLength));
+      }
+      readFully(packet, headerLength, (int) bodyLength);
+      length += (int) bodyLength;
+      if( tag == PUBLIC_KEY_TAG || tag == SECRET_KEY_TAG ) {
+        readPrimaryKeyId(tag, headerLength, (int) bodyLength);
+      }
+      if( tag == SIGNATURE_TAG && isThirdPartyCertification(headerLength, (int) bodyLength) ) {
+        dropPacket(0);
+      } else if( tag != SIGNATURE_TAG ) {
+        userAttribute = false;
+      }
+    }
+  }
+
+  /**
+   * drops the packet header (and body) read so far and skips the rest of the body
+   */
+  private void dropPacket(long remainingBody) throws IOException {
+    length = 0;
+    skippedPackets++;
+    IOUtils.skipFully(in, remainingBody);
+  }
+
+  /**
+   * computes the key ID of a version 4 primary key (RFC 4880, 12.2)
+   */
+  private void readPrimaryKeyId(int tag, int offset, int bodyLength) {
+    primaryKeyIdKnown = false;
+    int publicLength = (tag == PUBLIC_KEY_TAG) ? bodyLength : publicKeyLength(offset, bodyLength);
+    if( bodyLength > 0 && packet[offset] == 4 && publicLength > 0 ) {
+      try {
+        MessageDigest digest = MessageDigest.getInstance("SHA-1");
+        digest.update((byte) 0x99);
+        digest.update((byte) (publicLength >> 8));
+        digest.update((byte) publicLength);
+        digest.update(packet, offset, publicLength);
+        primaryKeyId = keyIdOf(digest.digest());
+        primaryKeyIdKnown = true;
+      } catch (NoSuchAlgorithmException e) {
+        primaryKeyIdKnown = false;
+      }
+    }
+  }
+
+  private static long keyIdOf(byte[] fingerprint) {
+    long result = 0;
+    for( int i = fingerprint.length - 8; i < fingerprint.length; i++ ) {
+      result = (result << 8) | (fingerprint[i] & 0xff);
+    }
+    return result;
+  }
+
+  /**
+   * determines the length of the public key part of a version 4 secret key packet
+   *
+   * @return the length or -1 if the algorithm is unknown or the packet is malformed
+   */
+  private int publicKeyLength(int offset, int bodyLength) {
+    int end = offset + bodyLength;
+    int p = offset + 6;
+    int mpis;
+    boolean curve = false;
+    boolean kdfParameters = false;
+    switch( (p <= end) ? packet[offset + 5] & 0xff : -1 ) {
+      case 1:
+      case 2:
+      case 3:
+        mpis = 2;
+        break;
+      case 16:
+      case 20:
+        mpis = 3;
+        break;
+      case 17:
+        mpis = 4;
+        break;
+      case 18:
+        curve = true;
+        kdfParameters = true;
+        mpis = 1;
+        break;
+      case 19:
+      case 22:
+        curve = true;
+        mpis = 1;
+        break;
+      default:
+        return -1;
+    }
+    if( curve ) {
+      p = skipField(p, end);
+    }
+    for( int i = 0; i < mpis; i++ ) {
+      p = (p + 2 <= end) ? p + 2 + ((((packet[p] & 0xff) << 8) | (packet[p + 1] & 0xff)) + 7) / 8 : end + 1;
+    }
+    if( kdfParameters ) {
+      p = skipField(p, end);
+    }
+    return (p <= end) ? p - offset : -1;
+  }
+
+  /**
+   * skips a field prefixed by its one octet length (e.g. a curve OID)
+   */
+  private int skipField(int p, int end) {
+    return (p < end) ? p + 1 + (packet[p] & 0xff) : end + 1;
+  }
+
+  /**
+   * checks whether the signature certifies a user ID (or revokes a certification) on behalf of another key
+   */
+  private boolean isThirdPartyCertification(int offset, int bodyLength) {
+    boolean result = false;
+    if( primaryKeyIdKnown && bodyLength > 0 ) {
+      int end = offset + bodyLength;
+      int version = packet[offset];
+      int type = -1;
+      long issuer = 0;
+      boolean issuerKnown = false;
+      if( (version == 3 || version == 2) && bodyLength >= 15 ) {
+        type = packet[offset + 2] & 0xff;
+        issuer = readLong(offset + 7);
+        issuerKnown = true;
+      } else if( version == 4 && bodyLength >= 6 ) {
+        type = packet[offset + 1] & 0xff;
+        int p = offset + 4;
+        for( int area = 0; area < 2 && !issuerKnown && p + 2 <= end; area++ ) {
+          int areaLength = ((packet[p] & 0xff) << 8) | (packet[p + 1] & 0xff);
+          int areaEnd = Math.min(end, p + 2 + areaLength);
+          p += 2;
+          while( p < areaEnd && !issuerKnown ) {
+            int subpacketLength = packet[p++] & 0xff;
+            if( subpacketLength >= 192 && subpacketLength < 255 && p < areaEnd ) {
+              subpacketLength = ((subpacketLength - 192) << 8) + (packet[p++] & 0xff) + 192;
+            } else if( subpacketLength == 255 && p + 4 <= areaEnd ) {
+              subpacketLength = ((packet[p] & 0xff) << 24) | ((packet[p + 1] & 0xff) << 16) | ((packet[p + 2] & 0xff) << 8) | (packet[p + 3] & 0xff);
+              p += 4;
+            }
+            if( subpacketLength <= 0 || p + subpacketLength > areaEnd ) {
+              break;
+            }
+            int subpacketType = packet[p] & 0x7f;
+            if( subpacketType == ISSUER_SUBPACKET && subpacketLength == 9 ) {
+              issuer = readLong(p + 1);
+              issuerKnown = true;
+            } else if( subpacketType == ISSUER_FINGERPRINT_SUBPACKET && subpacketLength == 22 && packet[p + 1] == 4 ) {
+              issuer = readLong(p + subpacketLength - 8);
+              issuerKnown = true;
+            }
+            p += subpacketLength;
+          }
+          p = areaEnd;
+        }
+      }
+      boolean certification = (type >= 0x10 && type <= 0x13) || type == CERTIFICATION_REVOCATION;
+      result = certification && issuerKnown && issuer != primaryKeyId;
+    }
+    return result;
+  }
+
+  /**
+   * reads the big endian long at the position of the packet buffer
+   */
+  private long readLong(int position) {
+    long result = 0;
+    for( int i = position; i < position + 8; i++ ) {
+      result = (result << 8) | (packet[i] & 0xff);
+    }
+    return result;
+  }
+
+  @Override
+  public int read() throws IOException {
+    return (read(single, 0, 1) == -1) ? -1 : single[0] & 0xff;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int count) throws IOException {
+    int result = -1;
+    if( count == 0 ) {
+      result = 0;
+    } else {
+      while( position == length && !finished && !passThrough ) {
+        nextPacket();
+      }
+      if( position < length ) {
+        result = Math.min(count, length - position);
+        System.arraycopy(packet, position, buffer, offset, result);
+        position += result;
+      } else if( passThrough ) {
+        result = in.read(buffer, offset, count);
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+
+}
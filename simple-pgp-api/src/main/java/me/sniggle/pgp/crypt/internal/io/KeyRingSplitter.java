@@ -0,0 +1,144 @@
+package me.sniggle.pgp.crypt.internal.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Splits a binary stream of transferable keys (RFC 4880, 11.1 and 11.2) into the encoded key rings.
+ *
+ * Only packet headers are read, a key ring starts with a public or secret key packet and ends before the next
+ * one. Packets preceding the first key packet are skipped. Key rings do not contain packets of indeterminate
+ * or partial length, such packets are rejected.
+ */
+public class KeyRingSplitter {
+
+  private static final int SECRET_KEY_TAG = 5;
+  private static final int PUBLIC_KEY_TAG = 6;
+
+  private final InputStream in;
+  private final byte[] header = new byte[6];
+  private int headerLength = 0;
+  private int tag = -1;
+  private long bodyLength = 0;
+  private long bytesRead = 0;
+
+  /**
+   * @param in
+   *    the binary key ring stream
+   */
+  public KeyRingSplitter(InputStream in) {
+    this.in = in;
+  }
+
+  /**
+   * @return the number of bytes read so far
+   */
+  public long getBytesRead() {
+    return bytesRead;
+  }
+
+  private int readByte() throws IOException {
+    int result = in.read();
+    if( result == -1 ) {
+      throw new EOFException("Unexpected end of key ring packet");
+    }
+    header[headerLength++] = (byte) result;
+    return result;
+  }
+
+  /**
+   * reads the header of the next packet
+   *
+   * @return false at the end of the stream
+   * @throws IOException
+   */
+  private boolean readHeader() throws IOException {
+    headerLength = 0;
+    int first = in.read();
+    if( first == -1 ) {
+      tag = -1;
+      return false;
+    }
+    if( (first & 0x80) == 0 ) {
+      throw new IOException("Invalid packet tag: " + first);
+    }
+    header[headerLength++] = (byte) first;
+    bodyLength = -1;
+    if( (first & 0x40) != 0 ) {
+      tag = first & 0x3f;
+      int octet = readByte();
+      if( octet < 192 ) {
+        bodyLength = octet;
+      } else if( octet < 224 ) {
+        bodyLength = ((octet - 192) << 8) + readByte() + 192;
+      } else if( octet == 255 ) {
+        bodyLength = ((long) readByte() << 24) | (readByte() << 16) | (readByte() << 8) | readByte();
+      }
+    } else {
+      tag = (first >> 2) & 0x0f;
+      int lengthType = first & 0x03;
+      if( lengthType != 3 ) {
+        bodyLength = 0;
+        for( int i = 0; i < (1 << lengthType); i++ ) {
+          bodyLength = (bodyLength << 8) | readByte();
+        }
+      }
+    }
+    if( bodyLength < 0 || bodyLength > Integer.MAX_VALUE ) {
+      throw new IOException("Unsupported packet length in key ring");
+    }
+    bytesRead += headerLength;
+    return true;
+  }
+
+  private boolean isKeyPacket() {
+    return tag == PUBLIC_KEY_TAG || tag == SECRET_KEY_TAG;
+  }
+
+  /**
+   * reads the next key ring
+   *
+   * @return the encoded key ring or null at the end of the stream
+   * @throws IOException
+   */
+  public byte[] next() throws IOException {
+    byte[] result = null;
+    int length = 0;
+    if( tag == -1 && !readHeader() ) {
+      return null;
+    }
+    while( tag != -1 && (result == null || !isKeyPacket()) ) {
+      if( result == null && isKeyPacket() ) {
+        result = new byte[(int) Math.min(Integer.MAX_VALUE, 2 * (headerLength + bodyLength))];
+      }
+      if( result != null ) {
+        if( result.length - length < headerLength + bodyLength ) {
+          result = Arrays.copyOf(result, (int) Math.min(Integer.MAX_VALUE, Math.max(2L * result.length, length + headerLength + bodyLength)));
+        }
+        System.arraycopy(header, 0, result, length, headerLength);
+        length += headerLength;
+        readFully(result, length, (int) bodyLength);
+        length += (int) bodyLength;
+      } else {
+        IOUtils.skipFully(in, bodyLength);
+      }
+      bytesRead += bodyLength;
+      readHeader();
+    }
+    return (result != null) ? Arrays.copyOf(result, length) : null;
+  }
+
+  private void readFully(byte[] buffer, int offset, int count) throws IOException {
+    while( count > 0 ) {
+      int read = in.read(buffer, offset, count);
+      if( read == -1 ) {
+        throw new EOFException("Unexpected end of key ring packet");
+      }
+      offset += read;
+      count -= read;
+    }
+  }
+
+}
@@ -0,0 +1,108 @@
+package me.sniggle.pgp.crypt.internal.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a file through read-only memory mapped windows instead of read calls
+ */
+public class MappedFileInputStream extends InputStream {
+
+  /**
+   * the size of a single mapped window of the file
+   */
+  private static final long WINDOW_SIZE = 64L * 1024 * 1024;
+
+  private final FileChannel channel;
+  private final long size;
+  private long windowPosition = 0L;
+  private MappedByteBuffer window;
+
+  /**
+   * @param path
+   *    the file to read
+   * @throws IOException
+   */
+  public MappedFileInputStream(Path path) throws IOException {
+    this.channel = FileChannel.open(path, StandardOpenOption.READ);
+    this.size = channel.size();
+  }
+
+  /**
+   * maps the next window of the file if the current one is exhausted
+   *
+   * @return true if data is available
+   * @throws IOException
+   */
+  private boolean nextWindow() throws IOException {
+    boolean result = true;
+    if( window == null || !window.hasRemaining() ) {
+      long position = (window == null) ? windowPosition : windowPosition + window.capacity();
+      if( position < size ) {
+        windowPosition = position;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, size - position));
+      } else {
+        result = false;
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public int read() throws IOException {
+    return nextWindow() ? (window.get() & 0xff) : -1;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int length) throws IOException {
+    int result = 0;
+    if( length > 0 ) {
+      if( nextWindow() ) {
+        result = Math.min(length, window.remaining());
+        window.get(buffer, offset, result);
+      } else {
+        result = -1;
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public int available() throws IOException {
+    return (int) Math.min(Integer.MAX_VALUE, size - getPosition());
+  }
+
+  /**
+   * @return the position of the next byte to read
+   */
+  private long getPosition() {
+    return (window == null) ? windowPosition : windowPosition + window.position();
+  }
+
+  /**
+   * transfers the remaining file content to the target channel without mapping it
+   *
+   * @param target
+   *    the target channel, written at its position
+   * @throws IOException
+   */
+  void writeTo(FileChannel target) throws IOException {
+    long position = getPosition();
+    while( position < size ) {
+      position += channel.transferTo(position, size - position, target);
+    }
+    window = null;
+    windowPosition = size;
+  }
+
+  @Override
+  public void close() throws IOException {
+    window = null;
+    channel.close();
+  }
+
+}
@@ -0,0 +1,245 @@
+package me.sniggle.pgp.crypt.internal.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A persistent, memory-mapped hash table from 64 bit hashes to offsets of an append-only data file.
+ *
+ * The table uses open addressing with linear probing, a hash may be mapped to several offsets (hash
+ * collisions or several records for the same key), so callers verify the records found. The table is
+ * doubled when it is half full, the grown table is written to a temporary file and moved in place.
+ * The header records the length of the data file covered by the index, so the data appended after the
+ * last update can be indexed on startup.
+ */
+public class MappedHashIndex implements Closeable {
+
+  private static final int MAGIC = 0x53504849;
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 32;
+  private static final int ENTRY_SIZE = 16;
+  private static final int CAPACITY_POSITION = 8;
+  private static final int SIZE_POSITION = 12;
+  private static final int INDEXED_LENGTH_POSITION = 16;
+
+  /**
+   * the largest table mappable in a single buffer
+   */
+  private static final int MAX_CAPACITY = 1 << 26;
+
+  private final Path file;
+  private MappedByteBuffer buffer;
+  private int capacity;
+  private int size;
+
+  private MappedHashIndex(Path file) {
+    this.file = file;
+  }
+
+  /**
+   * opens the index file, an index file that does not exist or is not valid is replaced by an empty index
+   *
+   * @param file
+   *    the index file
+   * @param minCapacity
+   *    the minimum number of slots of a new index
+   * @return the index
+   * @throws IOException
+   */
+  public static MappedHashIndex open(Path file, int minCapacity) throws IOException {
+    MappedHashIndex result = new MappedHashIndex(file);
+    if( !Files.exists(file) || !result.load() ) {
+      int capacity = 16;
+      while( capacity < minCapacity && capacity < MAX_CAPACITY ) {
+        capacity <<= 1;
+      }
+      result.buffer = create(file, capacity);
+      result.capacity = capacity;
+      result.size = 0;
+    }
+    return result;
+  }
+
+  private static MappedByteBuffer map(Path file, long length) throws IOException {
+    try( FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE) ) {
+      return channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+    }
+  }
+
+  private static MappedByteBuffer create(Path file, int capacity) throws IOException {
+    Files.deleteIfExists(file);
+    MappedByteBuffer result = map(file, HEADER_SIZE + (long) capacity * ENTRY_SIZE);
+    result.putInt(0, MAGIC);
+    result.putInt(4, VERSION);
+    result.putInt(CAPACITY_POSITION, capacity);
+    result.putInt(SIZE_POSITION, 0);
+    result.putLong(INDEXED_LENGTH_POSITION, 0L);
+    return result;
+  }
+
+  /**
+   * maps an existing index file
+   *
+   * @return false if the file is not a valid index
+   * @throws IOException
+   */
+  private boolean load() throws IOException {
+    long length = Files.size(file);
+    boolean result = false;
+    if( length >= HEADER_SIZE ) {
+      MappedByteBuffer mapped = map(file, length);
+      int storedCapacity = mapped.getInt(CAPACITY_POSITION);
+      if( mapped.getInt(0) == MAGIC && mapped.getInt(4) == VERSION && storedCapacity > 0 && Integer.bitCount(storedCapacity) == 1
+          && length == HEADER_SIZE + (long) storedCapacity * ENTRY_SIZE ) {
+        buffer = mapped;
+        capacity = storedCapacity;
+        size = mapped.getInt(SIZE_POSITION);
+        result = true;
+      }
+    }
+    return result;
+  }
+
+  private static int slot(long hash, int capacity) {
+    return (int) (hash ^ (hash >>> 32)) & (capacity - 1);
+  }
+
+  private static void insert(MappedByteBuffer table, int capacity, long hash, long value) {
+    int slot = slot(hash, capacity);
+    while( table.getLong(HEADER_SIZE + slot * ENTRY_SIZE + 8) != 0L ) {
+      slot = (slot + 1) & (capacity - 1);
+    }
+    table.putLong(HEADER_SIZE + slot * ENTRY_SIZE, hash);
+    table.putLong(HEADER_SIZE + slot * ENTRY_SIZE + 8, value);
+  }
+
+  /**
+   * doubles the table, the entries are re-inserted starting at an empty slot so the probe sequences wrapping
+   * past the end of the table keep their insertion order
+   *
+   * @throws IOException
+   */
+  private void grow() throws IOException {
+    if( capacity >= MAX_CAPACITY ) {
+      throw new IOException("Index capacity exceeded");
+    }
+    int grownCapacity = capacity << 1;
+    Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+    MappedByteBuffer grown = create(temporaryFile, grownCapacity);
+    int start = 0;
+    while( start < capacity && buffer.getLong(HEADER_SIZE + start * ENTRY_SIZE + 8) != 0L ) {
+      start++;
+    }
+    for( int i = 0; i < capacity; i++ ) {
+      int slot = (start + i) & (capacity - 1);
+      long value = buffer.getLong(HEADER_SIZE + slot * ENTRY_SIZE + 8);
+      if( value != 0L ) {
+        insert(grown, grownCapacity, buffer.getLong(HEADER_SIZE + slot * ENTRY_SIZE), value);
+      }
+    }
+    grown.putInt(SIZE_POSITION, size);
+    grown.putLong(INDEXED_LENGTH_POSITION, getIndexedLength());
+    grown.force();
+    Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    buffer = grown;
+    capacity = grownCapacity;
+  }
+
+  /**
+   * maps the hash to the offset
+   *
+   * @param hash
+   *    the hash of the key
+   * @param offset
+   *    the offset in the data file
+   * @throws IOException
+   */
+  public void put(long hash, long offset) throws IOException {
+    if( 2 * (size + 1) > capacity ) {
+      grow();
+    }
+    insert(buffer, capacity, hash, offset + 1);
+    buffer.putInt(SIZE_POSITION, ++size);
+  }
+
+  /**
+   * looks up the offsets mapped to the hash
+   *
+   * @param hash
+   *    the hash of the key
+   * @return the offsets in insertion order, empty if none is mapped
+   */
+  public long[] get(long hash) {
+    long[] result = new long[0];
+    int count = 0;
+    int slot = slot(hash, capacity);
+    long value;
+    while( (value = buffer.getLong(HEADER_SIZE + slot * ENTRY_SIZE + 8)) != 0L ) {
+      if( buffer.getLong(HEADER_SIZE + slot * ENTRY_SIZE) == hash ) {
+        if( count == result.length ) {
+          result = Arrays.copyOf(result, Math.max(4, 2 * count));
+        }
+        result[count++] = value - 1;
+      }
+      slot = (slot + 1) & (capacity - 1);
+    }
+    return (count == result.length) ? result : Arrays.copyOf(result, count);
+  }
+
+  /**
+   * @return the number of mappings
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return the length of the data file covered by the index
+   */
+  public long getIndexedLength() {
+    return buffer.getLong(INDEXED_LENGTH_POSITION);
+  }
+
+  /**
+   * records the length of the data file covered by the index
+   *
+   * @param indexedLength
+   *    the length in bytes
+   */
+  public void setIndexedLength(long indexedLength) {
+    buffer.putLong(INDEXED_LENGTH_POSITION, indexedLength);
+  }
+
+  /**
+   * removes all mappings
+   *
+   * @throws IOException
+   */
+  public void clear() throws IOException {
+    buffer = create(file, capacity);
+    size = 0;
+  }
+
+  /**
+   * writes the changes to the index file
+   */
+  public void force() {
+    buffer.force();
+  }
+
+  @Override
+  public void close() {
+    if( buffer != null ) {
+      buffer.force();
+      buffer = null;
+    }
+  }
+
+}
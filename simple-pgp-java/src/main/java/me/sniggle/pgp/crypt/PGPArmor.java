@@ -0,0 +1,54 @@
+package me.sniggle.pgp.crypt;
+
+import me.sniggle.pgp.crypt.internal.io.ArmorOutputStream;
+import org.bouncycastle.bcpg.ArmoredOutputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Creates the armor streams of the library, the armor carries the version header of the crypto provider
+ * so it matches the armor written by the provider's own streams
+ */
+final class PGPArmor {
+
+  private static final String VERSION = readProviderVersion();
+
+  private PGPArmor() {
+  }
+
+  /**
+   * reads the version header the provider writes into its armor
+   *
+   * @return the version or null if the provider writes none
+   */
+  private static String readProviderVersion() {
+    String result = null;
+    ByteArrayOutputStream armor = new ByteArrayOutputStream();
+    try( OutputStream out = new ArmoredOutputStream(armor) ) {
+      out.write(0);
+    } catch (IOException e) {
+      return null;
+    }
+    for( String line : new String(armor.toByteArray(), StandardCharsets.US_ASCII).split("\r?\n") ) {
+      if( result == null && line.startsWith("Version: ") ) {
+        result = line.substring("Version: ".length());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * wraps the target in an armor stream, closing the armor stream does not close the target
+   *
+   * @param target
+   *    the target stream
+   * @return the armor stream
+   */
+  static OutputStream armor(OutputStream target) {
+    return new ArmorOutputStream(target, VERSION);
+  }
+
+}
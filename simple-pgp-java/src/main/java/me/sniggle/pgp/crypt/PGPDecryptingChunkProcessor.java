@@ -0,0 +1,123 @@
+package me.sniggle.pgp.crypt;
+
+import me.sniggle.pgp.crypt.internal.io.BufferPool;
+import me.sniggle.pgp.crypt.internal.io.ChunkInputStream;
+import org.bouncycastle.openpgp.PGPException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * The library dependent implementation of a decrypting ChunkProcessor, buffers the pushed chunks and reads
+ * the plain data from a decrypting stream whenever more than the read-ahead is buffered. A single read of
+ * plain data is limited to a fraction of the read-ahead, so the decrypting stream never runs out of
+ * encrypted data before the input is complete.
+ */
+abstract class PGPDecryptingChunkProcessor implements ChunkProcessor {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PGPDecryptingChunkProcessor.class);
+
+  /**
+   * the encrypted data kept buffered while the input is incomplete
+   */
+  static final int READ_AHEAD = 64 * 1024;
+
+  private final ChunkSubscriber<VerificationResult> subscriber;
+  private final BufferPool bufferPool;
+  private final ChunkInputStream encryptedData = new ChunkInputStream(2 * READ_AHEAD);
+  private DecryptingInputStream plainData;
+  private boolean terminated = false;
+
+  PGPDecryptingChunkProcessor(ChunkSubscriber<VerificationResult> subscriber, BufferPool bufferPool) {
+    this.subscriber = subscriber;
+    this.bufferPool = bufferPool;
+  }
+
+  /**
+   * opens the decrypting stream
+   *
+   * @param encryptedData
+   *    the buffered encrypted data
+   * @return the decrypting stream or null if the data cannot be decrypted
+   * @throws IOException
+   * @throws PGPException
+   */
+  protected abstract DecryptingInputStream open(InputStream encryptedData) throws IOException, PGPException;
+
+  /**
+   * pushes the plain data decryptable from the buffered encrypted data
+   *
+   * @param completed
+   *    true if the input is complete and all data is to be decrypted
+   * @throws IOException
+   * @throws PGPException
+   */
+  private void drain(boolean completed) throws IOException, PGPException {
+    if( plainData == null ) {
+      plainData = open(encryptedData);
+      if( plainData == null ) {
+        throw new PGPException("No private key found for the encrypted data");
+      }
+    }
+    byte[] buffer = bufferPool.acquire();
+    int length = Math.min(buffer.length, READ_AHEAD / 4);
+    try {
+      int read;
+      while( (completed || encryptedData.available() >= READ_AHEAD) && (read = plainData.read(buffer, 0, length)) != -1 ) {
+        if( read > 0 ) {
+          subscriber.onNext(ByteBuffer.wrap(buffer, 0, read).asReadOnlyBuffer());
+        }
+      }
+    } finally {
+      bufferPool.release(buffer);
+    }
+  }
+
+  private void fail(Exception cause) {
+    LOGGER.error("{}", cause.getMessage());
+    terminated = true;
+    subscriber.onError(cause);
+  }
+
+  @Override
+  public void onNext(ByteBuffer chunk) {
+    if( !terminated ) {
+      encryptedData.append(chunk);
+      if( encryptedData.available() >= READ_AHEAD ) {
+        try {
+          drain(false);
+        } catch (IOException | PGPException e) {
+          fail(e);
+        }
+      }
+    }
+  }
+
+  @Override
+  public void onComplete() {
+    if( !terminated ) {
+      encryptedData.complete();
+      try {
+        drain(true);
+        VerificationResult result = plainData.getVerificationResult();
+        plainData.close();
+        terminated = true;
+        subscriber.onComplete(result);
+      } catch (IOException | PGPException e) {
+        fail(e);
+      }
+    }
+  }
+
+  @Override
+  public void onError(Throwable cause) {
+    if( !terminated ) {
+      terminated = true;
+      subscriber.onError(cause);
+    }
+  }
+
+}
@@ -0,0 +1,231 @@
+package me.sniggle.pgp.crypt;
+
+import org.bouncycastle.openpgp.PGPCompressedData;
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.PGPLiteralData;
+import org.bouncycastle.openpgp.PGPObjectFactory;
+import org.bouncycastle.openpgp.PGPOnePassSignature;
+import org.bouncycastle.openpgp.PGPOnePassSignatureList;
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.bouncycastle.openpgp.PGPPublicKeyEncryptedData;
+import org.bouncycastle.openpgp.PGPPublicKeyRingCollection;
+import org.bouncycastle.openpgp.PGPSignatureList;
+import org.bouncycastle.openpgp.operator.bc.BcKeyFingerprintCalculator;
+import org.bouncycastle.openpgp.operator.bc.BcPGPContentVerifierBuilderProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+
+/**
+ * The library dependent implementation of a DecryptingInputStream, reads the literal data directly from the
+ * decrypted (and decompressed) packet stream and verifies signature and integrity at the end of the data
+ */
+final class PGPDecryptingInputStream extends DecryptingInputStream {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PGPDecryptingInputStream.class);
+
+  private final PGPPublicKeyEncryptedData pgpEncryptedData;
+  private final InputStream encryptedData;
+  private final InputStream clearText;
+  private final long decryptionKeyId;
+  private final PGPPublicKeyRingCollection publicKeyRingCollection;
+  private final KeyRingStore keyRingStore;
+  private boolean signatureChecked;
+  private PGPObjectFactory pgpObjectFactory;
+  private InputStream literalDataStream;
+  private PGPOnePassSignature onePassSignature;
+  private PGPPublicKey pgpPublicKey;
+  private PGPSignatureList signatures;
+  private long signerKeyId = 0L;
+  private long length = 0L;
+  private VerificationResult verificationResult;
+
+  /**
+   * @param pgpEncryptedData
+   *    the encrypted data
+   * @param encryptedData
+   *    the underlying encrypted stream, closed with this stream
+   * @param clearText
+   *    the decrypted data stream of the encrypted data
+   * @param decryptionKeyId
+   *    the id of the key which decrypted the session key
+   * @param publicKeyRingCollection
+   *    the sender's public keys (may be null)
+   * @param keyRingStore
+   *    the store the signer's key is looked up in if no public keys are given (may be null)
+   * @throws IOException
+   * @throws PGPException
+   */
+  PGPDecryptingInputStream(PGPPublicKeyEncryptedData pgpEncryptedData, InputStream encryptedData, InputStream clearText, long decryptionKeyId, PGPPublicKeyRingCollection publicKeyRingCollection, KeyRingStore keyRingStore) throws IOException, PGPException {
+    this.pgpEncryptedData = pgpEncryptedData;
+    this.encryptedData = encryptedData;
+    this.clearText = clearText;
+    this.decryptionKeyId = decryptionKeyId;
+    this.publicKeyRingCollection = publicKeyRingCollection;
+    this.keyRingStore = keyRingStore;
+    this.signatureChecked = publicKeyRingCollection != null;
+    this.pgpObjectFactory = new PGPObjectFactory(clearText, new BcKeyFingerprintCalculator());
+    this.literalDataStream = nextLiteralDataStream();
+    if( literalDataStream == null ) {
+      finish();
+    }
+  }
+
+  /**
+   * reads the packets preceding the literal data: compressed data and one-pass signatures
+   *
+   * @return the literal data stream or null if the message carries no literal data
+   * @throws IOException
+   * @throws PGPException
+   */
+  private InputStream nextLiteralDataStream() throws IOException, PGPException {
+    LOGGER.trace("nextLiteralDataStream()");
+    InputStream result = null;
+    Object message;
+    while( result == null && (message = pgpObjectFactory.nextObject()) != null ) {
+      if( message instanceof PGPCompressedData ) {
+        LOGGER.debug("Compressed data block found, creating new object factory with compressed data stream");
+        pgpObjectFactory = new PGPObjectFactory(((PGPCompressedData) message).getDataStream(), new BcKeyFingerprintCalculator());
+      } else if( message instanceof PGPLiteralData ) {
+        LOGGER.debug("Reading literal data stream");
+        result = ((PGPLiteralData) message).getInputStream();
+      } else if( message instanceof PGPOnePassSignatureList ) {
+        onePassSignature = ((PGPOnePassSignatureList) message).get(0);
+        signerKeyId = onePassSignature.getKeyID();
+        PGPPublicKeyRingCollection senderKeys = publicKeyRingCollection;
+        InputStream storedKeyRing = (senderKeys == null && keyRingStore != null) ? keyRingStore.findPublicKeyRing(signerKeyId) : null;
+        if( storedKeyRing != null ) {
+          LOGGER.debug("Public key of signer found in key ring store");
+          senderKeys = new PGPPublicKeyRingCollection(storedKeyRing, new BcKeyFingerprintCalculator());
+          signatureChecked = true;
+        }
+        if( senderKeys != null ) {
+          LOGGER.info("Public key provided -> verifying message signature");
+          pgpPublicKey = senderKeys.getPublicKey(signerKeyId);
+          if( pgpPublicKey != null ) {
+            onePassSignature.init(new BcPGPContentVerifierBuilderProvider(), pgpPublicKey);
+          } else {
+            LOGGER.warn("No public key found for signature. Key ID: {}", signerKeyId);
+          }
+        }
+      } else if( message instanceof PGPSignatureList ) {
+        LOGGER.info("Signature List found for verification");
+        signatures = (PGPSignatureList) message;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * reads the packets following the literal data and verifies signature and integrity
+   *
+   * @throws IOException
+   */
+  private void finish() throws IOException {
+    LOGGER.trace("finish()");
+    boolean signatureVerified = false;
+    boolean integrityVerified = false;
+    String failure = null;
+    try {
+      Object message;
+      while( (message = pgpObjectFactory.nextObject()) != null ) {
+        if( message instanceof PGPSignatureList ) {
+          LOGGER.info("Signature List found for verification");
+          signatures = (PGPSignatureList) message;
+        }
+      }
+      if( pgpPublicKey != null && signatures != null ) {
+        LOGGER.info("Verifying signatures");
+        if( onePassSignature.verify(signatures.get(0)) ) {
+          LOGGER.info("Signature verified");
+          signatureVerified = true;
+          Iterator<String> it = pgpPublicKey.getUserIDs();
+          while( it.hasNext() ) {
+            LOGGER.info("Signed by {}", it.next());
+          }
+        } else {
+          LOGGER.warn("Signature verification failed");
+        }
+      }
+      if( pgpEncryptedData.isIntegrityProtected() ) {
+        LOGGER.info("Performing integrity check on encrypted data");
+        integrityVerified = pgpEncryptedData.verify();
+        if( integrityVerified ) {
+          LOGGER.info("Data integrity verified");
+        } else {
+          LOGGER.warn("Data integrity verification failed");
+        }
+      }
+    } catch (PGPException e) {
+      LOGGER.error("{}", e.getMessage());
+      failure = e.getMessage();
+    }
+    verificationResult = new VerificationResult(true, pgpEncryptedData.isIntegrityProtected(), integrityVerified, signerKeyId != 0L,
+        signatureChecked, signatureVerified, signerKeyId, decryptionKeyId, length, failure);
+  }
+
+  private void update(byte[] buffer, int offset, int read) throws IOException {
+    if( read > 0 ) {
+      if( pgpPublicKey != null ) {
+        onePassSignature.update(buffer, offset, read);
+      }
+      length += read;
+    } else if( read == -1 && verificationResult == null ) {
+      finish();
+    }
+  }
+
+  @Override
+  public int read() throws IOException {
+    int result = -1;
+    if( literalDataStream != null ) {
+      result = literalDataStream.read();
+      if( result != -1 ) {
+        if( pgpPublicKey != null ) {
+          onePassSignature.update((byte) result);
+        }
+        length++;
+      } else if( verificationResult == null ) {
+        finish();
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int len) throws IOException {
+    int result = -1;
+    if( literalDataStream != null ) {
+      result = literalDataStream.read(buffer, offset, len);
+      update(buffer, offset, result);
+    }
+    return result;
+  }
+
+  @Override
+  public int available() throws IOException {
+    return (literalDataStream != null && verificationResult == null) ? literalDataStream.available() : 0;
+  }
+
+  @Override
+  public VerificationResult getVerificationResult() {
+    return verificationResult;
+  }
+
+  @Override
+  public void close() throws IOException {
+    LOGGER.trace("close()");
+    try {
+      if( literalDataStream != null ) {
+        literalDataStream.close();
+      }
+      clearText.close();
+    } finally {
+      encryptedData.close();
+    }
+  }
+
+}
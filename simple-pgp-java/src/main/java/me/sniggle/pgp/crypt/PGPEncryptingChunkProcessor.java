@@ -0,0 +1,92 @@
+package me.sniggle.pgp.crypt;
+
+import me.sniggle.pgp.crypt.internal.io.ChunkOutputStream;
+import org.bouncycastle.openpgp.PGPException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * The library dependent implementation of an encrypting ChunkProcessor, writes the chunks to an encrypting
+ * stream opened on the first chunk, which pushes the encrypted data to the subscriber
+ */
+abstract class PGPEncryptingChunkProcessor implements ChunkProcessor {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PGPEncryptingChunkProcessor.class);
+
+  private final ChunkSubscriber<Boolean> subscriber;
+  private WritableByteChannel channel;
+  private boolean terminated = false;
+
+  PGPEncryptingChunkProcessor(ChunkSubscriber<Boolean> subscriber) {
+    this.subscriber = subscriber;
+  }
+
+  /**
+   * opens the encrypting stream
+   *
+   * @param target
+   *    the target of the encrypted data
+   * @return the encrypting stream or null if no encryption key is found
+   * @throws IOException
+   * @throws PGPException
+   */
+  protected abstract EncryptingOutputStream open(OutputStream target) throws IOException, PGPException;
+
+  private WritableByteChannel getChannel() throws IOException, PGPException {
+    if( channel == null ) {
+      EncryptingOutputStream encryptingStream = open(new ChunkOutputStream(subscriber));
+      if( encryptingStream == null ) {
+        throw new PGPException("No encryption key found");
+      }
+      channel = encryptingStream.getChannel();
+    }
+    return channel;
+  }
+
+  private void fail(Exception cause) {
+    LOGGER.error("{}", cause.getMessage());
+    terminated = true;
+    subscriber.onError(cause);
+  }
+
+  @Override
+  public void onNext(ByteBuffer chunk) {
+    if( !terminated ) {
+      try {
+        WritableByteChannel target = getChannel();
+        while( chunk.hasRemaining() ) {
+          target.write(chunk);
+        }
+      } catch (IOException | PGPException e) {
+        fail(e);
+      }
+    }
+  }
+
+  @Override
+  public void onComplete() {
+    if( !terminated ) {
+      try {
+        getChannel().close();
+        terminated = true;
+        subscriber.onComplete(Boolean.TRUE);
+      } catch (IOException | PGPException e) {
+        fail(e);
+      }
+    }
+  }
+
+  @Override
+  public void onError(Throwable cause) {
+    if( !terminated ) {
+      terminated = true;
+      subscriber.onError(cause);
+    }
+  }
+
+}
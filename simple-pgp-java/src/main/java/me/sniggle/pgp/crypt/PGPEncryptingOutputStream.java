@@ -0,0 +1,135 @@
+package me.sniggle.pgp.crypt;
+
+import me.sniggle.pgp.crypt.internal.io.BufferPool;
+import org.bouncycastle.bcpg.BCPGOutputStream;
+import org.bouncycastle.bcpg.HashAlgorithmTags;
+import org.bouncycastle.openpgp.PGPCompressedDataGenerator;
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.PGPLiteralDataGenerator;
+import org.bouncycastle.openpgp.PGPPrivateKey;
+import org.bouncycastle.openpgp.PGPSignature;
+import org.bouncycastle.openpgp.PGPSignatureGenerator;
+import org.bouncycastle.openpgp.operator.bc.BcPGPContentSignerBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Date;
+
+/**
+ * The library dependent implementation of an EncryptingOutputStream, writes the plain data directly through
+ * the literal, compression, encryption and armor layers and signs it on the fly
+ */
+final class PGPEncryptingOutputStream extends EncryptingOutputStream {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PGPEncryptingOutputStream.class);
+
+  private final OutputStream armoredStream;
+  private final OutputStream encryptedDataStream;
+  private final PGPCompressedDataGenerator compressedDataGenerator;
+  private final OutputStream compressedDataStream;
+  private final PGPLiteralDataGenerator literalDataGenerator;
+  private final OutputStream literalDataStream;
+  private final PGPSignatureGenerator pgpSignatureGenerator;
+  private final BufferPool bufferPool;
+  private final byte[] encryptedDataBuffer;
+  private final byte[] literalDataBuffer;
+  private boolean closed = false;
+
+  /**
+   * @param armoredStream
+   *    the armored target stream, closed with this stream
+   * @param encryptedDataStream
+   *    the encrypted data stream writing to the armored stream, closed with this stream
+   * @param encryptedDataBuffer
+   *    the pooled buffer of the encrypted data stream, released with this stream
+   * @param compressionAlgorithm
+   *    the compression algorithm
+   * @param signingKey
+   *    the signing key (null if the data is not signed)
+   * @param inputDataName
+   *    the (file)name of the plain data
+   * @param inputDataLength
+   *    the length of the plain data if known in advance (written as definite length literal packet), -1 otherwise
+   * @param bufferPool
+   *    the pool providing the literal data buffer and taking back the pooled buffers
+   * @throws IOException
+   * @throws PGPException
+   */
+  PGPEncryptingOutputStream(OutputStream armoredStream, OutputStream encryptedDataStream, byte[] encryptedDataBuffer, int compressionAlgorithm, PGPPrivateKey signingKey, String inputDataName, long inputDataLength, BufferPool bufferPool) throws IOException, PGPException {
+    this.armoredStream = armoredStream;
+    this.encryptedDataStream = encryptedDataStream;
+    this.encryptedDataBuffer = encryptedDataBuffer;
+    this.bufferPool = bufferPool;
+    LOGGER.debug("Wrapping target stream in compressed data stream");
+    this.compressedDataGenerator = new PGPCompressedDataGenerator(compressionAlgorithm);
+    this.compressedDataStream = new BCPGOutputStream(compressedDataGenerator.open(encryptedDataStream));
+    if( signingKey != null ) {
+      LOGGER.info("Preparing message signing");
+      pgpSignatureGenerator = new PGPSignatureGenerator(new BcPGPContentSignerBuilder(signingKey.getPublicKeyPacket().getAlgorithm(), HashAlgorithmTags.SHA256));
+      pgpSignatureGenerator.init(PGPSignature.BINARY_DOCUMENT, signingKey);
+      pgpSignatureGenerator.generateOnePassVersion(false).encode(compressedDataStream);
+    } else {
+      LOGGER.info("No signing key provided. Encrypted data will be unsigned!");
+      pgpSignatureGenerator = null;
+    }
+    LOGGER.debug("Wrapping compressed data stream in literal data stream");
+    this.literalDataGenerator = new PGPLiteralDataGenerator(false);
+    if( inputDataLength >= 0 ) {
+      this.literalDataBuffer = null;
+      this.literalDataStream = literalDataGenerator.open(compressedDataStream, PGPLiteralDataGenerator.BINARY, inputDataName, inputDataLength, new Date());
+    } else {
+      this.literalDataBuffer = bufferPool.acquire();
+      this.literalDataStream = literalDataGenerator.open(compressedDataStream, PGPLiteralDataGenerator.BINARY, inputDataName, new Date(), literalDataBuffer);
+    }
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    literalDataStream.write(b);
+    if( pgpSignatureGenerator != null ) {
+      pgpSignatureGenerator.update((byte) b);
+    }
+  }
+
+  @Override
+  public void write(byte[] buffer, int offset, int length) throws IOException {
+    literalDataStream.write(buffer, offset, length);
+    if( pgpSignatureGenerator != null ) {
+      pgpSignatureGenerator.update(buffer, offset, length);
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+    literalDataStream.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    LOGGER.trace("close()");
+    if( !closed ) {
+      closed = true;
+      try {
+        literalDataGenerator.close();
+        if( pgpSignatureGenerator != null ) {
+          LOGGER.info("Generating data signature");
+          pgpSignatureGenerator.generate().encode(compressedDataStream);
+        }
+        compressedDataGenerator.close();
+      } catch (PGPException e) {
+        throw new IOException(e.getMessage(), e);
+      } finally {
+        try {
+          encryptedDataStream.close();
+        } finally {
+          bufferPool.release(literalDataBuffer);
+          bufferPool.release(encryptedDataBuffer);
+          armoredStream.close();
+        }
+      }
+    }
+  }
+
+}
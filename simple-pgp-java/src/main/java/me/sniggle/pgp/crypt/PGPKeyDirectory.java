@@ -0,0 +1,582 @@
+package me.sniggle.pgp.crypt;
+
+import me.sniggle.pgp.crypt.internal.io.ArmorInputStream;
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.PGPObjectFactory;
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.bouncycastle.openpgp.PGPPublicKeyRing;
+import org.bouncycastle.openpgp.PGPSecretKey;
+import org.bouncycastle.openpgp.PGPSecretKeyRing;
+import org.bouncycastle.openpgp.operator.bc.BcKeyFingerprintCalculator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An in-memory key ring store for address book sized key sets: key rings are indexed by key ID and fingerprint
+ * (hash maps) and by their normalized user IDs, e-mail addresses and e-mail domains (a trie), so recipients can
+ * be resolved by a prefix of their address.
+ *
+ * The indexes are immutable snapshots, updates copy the maps and the path of the trie they change and publish
+ * the new snapshot. Lookups therefore never lock and always see a consistent state, updates are serialized.
+ */
+public class PGPKeyDirectory implements KeyRingStore {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PGPKeyDirectory.class);
+
+  /**
+   * the public and secret key ring of a primary key
+   */
+  private static final class Entry {
+
+    private final long primaryKeyId;
+    private final byte[] publicKeyRing;
+    private final byte[] secretKeyRing;
+    private final Set<Long> publicKeyIds;
+    private final Set<Long> secretKeyIds;
+    private final Set<ByteBuffer> fingerprints;
+    private final Set<String> userIds;
+
+    Entry(long primaryKeyId, byte[] publicKeyRing, byte[] secretKeyRing, Set<Long> publicKeyIds, Set<Long> secretKeyIds, Set<ByteBuffer> fingerprints, Set<String> userIds) {
+      this.primaryKeyId = primaryKeyId;
+      this.publicKeyRing = publicKeyRing;
+      this.secretKeyRing = secretKeyRing;
+      this.publicKeyIds = publicKeyIds;
+      this.secretKeyIds = secretKeyIds;
+      this.fingerprints = fingerprints;
+      this.userIds = userIds;
+    }
+
+    /**
+     * @return the trie keys of the entry: user IDs, e-mail addresses and e-mail domains
+     */
+    Set<String> prefixKeys() {
+      Set<String> result = new HashSet<>(userIds);
+      for( String userId : userIds ) {
+        int at = userId.lastIndexOf('@');
+        if( at >= 0 && at < userId.length() - 1 && userId.indexOf(' ') < 0 ) {
+          result.add(userId.substring(at + 1));
+        }
+      }
+      return result;
+    }
+
+  }
+
+  /**
+   * an immutable node of the prefix trie
+   */
+  private static final class TrieNode {
+
+    private static final TrieNode EMPTY = new TrieNode(new char[0], new TrieNode[0], new long[0]);
+
+    private final char[] labels;
+    private final TrieNode[] children;
+    private final long[] primaryKeyIds;
+
+    TrieNode(char[] labels, TrieNode[] children, long[] primaryKeyIds) {
+      this.labels = labels;
+      this.children = children;
+      this.primaryKeyIds = primaryKeyIds;
+    }
+
+    boolean isEmpty() {
+      return labels.length == 0 && primaryKeyIds.length == 0;
+    }
+
+    TrieNode child(char label) {
+      int index = Arrays.binarySearch(labels, label);
+      return (index >= 0) ? children[index] : null;
+    }
+
+    /**
+     * copies the path to the node of the key and adds or removes the primary key ID there
+     *
+     * @param key
+     *    the trie key
+     * @param depth
+     *    the depth of this node
+     * @param primaryKeyId
+     *    the primary key ID
+     * @param add
+     *    true to add the ID, false to remove it
+     * @return the copy of this node
+     */
+    TrieNode with(String key, int depth, long primaryKeyId, boolean add) {
+      TrieNode result;
+      if( depth == key.length() ) {
+        long[] ids = without(primaryKeyIds, primaryKeyId);
+        if( add ) {
+          ids = Arrays.copyOf(ids, ids.length + 1);
+          ids[ids.length - 1] = primaryKeyId;
+        }
+        result = new TrieNode(labels, children, ids);
+      } else {
+        char label = key.charAt(depth);
+        int index = Arrays.binarySearch(labels, label);
+        TrieNode child = (index >= 0) ? children[index] : EMPTY;
+        TrieNode changed = child.with(key, depth + 1, primaryKeyId, add);
+        if( index >= 0 && changed.isEmpty() ) {
+          char[] changedLabels = new char[labels.length - 1];
+          TrieNode[] changedChildren = new TrieNode[children.length - 1];
+          System.arraycopy(labels, 0, changedLabels, 0, index);
+          System.arraycopy(labels, index + 1, changedLabels, index, labels.length - index - 1);
+          System.arraycopy(children, 0, changedChildren, 0, index);
+          System.arraycopy(children, index + 1, changedChildren, index, children.length - index - 1);
+          result = new TrieNode(changedLabels, changedChildren, primaryKeyIds);
+        } else if( index >= 0 ) {
+          TrieNode[] changedChildren = children.clone();
+          changedChildren[index] = changed;
+          result = new TrieNode(labels, changedChildren, primaryKeyIds);
+        } else if( !changed.isEmpty() ) {
+          int insertion = -index - 1;
+          char[] changedLabels = new char[labels.length + 1];
+          TrieNode[] changedChildren = new TrieNode[children.length + 1];
+          System.arraycopy(labels, 0, changedLabels, 0, insertion);
+          System.arraycopy(labels, insertion, changedLabels, insertion + 1, labels.length - insertion);
+          System.arraycopy(children, 0, changedChildren, 0, insertion);
+          System.arraycopy(children, insertion, changedChildren, insertion + 1, children.length - insertion);
+          changedLabels[insertion] = label;
+          changedChildren[insertion] = changed;
+          result = new TrieNode(changedLabels, changedChildren, primaryKeyIds);
+        } else {
+          result = this;
+        }
+      }
+      return result;
+    }
+
+    /**
+     * collects the primary key IDs of this node and its descendants
+     */
+    void collect(Set<Long> result) {
+      for( long primaryKeyId : primaryKeyIds ) {
+        result.add(primaryKeyId);
+      }
+      for( TrieNode child : children ) {
+        child.collect(result);
+      }
+    }
+
+    private static long[] without(long[] ids, long id) {
+      long[] result = ids;
+      for( int i = 0; i < ids.length; i++ ) {
+        if( ids[i] == id ) {
+          result = new long[ids.length - 1];
+          System.arraycopy(ids, 0, result, 0, i);
+          System.arraycopy(ids, i + 1, result, i, ids.length - i - 1);
+          break;
+        }
+      }
+      return result;
+    }
+
+  }
+
+  /**
+   * an immutable state of the directory
+   */
+  private static final class Snapshot {
+
+    private static final Snapshot EMPTY = new Snapshot(Collections.<Long, Entry>emptyMap(), Collections.<Long, Entry>emptyMap(), Collections.<ByteBuffer, Entry>emptyMap(), TrieNode.EMPTY);
+
+    private final Map<Long, Entry> entries;
+    private final Map<Long, Entry> byKeyId;
+    private final Map<ByteBuffer, Entry> byFingerprint;
+    private final TrieNode prefixes;
+
+    Snapshot(Map<Long, Entry> entries, Map<Long, Entry> byKeyId, Map<ByteBuffer, Entry> byFingerprint, TrieNode prefixes) {
+      this.entries = entries;
+      this.byKeyId = byKeyId;
+      this.byFingerprint = byFingerprint;
+      this.prefixes = prefixes;
+    }
+
+  }
+
+  /**
+   * a mutable copy of a snapshot collecting the changes of an update
+   */
+  private static final class Update {
+
+    private final Map<Long, Entry> entries;
+    private final Map<Long, Entry> byKeyId;
+    private final Map<ByteBuffer, Entry> byFingerprint;
+    private TrieNode prefixes;
+
+    Update(Snapshot snapshot) {
+      this.entries = new HashMap<>(snapshot.entries);
+      this.byKeyId = new HashMap<>(snapshot.byKeyId);
+      this.byFingerprint = new HashMap<>(snapshot.byFingerprint);
+      this.prefixes = snapshot.prefixes;
+    }
+
+    void remove(Entry entry) {
+      entries.remove(entry.primaryKeyId);
+      for( Long keyId : entry.publicKeyIds ) {
+        byKeyId.remove(keyId);
+      }
+      for( Long keyId : entry.secretKeyIds ) {
+        byKeyId.remove(keyId);
+      }
+      for( ByteBuffer fingerprint : entry.fingerprints ) {
+        byFingerprint.remove(fingerprint);
+      }
+      for( String prefixKey : entry.prefixKeys() ) {
+        prefixes = prefixes.with(prefixKey, 0, entry.primaryKeyId, false);
+      }
+    }
+
+    void add(Entry entry) {
+      entries.put(entry.primaryKeyId, entry);
+      for( Long keyId : entry.publicKeyIds ) {
+        byKeyId.put(keyId, entry);
+      }
+      for( Long keyId : entry.secretKeyIds ) {
+        byKeyId.put(keyId, entry);
+      }
+      for( ByteBuffer fingerprint : entry.fingerprints ) {
+        byFingerprint.put(fingerprint, entry);
+      }
+      for( String prefixKey : entry.prefixKeys() ) {
+        prefixes = prefixes.with(prefixKey, 0, entry.primaryKeyId, true);
+      }
+    }
+
+    Snapshot toSnapshot() {
+      return new Snapshot(entries, byKeyId, byFingerprint, prefixes);
+    }
+
+  }
+
+  private final Lock updateLock = new ReentrantLock();
+  private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+  /**
+   * @see KeyRingStore#addKeyRings(InputStream)
+   *
+   * @param keyRings
+   *    the (ascii-armored or binary) public or secret key rings
+   * @return
+   */
+  @Override
+  public int addKeyRings(InputStream keyRings) {
+    LOGGER.trace("addKeyRings(InputStream)");
+    LOGGER.trace("Key Rings: {}", keyRings == null ? "not set" : "set");
+    int result = -1;
+    List<Object> parsedKeyRings = new ArrayList<>();
+    try( InputStream in = ArmorInputStream.decode(keyRings) ) {
+      PGPObjectFactory objectFactory = new PGPObjectFactory(in, new BcKeyFingerprintCalculator());
+      Object pgpObject;
+      while( (pgpObject = objectFactory.nextObject()) != null ) {
+        if( pgpObject instanceof PGPPublicKeyRing || pgpObject instanceof PGPSecretKeyRing ) {
+          parsedKeyRings.add(pgpObject);
+        }
+      }
+      result = update(Collections.<Long>emptySet(), parsedKeyRings);
+      LOGGER.debug("Added {} key ring(s)", result);
+    } catch (IOException e) {
+      LOGGER.error("{}", e.getMessage());
+    }
+    return result;
+  }
+
+  /**
+   * removes the key rings of the primary keys and adds the key rings, the changes are published as one snapshot
+   *
+   * @param removedPrimaryKeyIds
+   *    the IDs of the primary keys whose public and secret key rings are removed
+   * @param keyRings
+   *    the parsed public or secret key rings to add
+   * @return the number of key rings added
+   * @throws IOException
+   */
+  int update(Collection<Long> removedPrimaryKeyIds, List<?> keyRings) throws IOException {
+    LOGGER.trace("update(Collection<Long>, List<?>)");
+    updateLock.lock();
+    try {
+      Update update = new Update(snapshot);
+      for( Long primaryKeyId : removedPrimaryKeyIds ) {
+        Entry previous = update.entries.get(primaryKeyId);
+        if( previous != null ) {
+          update.remove(previous);
+        }
+      }
+      for( Object keyRing : keyRings ) {
+        PGPPublicKey primaryKey = (keyRing instanceof PGPSecretKeyRing) ? ((PGPSecretKeyRing) keyRing).getPublicKey() : ((PGPPublicKeyRing) keyRing).getPublicKey();
+        Entry previous = update.entries.get(primaryKey.getKeyID());
+        if( previous != null ) {
+          update.remove(previous);
+        }
+        update.add(merge(previous, keyRing));
+      }
+      snapshot = update.toSnapshot();
+    } finally {
+      updateLock.unlock();
+    }
+    return keyRings.size();
+  }
+
+  /**
+   * creates the entry of the key ring, replacing the key ring of the same kind of the previous entry
+   *
+   * @param previous
+   *    the previous entry of the primary key (may be null)
+   * @param keyRing
+   *    the public or secret key ring
+   * @return the entry
+   * @throws IOException
+   */
+  private static Entry merge(Entry previous, Object keyRing) throws IOException {
+    byte[] publicKeyRing = (previous != null) ? previous.publicKeyRing : null;
+    byte[] secretKeyRing = (previous != null) ? previous.secretKeyRing : null;
+    Set<Long> publicKeyIds = (previous != null) ? previous.publicKeyIds : Collections.<Long>emptySet();
+    Set<Long> secretKeyIds = (previous != null) ? previous.secretKeyIds : Collections.<Long>emptySet();
+    Set<String> userIds = new HashSet<>();
+    PGPPublicKey primaryKey;
+    List<PGPPublicKey> keys = new ArrayList<>();
+    if( keyRing instanceof PGPSecretKeyRing ) {
+      PGPSecretKeyRing pgpSecretKeyRing = (PGPSecretKeyRing) keyRing;
+      primaryKey = pgpSecretKeyRing.getPublicKey();
+      secretKeyRing = pgpSecretKeyRing.getEncoded();
+      secretKeyIds = new HashSet<>();
+      Iterator<PGPSecretKey> secretKeys = pgpSecretKeyRing.getSecretKeys();
+      while( secretKeys.hasNext() ) {
+        PGPPublicKey key = secretKeys.next().getPublicKey();
+        secretKeyIds.add(key.getKeyID());
+        keys.add(key);
+      }
+      if( publicKeyRing != null ) {
+        addKeys(new PGPPublicKeyRing(publicKeyRing, new BcKeyFingerprintCalculator()), keys, userIds);
+      }
+    } else {
+      PGPPublicKeyRing pgpPublicKeyRing = (PGPPublicKeyRing) keyRing;
+      primaryKey = pgpPublicKeyRing.getPublicKey();
+      publicKeyRing = pgpPublicKeyRing.getEncoded();
+      publicKeyIds = new HashSet<>();
+      Iterator<PGPPublicKey> publicKeys = pgpPublicKeyRing.getPublicKeys();
+      while( publicKeys.hasNext() ) {
+        PGPPublicKey key = publicKeys.next();
+        publicKeyIds.add(key.getKeyID());
+        keys.add(key);
+      }
+      if( secretKeyRing != null ) {
+        try {
+          addKeys(new PGPSecretKeyRing(secretKeyRing, new BcKeyFingerprintCalculator()), keys, userIds);
+        } catch (PGPException e) {
+          throw new IOException(e.getMessage(), e);
+        }
+      }
+    }
+    Set<ByteBuffer> fingerprints = new HashSet<>();
+    for( PGPPublicKey key : keys ) {
+      fingerprints.add(ByteBuffer.wrap(key.getFingerprint()));
+    }
+    userIds.addAll(PGPKeyRingStore.userIdsOf(primaryKey));
+    return new Entry(primaryKey.getKeyID(), publicKeyRing, secretKeyRing, publicKeyIds, secretKeyIds, fingerprints, userIds);
+  }
+
+  private static void addKeys(PGPPublicKeyRing keyRing, List<PGPPublicKey> keys, Set<String> userIds) {
+    Iterator<PGPPublicKey> publicKeys = keyRing.getPublicKeys();
+    while( publicKeys.hasNext() ) {
+      keys.add(publicKeys.next());
+    }
+    userIds.addAll(PGPKeyRingStore.userIdsOf(keyRing.getPublicKey()));
+  }
+
+  private static void addKeys(PGPSecretKeyRing keyRing, List<PGPPublicKey> keys, Set<String> userIds) {
+    Iterator<PGPSecretKey> secretKeys = keyRing.getSecretKeys();
+    while( secretKeys.hasNext() ) {
+      keys.add(secretKeys.next().getPublicKey());
+    }
+    userIds.addAll(PGPKeyRingStore.userIdsOf(keyRing.getPublicKey()));
+  }
+
+  /**
+   * removes the public and secret key ring containing the key
+   *
+   * @param keyId
+   *    the ID of a (primary or sub) key of the key ring
+   * @return true if a key ring has been removed
+   */
+  public boolean removeKeyRing(long keyId) {
+    LOGGER.trace("removeKeyRing(long)");
+    boolean result = false;
+    updateLock.lock();
+    try {
+      Entry entry = snapshot.byKeyId.get(keyId);
+      if( entry != null ) {
+        Update update = new Update(snapshot);
+        update.remove(entry);
+        snapshot = update.toSnapshot();
+        result = true;
+      }
+    } finally {
+      updateLock.unlock();
+    }
+    return result;
+  }
+
+  /**
+   * @return the number of primary keys in the directory
+   */
+  public int size() {
+    return snapshot.entries.size();
+  }
+
+  /**
+   * @see KeyRingStore#findPublicKeyRing(long)
+   *
+   * @param keyId
+   *    the ID of the key
+   * @return
+   */
+  @Override
+  public InputStream findPublicKeyRing(long keyId) {
+    LOGGER.trace("findPublicKeyRing(long)");
+    Entry entry = snapshot.byKeyId.get(keyId);
+    return (entry != null && entry.publicKeyIds.contains(keyId)) ? new ByteArrayInputStream(entry.publicKeyRing) : null;
+  }
+
+  /**
+   * @see KeyRingStore#findPublicKeyRing(byte[])
+   *
+   * @param fingerprint
+   *    the fingerprint of the key
+   * @return
+   */
+  @Override
+  public InputStream findPublicKeyRing(byte[] fingerprint) {
+    LOGGER.trace("findPublicKeyRing(byte[])");
+    Entry entry = (fingerprint != null) ? snapshot.byFingerprint.get(ByteBuffer.wrap(fingerprint)) : null;
+    return (entry != null && entry.publicKeyRing != null) ? new ByteArrayInputStream(entry.publicKeyRing) : null;
+  }
+
+  /**
+   * @see KeyRingStore#findPublicKeyRings(String)
+   *
+   * @param userId
+   *    the user ID or e-mail address
+   * @return
+   */
+  @Override
+  public InputStream findPublicKeyRings(String userId) {
+    LOGGER.trace("findPublicKeyRings(String)");
+    return findKeyRings(userId, false, false);
+  }
+
+  /**
+   * looks up the public key rings with a user ID, e-mail address or e-mail domain starting with the prefix
+   * (compared case insensitive), e.g. "alice@", "alice@example" or "example.org"
+   *
+   * @param prefix
+   *    the prefix
+   * @return the stream of all matching key rings or null if none matches
+   */
+  public InputStream findPublicKeyRingsByPrefix(String prefix) {
+    LOGGER.trace("findPublicKeyRingsByPrefix(String)");
+    return findKeyRings(prefix, true, false);
+  }
+
+  /**
+   * @see KeyRingStore#findSecretKeyRing(long)
+   *
+   * @param keyId
+   *    the ID of the key
+   * @return
+   */
+  @Override
+  public InputStream findSecretKeyRing(long keyId) {
+    LOGGER.trace("findSecretKeyRing(long)");
+    Entry entry = snapshot.byKeyId.get(keyId);
+    return (entry != null && entry.secretKeyIds.contains(keyId)) ? new ByteArrayInputStream(entry.secretKeyRing) : null;
+  }
+
+  /**
+   * @see KeyRingStore#findSecretKeyRings(String)
+   *
+   * @param userId
+   *    the user ID or e-mail address
+   * @return
+   */
+  @Override
+  public InputStream findSecretKeyRings(String userId) {
+    LOGGER.trace("findSecretKeyRings(String)");
+    return findKeyRings(userId, false, true);
+  }
+
+  /**
+   * looks up the key rings in the trie
+   *
+   * @param key
+   *    the user ID, e-mail address or prefix
+   * @param prefix
+   *    true if the key is a prefix, false if it has to match a user ID or e-mail address
+   * @param secret
+   *    true to look up secret key rings
+   * @return the stream of the key rings or null
+   */
+  private InputStream findKeyRings(String key, boolean prefix, boolean secret) {
+    LOGGER.trace("Key: {}", key == null ? "not set" : "set");
+    InputStream result = null;
+    if( key != null ) {
+      Snapshot current = snapshot;
+      String normalizedKey = PGPKeyRingStore.normalize(key);
+      TrieNode node = current.prefixes;
+      for( int i = 0; i < normalizedKey.length() && node != null; i++ ) {
+        node = node.child(normalizedKey.charAt(i));
+      }
+      if( node != null ) {
+        Set<Long> primaryKeyIds = new LinkedHashSet<>();
+        if( prefix ) {
+          node.collect(primaryKeyIds);
+        } else {
+          for( long primaryKeyId : node.primaryKeyIds ) {
+            primaryKeyIds.add(primaryKeyId);
+          }
+        }
+        ByteArrayOutputStream keyRings = new ByteArrayOutputStream();
+        for( Long primaryKeyId : primaryKeyIds ) {
+          Entry entry = current.entries.get(primaryKeyId);
+          byte[] keyRing = secret ? entry.secretKeyRing : entry.publicKeyRing;
+          if( keyRing != null && (prefix || entry.userIds.contains(normalizedKey)) ) {
+            keyRings.write(keyRing, 0, keyRing.length);
+          }
+        }
+        if( keyRings.size() > 0 ) {
+          result = new ByteArrayInputStream(keyRings.toByteArray());
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * the directory holds no resources, closing it has no effect
+   *
+   * @see KeyRingStore#close()
+   */
+  @Override
+  public void close() {
+    LOGGER.trace("close()");
+  }
+
+}
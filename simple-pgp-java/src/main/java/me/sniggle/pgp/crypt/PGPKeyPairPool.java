@@ -0,0 +1,277 @@
+package me.sniggle.pgp.crypt;
+
+import org.bouncycastle.crypto.AsymmetricCipherKeyPair;
+import org.bouncycastle.crypto.generators.RSAKeyPairGenerator;
+import org.bouncycastle.crypto.params.RSAKeyGenerationParameters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An opt-in pool of pre-generated raw RSA key pairs for the key pair generator.
+ *
+ * Generating the RSA key pairs (finding the primes) dominates the generation of a PGP key pair. The pool
+ * generates them on background threads, a key pair generator using the pool only binds the user ID, creates
+ * the self-signatures and protects the secret keys. Every pooled key pair is handed out exactly once and only
+ * kept in memory.
+ */
+public class PGPKeyPairPool {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PGPKeyPairPool.class);
+
+  private static final BigInteger PUBLIC_EXPONENT = BigInteger.valueOf(0x10001);
+
+  private static final int CERTAINTY = 12;
+
+  private final int keySize;
+  private final BlockingQueue<AsymmetricCipherKeyPair> pooledKeyPairs = new LinkedBlockingQueue<>();
+  private final SecureRandom secureRandom = new SecureRandom();
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong generated = new AtomicLong();
+  /**
+   * the number of pooled key pairs and key pairs being generated, reserved before generating so that
+   * concurrent refills never exceed the pool size
+   */
+  private final AtomicInteger reserved = new AtomicInteger();
+  /**
+   * guards the lifecycle of the refill threads and adding key pairs to the pool
+   */
+  private final Lock lock = new ReentrantLock();
+
+  private int poolSize = 8;
+  private int refillBatchSize = 1;
+  private long refillInterval = 100;
+  private int refillThreads = 1;
+  private ScheduledExecutorService refillExecutor;
+  private boolean shutdown;
+
+  /**
+   * @param keySize
+   *    the size in bits of the pooled key pairs, needs to match the key size requested from the key pair
+   *    generator using the pool
+   */
+  public PGPKeyPairPool(int keySize) {
+    this.keySize = keySize;
+  }
+
+  /**
+   * the maximum number of pooled key pairs (a PGP key pair uses two)
+   *
+   * @param poolSize
+   *    the pool size
+   */
+  public void setPoolSize(int poolSize) {
+    this.poolSize = poolSize;
+  }
+
+  /**
+   * the maximum number of key pairs generated per thread and refill run
+   *
+   * @param refillBatchSize
+   *    the number of key pairs
+   */
+  public void setRefillBatchSize(int refillBatchSize) {
+    this.refillBatchSize = refillBatchSize;
+  }
+
+  /**
+   * the delay between two refill runs of a thread in milliseconds, limits the CPU spent on refilling, takes
+   * effect on #start()
+   *
+   * @param refillInterval
+   *    the interval in milliseconds
+   */
+  public void setRefillInterval(long refillInterval) {
+    this.refillInterval = refillInterval;
+  }
+
+  /**
+   * the number of threads refilling the pool, takes effect on #start()
+   *
+   * @param refillThreads
+   *    the number of threads
+   */
+  public void setRefillThreads(int refillThreads) {
+    this.refillThreads = refillThreads;
+  }
+
+  /**
+   * accessor to the key size of the pooled key pairs
+   *
+   * @return the key size in bits
+   */
+  public int getKeySize() {
+    return keySize;
+  }
+
+  /**
+   * @return the number of key pairs currently pooled
+   */
+  public int getDepth() {
+    return pooledKeyPairs.size();
+  }
+
+  /**
+   * @return the number of key pairs served from the pool
+   */
+  public long getHits() {
+    return hits.get();
+  }
+
+  /**
+   * @return the number of key pairs the pool had none for
+   */
+  public long getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * @return the number of key pairs generated by the pool
+   */
+  public long getGenerated() {
+    return generated.get();
+  }
+
+  /**
+   * starts the background refill of the pool
+   */
+  public void start() {
+    LOGGER.trace("start()");
+    lock.lock();
+    try {
+      shutdown = false;
+      if( refillExecutor == null ) {
+        refillExecutor = Executors.newScheduledThreadPool(refillThreads, new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "simple-pgp-key-pair-pool");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+          }
+        });
+        for( int i = 0; i < refillThreads; i++ ) {
+          refillExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+              refill();
+            }
+          }, 0, refillInterval, TimeUnit.MILLISECONDS);
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * stops the background refill and discards all pooled key pairs, key pairs of refills still running are
+   * discarded too until the pool is started again
+   */
+  public void shutdown() {
+    LOGGER.trace("shutdown()");
+    lock.lock();
+    try {
+      if( refillExecutor != null ) {
+        refillExecutor.shutdownNow();
+        refillExecutor = null;
+      }
+      shutdown = true;
+      while( pooledKeyPairs.poll() != null ) {
+        reserved.decrementAndGet();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * generates up to the refill batch size key pairs if the pool is not full
+   */
+  public void refill() {
+    LOGGER.trace("refill()");
+    for( int i = 0; i < refillBatchSize && !Thread.currentThread().isInterrupted() && reserve(); i++ ) {
+      boolean pooled = false;
+      try {
+        AsymmetricCipherKeyPair keyPair = generate(keySize, secureRandom);
+        generated.incrementAndGet();
+        lock.lock();
+        try {
+          pooled = !shutdown && pooledKeyPairs.offer(keyPair);
+        } finally {
+          lock.unlock();
+        }
+      } catch (RuntimeException e) {
+        LOGGER.error("Generating a key pair failed: {}", e.getMessage());
+      } finally {
+        if( !pooled ) {
+          reserved.decrementAndGet();
+        }
+      }
+    }
+  }
+
+  /**
+   * reserves a slot for a key pair to generate
+   *
+   * @return true if the pool is not full
+   */
+  private boolean reserve() {
+    int current;
+    do {
+      current = reserved.get();
+      if( current >= poolSize ) {
+        return false;
+      }
+    } while( !reserved.compareAndSet(current, current + 1) );
+    return true;
+  }
+
+  /**
+   * removes a pooled key pair
+   *
+   * @param keySize
+   *    the key size requested
+   * @return the pooled key pair or null if none is available
+   */
+  AsymmetricCipherKeyPair take(int keySize) {
+    LOGGER.trace("take(int)");
+    AsymmetricCipherKeyPair result = (keySize == this.keySize) ? pooledKeyPairs.poll() : null;
+    if( result != null ) {
+      reserved.decrementAndGet();
+      hits.incrementAndGet();
+    } else {
+      misses.incrementAndGet();
+    }
+    return result;
+  }
+
+  /**
+   * generates a raw RSA key pair
+   *
+   * @param keySize
+   *    the key size in bits
+   * @param secureRandom
+   *    the random generator
+   * @return the key pair
+   */
+  static AsymmetricCipherKeyPair generate(int keySize, SecureRandom secureRandom) {
+    RSAKeyPairGenerator generator = new RSAKeyPairGenerator();
+    generator.init(new RSAKeyGenerationParameters(PUBLIC_EXPONENT, secureRandom, keySize, CERTAINTY));
+    return generator.generateKeyPair();
+  }
+
+}
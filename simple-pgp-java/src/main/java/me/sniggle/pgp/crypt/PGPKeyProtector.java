@@ -0,0 +1,187 @@
+package me.sniggle.pgp.crypt;
+
+import me.sniggle.pgp.crypt.internal.AlgorithmSelection;
+import me.sniggle.pgp.crypt.internal.BasePGPCommon;
+import org.bouncycastle.bcpg.S2K;
+import org.bouncycastle.openpgp.PGPEncryptedData;
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.PGPSecretKeyRing;
+import org.bouncycastle.openpgp.PGPSecretKeyRingCollection;
+import org.bouncycastle.openpgp.operator.PBESecretKeyDecryptor;
+import org.bouncycastle.openpgp.operator.PBESecretKeyEncryptor;
+import org.bouncycastle.openpgp.operator.bc.BcPBESecretKeyDecryptorBuilder;
+import org.bouncycastle.openpgp.operator.bc.BcPBESecretKeyEncryptorBuilder;
+import org.bouncycastle.openpgp.operator.bc.BcPGPDigestCalculatorProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Tunes the password protection of secret keys: the S2K function hashes the salted password repeatedly
+ * until the coded number of octets is hashed, this work dominates the time needed to unlock a secret key.
+ *
+ * @see me.sniggle.pgp.crypt.internal.BaseKeyPairGenerator#setS2KCount(int)
+ */
+public class PGPKeyProtector extends BasePGPCommon implements KeyProtector {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PGPKeyProtector.class);
+
+  private static final int MAX_S2K_COUNT = 0xff;
+
+  /**
+   * the minimum duration of the measurement the calibration extrapolates from
+   */
+  private static final long MIN_MEASUREMENT_NANOS = 10000000L;
+
+  private int s2kHashAlgorithm = AlgorithmSelection.getDefaultS2KHashAlgorithm();
+  private int s2kCount = AlgorithmSelection.getDefaultS2KCount();
+
+  public PGPKeyProtector() {
+  }
+
+  /**
+   * set the hash algorithm of the S2K function used by #reprotect(InputStream, String, String, OutputStream)
+   * and measured by #calibrate(long)
+   *
+   * @param s2kHashAlgorithm
+   *    the hash algorithm constant
+   */
+  public void setS2KHashAlgorithm(int s2kHashAlgorithm) {
+    this.s2kHashAlgorithm = s2kHashAlgorithm;
+  }
+
+  /**
+   * set the coded iteration count of the S2K function used by #reprotect(InputStream, String, String, OutputStream)
+   *
+   * @param s2kCount
+   *    the coded count (0 to 255)
+   */
+  public void setS2KCount(int s2kCount) {
+    this.s2kCount = s2kCount;
+  }
+
+  /**
+   * decodes the coded iteration count of the S2K function (RFC 4880, 3.7.1.3)
+   *
+   * @param s2kCount
+   *    the coded count (0 to 255)
+   * @return the number of octets hashed
+   */
+  public static long getS2KIterations(int s2kCount) {
+    return (16L + (s2kCount & 15)) << ((s2kCount >> 4) + 6);
+  }
+
+  /**
+   * encodes the iteration count of the S2K function
+   *
+   * @param iterations
+   *    the minimum number of octets to hash
+   * @return the smallest coded count hashing at least the given number of octets, 255 if none does
+   */
+  public static int toS2KCount(long iterations) {
+    int result = 0;
+    while( result < MAX_S2K_COUNT && getS2KIterations(result) < iterations ) {
+      result++;
+    }
+    return result;
+  }
+
+  /**
+   * @see KeyProtector#calibrate(long)
+   *
+   * @param targetMillis
+   *    the target unlock time in milliseconds, e.g. 50
+   * @return
+   */
+  @Override
+  public int calibrate(long targetMillis) {
+    LOGGER.trace("calibrate(long)");
+    LOGGER.trace("Target: {} ms", targetMillis);
+    int result = -1;
+    try {
+      PBESecretKeyDecryptor decryptor = new BcPBESecretKeyDecryptorBuilder(new BcPGPDigestCalculatorProvider()).build("calibration".toCharArray());
+      byte[] salt = new byte[8];
+      getSecureRandom().nextBytes(salt);
+      int probeCount = AlgorithmSelection.getDefaultS2KCount();
+      long elapsedNanos = measure(decryptor, salt, probeCount);
+      while( elapsedNanos < MIN_MEASUREMENT_NANOS && probeCount + 0x10 <= MAX_S2K_COUNT ) {
+        probeCount += 0x10;
+        elapsedNanos = measure(decryptor, salt, probeCount);
+      }
+      double octetsPerNano = (double) getS2KIterations(probeCount) / Math.max(1, elapsedNanos);
+      result = toS2KCount((long) (octetsPerNano * targetMillis * 1000000L));
+      LOGGER.info("Calibrated S2K count {} ({} octets) for {} ms", result, getS2KIterations(result), targetMillis);
+    } catch (PGPException e) {
+      LOGGER.error("{}", e.getMessage());
+    }
+    return result;
+  }
+
+  /**
+   * measures the key derivation of the S2K function
+   *
+   * @return the elapsed time of the fastest of two runs
+   * @throws PGPException
+   */
+  private long measure(PBESecretKeyDecryptor decryptor, byte[] salt, int probeCount) throws PGPException {
+    long result = Long.MAX_VALUE;
+    S2K s2k = new S2K(s2kHashAlgorithm, salt, probeCount);
+    for( int i = 0; i < 2; i++ ) {
+      long start = System.nanoTime();
+      decryptor.makeKeyFromPassPhrase(PGPEncryptedData.AES_128, s2k);
+      result = Math.min(result, System.nanoTime() - start);
+    }
+    return result;
+  }
+
+  /**
+   * @see KeyProtector#reprotect(InputStream, String, String, OutputStream)
+   *
+   * @param secretKey
+   *    the (ascii-armored or binary) secret key rings
+   * @param password
+   *    the current password of the secret keys
+   * @param newPassword
+   *    the password to protect the secret keys with (the current password if null)
+   * @param target
+   *    the target stream for the re-protected secret key rings
+   * @return
+   */
+  @Override
+  public boolean reprotect(InputStream secretKey, String password, String newPassword, OutputStream target) {
+    LOGGER.trace("reprotect(InputStream, String, String, OutputStream)");
+    LOGGER.trace("Secret Key: {}, Password: {}, New Password: {}, Target: {}", secretKey == null ? "not set" : "set", password == null ? "not set" : "********",
+        newPassword == null ? "not set" : "********", target == null ? "not set" : "set");
+    boolean result = false;
+    try {
+      PGPSecretKeyRingCollection secretKeyRingCollection = readSecretKeyRingCollection(secretKey);
+      PBESecretKeyDecryptor decryptor = new BcPBESecretKeyDecryptorBuilder(new BcPGPDigestCalculatorProvider()).build(password.toCharArray());
+      int encryptionAlgorithm = isUnlimitedEncryptionStrength() ? AlgorithmSelection.getStrongEncryptionAlgorithm() : AlgorithmSelection.getWeakEncryptionAlgorithm();
+      PBESecretKeyEncryptor encryptor = new BcPBESecretKeyEncryptorBuilder(encryptionAlgorithm, new BcPGPDigestCalculatorProvider().get(s2kHashAlgorithm), s2kCount)
+          .setSecureRandom(getSecureRandom())
+          .build((newPassword != null ? newPassword : password).toCharArray());
+      List<PGPSecretKeyRing> secretKeyRings = new ArrayList<>();
+      Iterator<PGPSecretKeyRing> keyRings = secretKeyRingCollection.getKeyRings();
+      LOGGER.debug("Re-encrypting secret key rings");
+      while( keyRings.hasNext() ) {
+        secretKeyRings.add(PGPSecretKeyRing.copyWithNewPassword(keyRings.next(), decryptor, encryptor));
+      }
+      LOGGER.debug("Wrapping secret key target stream in armor stream");
+      try( OutputStream targetStream = PGPArmor.armor(target) ) {
+        LOGGER.info("Saving {} re-protected secret key ring(s)", secretKeyRings.size());
+        new PGPSecretKeyRingCollection(secretKeyRings).encode(targetStream);
+      }
+      result = true;
+    } catch (IOException | PGPException e) {
+      LOGGER.error("{}", e.getMessage());
+    }
+    return result;
+  }
+
+}
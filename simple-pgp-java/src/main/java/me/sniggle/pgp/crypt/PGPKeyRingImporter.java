@@ -0,0 +1,360 @@
+package me.sniggle.pgp.crypt;
+
+import me.sniggle.pgp.crypt.internal.SelfSignatures;
+import me.sniggle.pgp.crypt.internal.io.ArmorInputStream;
+import me.sniggle.pgp.crypt.internal.io.KeyRingPacketFilter;
+import me.sniggle.pgp.crypt.internal.io.KeyRingSplitter;
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.bouncycastle.openpgp.PGPPublicKeyRing;
+import org.bouncycastle.openpgp.PGPSecretKey;
+import org.bouncycastle.openpgp.PGPSecretKeyRing;
+import org.bouncycastle.openpgp.PGPSignature;
+import org.bouncycastle.openpgp.operator.bc.BcKeyFingerprintCalculator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Imports large key ring streams into a key ring store, validating the key rings in parallel.
+ *
+ * The stream is split into key rings at packet boundaries on the calling thread, batches of key rings are
+ * parsed and validated on a fork-join pool and the valid key rings are written to the store in the order they
+ * were read. The number of batches in flight is bounded, so the memory used does not depend on the size of the
+ * stream.
+ *
+ * A key ring is rejected if its primary key is revoked or expired or if none of its user IDs carries a valid
+ * self-certification. User IDs without valid self-certification and subkeys without valid binding signature,
+ * revoked or expired subkeys are dropped from the imported key rings.
+ */
+public class PGPKeyRingImporter implements KeyRingImporter {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PGPKeyRingImporter.class);
+
+  private static final int SECRET_KEY_TAG = 5;
+
+  /**
+   * the number of key rings validated by a single fork-join task
+   */
+  private static final int VALIDATION_THRESHOLD = 16;
+
+  /**
+   * the validated key rings and statistics of a batch
+   */
+  private static final class Batch {
+
+    private final ByteArrayOutputStream keyRings = new ByteArrayOutputStream();
+    private long read;
+    private long imported;
+    private long rejected;
+    private long userIdsDropped;
+    private long subkeysDropped;
+
+    void add(Batch other) {
+      byte[] otherKeyRings = other.keyRings.toByteArray();
+      keyRings.write(otherKeyRings, 0, otherKeyRings.length);
+      read += other.read;
+      imported += other.imported;
+      rejected += other.rejected;
+      userIdsDropped += other.userIdsDropped;
+      subkeysDropped += other.subkeysDropped;
+    }
+
+  }
+
+  /**
+   * validates a range of key rings, splitting large ranges
+   */
+  private final class ValidationTask extends RecursiveTask<Batch> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<byte[]> keyRings;
+
+    ValidationTask(List<byte[]> keyRings) {
+      this.keyRings = keyRings;
+    }
+
+    @Override
+    protected Batch compute() {
+      Batch result;
+      if( keyRings.size() > VALIDATION_THRESHOLD ) {
+        int middle = keyRings.size() / 2;
+        ValidationTask second = new ValidationTask(keyRings.subList(middle, keyRings.size()));
+        second.fork();
+        result = new ValidationTask(keyRings.subList(0, middle)).compute();
+        result.add(second.join());
+      } else {
+        result = new Batch();
+        long now = System.currentTimeMillis();
+        for( byte[] keyRing : keyRings ) {
+          result.read++;
+          byte[] validated = validate(keyRing, result, now);
+          if( validated != null ) {
+            result.keyRings.write(validated, 0, validated.length);
+            result.imported++;
+          } else {
+            result.rejected++;
+          }
+        }
+      }
+      return result;
+    }
+
+  }
+
+  private int parallelism = Runtime.getRuntime().availableProcessors();
+  private int batchSize = 1024;
+  private boolean skipCertifications = true;
+  private ImportProgressListener progressListener;
+
+  /**
+   * set the number of threads validating key rings
+   *
+   * @param parallelism
+   *    the number of threads, defaults to the number of available processors
+   */
+  public void setParallelism(int parallelism) {
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * set the number of key rings validated and written to the store at once
+   *
+   * @param batchSize
+   *    the number of key rings per batch
+   */
+  public void setBatchSize(int batchSize) {
+    this.batchSize = batchSize;
+  }
+
+  /**
+   * set whether certifications issued by other keys, user attributes and trust packets are dropped from the
+   * imported key rings
+   *
+   * @param skipCertifications
+   *    true (default) to drop the packets
+   */
+  public void setSkipCertifications(boolean skipCertifications) {
+    this.skipCertifications = skipCertifications;
+  }
+
+  /**
+   * set the listener notified whenever a batch has been written to the store
+   *
+   * @param progressListener
+   *    the listener (may be null)
+   */
+  public void setProgressListener(ImportProgressListener progressListener) {
+    this.progressListener = progressListener;
+  }
+
+  /**
+   * @see KeyRingImporter#importKeyRings(InputStream, KeyRingStore)
+   *
+   * @param keyRings
+   *    the (ascii-armored or binary) public or secret key rings
+   * @param target
+   *    the store the valid key rings are added to
+   * @return
+   */
+  @Override
+  public ImportResult importKeyRings(InputStream keyRings, KeyRingStore target) {
+    LOGGER.trace("importKeyRings(InputStream, KeyRingStore)");
+    LOGGER.trace("Key Rings: {}, Target: {}", keyRings == null ? "not set" : "set", target == null ? "not set" : "set");
+    ImportResult result = null;
+    long start = System.nanoTime();
+    Batch total = new Batch();
+    Deque<ForkJoinTask<Batch>> inFlight = new ArrayDeque<>();
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try( InputStream in = ArmorInputStream.decode(keyRings) ) {
+      KeyRingSplitter splitter = new KeyRingSplitter(in);
+      List<byte[]> batch = new ArrayList<>(batchSize);
+      byte[] keyRing;
+      while( (keyRing = splitter.next()) != null ) {
+        batch.add(keyRing);
+        if( batch.size() == batchSize ) {
+          inFlight.add(pool.submit(new ValidationTask(batch)));
+          batch = new ArrayList<>(batchSize);
+          while( inFlight.size() > 2 * parallelism ) {
+            write(inFlight.poll().get(), target, total, splitter, start);
+          }
+        }
+      }
+      if( !batch.isEmpty() ) {
+        inFlight.add(pool.submit(new ValidationTask(batch)));
+      }
+      while( !inFlight.isEmpty() ) {
+        write(inFlight.poll().get(), target, total, splitter, start);
+      }
+      result = progress(total, splitter, start);
+      LOGGER.info("Imported {} of {} key ring(s) in {} ms", total.imported, total.read, (System.nanoTime() - start) / 1000000);
+    } catch (IOException | ExecutionException e) {
+      LOGGER.error("{}", e.getMessage());
+    } catch (InterruptedException e) {
+      LOGGER.error("{}", e.getMessage());
+      Thread.currentThread().interrupt();
+    } finally {
+      pool.shutdownNow();
+    }
+    return result;
+  }
+
+  private static ImportResult progress(Batch total, KeyRingSplitter splitter, long start) {
+    return new ImportResult(total.read, total.imported, total.rejected, total.userIdsDropped, total.subkeysDropped, splitter.getBytesRead(), System.nanoTime() - start);
+  }
+
+  /**
+   * adds the validated key rings of the batch to the store and reports the progress
+   *
+   * @throws IOException
+   *    if the store does not accept the key rings
+   */
+  private void write(Batch batch, KeyRingStore target, Batch total, KeyRingSplitter splitter, long start) throws IOException {
+    if( batch.imported > 0 && target.addKeyRings(new ByteArrayInputStream(batch.keyRings.toByteArray())) == -1 ) {
+      throw new IOException("Key ring store rejected the key rings");
+    }
+    batch.keyRings.reset();
+    total.add(batch);
+    if( progressListener != null ) {
+      progressListener.onProgress(progress(total, splitter, start));
+    }
+  }
+
+  /**
+   * validates the key ring and drops invalid user IDs and subkeys
+   *
+   * @param keyRing
+   *    the encoded key ring
+   * @param batch
+   *    the statistics to update
+   * @param now
+   *    the current time used to check expiry
+   * @return the encoded valid key ring or null if it is rejected
+   */
+  private byte[] validate(byte[] keyRing, Batch batch, long now) {
+    byte[] result = null;
+    try {
+      byte[] encoded = skipCertifications ? filter(keyRing) : keyRing;
+      int tag = ((encoded[0] & 0x40) != 0) ? encoded[0] & 0x3f : (encoded[0] & 0x3f) >> 2;
+      if( tag == SECRET_KEY_TAG ) {
+        PGPSecretKeyRing secretKeyRing = new PGPSecretKeyRing(encoded, new BcKeyFingerprintCalculator());
+        PGPPublicKey storedPrimaryKey = secretKeyRing.getPublicKey();
+        PGPPublicKey primaryKey = validatePrimaryKey(storedPrimaryKey, batch, now);
+        if( primaryKey != null ) {
+          if( primaryKey != storedPrimaryKey ) {
+            secretKeyRing = PGPSecretKeyRing.insertSecretKey(secretKeyRing, PGPSecretKey.replacePublicKey(secretKeyRing.getSecretKey(), primaryKey));
+          }
+          List<PGPSecretKey> invalidSubkeys = new ArrayList<>();
+          Iterator<PGPSecretKey> secretKeys = secretKeyRing.getSecretKeys();
+          while( secretKeys.hasNext() ) {
+            PGPSecretKey secretKey = secretKeys.next();
+            if( !secretKey.isMasterKey() && !isValidSubkey(primaryKey, secretKey.getPublicKey(), now) ) {
+              invalidSubkeys.add(secretKey);
+            }
+          }
+          for( PGPSecretKey invalidSubkey : invalidSubkeys ) {
+            secretKeyRing = PGPSecretKeyRing.removeSecretKey(secretKeyRing, invalidSubkey);
+            batch.subkeysDropped++;
+          }
+          result = secretKeyRing.getEncoded();
+        }
+      } else {
+        PGPPublicKeyRing publicKeyRing = new PGPPublicKeyRing(encoded, new BcKeyFingerprintCalculator());
+        PGPPublicKey storedPrimaryKey = publicKeyRing.getPublicKey();
+        PGPPublicKey primaryKey = validatePrimaryKey(storedPrimaryKey, batch, now);
+        if( primaryKey != null ) {
+          if( primaryKey != storedPrimaryKey ) {
+            publicKeyRing = PGPPublicKeyRing.insertPublicKey(publicKeyRing, primaryKey);
+          }
+          List<PGPPublicKey> invalidSubkeys = new ArrayList<>();
+          Iterator<PGPPublicKey> publicKeys = publicKeyRing.getPublicKeys();
+          while( publicKeys.hasNext() ) {
+            PGPPublicKey publicKey = publicKeys.next();
+            if( !publicKey.isMasterKey() && !isValidSubkey(primaryKey, publicKey, now) ) {
+              invalidSubkeys.add(publicKey);
+            }
+          }
+          for( PGPPublicKey invalidSubkey : invalidSubkeys ) {
+            publicKeyRing = PGPPublicKeyRing.removePublicKey(publicKeyRing, invalidSubkey);
+            batch.subkeysDropped++;
+          }
+          result = publicKeyRing.getEncoded();
+        }
+      }
+    } catch (IOException | PGPException | RuntimeException e) {
+      LOGGER.debug("Rejecting malformed key ring: {}", e.getMessage());
+      result = null;
+    }
+    return result;
+  }
+
+  private static byte[] filter(byte[] keyRing) throws IOException {
+    ByteArrayOutputStream result = new ByteArrayOutputStream(keyRing.length);
+    try( InputStream in = new KeyRingPacketFilter(new ByteArrayInputStream(keyRing)) ) {
+      byte[] buffer = new byte[keyRing.length];
+      int read;
+      while( (read = in.read(buffer, 0, buffer.length)) != -1 ) {
+        result.write(buffer, 0, read);
+      }
+    }
+    return result.toByteArray();
+  }
+
+  /**
+   * checks the primary key and removes the user IDs without valid self-certification, revocations and the
+   * expiration time are only taken from self-signatures verified against the primary key
+   *
+   * @param primaryKey
+   *    the primary key
+   * @param batch
+   *    the statistics to update
+   * @param now
+   *    the current time
+   * @return the primary key (a copy if user IDs have been removed) or null if it is invalid
+   * @throws PGPException
+   */
+  private static PGPPublicKey validatePrimaryKey(PGPPublicKey primaryKey, Batch batch, long now) throws PGPException {
+    PGPPublicKey result = null;
+    if( !SelfSignatures.isRevoked(primaryKey, primaryKey) && now < SelfSignatures.getExpirationTime(primaryKey, SelfSignatures.latestSelfSignature(primaryKey, primaryKey)) ) {
+      List<byte[]> userIds = new ArrayList<>();
+      Iterator<?> userIdIterator = primaryKey.getRawUserIDs();
+      while( userIdIterator.hasNext() ) {
+        userIds.add((byte[]) userIdIterator.next());
+      }
+      result = primaryKey;
+      int validUserIds = 0;
+      for( byte[] userId : userIds ) {
+        if( SelfSignatures.latestSelfCertification(primaryKey, userId) != null ) {
+          validUserIds++;
+        } else {
+          result = PGPPublicKey.removeCertification(result, userId);
+          batch.userIdsDropped++;
+        }
+      }
+      if( validUserIds == 0 ) {
+        result = null;
+      }
+    }
+    return result;
+  }
+
+  private static boolean isValidSubkey(PGPPublicKey primaryKey, PGPPublicKey subkey, long now) throws PGPException {
+    PGPSignature binding = SelfSignatures.latestSelfSignature(primaryKey, subkey);
+    return binding != null && !SelfSignatures.isRevoked(primaryKey, subkey) && now < SelfSignatures.getExpirationTime(subkey, binding);
+  }
+
+}
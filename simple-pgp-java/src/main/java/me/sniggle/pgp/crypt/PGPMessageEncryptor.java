@@ -1,22 +1,55 @@
 package me.sniggle.pgp.crypt;
 
 import me.sniggle.pgp.crypt.internal.BasePGPCommon;
+import me.sniggle.pgp.crypt.internal.SessionKeyEncryptedDataGenerator;
+import me.sniggle.pgp.crypt.internal.io.ArmorInputStream;
+import me.sniggle.pgp.crypt.internal.io.ByteBufferInputStream;
+import me.sniggle.pgp.crypt.internal.io.ByteBufferOutputStream;
 import me.sniggle.pgp.crypt.internal.io.IOUtils;
-import org.bouncycastle.bcpg.ArmoredInputStream;
-import org.bouncycastle.bcpg.ArmoredOutputStream;
+import org.bouncycastle.bcpg.BCPGInputStream;
 import org.bouncycastle.bcpg.BCPGOutputStream;
-import org.bouncycastle.bcpg.HashAlgorithmTags;
+import org.bouncycastle.bcpg.CompressionAlgorithmTags;
+import org.bouncycastle.bcpg.ContainedPacket;
+import org.bouncycastle.bcpg.Packet;
+import org.bouncycastle.bcpg.PacketTags;
+import org.bouncycastle.bcpg.PublicKeyEncSessionPacket;
+import org.bouncycastle.bcpg.SymmetricKeyEncSessionPacket;
+import org.bouncycastle.crypto.RuntimeCryptoException;
 import org.bouncycastle.openpgp.*;
+import org.bouncycastle.openpgp.operator.PGPDataDecryptor;
 import org.bouncycastle.openpgp.operator.PublicKeyDataDecryptorFactory;
 import org.bouncycastle.openpgp.operator.bc.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.Date;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * The the library dependent implementation of a MessageEncryptor
@@ -27,75 +60,594 @@ public class PGPMessageEncryptor extends BasePGPCommon implements MessageEncrypt
 
   private static final Logger LOGGER = LoggerFactory.getLogger(PGPMessageEncryptor.class);
 
+  /**
+   * provides a previously extracted session key instead of decrypting it with a private key
+   */
+  private static final class SessionKeyDataDecryptorFactory implements PublicKeyDataDecryptorFactory {
+
+    private final byte[] sessionInfo;
+    /**
+     * the data decryptor creation does not require the private key
+     */
+    private final PublicKeyDataDecryptorFactory dataDecryptorFactory = new BcPublicKeyDataDecryptorFactory(null);
+
+    SessionKeyDataDecryptorFactory(SessionKey sessionKey) {
+      this.sessionInfo = createSessionInfo(sessionKey.getAlgorithm(), sessionKey.getKey());
+    }
+
+    @Override
+    public byte[] recoverSessionData(int keyAlgorithm, byte[][] secKeyData) throws PGPException {
+      return Arrays.copyOf(sessionInfo, sessionInfo.length);
+    }
+
+    @Override
+    public PGPDataDecryptor createDataDecryptor(boolean withIntegrityPacket, int encAlgorithm, byte[] key) throws PGPException {
+      return dataDecryptorFactory.createDataDecryptor(withIntegrityPacket, encAlgorithm, key);
+    }
+
+  }
+
+  /**
+   * recovers the session key of an anonymous (wildcard key id) recipient by trying the decryption keys
+   * of the receiver in parallel, the first key yielding a session key with a valid checksum wins
+   */
+  private final class TrialDataDecryptorFactory implements PublicKeyDataDecryptorFactory {
+
+    private final List<PGPSecretKey> candidates;
+    private final String password;
+    private final PublicKeyDataDecryptorFactory dataDecryptorFactory = new BcPublicKeyDataDecryptorFactory(null);
+    private volatile long decryptionKeyId = EncryptedMessageInfo.WILDCARD_KEY_ID;
+
+    TrialDataDecryptorFactory(PGPSecretKeyRingCollection secretKeyRingCollection, String password) {
+      this.candidates = findTrialCandidates(secretKeyRingCollection);
+      this.password = password;
+    }
+
+    /**
+     * @return the id of the key which recovered the session key
+     */
+    long getDecryptionKeyId() {
+      return decryptionKeyId;
+    }
+
+    @Override
+    public byte[] recoverSessionData(final int keyAlgorithm, final byte[][] secKeyData) throws PGPException {
+      LOGGER.info("Trying {} candidate keys for anonymous recipient", candidates.size());
+      byte[] result = null;
+      if( candidates.size() == 1 ) {
+        result = attemptSessionKeyRecovery(candidates.get(0), password, keyAlgorithm, secKeyData);
+        decryptionKeyId = candidates.get(0).getKeyID();
+      } else if( !candidates.isEmpty() ) {
+        CompletionService<byte[]> completionService = new ExecutorCompletionService<>(getTrialDecryptionExecutor());
+        Map<Future<byte[]>, Long> attempts = new HashMap<>();
+        for( final PGPSecretKey candidate : candidates ) {
+          attempts.put(completionService.submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() {
+              return attemptSessionKeyRecovery(candidate, password, keyAlgorithm, secKeyData);
+            }
+          }), candidate.getKeyID());
+        }
+        try {
+          for( int i = 0; result == null && i < attempts.size(); i++ ) {
+            Future<byte[]> attempt = completionService.take();
+            result = attempt.get();
+            if( result != null ) {
+              decryptionKeyId = attempts.get(attempt);
+            }
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new PGPException("Trial decryption interrupted", e);
+        } catch (ExecutionException e) {
+          throw new PGPException("Trial decryption failed", e);
+        } finally {
+          for( Future<byte[]> attempt : attempts.keySet() ) {
+            attempt.cancel(true);
+          }
+        }
+      }
+      if( result == null ) {
+        throw new PGPException("No private key found for anonymous recipient");
+      }
+      LOGGER.info("Session key of anonymous recipient recovered with key {}", decryptionKeyId);
+      preferredDecryptionKeyLock.lock();
+      try {
+        preferredDecryptionKeyIds.put(decryptionKeyId, Boolean.TRUE);
+      } finally {
+        preferredDecryptionKeyLock.unlock();
+      }
+      return result;
+    }
+
+    @Override
+    public PGPDataDecryptor createDataDecryptor(boolean withIntegrityPacket, int encAlgorithm, byte[] key) throws PGPException {
+      return dataDecryptorFactory.createDataDecryptor(withIntegrityPacket, encAlgorithm, key);
+    }
+
+  }
+
+  /**
+   * the executor used for trial decryption if none is configured
+   */
+  private static final class DefaultTrialDecryptionExecutor {
+
+    static final ExecutorService INSTANCE = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "simple-pgp-trial-decryption");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+
+  }
+
+  /**
+   * the keys used to encrypt (and sign) a message
+   */
+  private static final class EncryptionKeys {
+
+    private final PGPPublicKey encryptionKey;
+    private final PGPPrivateKey signingKey;
+    private final int signingKeyBitStrength;
+
+    EncryptionKeys(PGPPublicKey encryptionKey, PGPPrivateKey signingKey, int signingKeyBitStrength) {
+      this.encryptionKey = encryptionKey;
+      this.signingKey = signingKey;
+      this.signingKeyBitStrength = (signingKey != null) ? signingKeyBitStrength : 0;
+    }
+
+  }
+
+  /**
+   * the number of successful trial decryption keys remembered
+   */
+  private static final int MAX_PREFERRED_DECRYPTION_KEYS = 32;
+
+  /**
+   * the keys that recently recovered session keys of anonymous recipients (in access order), tried first
+   */
+  private final Map<Long, Boolean> preferredDecryptionKeyIds = new LinkedHashMap<Long, Boolean>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+      return size() > MAX_PREFERRED_DECRYPTION_KEYS;
+    }
+  };
+
+  /**
+   * guards the preferred decryption keys, a lock instead of a monitor does not pin virtual threads
+   */
+  private final Lock preferredDecryptionKeyLock = new ReentrantLock();
+
+  private ExecutorService trialDecryptionExecutor;
+
+  private PGPSessionKeyPool sessionKeyPool;
+
   public PGPMessageEncryptor() {
   }
 
   /**
-   * encrypts and if possible (secret key and password provided) signs the target stream
+   * enables the use of pre-generated session keys for the encryption
+   *
+   * @param sessionKeyPool
+   *    the session key pool (null disables pooling)
+   */
+  public void setSessionKeyPool(PGPSessionKeyPool sessionKeyPool) {
+    this.sessionKeyPool = sessionKeyPool;
+  }
+
+  /**
+   * sets the (bounded) executor used to try the decryption keys of anonymous recipients in parallel,
+   * the executor must not be the one running the decryption
+   *
+   * @param trialDecryptionExecutor
+   *    the executor (null uses a shared daemon pool sized to the available processors)
+   */
+  public void setTrialDecryptionExecutor(ExecutorService trialDecryptionExecutor) {
+    this.trialDecryptionExecutor = trialDecryptionExecutor;
+  }
+
+  private ExecutorService getTrialDecryptionExecutor() {
+    return (trialDecryptionExecutor != null) ? trialDecryptionExecutor : DefaultTrialDecryptionExecutor.INSTANCE;
+  }
+
+  /**
+   * collects the decryption keys of the receiver, keys that recently decrypted anonymous messages first
+   *
+   * @param secretKeyRingCollection
+   *    the receiver's secret keys
+   * @return the candidate keys
+   */
+  private List<PGPSecretKey> findTrialCandidates(PGPSecretKeyRingCollection secretKeyRingCollection) {
+    LOGGER.trace("findTrialCandidates(PGPSecretKeyRingCollection)");
+    List<PGPSecretKey> result = new ArrayList<>();
+    Iterator<PGPSecretKeyRing> keyRings = secretKeyRingCollection.getKeyRings();
+    while( keyRings.hasNext() ) {
+      Iterator<PGPSecretKey> secretKeys = keyRings.next().getSecretKeys();
+      while( secretKeys.hasNext() ) {
+        PGPSecretKey secretKey = secretKeys.next();
+        if( secretKey.getPublicKey().isEncryptionKey() && !secretKey.isPrivateKeyEmpty() ) {
+          result.add(secretKey);
+        }
+      }
+    }
+    final List<Long> preferred;
+    preferredDecryptionKeyLock.lock();
+    try {
+      preferred = new ArrayList<>(preferredDecryptionKeyIds.keySet());
+    } finally {
+      preferredDecryptionKeyLock.unlock();
+    }
+    Collections.reverse(preferred);
+    Collections.sort(result, new Comparator<PGPSecretKey>() {
+      @Override
+      public int compare(PGPSecretKey first, PGPSecretKey second) {
+        return Integer.compare(rank(first), rank(second));
+      }
+
+      private int rank(PGPSecretKey secretKey) {
+        int index = preferred.indexOf(secretKey.getKeyID());
+        return (index < 0) ? Integer.MAX_VALUE : index;
+      }
+    });
+    return result;
+  }
+
+  /**
+   * tries to recover the session key with a single candidate key, failing early on a checksum mismatch
    *
    * @param pgpSecretKey
-   *    the secret key
+   *    the candidate key
    * @param password
-   *    the password for the private key
+   *    the password of the candidate key
+   * @param keyAlgorithm
+   *    the public key algorithm of the session key packet
+   * @param secKeyData
+   *    the encrypted session key
+   * @return the session info or null if the key does not match
+   */
+  private byte[] attemptSessionKeyRecovery(PGPSecretKey pgpSecretKey, String password, int keyAlgorithm, byte[][] secKeyData) {
+    LOGGER.trace("attemptSessionKeyRecovery(PGPSecretKey, String, int, byte[][])");
+    byte[] result = null;
+    try {
+      PGPPrivateKey pgpPrivateKey = findPrivateKey(pgpSecretKey, password);
+      if( pgpPrivateKey != null ) {
+        byte[] sessionInfo = new BcPublicKeyDataDecryptorFactory(pgpPrivateKey).recoverSessionData(keyAlgorithm, secKeyData);
+        if( isValidSessionInfo(sessionInfo) ) {
+          result = sessionInfo;
+        } else {
+          LOGGER.debug("Session key checksum failed for key {}", pgpSecretKey.getKeyID());
+        }
+      }
+    } catch (PGPException | RuntimeCryptoException e) {
+      LOGGER.debug("Key {} does not match: {}", pgpSecretKey.getKeyID(), e.getMessage());
+    }
+    return result;
+  }
+
+  /**
+   * resolves the encryption key of the recipient and the signing key of the sender
+   *
+   * @param publicKeyOfRecipient
+   *    the public key stream of the message recipient
+   * @param privateKeyOfSender
+   *    the private key stream of the message sender (optional)
+   * @param userIdOfSender
+   *    the user id of the message sender
+   * @param passwordOfSendersPrivateKey
+   *    the password for the private key of the sender
+   * @return the keys or null if no public key is found
+   * @throws IOException
+   * @throws PGPException
+   */
+  private EncryptionKeys findEncryptionKeys(InputStream publicKeyOfRecipient, InputStream privateKeyOfSender, String userIdOfSender, String passwordOfSendersPrivateKey) throws IOException, PGPException {
+    LOGGER.trace("findEncryptionKeys(InputStream, InputStream, String, String)");
+    EncryptionKeys result = null;
+    LOGGER.debug("Reading public key");
+    PGPPublicKey pgpPublicKey = findPublicKey(publicKeyOfRecipient, createEncryptionKeyFilter());
+    if( pgpPublicKey != null ) {
+      PGPPrivateKey signingKey = null;
+      int signingKeyBitStrength = 0;
+      if( privateKeyOfSender != null ) {
+        LOGGER.debug("Looking up secret key");
+        PGPSecretKey pgpSecretKey = findSecretKey(privateKeyOfSender, userIdOfSender);
+        if( pgpSecretKey != null ) {
+          LOGGER.info("Retrieving signing key from secret key");
+          signingKey = findPrivateKey(pgpSecretKey, passwordOfSendersPrivateKey);
+          signingKeyBitStrength = pgpSecretKey.getPublicKey().getBitStrength();
+        }
+      } else {
+        LOGGER.info("No private key provided -> No signing of encrypted data");
+      }
+      result = new EncryptionKeys(pgpPublicKey, signingKey, signingKeyBitStrength);
+    } else {
+      LOGGER.error("No public key found for encryption!");
+    }
+    return result;
+  }
+
+  /**
+   * opens the encrypting stream for the recipient, the data is signed if secret key and password are provided
+   *
+   * @param publicKeyOfRecipient
+   *    the public key stream of the message recipient
+   * @param privateKeyOfSender
+   *    the private key stream of the message sender (optional)
+   * @param userIdOfSender
+   *    the user id of the message sender
+   * @param passwordOfSendersPrivateKey
+   *    the password for the private key of the sender
+   * @param inputDataName
+   *    the (file)name of the input data
+   * @param inputDataLength
+   *    the length of the input data if known in advance, -1 otherwise
+   * @param target
+   *    the encrypted (ascii-armored) target stream
+   * @return the encrypting stream or null if no public key is found
+   * @throws IOException
+   * @throws PGPException
+   */
+  private PGPEncryptingOutputStream openEncryptingStream(InputStream publicKeyOfRecipient, InputStream privateKeyOfSender, String userIdOfSender, String passwordOfSendersPrivateKey, String inputDataName, long inputDataLength, OutputStream target) throws IOException, PGPException {
+    LOGGER.trace("openEncryptingStream(InputStream, InputStream, String, String, String, long, OutputStream)");
+    EncryptionKeys encryptionKeys = findEncryptionKeys(publicKeyOfRecipient, privateKeyOfSender, userIdOfSender, passwordOfSendersPrivateKey);
+    return (encryptionKeys != null) ? openEncryptingStream(encryptionKeys, inputDataName, inputDataLength, target) : null;
+  }
+
+  /**
+   * opens the encrypting stream with the resolved keys
+   *
+   * @param encryptionKeys
+   *    the encryption and (optional) signing key
    * @param inputDataName
-   *    the name of the data
-   * @param inputData
-   *    the plain input data
-   * @param encryptedDataStream
-   *    the encrypted data stream
+   *    the (file)name of the input data
+   * @param inputDataLength
+   *    the length of the input data if known in advance, -1 otherwise
+   * @param target
+   *    the encrypted (ascii-armored) target stream
+   * @return the encrypting stream
+   * @throws IOException
    * @throws PGPException
+   */
+  private PGPEncryptingOutputStream openEncryptingStream(EncryptionKeys encryptionKeys, String inputDataName, long inputDataLength, OutputStream target) throws IOException, PGPException {
+    LOGGER.trace("openEncryptingStream(EncryptionKeys, String, long, OutputStream)");
+    BcPGPDataEncryptorBuilder encryptorBuilder = new BcPGPDataEncryptorBuilder(getEncryptionAlgorithm());
+    LOGGER.debug("Enabling integrity packet");
+    encryptorBuilder.setWithIntegrityPacket(true);
+    PGPSessionKeyPool.PooledSessionKey pooledSessionKey = null;
+    if( sessionKeyPool != null ) {
+      LOGGER.debug("Taking session key from pool");
+      pooledSessionKey = sessionKeyPool.take(encryptionKeys.encryptionKey, getEncryptionAlgorithm());
+    }
+    LOGGER.debug("Wrapping target stream in armor stream");
+    OutputStream wrappedTargetStream = PGPArmor.armor(target);
+    LOGGER.debug("Wrapping target stream in encrypted output stream");
+    byte[] encryptedDataBuffer = getBufferPool().acquire();
+    return new PGPEncryptingOutputStream(wrappedTargetStream, openEncryptedDataStream(encryptorBuilder, encryptionKeys.encryptionKey, pooledSessionKey, wrappedTargetStream, encryptedDataBuffer),
+        encryptedDataBuffer, getCompressionAlgorithm(), encryptionKeys.signingKey, inputDataName, inputDataLength, getBufferPool());
+  }
+
+  /**
+   * reads the leading session key packets of an encrypted message, the stream is positioned at the
+   * start of the encrypted data packet afterwards
+   *
+   * @param packetStream
+   *    the (decoded) encrypted message
+   * @return the public and symmetric key encrypted session key packets
    * @throws IOException
+   * @throws PGPException
    */
-  private void encryptAndSign(PGPSecretKey pgpSecretKey, String password, String inputDataName, InputStream inputData, OutputStream encryptedDataStream) throws PGPException, IOException {
-    LOGGER.trace("encryptAndSign(PGPSecretKey, String, String, InputStream, OutputStream)");
-    LOGGER.trace("Secret Key: {}, Password: {}, Input Name: {}, Input Data: {}, Output Data: {}", pgpSecretKey == null ? "not set" : "set", password == null ? "not set" : "********", inputDataName, inputData == null ? "not set" : "set", encryptedDataStream == null ? "not set" : "set");
-    PGPSignatureGenerator pgpSignatureGenerator = null;
+  private List<ContainedPacket> readSessionKeyPackets(BCPGInputStream packetStream) throws IOException, PGPException {
+    LOGGER.trace("readSessionKeyPackets(BCPGInputStream)");
+    List<ContainedPacket> result = new ArrayList<>();
+    int tag;
+    while( (tag = packetStream.nextPacketTag()) == PacketTags.PUBLIC_KEY_ENC_SESSION || tag == PacketTags.SYMMETRIC_KEY_ENC_SESSION || tag == PacketTags.MARKER ) {
+      Packet packet = packetStream.readPacket();
+      if( packet instanceof PublicKeyEncSessionPacket || packet instanceof SymmetricKeyEncSessionPacket ) {
+        LOGGER.debug("Session key packet found");
+        result.add((ContainedPacket) packet);
+      }
+    }
+    if( tag != PacketTags.SYM_ENC_INTEGRITY_PRO && tag != PacketTags.SYMMETRIC_KEY_ENC ) {
+      throw new PGPException("No encrypted data packet found, packet tag: " + tag);
+    }
+    return result;
+  }
 
-    PGPPrivateKey signingKey = null;
-    if (pgpSecretKey != null) {
-      LOGGER.info("Retrieving signing key from secret key");
-      signingKey = findPrivateKey(pgpSecretKey, password);
+  /**
+   * decrypts the session key of the first session key packet a private key is available for
+   *
+   * @param secretKeyRingCollection
+   *    the receiver's secret keys
+   * @param password
+   *    the password for the receiver's private key
+   * @param sessionKeyPackets
+   *    the session key packets of the message
+   * @return the session info (algorithm, key and checksum) or null if no packet could be decrypted
+   * @throws PGPException
+   */
+  private byte[] recoverSessionInfo(PGPSecretKeyRingCollection secretKeyRingCollection, String password, List<ContainedPacket> sessionKeyPackets) throws PGPException {
+    LOGGER.trace("recoverSessionInfo(PGPSecretKeyRingCollection, String, List<ContainedPacket>)");
+    byte[] result = null;
+    PublicKeyEncSessionPacket anonymousSessionKeyPacket = null;
+    Iterator<ContainedPacket> iterator = sessionKeyPackets.iterator();
+    while( result == null && iterator.hasNext() ) {
+      ContainedPacket packet = iterator.next();
+      PGPSecretKey pgpSecretKey = null;
+      if( packet instanceof PublicKeyEncSessionPacket ) {
+        long keyId = ((PublicKeyEncSessionPacket) packet).getKeyID();
+        if( keyId == EncryptedMessageInfo.WILDCARD_KEY_ID && anonymousSessionKeyPacket == null ) {
+          anonymousSessionKeyPacket = (PublicKeyEncSessionPacket) packet;
+        }
+        pgpSecretKey = secretKeyRingCollection.getSecretKey(keyId);
+      }
+      if( pgpSecretKey != null ) {
+        PublicKeyEncSessionPacket sessionKeyPacket = (PublicKeyEncSessionPacket) packet;
+        LOGGER.info("Decrypting session key with key {}", sessionKeyPacket.getKeyID());
+        PGPPrivateKey pgpPrivateKey = findPrivateKey(pgpSecretKey, password);
+        byte[] sessionInfo = new BcPublicKeyDataDecryptorFactory(pgpPrivateKey).recoverSessionData(sessionKeyPacket.getAlgorithm(), sessionKeyPacket.getEncSessionKey());
+        if( isValidSessionInfo(sessionInfo) ) {
+          result = sessionInfo;
+        } else {
+          LOGGER.warn("Session key checksum failed for key {}", sessionKeyPacket.getKeyID());
+        }
+      }
     }
+    if( result == null && anonymousSessionKeyPacket != null ) {
+      LOGGER.info("No session key for a known key id -> trying anonymous recipient");
+      result = new TrialDataDecryptorFactory(secretKeyRingCollection, password)
+          .recoverSessionData(anonymousSessionKeyPacket.getAlgorithm(), anonymousSessionKeyPacket.getEncSessionKey());
+    }
+    return result;
+  }
 
-    LOGGER.debug("Wrapping target stream in compressed data stream");
-    PGPCompressedDataGenerator compressedDataGenerator = new PGPCompressedDataGenerator(getCompressionAlgorithm());
-    try ( OutputStream compressedDataStream = new BCPGOutputStream(compressedDataGenerator.open(encryptedDataStream)) ) {
+  /**
+   * creates the session info block (algorithm, key and checksum) for the session key
+   *
+   * @param algorithm
+   *    the symmetric encryption algorithm
+   * @param key
+   *    the session key
+   * @return the session info block
+   */
+  static byte[] createSessionInfo(int algorithm, byte[] key) {
+    byte[] result = new byte[key.length + 3];
+    result[0] = (byte) algorithm;
+    System.arraycopy(key, 0, result, 1, key.length);
+    int checksum = 0;
+    for( byte b : key ) {
+      checksum += b & 0xff;
+    }
+    result[result.length - 2] = (byte) (checksum >>> 8);
+    result[result.length - 1] = (byte) checksum;
+    return result;
+  }
 
-      if (signingKey != null) {
-        LOGGER.info("Preparing message signing");
-        pgpSignatureGenerator = new PGPSignatureGenerator(new BcPGPContentSignerBuilder(signingKey.getPublicKeyPacket().getAlgorithm(), HashAlgorithmTags.SHA256));
-        pgpSignatureGenerator.init(PGPSignature.BINARY_DOCUMENT, signingKey);
-        pgpSignatureGenerator.generateOnePassVersion(false).encode(compressedDataStream);
-      } else {
-        LOGGER.info("No signing key provided. Encrypted data will be unsigned!");
+  /**
+   * verifies the checksum of a decrypted session info block
+   *
+   * @param sessionInfo
+   *    the session info (algorithm, key and checksum)
+   * @return true if the checksum matches the key
+   */
+  private static boolean isValidSessionInfo(byte[] sessionInfo) {
+    boolean result = false;
+    if( sessionInfo != null && sessionInfo.length > 3 ) {
+      int checksum = 0;
+      for( int i = 1; i < sessionInfo.length - 2; i++ ) {
+        checksum += sessionInfo[i] & 0xff;
       }
+      result = (sessionInfo[sessionInfo.length - 2] & 0xff) == ((checksum >>> 8) & 0xff)
+          && (sessionInfo[sessionInfo.length - 1] & 0xff) == (checksum & 0xff);
+    }
+    return result;
+  }
 
-      PGPLiteralDataGenerator literalDataGenerator = new PGPLiteralDataGenerator(false);
-      LOGGER.debug("Wrapping compressed data stream in literal data stream");
-      try (OutputStream literalDataOutputStream = literalDataGenerator.open(compressedDataStream, PGPLiteralDataGenerator.BINARY, inputDataName, new Date(), new byte[4096])) {
+  /**
+   * opens the plain data stream of the encrypted data, signature and integrity are verified at the end of the stream
+   *
+   * @param pgpEncryptedData
+   *    the encrypted data
+   * @param publicKeyDataDecryptorFactory
+   *    the factory providing the session key
+   * @param publicKeyRingCollection
+   *    the sender's public keys (may be null)
+   * @param encryptedData
+   *    the underlying encrypted stream, closed with the plain data stream
+   * @return the plain data stream
+   * @throws IOException
+   * @throws PGPException
+   */
+  private PGPDecryptingInputStream openDecryptingStream(PGPPublicKeyEncryptedData pgpEncryptedData, PublicKeyDataDecryptorFactory publicKeyDataDecryptorFactory, PGPPublicKeyRingCollection publicKeyRingCollection, InputStream encryptedData) throws IOException, PGPException {
+    LOGGER.trace("openDecryptingStream(PGPPublicKeyEncryptedData, PublicKeyDataDecryptorFactory, PGPPublicKeyRingCollection, InputStream)");
+    LOGGER.debug("Retrieving data stream from encrypted data");
+    InputStream clearText = pgpEncryptedData.getDataStream(publicKeyDataDecryptorFactory);
+    long decryptionKeyId = pgpEncryptedData.getKeyID();
+    if( publicKeyDataDecryptorFactory instanceof TrialDataDecryptorFactory ) {
+      decryptionKeyId = ((TrialDataDecryptorFactory) publicKeyDataDecryptorFactory).getDecryptionKeyId();
+    }
+    return new PGPDecryptingInputStream(pgpEncryptedData, encryptedData, clearText, decryptionKeyId, publicKeyRingCollection, getKeyRingStore());
+  }
 
-        IOUtils.StreamHandler streamHandler = null;
-        if( signingKey != null ) {
-          final PGPSignatureGenerator callbackGenerator = pgpSignatureGenerator;
-          streamHandler = new IOUtils.StreamHandler() {
-            @Override
-            public void handleStreamBuffer(byte[] buffer, int offset, int length) throws IOException {
-              callbackGenerator.update(buffer, offset, length);
-            }
-          };
+  /**
+   * decrypts the encrypted data and verifies its signature (if signed and the sender's public key is available)
+   * and integrity
+   *
+   * @param decryptingStream
+   *    the plain data stream
+   * @param target
+   *    the plain data target, null if the plain data is only verified
+   * @return the verdict
+   * @throws IOException
+   */
+  private VerificationResult decryptData(DecryptingInputStream decryptingStream, final OutputStream target) throws IOException {
+    LOGGER.trace("decryptData(DecryptingInputStream, OutputStream)");
+    IOUtils.process(decryptingStream, new IOUtils.StreamHandler() {
+      @Override
+      public void handleStreamBuffer(byte[] buffer, int offset, int length) throws IOException {
+        if( target != null ) {
+          target.write(buffer, offset, length);
         }
+      }
+    }, getBufferPool());
+    return decryptingStream.getVerificationResult();
+  }
 
-        LOGGER.info("Encrypting data and saving to target stream");
-        IOUtils.copy(inputData, literalDataOutputStream, new byte[4096], streamHandler);
+  /**
+   * reads the encrypted data list of an encrypted message
+   *
+   * @param in
+   *    the decoded encrypted message
+   * @return the encrypted data list
+   * @throws IOException
+   */
+  private PGPEncryptedDataList readEncryptedDataList(InputStream in) throws IOException {
+    LOGGER.trace("readEncryptedDataList(InputStream)");
+    LOGGER.debug("Create PGP Object factory");
+    PGPObjectFactory objectFactory = new PGPObjectFactory(in, new BcKeyFingerprintCalculator());
+    PGPEncryptedDataList result;
+    LOGGER.debug("Retrieve EncryptedDataList");
+    Object firstObject = objectFactory.nextObject();
+    if( firstObject instanceof PGPEncryptedDataList ) {
+      result = (PGPEncryptedDataList)firstObject;
+    } else {
+      result = (PGPEncryptedDataList)objectFactory.nextObject();
+    }
+    return result;
+  }
 
-        literalDataGenerator.close();
-      }
-      if (signingKey != null) {
-        LOGGER.info("Generating data signature");
-        pgpSignatureGenerator.generate().encode(compressedDataStream);
-      }
-      compressedDataGenerator.close();
+  /**
+   * writes the session key packet and opens the encrypted data packet, uses the pooled session key if available
+   *
+   * @param encryptorBuilder
+   *    the data encryptor builder
+   * @param pgpPublicKey
+   *    the recipient's encryption key
+   * @param pooledSessionKey
+   *    the pre-generated session key for the recipient (may be null)
+   * @param target
+   *    the target stream
+   * @param buffer
+   *    the buffer of the partial packet bodies
+   * @return the stream accepting the data to encrypt
+   * @throws IOException
+   * @throws PGPException
+   */
+  private OutputStream openEncryptedDataStream(BcPGPDataEncryptorBuilder encryptorBuilder, PGPPublicKey pgpPublicKey, PGPSessionKeyPool.PooledSessionKey pooledSessionKey, OutputStream target, byte[] buffer) throws IOException, PGPException {
+    LOGGER.trace("openEncryptedDataStream(BcPGPDataEncryptorBuilder, PGPPublicKey, PooledSessionKey, OutputStream, byte[])");
+    OutputStream result;
+    if( pooledSessionKey != null ) {
+      LOGGER.debug("Creating encrypted data generator for pooled session key");
+      SessionKeyEncryptedDataGenerator encryptedDataGenerator = new SessionKeyEncryptedDataGenerator(encryptorBuilder, pooledSessionKey.getSessionInfo());
+      encryptedDataGenerator.addSessionKeyPacket(pooledSessionKey.getSessionKeyPacket());
+      result = encryptedDataGenerator.open(target, buffer);
+    } else {
+      LOGGER.debug("Creating encrypted data generator");
+      PGPEncryptedDataGenerator encryptedDataGenerator = new PGPEncryptedDataGenerator(encryptorBuilder);
+      encryptedDataGenerator.addMethod(new BcPublicKeyKeyEncryptionMethodGenerator(pgpPublicKey));
+      result = encryptedDataGenerator.open(target, buffer);
     }
+    return result;
   }
 
   /**
@@ -152,63 +704,451 @@ public class PGPMessageEncryptor extends BasePGPCommon implements MessageEncrypt
     LOGGER.trace("Public Key: {}, Private Key: {}, User ID: {}, Password: {}, Input Name: {}, Input Data: {}, Output: {}",
         publicKeyOfRecipient == null ? "not set" : "set", privateKeyOfSender == null ? "not set" : "set", userIdOfSender, passwordOfSendersPrivateKey == null ? "not set" : "********", inputDataName, plainInputData == null ? "not set" : "set", target == null ? "not set" : "set");
     boolean result = true;
-    LOGGER.debug("Reading public key");
-    PGPPublicKey pgpPublicKey = findPublicKey(publicKeyOfRecipient, new KeyFilter<PGPPublicKey>() {
-      @Override
-      public boolean accept(PGPPublicKey pgpKey) {
-        return pgpKey.isEncryptionKey() && !pgpKey.isMasterKey();
-      }
-    });
-    if( pgpPublicKey != null ) {
-      LOGGER.debug("Wrapping target stream in ArmoredOutputStream");
-      try( OutputStream wrappedTargetStream = new ArmoredOutputStream(target) ) {
-        BcPGPDataEncryptorBuilder encryptorBuilder = new BcPGPDataEncryptorBuilder(getEncryptionAlgorithm());
-        LOGGER.debug("Enabling integrity packet");
-        encryptorBuilder.setWithIntegrityPacket(true);
-        LOGGER.debug("Creating encrypted data generator");
-        PGPEncryptedDataGenerator encryptedDataGenerator = new PGPEncryptedDataGenerator(encryptorBuilder);
-        encryptedDataGenerator.addMethod(new BcPublicKeyKeyEncryptionMethodGenerator(pgpPublicKey));
-        PGPSecretKey pgpSecretKey = null;
-        if( privateKeyOfSender != null ) {
-          LOGGER.debug("Looking up secret key");
-          pgpSecretKey = findSecretKey(privateKeyOfSender, userIdOfSender);
-        } else {
-          LOGGER.info("No private key provided -> No signing of encrypted data");
-        }
-        LOGGER.debug("Wrapping target stream in encrypted output stream");
-        try( OutputStream encryptedDataStream = encryptedDataGenerator.open(wrappedTargetStream, new byte[4096]) ) {
-          LOGGER.info("Encrypting and optionally signing of input data");
-          encryptAndSign(pgpSecretKey, passwordOfSendersPrivateKey, inputDataName, plainInputData, encryptedDataStream);
-        }
-      } catch (IOException | PGPException e) {
-        LOGGER.error("{}", e.getMessage());
+    try( OutputStream encryptingStream = openEncryptingStream(publicKeyOfRecipient, privateKeyOfSender, userIdOfSender, passwordOfSendersPrivateKey, inputDataName, -1L, target) ) {
+      if( encryptingStream != null ) {
+        LOGGER.info("Encrypting and optionally signing of input data");
+        IOUtils.copy(plainInputData, encryptingStream, getBufferPool());
+      } else {
         result &= false;
       }
-    } else {
-      LOGGER.error("No public key found for encryption!");
+    } catch (IOException | PGPException e) {
+      LOGGER.error("{}", e.getMessage());
       result &= false;
     }
     return result;
   }
 
   /**
-   * @see MessageEncryptor#decrypt(String, InputStream, InputStream, OutputStream)
+   * @see MessageEncryptor#encryptingStream(InputStream, String, OutputStream)
    *
-   * @param passwordOfReceiversPrivateKey
-   *    the password for the receiver's private key
-   * @param privateKeyOfReceiver
-   *    the receiver's private key
-   * @param encryptedData
-   *    the encrypted data
+   * @param publicKeyOfRecipient
+   *    the public key stream of the message recipient
+   * @param inputDataName
+   *    the (file)name of the input data
    * @param target
-   *    the plain data stream
+   *    the encrypted (ascii-armored) target stream
    * @return
    */
   @Override
-  public boolean decrypt(String passwordOfReceiversPrivateKey, InputStream privateKeyOfReceiver, InputStream encryptedData, OutputStream target) {
-    LOGGER.trace("decrypt(String, InputStream, InputStream, OutputStream)");
-    LOGGER.trace("Password: {}, Private Key: {}, Encrypted Data: {}, Output: {}",
-        passwordOfReceiversPrivateKey == null ? "not set" : "********", privateKeyOfReceiver == null ? "not set" : "set", encryptedData == null ? "not set" : "set", target == null ? "not set" : "set");
+  public EncryptingOutputStream encryptingStream(InputStream publicKeyOfRecipient, String inputDataName, OutputStream target) {
+    LOGGER.trace("encryptingStream(InputStream, String, OutputStream)");
+    LOGGER.trace("Public Key: {}, Input Name: {}, Output: {}", publicKeyOfRecipient == null ? "not set" : "set", inputDataName, target == null ? "not set" : "set");
+    return encryptingStream(publicKeyOfRecipient, null, null, null, inputDataName, target);
+  }
+
+  /**
+   * @see MessageEncryptor#encryptingStream(InputStream, InputStream, String, String, String, OutputStream)
+   *
+   * @param publicKeyOfRecipient
+   *    the public key stream of the message recipient
+   * @param privateKeyOfSender
+   *    the private key stream of the message sender
+   * @param userIdOfSender
+   *    the user id of the message sender
+   * @param passwordOfSendersPrivateKey
+   *    the password for the private key of the sender
+   * @param inputDataName
+   *    the (file)name of the input data
+   * @param target
+   *    the encrypted (ascii-armored) target stream
+   * @return
+   */
+  @Override
+  public EncryptingOutputStream encryptingStream(InputStream publicKeyOfRecipient, InputStream privateKeyOfSender, String userIdOfSender, String passwordOfSendersPrivateKey, String inputDataName, OutputStream target) {
+    LOGGER.trace("encryptingStream(InputStream, InputStream, String, String, String, OutputStream)");
+    LOGGER.trace("Public Key: {}, Private Key: {}, User ID: {}, Password: {}, Input Name: {}, Output: {}",
+        publicKeyOfRecipient == null ? "not set" : "set", privateKeyOfSender == null ? "not set" : "set", userIdOfSender, passwordOfSendersPrivateKey == null ? "not set" : "********", inputDataName, target == null ? "not set" : "set");
+    EncryptingOutputStream result = null;
+    try {
+      result = openEncryptingStream(publicKeyOfRecipient, privateKeyOfSender, userIdOfSender, passwordOfSendersPrivateKey, inputDataName, -1L, target);
+    } catch (IOException | PGPException e) {
+      LOGGER.error("{}", e.getMessage());
+    }
+    return result;
+  }
+
+  /**
+   * @see MessageEncryptor#encrypt(InputStream, Path, Path)
+   *
+   * @param publicKeyOfRecipient
+   *    the public key stream of the message recipient
+   * @param plainInputFile
+   *    the plain input file
+   * @param target
+   *    the encrypted (ascii-armored) target file
+   * @return
+   */
+  @Override
+  public boolean encrypt(InputStream publicKeyOfRecipient, Path plainInputFile, Path target) {
+    LOGGER.trace("encrypt(InputStream, Path, Path)");
+    LOGGER.trace("Public Key: {}, Input File: {}, Target File: {}", publicKeyOfRecipient == null ? "not set" : "set", plainInputFile, target);
+    return encrypt(publicKeyOfRecipient, null, null, null, plainInputFile, target);
+  }
+
+  /**
+   * @see MessageEncryptor#encrypt(InputStream, InputStream, String, String, Path, Path)
+   *
+   * @param publicKeyOfRecipient
+   *    the public key stream of the message recipient
+   * @param privateKeyOfSender
+   *    the private key stream of the message sender
+   * @param userIdOfSender
+   *    the user id of the message sender
+   * @param passwordOfSendersPrivateKey
+   *    the password for the private key of the sender
+   * @param plainInputFile
+   *    the plain input file
+   * @param target
+   *    the encrypted (ascii-armored) target file
+   * @return
+   */
+  @Override
+  public boolean encrypt(InputStream publicKeyOfRecipient, InputStream privateKeyOfSender, String userIdOfSender, String passwordOfSendersPrivateKey, Path plainInputFile, Path target) {
+    LOGGER.trace("encrypt(InputStream, InputStream, String, String, Path, Path)");
+    LOGGER.trace("Public Key: {}, Private Key: {}, User ID: {}, Password: {}, Input File: {}, Target File: {}",
+        publicKeyOfRecipient == null ? "not set" : "set", privateKeyOfSender == null ? "not set" : "set", userIdOfSender, passwordOfSendersPrivateKey == null ? "not set" : "********", plainInputFile, target);
+    boolean result = true;
+    try {
+      long inputDataLength = Files.size(plainInputFile);
+      String inputDataName = plainInputFile.getFileName().toString();
+      EncryptionKeys encryptionKeys = findEncryptionKeys(publicKeyOfRecipient, privateKeyOfSender, userIdOfSender, passwordOfSendersPrivateKey);
+      if( encryptionKeys != null ) {
+        long expectedSize = 0L;
+        if( getCompressionAlgorithm() == CompressionAlgorithmTags.UNCOMPRESSED ) {
+          LOGGER.debug("Uncompressed encryption -> preallocating target file");
+          expectedSize = getMaxEncryptedLength(encryptionKeys, inputDataName, inputDataLength);
+        }
+        try( InputStream plainInputData = IOUtils.openInputStream(plainInputFile);
+             OutputStream targetStream = IOUtils.openOutputStream(target, expectedSize);
+             OutputStream encryptingStream = openEncryptingStream(encryptionKeys, inputDataName, inputDataLength, targetStream) ) {
+          LOGGER.info("Encrypting and optionally signing of input file");
+          final long[] copied = { 0L };
+          byte[] buffer = getBufferPool().acquire();
+          try {
+            IOUtils.copy(plainInputData, encryptingStream, buffer, new IOUtils.StreamHandler() {
+              @Override
+              public void handleStreamBuffer(byte[] buffer, int offset, int length) {
+                copied[0] += length;
+              }
+            });
+          } finally {
+            getBufferPool().release(buffer);
+          }
+          if( copied[0] != inputDataLength ) {
+            LOGGER.error("Input file changed during encryption, {} of {} declared bytes read", copied[0], inputDataLength);
+            result &= false;
+          }
+        }
+      } else {
+        result &= false;
+      }
+    } catch (IOException | PGPException e) {
+      LOGGER.error("{}", e.getMessage());
+      result &= false;
+    }
+    return result;
+  }
+
+  /**
+   * @see MessageEncryptor#decrypt(String, InputStream, InputStream, Path, Path)
+   *
+   * @param passwordOfReceiversPrivateKey
+   *    the password of the receivers private key
+   * @param privateKeyOfReceiver
+   *    the receiver's private key
+   * @param publicKeyOfSender
+   *    the sender's public key (optional)
+   * @param encryptedFile
+   *    the encrypted file
+   * @param target
+   *    the plain target file
+   * @return
+   */
+  @Override
+  public boolean decrypt(String passwordOfReceiversPrivateKey, InputStream privateKeyOfReceiver, InputStream publicKeyOfSender, Path encryptedFile, Path target) {
+    LOGGER.trace("decrypt(String, InputStream, InputStream, Path, Path)");
+    LOGGER.trace("Password: {}, Private Key: {}, Public Key: {}, Encrypted File: {}, Target File: {}",
+        passwordOfReceiversPrivateKey == null ? "not set" : "********", privateKeyOfReceiver == null ? "not set" : "set", publicKeyOfSender == null ? "not set" : "set",
+        encryptedFile, target);
+    boolean result;
+    try( InputStream encryptedData = IOUtils.openInputStream(encryptedFile);
+         OutputStream targetStream = IOUtils.openOutputStream(target, 0L) ) {
+      result = decryptAndVerify(passwordOfReceiversPrivateKey, privateKeyOfReceiver, publicKeyOfSender, encryptedData, targetStream).isValid();
+    } catch (IOException e) {
+      LOGGER.error("{}", e.getMessage());
+      result = false;
+    }
+    return result;
+  }
+
+  /**
+   * the maximum length of the encrypted message
+   *
+   * @param encryptionKeys
+   *    the encryption and (optional) signing key
+   * @param inputDataName
+   *    the (file)name of the input data
+   * @param plainDataLength
+   *    the length of the plain data
+   * @return the maximum length of the ascii-armored message
+   */
+  private long getMaxEncryptedLength(EncryptionKeys encryptionKeys, String inputDataName, long plainDataLength) {
+    LOGGER.trace("getMaxEncryptedLength(EncryptionKeys, String, long)");
+    int inputDataNameLength = (inputDataName != null) ? inputDataName.getBytes(StandardCharsets.UTF_8).length : 0;
+    long result = PGPEncodedLength.encryptedMessage(plainDataLength, inputDataNameLength, getCompressionAlgorithm(),
+        new int[] { encryptionKeys.encryptionKey.getBitStrength() }, encryptionKeys.signingKeyBitStrength);
+    LOGGER.debug("Maximum encrypted length: {} bytes", result);
+    return result;
+  }
+
+  /**
+   * the maximum length of the encrypted message written into a single buffer
+   *
+   * @param encryptionKeys
+   *    the encryption and (optional) signing key
+   * @param inputDataName
+   *    the (file)name of the input data
+   * @param plainDataLength
+   *    the length of the plain data
+   * @return the maximum length of the ascii-armored message
+   * @throws IOException
+   *    if the message may exceed the maximum buffer size
+   */
+  private int getMaxEncryptedBufferLength(EncryptionKeys encryptionKeys, String inputDataName, int plainDataLength) throws IOException {
+    long result = getMaxEncryptedLength(encryptionKeys, inputDataName, plainDataLength);
+    if( result > Integer.MAX_VALUE - 8 ) {
+      throw new IOException("Plain data too large to be encrypted in memory");
+    }
+    return (int) result;
+  }
+
+  /**
+   * encrypts the remaining plain data of the buffer directly into the target buffer
+   *
+   * @param encryptionKeys
+   *    the encryption and (optional) signing key
+   * @param inputDataName
+   *    the (file)name of the input data
+   * @param plainData
+   *    the plain data
+   * @param target
+   *    the target buffer
+   * @throws IOException
+   * @throws PGPException
+   */
+  private void encrypt(EncryptionKeys encryptionKeys, String inputDataName, ByteBuffer plainData, ByteBuffer target) throws IOException, PGPException {
+    LOGGER.trace("encrypt(EncryptionKeys, String, ByteBuffer, ByteBuffer)");
+    try( OutputStream encryptingStream = openEncryptingStream(encryptionKeys, inputDataName, plainData.remaining(), new ByteBufferOutputStream(target)) ) {
+      if( plainData.hasArray() ) {
+        encryptingStream.write(plainData.array(), plainData.arrayOffset() + plainData.position(), plainData.remaining());
+        plainData.position(plainData.limit());
+      } else {
+        byte[] buffer = getBufferPool().acquire();
+        try {
+          while( plainData.hasRemaining() ) {
+            int length = Math.min(buffer.length, plainData.remaining());
+            plainData.get(buffer, 0, length);
+            encryptingStream.write(buffer, 0, length);
+          }
+        } finally {
+          getBufferPool().release(buffer);
+        }
+      }
+    }
+  }
+
+  /**
+   * @see MessageEncryptor#encrypt(InputStream, InputStream, String, String, String, byte[])
+   *
+   * @param publicKeyOfRecipient
+   *    the public key stream of the message recipient
+   * @param privateKeyOfSender
+   *    the private key stream of the message sender (null if unsigned)
+   * @param userIdOfSender
+   *    the user id of the message sender
+   * @param passwordOfSendersPrivateKey
+   *    the password for the private key of the sender
+   * @param inputDataName
+   *    the (file)name of the input data
+   * @param plainData
+   *    the plain data
+   * @return
+   */
+  @Override
+  public byte[] encrypt(InputStream publicKeyOfRecipient, InputStream privateKeyOfSender, String userIdOfSender, String passwordOfSendersPrivateKey, String inputDataName, byte[] plainData) {
+    LOGGER.trace("encrypt(InputStream, InputStream, String, String, String, byte[])");
+    LOGGER.trace("Public Key: {}, Private Key: {}, User ID: {}, Password: {}, Input Name: {}, Input Data: {}",
+        publicKeyOfRecipient == null ? "not set" : "set", privateKeyOfSender == null ? "not set" : "set", userIdOfSender, passwordOfSendersPrivateKey == null ? "not set" : "********", inputDataName, plainData == null ? "not set" : "set");
+    byte[] result = null;
+    try {
+      EncryptionKeys encryptionKeys = findEncryptionKeys(publicKeyOfRecipient, privateKeyOfSender, userIdOfSender, passwordOfSendersPrivateKey);
+      if( encryptionKeys != null ) {
+        ByteBuffer target = ByteBuffer.allocate(getMaxEncryptedBufferLength(encryptionKeys, inputDataName, plainData.length));
+        encrypt(encryptionKeys, inputDataName, ByteBuffer.wrap(plainData), target);
+        result = Arrays.copyOf(target.array(), target.position());
+      }
+    } catch (IOException | PGPException e) {
+      LOGGER.error("{}", e.getMessage());
+    }
+    return result;
+  }
+
+  /**
+   * @see MessageEncryptor#encrypt(InputStream, InputStream, String, String, String, ByteBuffer, ByteBuffer)
+   *
+   * @param publicKeyOfRecipient
+   *    the public key stream of the message recipient
+   * @param privateKeyOfSender
+   *    the private key stream of the message sender (null if unsigned)
+   * @param userIdOfSender
+   *    the user id of the message sender
+   * @param passwordOfSendersPrivateKey
+   *    the password for the private key of the sender
+   * @param inputDataName
+   *    the (file)name of the input data
+   * @param plainData
+   *    the plain data
+   * @param target
+   *    the target buffer
+   * @return
+   */
+  @Override
+  public int encrypt(InputStream publicKeyOfRecipient, InputStream privateKeyOfSender, String userIdOfSender, String passwordOfSendersPrivateKey, String inputDataName, ByteBuffer plainData, ByteBuffer target) {
+    LOGGER.trace("encrypt(InputStream, InputStream, String, String, String, ByteBuffer, ByteBuffer)");
+    LOGGER.trace("Public Key: {}, Private Key: {}, User ID: {}, Password: {}, Input Name: {}, Input Data: {}, Target: {}",
+        publicKeyOfRecipient == null ? "not set" : "set", privateKeyOfSender == null ? "not set" : "set", userIdOfSender, passwordOfSendersPrivateKey == null ? "not set" : "********", inputDataName,
+        plainData == null ? "not set" : "set", target == null ? "not set" : "set");
+    int result = -1;
+    int start = target.position();
+    try {
+      EncryptionKeys encryptionKeys = findEncryptionKeys(publicKeyOfRecipient, privateKeyOfSender, userIdOfSender, passwordOfSendersPrivateKey);
+      if( encryptionKeys != null ) {
+        if( target.remaining() >= getMaxEncryptedBufferLength(encryptionKeys, inputDataName, plainData.remaining()) ) {
+          encrypt(encryptionKeys, inputDataName, plainData, target);
+          result = target.position() - start;
+        } else {
+          LOGGER.error("Target buffer is smaller than the maximum encrypted length");
+        }
+      }
+    } catch (IOException | PGPException e) {
+      LOGGER.error("{}", e.getMessage());
+      target.position(start);
+    }
+    return result;
+  }
+
+  /**
+   * @see MessageEncryptor#decrypt(String, InputStream, InputStream, byte[])
+   *
+   * @param passwordOfReceiversPrivateKey
+   *    the password of the receivers private key
+   * @param privateKeyOfReceiver
+   *    the receiver's private key
+   * @param publicKeyOfSender
+   *    the sender's public key (optional)
+   * @param encryptedData
+   *    the encrypted data
+   * @return
+   */
+  @Override
+  public byte[] decrypt(String passwordOfReceiversPrivateKey, InputStream privateKeyOfReceiver, InputStream publicKeyOfSender, byte[] encryptedData) {
+    LOGGER.trace("decrypt(String, InputStream, InputStream, byte[])");
+    LOGGER.trace("Password: {}, Private Key: {}, Public Key: {}, Encrypted Data: {}",
+        passwordOfReceiversPrivateKey == null ? "not set" : "********", privateKeyOfReceiver == null ? "not set" : "set", publicKeyOfSender == null ? "not set" : "set",
+        encryptedData == null ? "not set" : "set");
+    byte[] result = null;
+    try( DecryptingInputStream decryptingStream = openDecryptingStream(passwordOfReceiversPrivateKey, privateKeyOfReceiver, publicKeyOfSender, new ByteArrayInputStream(encryptedData)) ) {
+      if( decryptingStream != null ) {
+        LOGGER.debug("Decrypting into buffer of the encrypted length");
+        byte[] plainData = new byte[Math.max(encryptedData.length, 64)];
+        int length = 0;
+        int read = 0;
+        while( read != -1 ) {
+          if( length == plainData.length ) {
+            plainData = Arrays.copyOf(plainData, plainData.length * 2);
+          }
+          read = decryptingStream.read(plainData, length, plainData.length - length);
+          if( read > 0 ) {
+            length += read;
+          }
+        }
+        VerificationResult verificationResult = decryptingStream.getVerificationResult();
+        LOGGER.info("Verification result: {}", verificationResult);
+        if( verificationResult.isValid() ) {
+          result = (length == plainData.length) ? plainData : Arrays.copyOf(plainData, length);
+        }
+      }
+    } catch (IOException | PGPException e) {
+      LOGGER.error("{}", e.getMessage());
+    }
+    return result;
+  }
+
+  /**
+   * @see MessageEncryptor#decrypt(String, InputStream, InputStream, ByteBuffer, ByteBuffer)
+   *
+   * @param passwordOfReceiversPrivateKey
+   *    the password of the receivers private key
+   * @param privateKeyOfReceiver
+   *    the receiver's private key
+   * @param publicKeyOfSender
+   *    the sender's public key (optional)
+   * @param encryptedData
+   *    the encrypted data
+   * @param target
+   *    the target buffer
+   * @return
+   */
+  @Override
+  public int decrypt(String passwordOfReceiversPrivateKey, InputStream privateKeyOfReceiver, InputStream publicKeyOfSender, ByteBuffer encryptedData, ByteBuffer target) {
+    LOGGER.trace("decrypt(String, InputStream, InputStream, ByteBuffer, ByteBuffer)");
+    LOGGER.trace("Password: {}, Private Key: {}, Public Key: {}, Encrypted Data: {}, Target: {}",
+        passwordOfReceiversPrivateKey == null ? "not set" : "********", privateKeyOfReceiver == null ? "not set" : "set", publicKeyOfSender == null ? "not set" : "set",
+        encryptedData == null ? "not set" : "set", target == null ? "not set" : "set");
+    int result = -1;
+    int start = target.position();
+    try( DecryptingInputStream decryptingStream = openDecryptingStream(passwordOfReceiversPrivateKey, privateKeyOfReceiver, publicKeyOfSender, new ByteBufferInputStream(encryptedData)) ) {
+      if( decryptingStream != null ) {
+        ReadableByteChannel channel = decryptingStream.getChannel();
+        int read = 0;
+        while( read != -1 && target.hasRemaining() ) {
+          read = channel.read(target);
+        }
+        if( !decryptingStream.isFinished() && decryptingStream.read() != -1 ) {
+          LOGGER.error("Target buffer too small for the plain data");
+        } else if( decryptingStream.getVerificationResult().isValid() ) {
+          result = target.position() - start;
+        } else {
+          LOGGER.error("Verification failed: {}", decryptingStream.getVerificationResult());
+        }
+      }
+    } catch (IOException | PGPException e) {
+      LOGGER.error("{}", e.getMessage());
+    }
+    if( result < 0 ) {
+      target.position(start);
+    }
+    return result;
+  }
+
+  /**
+   * @see MessageEncryptor#decrypt(String, InputStream, InputStream, OutputStream)
+   *
+   * @param passwordOfReceiversPrivateKey
+   *    the password for the receiver's private key
+   * @param privateKeyOfReceiver
+   *    the receiver's private key
+   * @param encryptedData
+   *    the encrypted data
+   * @param target
+   *    the plain data stream
+   * @return
+   */
+  @Override
+  public boolean decrypt(String passwordOfReceiversPrivateKey, InputStream privateKeyOfReceiver, InputStream encryptedData, OutputStream target) {
+    LOGGER.trace("decrypt(String, InputStream, InputStream, OutputStream)");
+    LOGGER.trace("Password: {}, Private Key: {}, Encrypted Data: {}, Output: {}",
+        passwordOfReceiversPrivateKey == null ? "not set" : "********", privateKeyOfReceiver == null ? "not set" : "set", encryptedData == null ? "not set" : "set", target == null ? "not set" : "set");
     return decrypt(passwordOfReceiversPrivateKey, privateKeyOfReceiver, null, encryptedData, target);
   }
 
@@ -233,118 +1173,290 @@ public class PGPMessageEncryptor extends BasePGPCommon implements MessageEncrypt
     LOGGER.trace("Password: {}, Private Key: {}, Public Key: {}, Encrypted Data: {}, Output: {}",
         passwordOfReceiversPrivateKey == null ? "not set" : "set", privateKeyOfReceiver == null ? "not set" : "set", publicKeyOfSender == null ? "not set" : "set",
         encryptedData == null ? "not set" : "set", target == null ? "not set" : "set");
-    boolean result = true;
+    return decryptAndVerify(passwordOfReceiversPrivateKey, privateKeyOfReceiver, publicKeyOfSender, encryptedData, target).isValid();
+  }
+
+  /**
+   * @see MessageEncryptor#verify(String, InputStream, InputStream, InputStream)
+   *
+   * @param passwordOfReceiversPrivateKey
+   *    the password of the receivers private key
+   * @param privateKeyOfReceiver
+   *    the receiver's private key
+   * @param publicKeyOfSender
+   *    the sender's public key (optional)
+   * @param encryptedData
+   *    the encrypted data
+   * @return
+   */
+  @Override
+  public VerificationResult verify(String passwordOfReceiversPrivateKey, InputStream privateKeyOfReceiver, InputStream publicKeyOfSender, InputStream encryptedData) {
+    LOGGER.trace("verify(String, InputStream, InputStream, InputStream)");
+    LOGGER.trace("Password: {}, Private Key: {}, Public Key: {}, Encrypted Data: {}",
+        passwordOfReceiversPrivateKey == null ? "not set" : "********", privateKeyOfReceiver == null ? "not set" : "set", publicKeyOfSender == null ? "not set" : "set",
+        encryptedData == null ? "not set" : "set");
+    return decryptAndVerify(passwordOfReceiversPrivateKey, privateKeyOfReceiver, publicKeyOfSender, encryptedData, null);
+  }
+
+  /**
+   * opens the plain data stream of the encrypted data using the receiver's private key
+   *
+   * @param passwordOfReceiversPrivateKey
+   *    the password of the receivers private key
+   * @param privateKeyOfReceiver
+   *    the receiver's private key
+   * @param publicKeyOfSender
+   *    the sender's public key (optional)
+   * @param encryptedData
+   *    the encrypted data
+   * @return the plain data stream or null if no private key matches
+   * @throws IOException
+   * @throws PGPException
+   */
+  private PGPDecryptingInputStream openDecryptingStream(String passwordOfReceiversPrivateKey, InputStream privateKeyOfReceiver, InputStream publicKeyOfSender, InputStream encryptedData) throws IOException, PGPException {
+    LOGGER.trace("openDecryptingStream(String, InputStream, InputStream, InputStream)");
+    PGPDecryptingInputStream result = null;
+    PGPPublicKeyRingCollection publicKeyRingCollection = readPublicKeyRingCollection(publicKeyOfSender);
+    PGPSecretKeyRingCollection secretKeyRingCollection = null;
+    if( privateKeyOfReceiver != null || getKeyRingStore() == null ) {
+      LOGGER.debug("Reading secret key ring collection");
+      secretKeyRingCollection = readSecretKeyRingCollection(privateKeyOfReceiver);
+    }
+    LOGGER.debug("Retrieving DecoderStream from encrypted input");
+    InputStream in = ArmorInputStream.decode(encryptedData);
     try {
-      PGPPublicKeyRingCollection publicKeyRingCollection = null;
-      if( publicKeyOfSender != null ) {
-        LOGGER.debug("Wrapping public key in ArmoredInputStream");
-        try( InputStream armoredInputStream = new ArmoredInputStream(publicKeyOfSender) ) {
-          publicKeyRingCollection = new PGPPublicKeyRingCollection(armoredInputStream, new BcKeyFingerprintCalculator());
+      PublicKeyDataDecryptorFactory decryptorFactory = null;
+      PGPPublicKeyEncryptedData pgpEncryptedData = null;
+      PGPPublicKeyEncryptedData anonymousEncryptedData = null;
+      LOGGER.debug("Iterating over encrypted data objects");
+      Iterator<PGPEncryptedData> iterator = readEncryptedDataList(in).getEncryptedDataObjects();
+      while( decryptorFactory == null && iterator.hasNext() ) {
+        pgpEncryptedData = (PGPPublicKeyEncryptedData) iterator.next();
+        if( pgpEncryptedData.getKeyID() == EncryptedMessageInfo.WILDCARD_KEY_ID && anonymousEncryptedData == null ) {
+          anonymousEncryptedData = pgpEncryptedData;
+        }
+        LOGGER.debug("Looking up private key");
+        PGPSecretKey pgpSecretKey = (secretKeyRingCollection != null) ? secretKeyRingCollection.getSecretKey(pgpEncryptedData.getKeyID()) : findStoredSecretKey(pgpEncryptedData.getKeyID());
+        if( pgpSecretKey != null ) {
+          PGPPrivateKey pgpPrivateKey = findPrivateKey(pgpSecretKey, passwordOfReceiversPrivateKey);
+          if( pgpPrivateKey != null ) {
+            decryptorFactory = new BcPublicKeyDataDecryptorFactory(pgpPrivateKey);
+          }
         }
       }
-      LOGGER.debug("Retrieving DecoderStream from encrypted input");
-      try( InputStream in = PGPUtil.getDecoderStream(encryptedData) ) {
-        LOGGER.debug("Create PGP Object factory");
+      if( decryptorFactory == null && anonymousEncryptedData != null && secretKeyRingCollection != null ) {
+        LOGGER.info("No private key for a known key id -> trying anonymous recipient");
+        pgpEncryptedData = anonymousEncryptedData;
+        decryptorFactory = new TrialDataDecryptorFactory(secretKeyRingCollection, passwordOfReceiversPrivateKey);
+      }
+      if( decryptorFactory != null ) {
+        result = openDecryptingStream(pgpEncryptedData, decryptorFactory, publicKeyRingCollection, in);
+      } else {
+        LOGGER.error("No private key found for decryption!");
+        in.close();
+      }
+    } catch (IOException | PGPException e) {
+      in.close();
+      throw e;
+    }
+    return result;
+  }
+
+  /**
+   * decrypts the encrypted data with the receiver's private key and verifies integrity and signature
+   *
+   * @param passwordOfReceiversPrivateKey
+   *    the password of the receivers private key
+   * @param privateKeyOfReceiver
+   *    the receiver's private key
+   * @param publicKeyOfSender
+   *    the sender's public key (optional)
+   * @param encryptedData
+   *    the encrypted data
+   * @param target
+   *    the plain data stream, null if the plain data is only verified
+   * @return the verdict
+   */
+  private VerificationResult decryptAndVerify(String passwordOfReceiversPrivateKey, InputStream privateKeyOfReceiver, InputStream publicKeyOfSender, InputStream encryptedData, OutputStream target) {
+    LOGGER.trace("decryptAndVerify(String, InputStream, InputStream, InputStream, OutputStream)");
+    VerificationResult result;
+    try( DecryptingInputStream decryptingStream = openDecryptingStream(passwordOfReceiversPrivateKey, privateKeyOfReceiver, publicKeyOfSender, encryptedData) ) {
+      if( decryptingStream != null ) {
+        result = decryptData(decryptingStream, target);
+      } else {
+        result = VerificationResult.failed("No private key found for decryption");
+      }
+    } catch (IOException | PGPException e) {
+      LOGGER.error("{}", e.getMessage());
+      result = VerificationResult.failed(e.getMessage());
+    }
+    LOGGER.info("Verification result: {}", result);
+    return result;
+  }
 
-        PGPObjectFactory objectFactory = new PGPObjectFactory(in, new BcKeyFingerprintCalculator());
-        PGPEncryptedDataList dataList;
+  /**
+   * @see MessageEncryptor#decryptingStream(String, InputStream, InputStream, InputStream)
+   *
+   * @param passwordOfReceiversPrivateKey
+   *    the password of the receivers private key
+   * @param privateKeyOfReceiver
+   *    the receiver's private key
+   * @param publicKeyOfSender
+   *    the sender's public key (optional)
+   * @param encryptedData
+   *    the encrypted data
+   * @return
+   */
+  @Override
+  public DecryptingInputStream decryptingStream(String passwordOfReceiversPrivateKey, InputStream privateKeyOfReceiver, InputStream publicKeyOfSender, InputStream encryptedData) {
+    LOGGER.trace("decryptingStream(String, InputStream, InputStream, InputStream)");
+    LOGGER.trace("Password: {}, Private Key: {}, Public Key: {}, Encrypted Data: {}",
+        passwordOfReceiversPrivateKey == null ? "not set" : "********", privateKeyOfReceiver == null ? "not set" : "set", publicKeyOfSender == null ? "not set" : "set",
+        encryptedData == null ? "not set" : "set");
+    DecryptingInputStream result = null;
+    try {
+      result = openDecryptingStream(passwordOfReceiversPrivateKey, privateKeyOfReceiver, publicKeyOfSender, encryptedData);
+    } catch (IOException | PGPException e) {
+      LOGGER.error("{}", e.getMessage());
+    }
+    return result;
+  }
 
-        LOGGER.debug("Retrieve EncryptedDataList");
-        Object firstObject = objectFactory.nextObject();
-        if( firstObject instanceof PGPEncryptedDataList ) {
-          dataList = (PGPEncryptedDataList)firstObject;
+  /**
+   * @see MessageEncryptor#extractSessionKey(String, InputStream, InputStream)
+   *
+   * @param passwordOfReceiversPrivateKey
+   *    the password for the receiver's private key
+   * @param privateKeyOfReceiver
+   *    the receiver's private key
+   * @param encryptedData
+   *    the encrypted data
+   * @return
+   */
+  @Override
+  public SessionKey extractSessionKey(String passwordOfReceiversPrivateKey, InputStream privateKeyOfReceiver, InputStream encryptedData) {
+    LOGGER.trace("extractSessionKey(String, InputStream, InputStream)");
+    LOGGER.trace("Password: {}, Private Key: {}, Encrypted Data: {}",
+        passwordOfReceiversPrivateKey == null ? "not set" : "********", privateKeyOfReceiver == null ? "not set" : "set", encryptedData == null ? "not set" : "set");
+    SessionKey result = null;
+    try {
+      LOGGER.debug("Reading secret key ring collection");
+      PGPSecretKeyRingCollection secretKeyRingCollection = readSecretKeyRingCollection(privateKeyOfReceiver);
+      LOGGER.debug("Retrieving DecoderStream from encrypted input");
+      try( InputStream in = ArmorInputStream.decode(encryptedData) ) {
+        byte[] sessionInfo = recoverSessionInfo(secretKeyRingCollection, passwordOfReceiversPrivateKey, readSessionKeyPackets(new BCPGInputStream(in)));
+        if( sessionInfo != null ) {
+          LOGGER.info("Session key extracted");
+          result = new SessionKey(sessionInfo[0], Arrays.copyOfRange(sessionInfo, 1, sessionInfo.length - 2));
         } else {
-          dataList = (PGPEncryptedDataList)objectFactory.nextObject();
+          LOGGER.error("No session key could be decrypted with the provided private key!");
         }
+      }
+    } catch (IOException | PGPException e) {
+      LOGGER.error("{}", e.getMessage());
+    }
+    return result;
+  }
 
-        PGPPrivateKey pgpPrivateKey = null;
-        PGPEncryptedData pgpEncryptedData = null;
-        LOGGER.debug("Iterating over encrypted data objects");
-        Iterator<PGPEncryptedData> iterator = dataList.getEncryptedDataObjects();
-        while( pgpPrivateKey == null && iterator.hasNext() ) {
-          pgpEncryptedData = iterator.next();
-          LOGGER.debug("Looking up private key");
-          pgpPrivateKey = findPrivateKey(privateKeyOfReceiver, ((PGPPublicKeyEncryptedData) pgpEncryptedData).getKeyID(), passwordOfReceiversPrivateKey);
+  /**
+   * @see MessageEncryptor#decrypt(SessionKey, InputStream, InputStream, OutputStream)
+   *
+   * @param sessionKey
+   *    the session key of the encrypted data
+   * @param publicKeyOfSender
+   *    the sender's public key (optional)
+   * @param encryptedData
+   *    the encrypted data
+   * @param target
+   *    the plain data stream
+   * @return
+   */
+  @Override
+  public boolean decrypt(SessionKey sessionKey, InputStream publicKeyOfSender, InputStream encryptedData, OutputStream target) {
+    LOGGER.trace("decrypt(SessionKey, InputStream, InputStream, OutputStream)");
+    LOGGER.trace("Session Key: {}, Public Key: {}, Encrypted Data: {}, Output: {}",
+        sessionKey == null ? "not set" : "set", publicKeyOfSender == null ? "not set" : "set", encryptedData == null ? "not set" : "set", target == null ? "not set" : "set");
+    boolean result = true;
+    try {
+      PGPPublicKeyRingCollection publicKeyRingCollection = readPublicKeyRingCollection(publicKeyOfSender);
+      LOGGER.debug("Retrieving DecoderStream from encrypted input");
+      try( InputStream in = ArmorInputStream.decode(encryptedData) ) {
+        PGPPublicKeyEncryptedData pgpEncryptedData = null;
+        Iterator<PGPEncryptedData> iterator = readEncryptedDataList(in).getEncryptedDataObjects();
+        while( pgpEncryptedData == null && iterator.hasNext() ) {
+          PGPEncryptedData encryptedDataObject = iterator.next();
+          if( encryptedDataObject instanceof PGPPublicKeyEncryptedData ) {
+            pgpEncryptedData = (PGPPublicKeyEncryptedData) encryptedDataObject;
+          }
         }
-        PublicKeyDataDecryptorFactory publicKeyDataDecryptorFactory = new BcPublicKeyDataDecryptorFactory(pgpPrivateKey);
-        LOGGER.debug("Retrieving data stream from encrypted data");
-        try( InputStream clearText = ((PGPPublicKeyEncryptedData)pgpEncryptedData).getDataStream(publicKeyDataDecryptorFactory)) {
-          PGPObjectFactory pgpObjectFactory = new PGPObjectFactory(clearText, new BcKeyFingerprintCalculator());
-          Object message;
-          PGPCompressedData compressedData;
-          PGPOnePassSignatureList onePassSignatureList = null;
-          PGPOnePassSignature onePassSignature = null;
-          PGPLiteralData literalData;
-          PGPSignatureList signatures = null;
-          PGPPublicKey pgpPublicKey = null;
-
-          while( (message = pgpObjectFactory.nextObject()) != null ) {
-            if( message instanceof PGPCompressedData ) {
-              compressedData = (PGPCompressedData) message;
-              LOGGER.debug("Compressed data block found, creating new object factory with compressed data stream");
-              pgpObjectFactory = new PGPObjectFactory(compressedData.getDataStream(), new BcKeyFingerprintCalculator());
-            }
-            if( message instanceof PGPLiteralData ) {
-              literalData = (PGPLiteralData) message;
-              LOGGER.debug("Reading literal data stream");
-              try( InputStream literalDataStream = literalData.getInputStream() ) {
-                IOUtils.StreamHandler streamHandler = null;
-                if( onePassSignature != null ) {
-                  final PGPOnePassSignature callbackSignature = onePassSignature;
-                  streamHandler = new IOUtils.StreamHandler() {
-                    @Override
-                    public void handleStreamBuffer(byte[] buffer, int offset, int length) throws IOException {
-                      callbackSignature.update(buffer, offset, length);
-                    }
-                  };
-                }
-                IOUtils.copy(literalDataStream, target, new byte[4096], streamHandler);
-              }
-            } else if( message instanceof PGPOnePassSignatureList ) {
-              onePassSignatureList = (PGPOnePassSignatureList)message;
-              if( publicKeyOfSender != null ) {
-                LOGGER.info("Public key provided -> verifying message signature");
-                onePassSignature = onePassSignatureList.get(0);
-                pgpPublicKey = publicKeyRingCollection.getPublicKey(onePassSignature.getKeyID());
-                onePassSignature.init(new BcPGPContentVerifierBuilderProvider(), pgpPublicKey);
-              }
-            } else if( message instanceof  PGPSignatureList){
-              LOGGER.info("Signature List found for verification");
-              signatures = (PGPSignatureList)message;
-            }
+        if( pgpEncryptedData != null ) {
+          LOGGER.info("Decrypting with provided session key");
+          try( DecryptingInputStream decryptingStream = openDecryptingStream(pgpEncryptedData, new SessionKeyDataDecryptorFactory(sessionKey), publicKeyRingCollection, in) ) {
+            result = decryptData(decryptingStream, target).isValid();
           }
+        } else {
+          LOGGER.error("No public key encrypted data found!");
+          result &= false;
+        }
+      }
+    } catch (IOException | PGPException e) {
+      LOGGER.error("{}", e.getMessage());
+      result &= false;
+    }
+    return result;
+  }
 
-          LOGGER.debug("Iterating over signature list");
-          for( int i = 0; onePassSignatureList != null && i < onePassSignatureList.size(); i++ ) {
-            if( pgpPublicKey != null && signatures != null ) {
-              LOGGER.info("Verifying signatures");
-              PGPSignature signature = signatures.get(i);
-              if( onePassSignature.verify(signature) ) {
-                LOGGER.info("Signature verified");
-                String userId = null;
-                Iterator<String> it = pgpPublicKey.getUserIDs();
-                while (it.hasNext()) {
-                  userId = it.next();
-                  LOGGER.info("Signed by {}", userId);
-                }
-              } else {
-                LOGGER.warn("Signature verification failed");
-                result &= false;
+  /**
+   * @see MessageEncryptor#rewrap(String, InputStream, InputStream, InputStream, OutputStream)
+   *
+   * @param passwordOfReceiversPrivateKey
+   *    the password for the current receiver's private key
+   * @param privateKeyOfReceiver
+   *    the current receiver's private key
+   * @param publicKeysOfRecipients
+   *    the public key stream of the new recipients (may contain several key rings)
+   * @param encryptedData
+   *    the encrypted data
+   * @param target
+   *    the re-addressed encrypted (ascii-armored) target stream
+   * @return
+   */
+  @Override
+  public boolean rewrap(String passwordOfReceiversPrivateKey, InputStream privateKeyOfReceiver, InputStream publicKeysOfRecipients, InputStream encryptedData, OutputStream target) {
+    LOGGER.trace("rewrap(String, InputStream, InputStream, InputStream, OutputStream)");
+    LOGGER.trace("Password: {}, Private Key: {}, Public Keys: {}, Encrypted Data: {}, Output: {}",
+        passwordOfReceiversPrivateKey == null ? "not set" : "********", privateKeyOfReceiver == null ? "not set" : "set", publicKeysOfRecipients == null ? "not set" : "set",
+        encryptedData == null ? "not set" : "set", target == null ? "not set" : "set");
+    boolean result = true;
+    try {
+      LOGGER.debug("Reading public keys of new recipients");
+      List<PGPPublicKey> recipientKeys = findPublicKeys(publicKeysOfRecipients, createEncryptionKeyFilter());
+      if( !recipientKeys.isEmpty() ) {
+        LOGGER.debug("Reading secret key ring collection");
+        PGPSecretKeyRingCollection secretKeyRingCollection = readSecretKeyRingCollection(privateKeyOfReceiver);
+        LOGGER.debug("Retrieving DecoderStream from encrypted input");
+        try( InputStream in = ArmorInputStream.decode(encryptedData) ) {
+          BCPGInputStream packetStream = new BCPGInputStream(in);
+          byte[] sessionInfo = recoverSessionInfo(secretKeyRingCollection, passwordOfReceiversPrivateKey, readSessionKeyPackets(packetStream));
+          if( sessionInfo != null ) {
+            LOGGER.debug("Wrapping target stream in armor stream");
+            try( OutputStream wrappedTargetStream = PGPArmor.armor(target) ) {
+              BCPGOutputStream packetTargetStream = new BCPGOutputStream(wrappedTargetStream);
+              for( PGPPublicKey recipientKey : recipientKeys ) {
+                LOGGER.info("Encrypting session key for key {}", recipientKey.getKeyID());
+                packetTargetStream.writePacket(new BcPublicKeyKeyEncryptionMethodGenerator(recipientKey).generate(sessionInfo[0], sessionInfo));
               }
+              LOGGER.info("Copying encrypted data packet");
+              IOUtils.copy(packetStream, wrappedTargetStream, getBufferPool());
             }
-          }
-
-
-          if( pgpEncryptedData.isIntegrityProtected() ) {
-            LOGGER.info("Performing integrity check on encrypted data");
-            if( pgpEncryptedData.verify() ) {
-              LOGGER.info("Data integrity verified");
-            } else {
-              LOGGER.warn("Data integrity verification failed");
-              result &= false;
-            }
+          } else {
+            LOGGER.error("No session key could be decrypted with the provided private key!");
+            result &= false;
           }
         }
+      } else {
+        LOGGER.error("No public key found for encryption!");
+        result &= false;
       }
     } catch (IOException | PGPException e) {
       LOGGER.error("{}", e.getMessage());
@@ -352,4 +1464,94 @@ public class PGPMessageEncryptor extends BasePGPCommon implements MessageEncrypt
     }
     return result;
   }
+
+  /**
+   * @see MessageEncryptor#inspect(InputStream)
+   *
+   * @param encryptedData
+   *    the encrypted data
+   * @return
+   */
+  @Override
+  public EncryptedMessageInfo inspect(InputStream encryptedData) {
+    LOGGER.trace("inspect(InputStream)");
+    LOGGER.trace("Encrypted Data: {}", encryptedData == null ? "not set" : "set");
+    EncryptedMessageInfo result = null;
+    LOGGER.debug("Retrieving DecoderStream from encrypted input");
+    try( InputStream in = ArmorInputStream.decode(encryptedData) ) {
+      BCPGInputStream packetStream = new BCPGInputStream(in);
+      List<Long> recipientKeyIds = new ArrayList<>();
+      List<Integer> symmetricAlgorithms = new ArrayList<>();
+      for( ContainedPacket sessionKeyPacket : readSessionKeyPackets(packetStream) ) {
+        if( sessionKeyPacket instanceof PublicKeyEncSessionPacket ) {
+          recipientKeyIds.add(((PublicKeyEncSessionPacket) sessionKeyPacket).getKeyID());
+        } else {
+          symmetricAlgorithms.add(((SymmetricKeyEncSessionPacket) sessionKeyPacket).getEncAlgorithm());
+        }
+      }
+      result = new EncryptedMessageInfo(recipientKeyIds, symmetricAlgorithms, packetStream.nextPacketTag() == PacketTags.SYM_ENC_INTEGRITY_PRO);
+      LOGGER.info("Encrypted message: {}", result);
+    } catch (IOException | PGPException e) {
+      LOGGER.error("{}", e.getMessage());
+    }
+    return result;
+  }
+
+  /**
+   * @see MessageEncryptor#encryptingProcessor(InputStream, InputStream, String, String, String, ChunkSubscriber)
+   *
+   * @param publicKeyOfRecipient
+   *    the public key stream of the message recipient
+   * @param privateKeyOfSender
+   *    the private key stream of the message sender (optional)
+   * @param userIdOfSender
+   *    the user id of the message sender
+   * @param passwordOfSendersPrivateKey
+   *    the password for the private key of the sender
+   * @param inputDataName
+   *    the (file)name of the input data
+   * @param subscriber
+   *    the subscriber of the encrypted data
+   * @return
+   */
+  @Override
+  public ChunkProcessor encryptingProcessor(final InputStream publicKeyOfRecipient, final InputStream privateKeyOfSender, final String userIdOfSender, final String passwordOfSendersPrivateKey, final String inputDataName, ChunkSubscriber<Boolean> subscriber) {
+    LOGGER.trace("encryptingProcessor(InputStream, InputStream, String, String, String, ChunkSubscriber)");
+    LOGGER.trace("Public Key: {}, Private Key: {}, User ID: {}, Password: {}, Input Name: {}, Subscriber: {}",
+        publicKeyOfRecipient == null ? "not set" : "set", privateKeyOfSender == null ? "not set" : "set", userIdOfSender, passwordOfSendersPrivateKey == null ? "not set" : "********", inputDataName, subscriber == null ? "not set" : "set");
+    return new PGPEncryptingChunkProcessor(subscriber) {
+      @Override
+      protected EncryptingOutputStream open(OutputStream target) throws IOException, PGPException {
+        return openEncryptingStream(publicKeyOfRecipient, privateKeyOfSender, userIdOfSender, passwordOfSendersPrivateKey, inputDataName, -1L, target);
+      }
+    };
+  }
+
+  /**
+   * @see MessageEncryptor#decryptingProcessor(String, InputStream, InputStream, ChunkSubscriber)
+   *
+   * @param passwordOfReceiversPrivateKey
+   *    the password of the receivers private key
+   * @param privateKeyOfReceiver
+   *    the receiver's private key
+   * @param publicKeyOfSender
+   *    the sender's public key (optional)
+   * @param subscriber
+   *    the subscriber of the plain data
+   * @return
+   */
+  @Override
+  public ChunkProcessor decryptingProcessor(final String passwordOfReceiversPrivateKey, final InputStream privateKeyOfReceiver, final InputStream publicKeyOfSender, ChunkSubscriber<VerificationResult> subscriber) {
+    LOGGER.trace("decryptingProcessor(String, InputStream, InputStream, ChunkSubscriber)");
+    LOGGER.trace("Password: {}, Private Key: {}, Public Key: {}, Subscriber: {}",
+        passwordOfReceiversPrivateKey == null ? "not set" : "********", privateKeyOfReceiver == null ? "not set" : "set", publicKeyOfSender == null ? "not set" : "set",
+        subscriber == null ? "not set" : "set");
+    return new PGPDecryptingChunkProcessor(subscriber, getBufferPool()) {
+      @Override
+      protected DecryptingInputStream open(InputStream encryptedData) throws IOException, PGPException {
+        return openDecryptingStream(passwordOfReceiversPrivateKey, privateKeyOfReceiver, publicKeyOfSender, encryptedData);
+      }
+    };
+  }
+
 }
@@ -0,0 +1,293 @@
+package me.sniggle.pgp.crypt;
+
+import org.bouncycastle.bcpg.ContainedPacket;
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.bouncycastle.openpgp.PGPUtil;
+import org.bouncycastle.openpgp.operator.bc.BcPublicKeyKeyEncryptionMethodGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An opt-in pool of pre-generated session keys and their encrypted session key packets per recipient.
+ *
+ * The public key operation of encrypting a fresh session key dominates the encryption of small messages.
+ * The pool performs it on a background thread, so the encryption itself only does the symmetric work.
+ * Every pooled session key is handed out exactly once.
+ *
+ * Recipients are registered on their first use (up to the configured maximum), the first message to a
+ * recipient therefore is encrypted without the pool.
+ */
+public class PGPSessionKeyPool {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PGPSessionKeyPool.class);
+
+  /**
+   * a pre-generated session key and its encrypted session key packet
+   */
+  static final class PooledSessionKey {
+
+    private final byte[] sessionInfo;
+    private final ContainedPacket sessionKeyPacket;
+
+    PooledSessionKey(byte[] sessionInfo, ContainedPacket sessionKeyPacket) {
+      this.sessionInfo = sessionInfo;
+      this.sessionKeyPacket = sessionKeyPacket;
+    }
+
+    byte[] getSessionInfo() {
+      return sessionInfo;
+    }
+
+    ContainedPacket getSessionKeyPacket() {
+      return sessionKeyPacket;
+    }
+
+  }
+
+  private final int encryptionAlgorithm;
+  private final Map<Long, PGPPublicKey> recipients = new ConcurrentHashMap<>();
+  private final Map<Long, BlockingQueue<PooledSessionKey>> pooledSessionKeys = new ConcurrentHashMap<>();
+  private final SecureRandom secureRandom = new SecureRandom();
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  /**
+   * guards the lifecycle and the registration of recipients, a lock instead of a monitor does not pin
+   * virtual threads encrypting on first use of a recipient
+   */
+  private final Lock lock = new ReentrantLock();
+
+  private int poolSize = 16;
+  private int refillBatchSize = 4;
+  private long refillInterval = 100;
+  private int maxRecipients = 64;
+  private ScheduledExecutorService refillExecutor;
+
+  /**
+   * @param encryptionAlgorithm
+   *    the symmetric encryption algorithm of the pooled session keys, needs to match
+   *    the algorithm of the message encryptor using the pool
+   */
+  public PGPSessionKeyPool(int encryptionAlgorithm) {
+    this.encryptionAlgorithm = encryptionAlgorithm;
+  }
+
+  /**
+   * the maximum number of pooled session keys per recipient
+   *
+   * @param poolSize
+   *    the pool size per recipient
+   */
+  public void setPoolSize(int poolSize) {
+    this.poolSize = poolSize;
+  }
+
+  /**
+   * the maximum number of session keys generated per recipient and refill run
+   *
+   * @param refillBatchSize
+   *    the number of session keys
+   */
+  public void setRefillBatchSize(int refillBatchSize) {
+    this.refillBatchSize = refillBatchSize;
+  }
+
+  /**
+   * the delay between two refill runs in milliseconds, takes effect on #start()
+   *
+   * @param refillInterval
+   *    the interval in milliseconds
+   */
+  public void setRefillInterval(long refillInterval) {
+    this.refillInterval = refillInterval;
+  }
+
+  /**
+   * the maximum number of recipients session keys are pooled for
+   *
+   * @param maxRecipients
+   *    the maximum number of recipients
+   */
+  public void setMaxRecipients(int maxRecipients) {
+    this.maxRecipients = maxRecipients;
+  }
+
+  /**
+   * accessor to the symmetric encryption algorithm of the pooled session keys
+   *
+   * @return the algorithm constant
+   */
+  public int getEncryptionAlgorithm() {
+    return encryptionAlgorithm;
+  }
+
+  /**
+   * @return the number of encryptions served from the pool
+   */
+  public long getHits() {
+    return hits.get();
+  }
+
+  /**
+   * @return the number of encryptions the pool had no session key for
+   */
+  public long getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * starts the background refill of the pool
+   */
+  public void start() {
+    LOGGER.trace("start()");
+    lock.lock();
+    try {
+      if( refillExecutor == null ) {
+        refillExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "simple-pgp-session-key-pool");
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+        refillExecutor.scheduleWithFixedDelay(new Runnable() {
+          @Override
+          public void run() {
+            refill();
+          }
+        }, 0, refillInterval, TimeUnit.MILLISECONDS);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * stops the background refill and discards all pooled session keys
+   */
+  public void shutdown() {
+    LOGGER.trace("shutdown()");
+    lock.lock();
+    try {
+      if( refillExecutor != null ) {
+        refillExecutor.shutdownNow();
+        refillExecutor = null;
+      }
+      pooledSessionKeys.clear();
+      recipients.clear();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * stops pooling session keys for the key and discards the pooled ones, e.g. because the key has been
+   * revoked or replaced
+   *
+   * @param keyId
+   *    the ID of the encryption key of the recipient
+   * @return true if session keys were pooled for the key
+   */
+  public boolean removeRecipient(long keyId) {
+    LOGGER.trace("removeRecipient(long)");
+    lock.lock();
+    try {
+      pooledSessionKeys.remove(keyId);
+      return recipients.remove(keyId) != null;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * generates up to the refill batch size session keys for every registered recipient whose pool is not full
+   */
+  public void refill() {
+    LOGGER.trace("refill()");
+    for( Map.Entry<Long, PGPPublicKey> recipient : recipients.entrySet() ) {
+      BlockingQueue<PooledSessionKey> queue = pooledSessionKeys.get(recipient.getKey());
+      for( int i = 0; queue != null && i < refillBatchSize && queue.size() < poolSize; i++ ) {
+        try {
+          queue.offer(generate(recipient.getValue()));
+        } catch (PGPException | RuntimeException e) {
+          LOGGER.error("Generating a session key for key {} failed: {}", recipient.getKey(), e.getMessage());
+        }
+      }
+    }
+  }
+
+  /**
+   * removes a pooled session key for the recipient, registers the recipient if it is not yet known
+   *
+   * @param recipientKey
+   *    the encryption key of the recipient
+   * @param algorithm
+   *    the symmetric encryption algorithm requested
+   * @return the pooled session key or null if none is available
+   */
+  PooledSessionKey take(PGPPublicKey recipientKey, int algorithm) {
+    LOGGER.trace("take(PGPPublicKey, int)");
+    PooledSessionKey result = null;
+    if( algorithm == encryptionAlgorithm ) {
+      BlockingQueue<PooledSessionKey> queue = pooledSessionKeys.get(recipientKey.getKeyID());
+      if( queue != null ) {
+        result = queue.poll();
+      } else {
+        register(recipientKey);
+      }
+    }
+    if( result != null ) {
+      hits.incrementAndGet();
+    } else {
+      misses.incrementAndGet();
+    }
+    return result;
+  }
+
+  /**
+   * registers the recipient for pooling if the maximum number of recipients is not yet reached
+   *
+   * @param recipientKey
+   *    the encryption key of the recipient
+   */
+  private void register(PGPPublicKey recipientKey) {
+    lock.lock();
+    try {
+      if( recipients.size() < maxRecipients && !recipients.containsKey(recipientKey.getKeyID()) ) {
+        LOGGER.info("Pooling session keys for key {}", recipientKey.getKeyID());
+        pooledSessionKeys.put(recipientKey.getKeyID(), new LinkedBlockingQueue<PooledSessionKey>());
+        recipients.put(recipientKey.getKeyID(), recipientKey);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * generates a random session key and encrypts it for the recipient
+   *
+   * @param recipientKey
+   *    the encryption key of the recipient
+   * @return the pooled session key
+   * @throws PGPException
+   */
+  private PooledSessionKey generate(PGPPublicKey recipientKey) throws PGPException {
+    byte[] sessionInfo = PGPMessageEncryptor.createSessionInfo(encryptionAlgorithm, PGPUtil.makeRandomKey(encryptionAlgorithm, secureRandom));
+    return new PooledSessionKey(sessionInfo, new BcPublicKeyKeyEncryptionMethodGenerator(recipientKey).generate(encryptionAlgorithm, sessionInfo));
+  }
+
+}
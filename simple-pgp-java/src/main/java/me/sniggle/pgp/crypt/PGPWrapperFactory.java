@@ -46,4 +46,20 @@ public final class PGPWrapperFactory {
     return new PGPMessageSigner();
   }
 
+  /**
+   *
+   * @return a key ring importer instance
+   */
+  public static KeyRingImporter getKeyRingImporter() {
+    return new PGPKeyRingImporter();
+  }
+
+  /**
+   *
+   * @return a key protector instance
+   */
+  public static KeyProtector getKeyProtector() {
+    return new PGPKeyProtector();
+  }
+
 }
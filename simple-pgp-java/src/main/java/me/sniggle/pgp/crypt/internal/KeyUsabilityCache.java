@@ -0,0 +1,232 @@
+package me.sniggle.pgp.crypt.internal;
+
+import org.bouncycastle.bcpg.PublicKeyAlgorithmTags;
+import org.bouncycastle.bcpg.sig.KeyFlags;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.bouncycastle.openpgp.PGPSignature;
+import org.bouncycastle.openpgp.PGPSignatureSubpacketVector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Caches the evaluation whether a key may be used to encrypt or sign: the verified self-signature or binding
+ * signature, its key flags and key expiration time and the verified revocations of the key.
+ *
+ * Evaluations are keyed by the SHA-256 digest of the encoded key (including its signatures) and the encoded
+ * primary key, a key ring that changed (e.g. a new revocation or binding signature) therefore is evaluated
+ * again and the evaluation of its previous state ages out of the cache. The least recently used evaluations
+ * are evicted once the maximum size is reached.
+ */
+public class KeyUsabilityCache {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(KeyUsabilityCache.class);
+
+  private static final int DEFAULT_MAXIMUM_SIZE = 1024;
+
+  private static final KeyUsabilityCache DEFAULT = new KeyUsabilityCache(DEFAULT_MAXIMUM_SIZE);
+
+  /**
+   * The evaluated usability of a key
+   */
+  public static final class KeyUsability {
+
+    private final boolean bound;
+    private final boolean revoked;
+    private final boolean encryption;
+    private final boolean signing;
+    private final long creationTime;
+    private final long expirationTime;
+
+    KeyUsability(boolean bound, boolean revoked, boolean encryption, boolean signing, long creationTime, long expirationTime) {
+      this.bound = bound;
+      this.revoked = revoked;
+      this.encryption = encryption;
+      this.signing = signing;
+      this.creationTime = creationTime;
+      this.expirationTime = expirationTime;
+    }
+
+    /**
+     * @param time
+     *    the point in time (milliseconds since the epoch)
+     * @return true if the key is bound by a valid self-signature, not revoked and not expired at the given time
+     */
+    public boolean isValid(long time) {
+      return bound && !revoked && creationTime <= time && time < expirationTime;
+    }
+
+    /**
+     * @param time
+     *    the point in time (milliseconds since the epoch)
+     * @return true if the key is valid and may be used to encrypt at the given time
+     */
+    public boolean isUsableForEncryption(long time) {
+      return encryption && isValid(time);
+    }
+
+    /**
+     * @param time
+     *    the point in time (milliseconds since the epoch)
+     * @return true if the key is valid and may be used to sign at the given time
+     */
+    public boolean isUsableForSigning(long time) {
+      return signing && isValid(time);
+    }
+
+  }
+
+  private final int maximumSize;
+  private final Map<ByteBuffer, KeyUsability> evaluations;
+  private final Lock lock = new ReentrantLock();
+
+  /**
+   * @param maximumSize
+   *    the maximum number of cached key evaluations
+   */
+  public KeyUsabilityCache(final int maximumSize) {
+    this.maximumSize = maximumSize;
+    this.evaluations = new LinkedHashMap<ByteBuffer, KeyUsability>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<ByteBuffer, KeyUsability> eldest) {
+        return size() > maximumSize;
+      }
+    };
+  }
+
+  /**
+   * @return the cache shared by default
+   */
+  public static KeyUsabilityCache getDefault() {
+    return DEFAULT;
+  }
+
+  /**
+   * @return the maximum number of cached key evaluations
+   */
+  public int getMaximumSize() {
+    return maximumSize;
+  }
+
+  /**
+   * @return the number of cached key evaluations
+   */
+  public int size() {
+    lock.lock();
+    try {
+      return evaluations.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * drops all cached evaluations
+   */
+  public void clear() {
+    lock.lock();
+    try {
+      evaluations.clear();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * provides the (cached) usability of a key
+   *
+   * @param primaryKey
+   *    the primary key of the key ring
+   * @param key
+   *    the key to evaluate (the primary key itself or one of its subkeys)
+   * @return the usability of the key
+   */
+  public KeyUsability getUsability(PGPPublicKey primaryKey, PGPPublicKey key) {
+    LOGGER.trace("getUsability(PGPPublicKey, PGPPublicKey)");
+    KeyUsability result = null;
+    ByteBuffer cacheKey = null;
+    try {
+      cacheKey = cacheKeyOf(primaryKey, key);
+      lock.lock();
+      try {
+        result = evaluations.get(cacheKey);
+      } finally {
+        lock.unlock();
+      }
+    } catch (IOException e) {
+      LOGGER.error("{}", e.getMessage());
+    }
+    if( result == null ) {
+      LOGGER.debug("Evaluating key {}", key.getKeyID());
+      result = evaluate(primaryKey, key);
+      if( cacheKey != null ) {
+        lock.lock();
+        try {
+          evaluations.put(cacheKey, result);
+        } finally {
+          lock.unlock();
+        }
+      }
+    }
+    return result;
+  }
+
+  private static ByteBuffer cacheKeyOf(PGPPublicKey primaryKey, PGPPublicKey key) throws IOException {
+    SHA256Digest digest = new SHA256Digest();
+    byte[] encoded = key.getEncoded();
+    digest.update(encoded, 0, encoded.length);
+    if( key != primaryKey ) {
+      encoded = primaryKey.getEncoded();
+      digest.update(encoded, 0, encoded.length);
+    }
+    byte[] result = new byte[digest.getDigestSize()];
+    digest.doFinal(result, 0);
+    return ByteBuffer.wrap(result);
+  }
+
+  private static KeyUsability evaluate(PGPPublicKey primaryKey, PGPPublicKey key) {
+    boolean primary = key.isMasterKey();
+    boolean bound = false;
+    boolean revoked = false;
+    PGPSignature selfSignature = null;
+    try {
+      if( key.getVersion() < 4 ) {
+        bound = primary;
+      } else {
+        selfSignature = SelfSignatures.latestSelfSignature(primaryKey, key);
+        bound = selfSignature != null;
+      }
+      revoked = SelfSignatures.isRevoked(primaryKey, key);
+    } catch (PGPException e) {
+      LOGGER.error("{}", e.getMessage());
+      bound = false;
+      selfSignature = null;
+    }
+    PGPSignatureSubpacketVector subpackets = (selfSignature != null) ? selfSignature.getHashedSubPackets() : null;
+    int keyFlags = (subpackets != null) ? subpackets.getKeyFlags() : 0;
+    boolean encryption = key.isEncryptionKey();
+    boolean signing = isSigningAlgorithm(key.getAlgorithm());
+    if( keyFlags != 0 ) {
+      encryption &= (keyFlags & (KeyFlags.ENCRYPT_COMMS | KeyFlags.ENCRYPT_STORAGE)) != 0;
+      signing &= (keyFlags & KeyFlags.SIGN_DATA) != 0;
+    } else {
+      encryption &= !primary;
+    }
+    return new KeyUsability(bound, revoked, encryption, signing, key.getCreationTime().getTime(), SelfSignatures.getExpirationTime(key, selfSignature));
+  }
+
+  private static boolean isSigningAlgorithm(int algorithm) {
+    return algorithm == PublicKeyAlgorithmTags.RSA_GENERAL || algorithm == PublicKeyAlgorithmTags.RSA_SIGN
+        || algorithm == PublicKeyAlgorithmTags.DSA || algorithm == PublicKeyAlgorithmTags.ECDSA
+        || algorithm == PublicKeyAlgorithmTags.ELGAMAL_GENERAL;
+  }
+
+}
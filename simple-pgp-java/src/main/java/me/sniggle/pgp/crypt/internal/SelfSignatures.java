@@ -0,0 +1,161 @@
+package me.sniggle.pgp.crypt.internal;
+
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.bouncycastle.openpgp.PGPSignature;
+import org.bouncycastle.openpgp.PGPSignatureSubpacketVector;
+import org.bouncycastle.openpgp.operator.bc.BcPGPContentVerifierBuilderProvider;
+
+import java.util.Iterator;
+
+/**
+ * Helper class evaluating the self-signatures of a key ring: only signatures issued by the primary key and
+ * verified against it are taken into account, unlike the accessors of BouncyCastle (e.g. PGPPublicKey#isRevoked()
+ * or PGPPublicKey#getValidSeconds()) which trust the first signature of a matching type.
+ */
+public final class SelfSignatures {
+
+  private SelfSignatures() {
+    super();
+  }
+
+  /**
+   * any signature over a user ID other than a revocation counts as self-certification, key rings created by
+   * earlier versions of the key pair generator carry a self-signature of the (invalid) type 3
+   *
+   * @param signature
+   *    the signature over a user ID
+   * @return true if the signature certifies the user ID
+   */
+  public static boolean isSelfCertification(PGPSignature signature) {
+    return signature.getSignatureType() != PGPSignature.CERTIFICATION_REVOCATION;
+  }
+
+  /**
+   * verifies a signature of the primary key over the key (a direct key signature, revocation or binding)
+   *
+   * @param signature
+   *    the signature
+   * @param primaryKey
+   *    the primary key of the key ring
+   * @param key
+   *    the signed key (the primary key itself or one of its subkeys)
+   * @return true if the signature is valid
+   * @throws PGPException
+   */
+  public static boolean verify(PGPSignature signature, PGPPublicKey primaryKey, PGPPublicKey key) throws PGPException {
+    signature.init(new BcPGPContentVerifierBuilderProvider(), primaryKey);
+    return (key == primaryKey || key.isMasterKey()) ? signature.verifyCertification(key) : signature.verifyCertification(primaryKey, key);
+  }
+
+  /**
+   * checks for a verified key revocation (primary key) or subkey revocation (subkey)
+   *
+   * @param primaryKey
+   *    the primary key of the key ring
+   * @param key
+   *    the key (the primary key itself or one of its subkeys)
+   * @return true if the key has been revoked by the primary key
+   * @throws PGPException
+   */
+  public static boolean isRevoked(PGPPublicKey primaryKey, PGPPublicKey key) throws PGPException {
+    boolean result = false;
+    Iterator<?> signatures = key.getSignaturesOfType(key.isMasterKey() ? PGPSignature.KEY_REVOCATION : PGPSignature.SUBKEY_REVOCATION);
+    while( !result && signatures.hasNext() ) {
+      PGPSignature signature = (PGPSignature) signatures.next();
+      result = signature.getKeyID() == primaryKey.getKeyID() && verify(signature, primaryKey, key);
+    }
+    return result;
+  }
+
+  /**
+   * provides the most recent verified self-certification of the user ID
+   *
+   * @param primaryKey
+   *    the primary key of the key ring
+   * @param userId
+   *    the raw user ID
+   * @return the self-certification or null if the user ID is not certified by the primary key
+   * @throws PGPException
+   */
+  public static PGPSignature latestSelfCertification(PGPPublicKey primaryKey, byte[] userId) throws PGPException {
+    PGPSignature result = null;
+    Iterator<?> signatures = primaryKey.getSignaturesForID(userId);
+    while( signatures != null && signatures.hasNext() ) {
+      PGPSignature signature = (PGPSignature) signatures.next();
+      if( signature.getKeyID() == primaryKey.getKeyID() && isSelfCertification(signature) && isMoreRecent(signature, result) ) {
+        signature.init(new BcPGPContentVerifierBuilderProvider(), primaryKey);
+        if( signature.verifyCertification(userId, primaryKey) ) {
+          result = signature;
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * provides the most recent verified self-signature binding the key: a user ID self-certification or direct
+   * key signature for the primary key, a subkey binding signature for a subkey
+   *
+   * @param primaryKey
+   *    the primary key of the key ring
+   * @param key
+   *    the key (the primary key itself or one of its subkeys)
+   * @return the self-signature or null if the key is not bound
+   * @throws PGPException
+   */
+  public static PGPSignature latestSelfSignature(PGPPublicKey primaryKey, PGPPublicKey key) throws PGPException {
+    PGPSignature result = latestSignature(primaryKey, key, key.isMasterKey() ? PGPSignature.DIRECT_KEY : PGPSignature.SUBKEY_BINDING);
+    if( key.isMasterKey() ) {
+      Iterator<?> userIds = key.getRawUserIDs();
+      while( userIds.hasNext() ) {
+        PGPSignature signature = latestSelfCertification(key, (byte[]) userIds.next());
+        if( signature != null && isMoreRecent(signature, result) ) {
+          result = signature;
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * provides the expiration time of the key, taken from the key itself for version 3 keys and from the
+   * self-signature otherwise
+   *
+   * @param key
+   *    the key
+   * @param selfSignature
+   *    the self-signature binding the key (may be null)
+   * @return the expiration time (milliseconds since the epoch) or Long.MAX_VALUE if the key does not expire
+   */
+  public static long getExpirationTime(PGPPublicKey key, PGPSignature selfSignature) {
+    long validSeconds = 0;
+    if( key.getVersion() < 4 ) {
+      validSeconds = key.getValidSeconds();
+    } else if( selfSignature != null ) {
+      PGPSignatureSubpacketVector subpackets = selfSignature.getHashedSubPackets();
+      validSeconds = (subpackets != null) ? subpackets.getKeyExpirationTime() : 0;
+    }
+    return (validSeconds > 0) ? key.getCreationTime().getTime() + validSeconds * 1000L : Long.MAX_VALUE;
+  }
+
+  /**
+   * @return the most recent verified signature of the given type issued by the primary key
+   */
+  private static PGPSignature latestSignature(PGPPublicKey primaryKey, PGPPublicKey key, int signatureType) throws PGPException {
+    PGPSignature result = null;
+    Iterator<?> signatures = key.getSignaturesOfType(signatureType);
+    while( signatures.hasNext() ) {
+      PGPSignature signature = (PGPSignature) signatures.next();
+      if( signature.getKeyID() == primaryKey.getKeyID() && isMoreRecent(signature, result) && verify(signature, primaryKey, key) ) {
+        result = signature;
+      }
+    }
+    return result;
+  }
+
+  private static boolean isMoreRecent(PGPSignature signature, PGPSignature current) {
+    return current == null || signature.getCreationTime().after(current.getCreationTime());
+  }
+
+}
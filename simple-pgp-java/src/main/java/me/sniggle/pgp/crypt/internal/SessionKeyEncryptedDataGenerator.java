@@ -0,0 +1,150 @@
+package me.sniggle.pgp.crypt.internal;
+
+import org.bouncycastle.bcpg.BCPGOutputStream;
+import org.bouncycastle.bcpg.ContainedPacket;
+import org.bouncycastle.bcpg.PacketTags;
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.operator.PGPDataEncryptor;
+import org.bouncycastle.openpgp.operator.PGPDigestCalculator;
+import org.bouncycastle.openpgp.operator.bc.BcPGPDataEncryptorBuilder;
+import org.bouncycastle.util.io.TeeOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Counterpart of the PGPEncryptedDataGenerator for an already known session key and already encrypted
+ * session key packets, writes an integrity protected encrypted data packet
+ *
+ * The session key packets have to be created for the very same session key, which must not be used for any other message!
+ */
+public class SessionKeyEncryptedDataGenerator {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SessionKeyEncryptedDataGenerator.class);
+
+  private final BcPGPDataEncryptorBuilder dataEncryptorBuilder;
+  private final byte[] sessionInfo;
+  private final List<ContainedPacket> sessionKeyPackets = new ArrayList<>();
+
+  private BCPGOutputStream packetStream;
+  private OutputStream cipherStream;
+  private PGPDigestCalculator digestCalculator;
+
+  /**
+   * @param dataEncryptorBuilder
+   *    the builder of the symmetric data encryptor (integrity packet enabled)
+   * @param sessionInfo
+   *    the session info (algorithm, key and checksum) the session key packets were created for
+   */
+  public SessionKeyEncryptedDataGenerator(BcPGPDataEncryptorBuilder dataEncryptorBuilder, byte[] sessionInfo) {
+    this.dataEncryptorBuilder = dataEncryptorBuilder;
+    this.sessionInfo = sessionInfo;
+  }
+
+  /**
+   * adds an encrypted session key packet for a recipient
+   *
+   * @param sessionKeyPacket
+   *    the encrypted session key packet
+   */
+  public void addSessionKeyPacket(ContainedPacket sessionKeyPacket) {
+    sessionKeyPackets.add(sessionKeyPacket);
+  }
+
+  /**
+   * writes the session key packets and opens the encrypted data packet
+   *
+   * @param out
+   *    the target stream
+   * @param buffer
+   *    the buffer used for partial packet lengths
+   * @return the stream accepting the plain data, closing it finishes the encrypted data packet
+   * @throws IOException
+   * @throws PGPException
+   */
+  public OutputStream open(OutputStream out, byte[] buffer) throws IOException, PGPException {
+    LOGGER.trace("open(OutputStream, byte[])");
+    if( cipherStream != null ) {
+      throw new IllegalStateException("generator already in open state");
+    }
+    if( sessionInfo[0] != dataEncryptorBuilder.getAlgorithm() ) {
+      throw new PGPException("Session key algorithm does not match the data encryptor algorithm");
+    }
+    BCPGOutputStream sessionKeyStream = new BCPGOutputStream(out);
+    for( ContainedPacket sessionKeyPacket : sessionKeyPackets ) {
+      sessionKeyStream.writePacket(sessionKeyPacket);
+    }
+    PGPDataEncryptor dataEncryptor = dataEncryptorBuilder.build(Arrays.copyOfRange(sessionInfo, 1, sessionInfo.length - 2));
+    digestCalculator = dataEncryptor.getIntegrityCalculator();
+    if( digestCalculator == null ) {
+      throw new PGPException("Data encryptor without integrity packet is not supported");
+    }
+    LOGGER.debug("Opening integrity protected data packet");
+    packetStream = new BCPGOutputStream(out, PacketTags.SYM_ENC_INTEGRITY_PRO, buffer);
+    packetStream.write(1);
+    cipherStream = dataEncryptor.getOutputStream(new OutputStream() {
+      @Override
+      public void write(int b) throws IOException {
+        packetStream.write(b);
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+        packetStream.write(b, off, len);
+      }
+
+      @Override
+      public void close() throws IOException {
+        packetStream.finish();
+      }
+    });
+    final OutputStream dataStream = new TeeOutputStream(digestCalculator.getOutputStream(), cipherStream);
+    int blockSize = dataEncryptor.getBlockSize();
+    byte[] prefix = new byte[blockSize + 2];
+    dataEncryptorBuilder.getSecureRandom().nextBytes(prefix);
+    prefix[blockSize] = prefix[blockSize - 2];
+    prefix[blockSize + 1] = prefix[blockSize - 1];
+    dataStream.write(prefix);
+    return new OutputStream() {
+      @Override
+      public void write(int b) throws IOException {
+        dataStream.write(b);
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+        dataStream.write(b, off, len);
+      }
+
+      @Override
+      public void close() throws IOException {
+        SessionKeyEncryptedDataGenerator.this.close();
+      }
+    };
+  }
+
+  /**
+   * writes the modification detection code and finishes the encrypted data packet,
+   * the target stream is not closed
+   *
+   * @throws IOException
+   */
+  public void close() throws IOException {
+    LOGGER.trace("close()");
+    if( cipherStream != null ) {
+      LOGGER.debug("Writing modification detection code");
+      OutputStream dataStream = new TeeOutputStream(digestCalculator.getOutputStream(), cipherStream);
+      new BCPGOutputStream(dataStream, PacketTags.MOD_DETECTION_CODE, 20).flush();
+      cipherStream.write(digestCalculator.getDigest());
+      cipherStream.close();
+      cipherStream = null;
+      packetStream = null;
+    }
+  }
+
+}
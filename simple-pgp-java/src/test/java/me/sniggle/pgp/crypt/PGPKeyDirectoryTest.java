@@ -0,0 +1,152 @@
+package me.sniggle.pgp.crypt;
+
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.bouncycastle.openpgp.PGPPublicKeyRing;
+import org.bouncycastle.openpgp.PGPPublicKeyRingCollection;
+import org.bouncycastle.openpgp.PGPSecretKeyRingCollection;
+import org.bouncycastle.openpgp.operator.bc.BcKeyFingerprintCalculator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static me.sniggle.pgp.crypt.KeyRingFixtures.readPublicKeyRing;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the lookups and the copy-on-write updates of the in-memory key directory
+ */
+public class PGPKeyDirectoryTest {
+
+  private PGPKeyDirectory keyDirectory;
+  private PGPPublicKeyRing testCase1;
+  private PGPPublicKeyRing testCase2;
+
+  private static int count(InputStream keyRings) throws Exception {
+    return (keyRings == null) ? 0 : new PGPPublicKeyRingCollection(keyRings, new BcKeyFingerprintCalculator()).size();
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    keyDirectory = new PGPKeyDirectory();
+    assertEquals(1, keyDirectory.addKeyRings(getClass().getResourceAsStream("testcase-1-pub.asc")));
+    assertEquals(1, keyDirectory.addKeyRings(getClass().getResourceAsStream("testcase-2-pub.asc")));
+    assertEquals(1, keyDirectory.addKeyRings(getClass().getResourceAsStream("testcase-1-sec.asc")));
+    testCase1 = readPublicKeyRing("testcase-1-pub.asc");
+    testCase2 = readPublicKeyRing("testcase-2-pub.asc");
+  }
+
+  @Test
+  public void testLookupByKey() throws Exception {
+    assertEquals(2, keyDirectory.size());
+    Iterator<PGPPublicKey> keys = testCase1.getPublicKeys();
+    while( keys.hasNext() ) {
+      PGPPublicKey key = keys.next();
+      assertEquals(testCase1.getPublicKey().getKeyID(), new PGPPublicKeyRing(keyDirectory.findPublicKeyRing(key.getKeyID()), new BcKeyFingerprintCalculator()).getPublicKey().getKeyID());
+      assertNotNull(keyDirectory.findPublicKeyRing(key.getFingerprint()));
+      assertNotNull(new PGPSecretKeyRingCollection(keyDirectory.findSecretKeyRing(key.getKeyID()), new BcKeyFingerprintCalculator()).getSecretKey(key.getKeyID()));
+    }
+    assertNotNull(keyDirectory.findPublicKeyRing(testCase2.getPublicKey().getKeyID()));
+    assertNull(keyDirectory.findSecretKeyRing(testCase2.getPublicKey().getKeyID()));
+    assertNull(keyDirectory.findPublicKeyRing(0x1234567890L));
+    assertNull(keyDirectory.findPublicKeyRing(new byte[20]));
+  }
+
+  @Test
+  public void testLookupByUserId() throws Exception {
+    assertEquals(1, count(keyDirectory.findPublicKeyRings("Test Case 1 (PGP key for simple-pgp testcase) <testcase-1@sniggleme.info>")));
+    assertEquals(1, count(keyDirectory.findPublicKeyRings("TESTCASE-2@sniggleme.info")));
+    assertNotNull(keyDirectory.findSecretKeyRings("testcase-1@sniggleme.info"));
+    assertNull(keyDirectory.findSecretKeyRings("testcase-2@sniggleme.info"));
+    assertNull(keyDirectory.findPublicKeyRings("testcase-1"));
+    assertNull(keyDirectory.findPublicKeyRings("sniggleme.info"));
+  }
+
+  @Test
+  public void testLookupByPrefix() throws Exception {
+    assertEquals(2, count(keyDirectory.findPublicKeyRingsByPrefix("testcase-")));
+    assertEquals(1, count(keyDirectory.findPublicKeyRingsByPrefix("TestCase-1@")));
+    assertEquals(2, count(keyDirectory.findPublicKeyRingsByPrefix("sniggleme")));
+    assertEquals(1, count(keyDirectory.findPublicKeyRingsByPrefix("test case 2 (")));
+    assertEquals(2, count(keyDirectory.findPublicKeyRingsByPrefix("")));
+    assertNull(keyDirectory.findPublicKeyRingsByPrefix("nobody"));
+  }
+
+  @Test
+  public void testRemove() throws Exception {
+    assertTrue(keyDirectory.removeKeyRing(testCase1.getPublicKey().getKeyID()));
+    assertFalse(keyDirectory.removeKeyRing(testCase1.getPublicKey().getKeyID()));
+    assertEquals(1, keyDirectory.size());
+    assertNull(keyDirectory.findPublicKeyRing(testCase1.getPublicKey().getKeyID()));
+    assertNull(keyDirectory.findSecretKeyRing(testCase1.getPublicKey().getKeyID()));
+    assertEquals(1, count(keyDirectory.findPublicKeyRingsByPrefix("testcase-")));
+    assertNull(keyDirectory.findPublicKeyRingsByPrefix("testcase-1"));
+    assertEquals(-1, keyDirectory.addKeyRings(new ByteArrayInputStream("no key".getBytes(StandardCharsets.US_ASCII))));
+    assertEquals(1, keyDirectory.size());
+  }
+
+  @Test
+  public void testEnginesUseDirectory() throws Exception {
+    PGPMessageSigner messageSigner = new PGPMessageSigner();
+    messageSigner.setKeyRingStore(keyDirectory);
+    byte[] message = "message".getBytes(StandardCharsets.UTF_8);
+    byte[] signature = messageSigner.signMessage(keyDirectory.findSecretKeyRings("testcase-1@sniggleme.info"), "Test Case 1 (PGP key for simple-pgp testcase) <testcase-1@sniggleme.info>", "testpassword", message);
+    assertTrue(messageSigner.verifyMessage(null, message, signature));
+  }
+
+  @Test
+  public void testConcurrentReadsDuringUpdates() throws Exception {
+    final long keyId = testCase2.getPublicKey().getKeyID();
+    final byte[] keyRing = testCase2.getEncoded();
+    final AtomicBoolean running = new AtomicBoolean(true);
+    ExecutorService readers = Executors.newFixedThreadPool(4);
+    Future<?>[] results = new Future<?>[4];
+    for( int i = 0; i < results.length; i++ ) {
+      results[i] = readers.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          while( running.get() ) {
+            InputStream byPrefix = keyDirectory.findPublicKeyRingsByPrefix("testcase-");
+            int found = count(byPrefix);
+            assertTrue(found == 1 || found == 2);
+            assertNotNull(keyDirectory.findPublicKeyRing(testCase1.getPublicKey().getKeyID()));
+          }
+          return null;
+        }
+      });
+    }
+    for( int i = 0; i < 200; i++ ) {
+      assertTrue(keyDirectory.removeKeyRing(keyId));
+      assertNull(keyDirectory.findPublicKeyRing(keyId));
+      assertEquals(1, keyDirectory.addKeyRings(new ByteArrayInputStream(keyRing)));
+    }
+    running.set(false);
+    for( Future<?> result : results ) {
+      result.get();
+    }
+    readers.shutdown();
+    assertTrue(readers.awaitTermination(10, TimeUnit.SECONDS));
+    assertEquals(2, keyDirectory.size());
+  }
+
+  @After
+  public void tearDown() {
+    keyDirectory.close();
+    keyDirectory = null;
+  }
+
+}
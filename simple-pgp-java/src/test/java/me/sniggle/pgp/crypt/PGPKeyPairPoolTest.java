@@ -0,0 +1,142 @@
+package me.sniggle.pgp.crypt;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the key generation with pre-generated key pairs
+ */
+public class PGPKeyPairPoolTest {
+
+  private static final int KEY_SIZE = 1024;
+  private static final String USER_ID = "Pooled Key <pooled@sniggleme.info>";
+
+  private PGPKeyPairPool keyPairPool;
+  private PGPKeyPairGenerator keyPairGenerator;
+
+  @Before
+  public void setUp() {
+    keyPairPool = new PGPKeyPairPool(KEY_SIZE);
+    keyPairPool.setPoolSize(4);
+    keyPairPool.setRefillBatchSize(2);
+    keyPairGenerator = new PGPKeyPairGenerator();
+    keyPairGenerator.setKeyPairPool(keyPairPool);
+  }
+
+  @After
+  public void tearDown() {
+    keyPairPool.shutdown();
+  }
+
+  @Test
+  public void testRefillRateLimited() {
+    keyPairPool.refill();
+    assertEquals(2, keyPairPool.getDepth());
+    keyPairPool.refill();
+    keyPairPool.refill();
+    assertEquals(4, keyPairPool.getDepth());
+    assertEquals(4, keyPairPool.getGenerated());
+  }
+
+  @Test
+  public void testRefillSurvivesFailingGeneration() {
+    PGPKeyPairPool failingPool = new PGPKeyPairPool(0);
+    failingPool.setPoolSize(1);
+    failingPool.refill();
+    failingPool.refill();
+    assertEquals(0, failingPool.getDepth());
+    assertEquals(0, failingPool.getGenerated());
+  }
+
+  @Test
+  public void testConcurrentRefillsKeepPoolSize() throws Exception {
+    keyPairPool.setRefillBatchSize(4);
+    Thread[] refills = new Thread[4];
+    for( int i = 0; i < refills.length; i++ ) {
+      refills[i] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          keyPairPool.refill();
+        }
+      });
+      refills[i].start();
+    }
+    for( Thread refill : refills ) {
+      refill.join();
+    }
+    assertEquals(4, keyPairPool.getDepth());
+    assertEquals(4, keyPairPool.getGenerated());
+  }
+
+  @Test
+  public void testRunningRefillDiscardedOnShutdown() throws Exception {
+    Thread refill = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        keyPairPool.refill();
+      }
+    });
+    refill.start();
+    keyPairPool.shutdown();
+    refill.join();
+    assertEquals(0, keyPairPool.getDepth());
+    keyPairPool.start();
+    keyPairPool.shutdown();
+    keyPairPool.refill();
+    assertEquals(0, keyPairPool.getDepth());
+  }
+
+  @Test
+  public void testGenerateWithPooledKeyPairs() throws Exception {
+    keyPairPool.refill();
+    ByteArrayOutputStream publicKey = new ByteArrayOutputStream();
+    ByteArrayOutputStream secretKey = new ByteArrayOutputStream();
+    assertTrue(keyPairGenerator.generateKeyPair(USER_ID, "testpassword", KEY_SIZE, publicKey, secretKey));
+    assertEquals(2, keyPairPool.getHits());
+    assertEquals(0, keyPairPool.getMisses());
+    assertEquals(0, keyPairPool.getDepth());
+
+    byte[] message = "message".getBytes(StandardCharsets.UTF_8);
+    PGPMessageEncryptor messageEncryptor = new PGPMessageEncryptor();
+    byte[] encrypted = messageEncryptor.encrypt(new ByteArrayInputStream(publicKey.toByteArray()), new ByteArrayInputStream(secretKey.toByteArray()), USER_ID, "testpassword", "message.txt", message);
+    assertNotNull(encrypted);
+    assertArrayEquals(message, messageEncryptor.decrypt("testpassword", new ByteArrayInputStream(secretKey.toByteArray()), new ByteArrayInputStream(publicKey.toByteArray()), encrypted));
+  }
+
+  @Test
+  public void testGenerateWithoutPooledKeyPairs() {
+    assertTrue(keyPairGenerator.generateKeyPair(USER_ID, "testpassword", KEY_SIZE, new ByteArrayOutputStream(), new ByteArrayOutputStream()));
+    assertEquals(0, keyPairPool.getHits());
+    assertEquals(2, keyPairPool.getMisses());
+
+    keyPairPool.refill();
+    assertTrue(keyPairGenerator.generateKeyPair(USER_ID, "testpassword", 2 * KEY_SIZE, new ByteArrayOutputStream(), new ByteArrayOutputStream()));
+    assertEquals(4, keyPairPool.getMisses());
+    assertEquals(2, keyPairPool.getDepth());
+  }
+
+  @Test
+  public void testBackgroundRefill() throws Exception {
+    keyPairPool.setRefillInterval(10);
+    keyPairPool.setRefillThreads(2);
+    keyPairPool.start();
+    long deadline = System.currentTimeMillis() + 30000;
+    while( keyPairPool.getDepth() < 4 && System.currentTimeMillis() < deadline ) {
+      Thread.sleep(10);
+    }
+    assertTrue(keyPairPool.getDepth() >= 4);
+    keyPairPool.shutdown();
+    assertEquals(0, keyPairPool.getDepth());
+  }
+
+}
@@ -0,0 +1,213 @@
+package me.sniggle.pgp.crypt;
+
+import me.sniggle.pgp.crypt.internal.io.ArmorOutputStream;
+import org.bouncycastle.bcpg.HashAlgorithmTags;
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.bouncycastle.openpgp.PGPPublicKeyRing;
+import org.bouncycastle.openpgp.PGPSecretKey;
+import org.bouncycastle.openpgp.PGPSecretKeyRing;
+import org.bouncycastle.openpgp.PGPSignature;
+import org.bouncycastle.openpgp.PGPSignatureGenerator;
+import org.bouncycastle.openpgp.PGPSignatureSubpacketGenerator;
+import org.bouncycastle.openpgp.operator.bc.BcPBESecretKeyDecryptorBuilder;
+import org.bouncycastle.openpgp.operator.bc.BcPGPContentSignerBuilder;
+import org.bouncycastle.openpgp.operator.bc.BcPGPDigestCalculatorProvider;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+import static me.sniggle.pgp.crypt.KeyRingFixtures.readPublicKeyRing;
+import static me.sniggle.pgp.crypt.KeyRingFixtures.readSecretKeyRing;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the parallel bulk import and the validation of key rings
+ */
+@RunWith(Parameterized.class)
+public class PGPKeyRingImporterTest {
+
+  private static final int REPETITIONS = 20;
+  private static final String USER_ID_1 = "Test Case 1 (PGP key for simple-pgp testcase) <testcase-1@sniggleme.info>";
+  private static final String FORGED_USER_ID = "Forged (not certified) <forged@sniggleme.info>";
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final int batchSize;
+  private final int parallelism;
+  private PGPPublicKeyRing testCase1;
+  private PGPPublicKeyRing testCase2;
+  private long testCase2SubkeyId;
+  private byte[] dump;
+
+  public PGPKeyRingImporterTest(int batchSize, int parallelism) {
+    this.batchSize = batchSize;
+    this.parallelism = parallelism;
+  }
+
+  @Parameterized.Parameters
+  public static Collection<Object[]> data() {
+    return Arrays.asList( new Object[][] {
+        { 1, 1 },
+        { 8, 4 },
+        { 1024, 2 }
+    });
+  }
+
+  private static PGPSignatureGenerator signatureGenerator(PGPSecretKey secretKey, int signatureType) throws Exception {
+    PGPSignatureGenerator result = new PGPSignatureGenerator(new BcPGPContentSignerBuilder(secretKey.getPublicKey().getAlgorithm(), HashAlgorithmTags.SHA256));
+    result.init(signatureType, secretKey.extractPrivateKey(new BcPBESecretKeyDecryptorBuilder(new BcPGPDigestCalculatorProvider()).build("testpassword".toCharArray())));
+    return result;
+  }
+
+  /**
+   * creates a dump of valid, partially valid and invalid key rings, per repetition 5 key rings are imported
+   * (one without its forged user ID, one without its unbound subkey) and 2 are rejected
+   */
+  @Before
+  public void setUp() throws Exception {
+    testCase1 = readPublicKeyRing("testcase-1-pub.asc");
+    testCase2 = readPublicKeyRing("testcase-2-pub.asc");
+    PGPSecretKeyRing secretKeyRing1 = readSecretKeyRing("testcase-1-sec.asc");
+    PGPSecretKeyRing secretKeyRing2 = readSecretKeyRing("testcase-2-sec.asc");
+
+    PGPPublicKey primaryKey1 = testCase1.getPublicKey();
+    PGPSignature misplacedCertification = signatureGenerator(secretKeyRing1.getSecretKey(), PGPSignature.POSITIVE_CERTIFICATION).generateCertification(USER_ID_1, primaryKey1);
+    PGPPublicKey forgedUserId = PGPPublicKey.addCertification(primaryKey1, FORGED_USER_ID, misplacedCertification);
+    PGPPublicKeyRing withForgedUserId = PGPPublicKeyRing.insertPublicKey(testCase1, forgedUserId);
+    PGPPublicKeyRing onlyForgedUserId = PGPPublicKeyRing.insertPublicKey(testCase1, PGPPublicKey.removeCertification(forgedUserId, USER_ID_1));
+
+    PGPPublicKey primaryKey2 = testCase2.getPublicKey();
+    PGPSignature revocation = signatureGenerator(secretKeyRing2.getSecretKey(), PGPSignature.KEY_REVOCATION).generateCertification(primaryKey2);
+    PGPPublicKeyRing revoked = PGPPublicKeyRing.insertPublicKey(testCase2, PGPPublicKey.addCertification(primaryKey2, revocation));
+    PGPPublicKeyRing unboundSubkey = testCase2;
+    Iterator<PGPPublicKey> keys = testCase2.getPublicKeys();
+    while( keys.hasNext() ) {
+      PGPPublicKey key = keys.next();
+      if( !key.isMasterKey() ) {
+        testCase2SubkeyId = key.getKeyID();
+        PGPPublicKey unbound = key;
+        Iterator<?> bindings = key.getSignaturesOfType(PGPSignature.SUBKEY_BINDING);
+        while( bindings.hasNext() ) {
+          unbound = PGPPublicKey.removeCertification(unbound, (PGPSignature) bindings.next());
+        }
+        unboundSubkey = PGPPublicKeyRing.insertPublicKey(unboundSubkey, unbound);
+      }
+    }
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for( int i = 0; i < REPETITIONS; i++ ) {
+      out.write(testCase1.getEncoded());
+      out.write(revoked.getEncoded());
+      out.write(secretKeyRing1.getEncoded());
+      out.write(onlyForgedUserId.getEncoded());
+      out.write(withForgedUserId.getEncoded());
+      out.write(testCase2.getEncoded());
+      out.write(unboundSubkey.getEncoded());
+    }
+    dump = out.toByteArray();
+  }
+
+  private PGPKeyRingImporter createImporter(final List<ImportResult> progress) {
+    PGPKeyRingImporter result = new PGPKeyRingImporter();
+    result.setBatchSize(batchSize);
+    result.setParallelism(parallelism);
+    result.setProgressListener(new ImportProgressListener() {
+      @Override
+      public void onProgress(ImportResult importProgress) {
+        progress.add(importProgress);
+      }
+    });
+    return result;
+  }
+
+  private void assertResult(ImportResult result, List<ImportResult> progress) {
+    assertNotNull(result);
+    assertEquals(7 * REPETITIONS, result.getKeyRingsRead());
+    assertEquals(5 * REPETITIONS, result.getKeyRingsImported());
+    assertEquals(2 * REPETITIONS, result.getKeyRingsRejected());
+    assertEquals(2 * REPETITIONS, result.getUserIdsDropped());
+    assertEquals(REPETITIONS, result.getSubkeysDropped());
+    assertEquals(dump.length, result.getBytesRead());
+    assertTrue(result.getKeyRingsPerSecond() > 0);
+    assertFalse(progress.isEmpty());
+    assertEquals(result.getKeyRingsRead(), progress.get(progress.size() - 1).getKeyRingsRead());
+    for( int i = 1; i < progress.size(); i++ ) {
+      assertTrue(progress.get(i - 1).getKeyRingsRead() < progress.get(i).getKeyRingsRead());
+    }
+  }
+
+  @Test
+  public void testImportIntoDirectory() throws Exception {
+    List<ImportResult> progress = new ArrayList<>();
+    PGPKeyDirectory keyDirectory = new PGPKeyDirectory();
+    assertResult(createImporter(progress).importKeyRings(new ByteArrayInputStream(dump), keyDirectory), progress);
+    assertEquals(2, keyDirectory.size());
+    assertNotNull(keyDirectory.findPublicKeyRings(USER_ID_1));
+    assertNotNull(keyDirectory.findSecretKeyRing(testCase1.getPublicKey().getKeyID()));
+    assertNull(keyDirectory.findPublicKeyRings("forged@sniggleme.info"));
+    assertNotNull(keyDirectory.findPublicKeyRing(testCase2.getPublicKey().getKeyID()));
+    assertNull(keyDirectory.findPublicKeyRing(testCase2SubkeyId));
+  }
+
+  @Test
+  public void testImportArmoredIntoStore() throws Exception {
+    ByteArrayOutputStream armored = new ByteArrayOutputStream();
+    try( ArmorOutputStream out = new ArmorOutputStream(armored, null) ) {
+      out.write(dump);
+    }
+    List<ImportResult> progress = new ArrayList<>();
+    try( PGPKeyRingStore keyRingStore = new PGPKeyRingStore(temporaryFolder.newFolder().toPath()) ) {
+      assertTrue(keyRingStore.open());
+      assertResult(createImporter(progress).importKeyRings(new ByteArrayInputStream(armored.toByteArray()), keyRingStore), progress);
+      assertNotNull(keyRingStore.findPublicKeyRings("testcase-2@sniggleme.info"));
+      assertNull(keyRingStore.findPublicKeyRings("forged@sniggleme.info"));
+    }
+  }
+
+  @Test
+  public void testForgedSelfSignaturesIgnored() throws Exception {
+    PGPSecretKey otherKey = readSecretKeyRing("testcase-1-sec.asc").getSecretKey();
+    PGPPublicKey primaryKey2 = testCase2.getPublicKey();
+    String userId2 = (String) primaryKey2.getUserIDs().next();
+    PGPSignature forgedRevocation = signatureGenerator(otherKey, PGPSignature.KEY_REVOCATION).generateCertification(primaryKey2);
+    PGPSignatureGenerator expiringGenerator = signatureGenerator(otherKey, PGPSignature.POSITIVE_CERTIFICATION);
+    PGPSignatureSubpacketGenerator subpacketGenerator = new PGPSignatureSubpacketGenerator();
+    subpacketGenerator.setKeyExpirationTime(true, 1);
+    expiringGenerator.setHashedSubpackets(subpacketGenerator.generate());
+    PGPSignature forgedExpiration = expiringGenerator.generateCertification(userId2, primaryKey2);
+    PGPPublicKey forged = PGPPublicKey.addCertification(PGPPublicKey.addCertification(primaryKey2, forgedRevocation), userId2, forgedExpiration);
+    PGPPublicKeyRing forgedKeyRing = PGPPublicKeyRing.insertPublicKey(testCase2, forged);
+
+    PGPKeyRingImporter importer = createImporter(new ArrayList<ImportResult>());
+    importer.setSkipCertifications(false);
+    PGPKeyDirectory keyDirectory = new PGPKeyDirectory();
+    ImportResult result = importer.importKeyRings(new ByteArrayInputStream(forgedKeyRing.getEncoded()), keyDirectory);
+    assertNotNull(result);
+    assertEquals(1, result.getKeyRingsImported());
+    assertEquals(0, result.getSubkeysDropped());
+    assertNotNull(keyDirectory.findPublicKeyRing(testCase2SubkeyId));
+  }
+
+  @Test
+  public void testImportMalformed() {
+    byte[] truncated = Arrays.copyOf(dump, dump.length - 10);
+    assertNull(createImporter(new ArrayList<ImportResult>()).importKeyRings(new ByteArrayInputStream(truncated), new PGPKeyDirectory()));
+  }
+
+}
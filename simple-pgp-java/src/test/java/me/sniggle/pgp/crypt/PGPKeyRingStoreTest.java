@@ -0,0 +1,220 @@
+package me.sniggle.pgp.crypt;
+
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.bouncycastle.openpgp.PGPPublicKeyRing;
+import org.bouncycastle.openpgp.PGPPublicKeyRingCollection;
+import org.bouncycastle.openpgp.PGPSecretKeyRingCollection;
+import org.bouncycastle.openpgp.operator.bc.BcKeyFingerprintCalculator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+
+import static me.sniggle.pgp.crypt.KeyRingFixtures.readPublicKeyRing;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests storing key rings and looking them up by key ID, fingerprint and user ID
+ */
+@RunWith(Parameterized.class)
+public class PGPKeyRingStoreTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final String publicKeyFilename;
+  private final String privateKeyFilename;
+  private final String userId;
+  private final String email;
+  private Path directory;
+  private PGPKeyRingStore keyRingStore;
+
+  public PGPKeyRingStoreTest(String publicKeyFilename, String privateKeyFilename, String userId, String email) {
+    this.publicKeyFilename = publicKeyFilename;
+    this.privateKeyFilename = privateKeyFilename;
+    this.userId = userId;
+    this.email = email;
+  }
+
+  @Parameterized.Parameters
+  public static Collection<Object[]> data() {
+    return Arrays.asList( new Object[][] {
+        { "testcase-1-pub.asc", "testcase-1-sec.asc", "Test Case 1 (PGP key for simple-pgp testcase) <testcase-1@sniggleme.info>", "testcase-1@sniggleme.info" },
+        { "testcase-2-pub.asc", "testcase-2-sec.asc", "Test Case 2 (PGP key for test case of simple-pgp) <testcase-2@sniggleme.info>", "testcase-2@sniggleme.info" }
+    });
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    directory = temporaryFolder.newFolder().toPath();
+    keyRingStore = new PGPKeyRingStore(directory);
+    keyRingStore.setInitialIndexCapacity(4);
+    assertTrue(keyRingStore.open());
+  }
+
+  private void addAll() {
+    assertEquals(1, keyRingStore.addKeyRings(getClass().getResourceAsStream("testcase-1-pub.asc")));
+    assertEquals(1, keyRingStore.addKeyRings(getClass().getResourceAsStream("testcase-2-pub.asc")));
+    assertEquals(1, keyRingStore.addKeyRings(getClass().getResourceAsStream("testcase-1-sec.asc")));
+    assertEquals(1, keyRingStore.addKeyRings(getClass().getResourceAsStream("testcase-2-sec.asc")));
+  }
+
+  private void assertLookups(PGPPublicKeyRing expected) throws Exception {
+    Iterator<PGPPublicKey> keys = expected.getPublicKeys();
+    while( keys.hasNext() ) {
+      PGPPublicKey key = keys.next();
+      InputStream byKeyId = keyRingStore.findPublicKeyRing(key.getKeyID());
+      assertNotNull(byKeyId);
+      assertEquals(expected.getPublicKey().getKeyID(), new PGPPublicKeyRing(byKeyId, new BcKeyFingerprintCalculator()).getPublicKey().getKeyID());
+      assertNotNull(keyRingStore.findPublicKeyRing(key.getFingerprint()));
+      InputStream secretKeyRing = keyRingStore.findSecretKeyRing(key.getKeyID());
+      assertNotNull(secretKeyRing);
+      assertNotNull(new PGPSecretKeyRingCollection(secretKeyRing, new BcKeyFingerprintCalculator()).getSecretKey(key.getKeyID()));
+    }
+    for( String lookup : new String[] { userId, userId.toUpperCase(), " " + email + " " } ) {
+      InputStream byUserId = keyRingStore.findPublicKeyRings(lookup);
+      assertNotNull(byUserId);
+      PGPPublicKeyRingCollection found = new PGPPublicKeyRingCollection(byUserId, new BcKeyFingerprintCalculator());
+      assertEquals(1, found.size());
+      assertArrayEquals(expected.getEncoded(), found.getKeyRings().next().getEncoded());
+      assertNotNull(keyRingStore.findSecretKeyRings(lookup));
+    }
+  }
+
+  @Test
+  public void testLookup() throws Exception {
+    addAll();
+    assertLookups(readPublicKeyRing(publicKeyFilename));
+    assertNull(keyRingStore.findPublicKeyRing(0x1234567890L));
+    assertNull(keyRingStore.findPublicKeyRing(new byte[20]));
+    assertNull(keyRingStore.findPublicKeyRings("nobody@sniggleme.info"));
+    assertNull(keyRingStore.findSecretKeyRings("nobody@sniggleme.info"));
+  }
+
+  @Test
+  public void testAddAgain() throws Exception {
+    addAll();
+    assertEquals(1, keyRingStore.addKeyRings(getClass().getResourceAsStream(publicKeyFilename)));
+    assertLookups(readPublicKeyRing(publicKeyFilename));
+    assertEquals(-1, keyRingStore.addKeyRings(new ByteArrayInputStream("no key".getBytes(StandardCharsets.US_ASCII))));
+  }
+
+  @Test
+  public void testLatestRecordSupersedes() throws Exception {
+    addAll();
+    PGPPublicKeyRing publicKeyRing = readPublicKeyRing(publicKeyFilename);
+    PGPPublicKey primaryKey = publicKeyRing.getPublicKey();
+    PGPPublicKeyRing withoutSubkeys = publicKeyRing;
+    Iterator<PGPPublicKey> keys = publicKeyRing.getPublicKeys();
+    while( keys.hasNext() ) {
+      PGPPublicKey key = keys.next();
+      if( !key.isMasterKey() ) {
+        withoutSubkeys = PGPPublicKeyRing.removePublicKey(withoutSubkeys, key);
+      }
+    }
+    assertEquals(1, keyRingStore.addKeyRings(new ByteArrayInputStream(withoutSubkeys.getEncoded())));
+    keys = publicKeyRing.getPublicKeys();
+    while( keys.hasNext() ) {
+      PGPPublicKey key = keys.next();
+      if( key.isMasterKey() ) {
+        assertArrayEquals(withoutSubkeys.getEncoded(), new PGPPublicKeyRing(keyRingStore.findPublicKeyRing(key.getKeyID()), new BcKeyFingerprintCalculator()).getEncoded());
+      } else {
+        assertNull(keyRingStore.findPublicKeyRing(key.getKeyID()));
+        assertNull(keyRingStore.findPublicKeyRing(key.getFingerprint()));
+      }
+    }
+    PGPPublicKeyRingCollection found = new PGPPublicKeyRingCollection(keyRingStore.findPublicKeyRings(email), new BcKeyFingerprintCalculator());
+    assertEquals(1, found.size());
+    assertArrayEquals(withoutSubkeys.getEncoded(), found.getPublicKeyRing(primaryKey.getKeyID()).getEncoded());
+  }
+
+  @Test
+  public void testReopen() throws Exception {
+    addAll();
+    keyRingStore.close();
+    keyRingStore = new PGPKeyRingStore(directory);
+    assertTrue(keyRingStore.open());
+    assertLookups(readPublicKeyRing(publicKeyFilename));
+  }
+
+  @Test
+  public void testReindexAppendedRecords() throws Exception {
+    addAll();
+    keyRingStore.close();
+    Path dataFile = directory.resolve("keyrings.dat");
+    byte[] records = Files.readAllBytes(dataFile);
+    Files.write(dataFile, new byte[0], StandardOpenOption.TRUNCATE_EXISTING);
+    Files.delete(directory.resolve("keyrings.idx"));
+    keyRingStore = new PGPKeyRingStore(directory);
+    assertTrue(keyRingStore.open());
+    keyRingStore.close();
+    Files.write(dataFile, Arrays.copyOf(records, records.length + 3), StandardOpenOption.APPEND);
+    keyRingStore = new PGPKeyRingStore(directory);
+    assertTrue(keyRingStore.open());
+    assertEquals(records.length, Files.size(dataFile));
+    assertLookups(readPublicKeyRing(publicKeyFilename));
+  }
+
+  @Test
+  public void testSkipInvalidRecord() throws Exception {
+    addAll();
+    keyRingStore.close();
+    Path dataFile = directory.resolve("keyrings.dat");
+    byte[] records = Files.readAllBytes(dataFile);
+    byte[] invalidRecord = { 0, 0, 0, 4, (byte) 0x99, 1, 0, 4 };
+    Files.write(dataFile, invalidRecord, StandardOpenOption.TRUNCATE_EXISTING);
+    Files.write(dataFile, records, StandardOpenOption.APPEND);
+    Files.delete(directory.resolve("keyrings.idx"));
+    keyRingStore = new PGPKeyRingStore(directory);
+    assertTrue(keyRingStore.open());
+    assertEquals(invalidRecord.length + records.length, Files.size(dataFile));
+    assertLookups(readPublicKeyRing(publicKeyFilename));
+  }
+
+  @Test
+  public void testEnginesUseStore() throws Exception {
+    addAll();
+    MessageSigner messageSigner = new PGPMessageSigner();
+    ((PGPMessageSigner) messageSigner).setKeyRingStore(keyRingStore);
+    byte[] message = "message".getBytes(StandardCharsets.UTF_8);
+    byte[] signature = messageSigner.signMessage(getClass().getResourceAsStream(privateKeyFilename), userId, "testpassword", message);
+    assertNotNull(signature);
+    assertTrue(messageSigner.verifyMessage(null, message, signature));
+    PGPMessageEncryptor messageEncryptor = new PGPMessageEncryptor();
+    messageEncryptor.setKeyRingStore(keyRingStore);
+    ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+    assertTrue(messageEncryptor.encrypt(keyRingStore.findPublicKeyRings(email), keyRingStore.findSecretKeyRings(email), userId, "testpassword", "message.txt", new ByteArrayInputStream(message), encrypted));
+    VerificationResult verificationResult = messageEncryptor.verify("testpassword", null, null, new ByteArrayInputStream(encrypted.toByteArray()));
+    assertNotNull(verificationResult);
+    assertTrue(verificationResult.isDecrypted());
+    assertTrue(verificationResult.isSignatureVerified());
+    ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+    assertTrue(messageEncryptor.decrypt("testpassword", null, null, new ByteArrayInputStream(encrypted.toByteArray()), decrypted));
+    assertArrayEquals(message, decrypted.toByteArray());
+  }
+
+  @After
+  public void tearDown() {
+    keyRingStore.close();
+    keyRingStore = null;
+  }
+
+}
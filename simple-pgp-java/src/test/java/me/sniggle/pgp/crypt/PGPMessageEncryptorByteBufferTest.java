@@ -0,0 +1,125 @@
+package me.sniggle.pgp.crypt;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests encrypting, decrypting and signing in-memory data
+ */
+@RunWith(Parameterized.class)
+public class PGPMessageEncryptorByteBufferTest {
+
+  private MessageEncryptor messageEncryptor;
+  private MessageSigner messageSigner;
+  private final String publicKeyFilename;
+  private final String privateKeyFilename;
+  private final String userId;
+  private final byte[] plainData;
+
+  public PGPMessageEncryptorByteBufferTest(String publicKeyFilename, String privateKeyFilename, String userId, int plainDataLength) {
+    this.publicKeyFilename = publicKeyFilename;
+    this.privateKeyFilename = privateKeyFilename;
+    this.userId = userId;
+    this.plainData = new byte[plainDataLength];
+    new Random(plainDataLength).nextBytes(plainData);
+  }
+
+  @Parameterized.Parameters
+  public static Collection<Object[]> data() {
+    return Arrays.asList( new Object[][] {
+        { "testcase-1-pub.asc", "testcase-1-sec.asc", "Test Case 1 (PGP key for simple-pgp testcase) <testcase-1@sniggleme.info>", 0 },
+        { "testcase-1-pub.asc", "testcase-1-sec.asc", "Test Case 1 (PGP key for simple-pgp testcase) <testcase-1@sniggleme.info>", 200 },
+        { "testcase-2-pub.asc", "testcase-2-sec.asc", "Test Case 2 (PGP key for test case of simple-pgp) <testcase-2@sniggleme.info>", 64 * 1024 + 3 }
+    });
+  }
+
+  @Before
+  public void setUp() {
+    messageEncryptor = PGPWrapperFactory.getEncyptor();
+    messageSigner = PGPWrapperFactory.getSigner();
+  }
+
+  @Test
+  public void testEncryptDecryptByteArray() {
+    byte[] encryptedData = messageEncryptor.encrypt(getClass().getResourceAsStream(publicKeyFilename), getClass().getResourceAsStream(privateKeyFilename), userId, "testpassword", "data.bin", plainData);
+    assertNotNull(encryptedData);
+    byte[] decryptedData = messageEncryptor.decrypt("testpassword", getClass().getResourceAsStream(privateKeyFilename), getClass().getResourceAsStream(publicKeyFilename), encryptedData);
+    assertArrayEquals(plainData, decryptedData);
+  }
+
+  @Test
+  public void testEncryptDecryptByteBuffer() {
+    for( boolean direct : new boolean[] { false, true } ) {
+      ByteBuffer plainBuffer = direct ? ByteBuffer.allocateDirect(plainData.length) : ByteBuffer.allocate(plainData.length);
+      plainBuffer.put(plainData).flip();
+      ByteBuffer encryptedBuffer = direct ? ByteBuffer.allocateDirect(2 * plainData.length + 4096) : ByteBuffer.allocate(2 * plainData.length + 4096);
+      int encryptedLength = messageEncryptor.encrypt(getClass().getResourceAsStream(publicKeyFilename), getClass().getResourceAsStream(privateKeyFilename), userId, "testpassword", "data.bin", plainBuffer, encryptedBuffer);
+      assertTrue(encryptedLength > 0);
+      assertEquals(encryptedLength, encryptedBuffer.position());
+      assertFalse(plainBuffer.hasRemaining());
+      encryptedBuffer.flip();
+      ByteBuffer decryptedBuffer = direct ? ByteBuffer.allocateDirect(plainData.length) : ByteBuffer.allocate(plainData.length);
+      assertEquals(plainData.length, messageEncryptor.decrypt("testpassword", getClass().getResourceAsStream(privateKeyFilename), getClass().getResourceAsStream(publicKeyFilename), encryptedBuffer, decryptedBuffer));
+      decryptedBuffer.flip();
+      byte[] decryptedData = new byte[decryptedBuffer.remaining()];
+      decryptedBuffer.get(decryptedData);
+      assertArrayEquals(plainData, decryptedData);
+    }
+  }
+
+  @Test
+  public void testTargetBufferTooSmall() {
+    ByteBuffer encryptedBuffer = ByteBuffer.allocate(64);
+    assertEquals(-1, messageEncryptor.encrypt(getClass().getResourceAsStream(publicKeyFilename), null, null, null, "data.bin", ByteBuffer.wrap(plainData), encryptedBuffer));
+    assertEquals(0, encryptedBuffer.position());
+    if( plainData.length > 0 ) {
+      byte[] encryptedData = messageEncryptor.encrypt(getClass().getResourceAsStream(publicKeyFilename), null, null, null, "data.bin", plainData);
+      ByteBuffer decryptedBuffer = ByteBuffer.allocate(plainData.length - 1);
+      assertEquals(-1, messageEncryptor.decrypt("testpassword", getClass().getResourceAsStream(privateKeyFilename), null, ByteBuffer.wrap(encryptedData), decryptedBuffer));
+      assertEquals(0, decryptedBuffer.position());
+    }
+  }
+
+  @Test
+  public void testTargetBufferBelowMaxEncryptedLength() {
+    byte[] encryptedData = messageEncryptor.encrypt(getClass().getResourceAsStream(publicKeyFilename), null, null, null, "data.bin", plainData);
+    assertNotNull(encryptedData);
+    ByteBuffer plainBuffer = ByteBuffer.wrap(plainData);
+    ByteBuffer encryptedBuffer = ByteBuffer.allocate(encryptedData.length);
+    assertEquals(-1, messageEncryptor.encrypt(getClass().getResourceAsStream(publicKeyFilename), null, null, null, "data.bin", plainBuffer, encryptedBuffer));
+    assertEquals(0, plainBuffer.position());
+    assertEquals(0, encryptedBuffer.position());
+  }
+
+  @Test
+  public void testSignVerifyByteArray() {
+    byte[] signature = messageSigner.signMessage(getClass().getResourceAsStream(privateKeyFilename), userId, "testpassword", plainData);
+    assertNotNull(signature);
+    assertTrue(messageSigner.verifyMessage(getClass().getResourceAsStream(publicKeyFilename), plainData, signature));
+    byte[] tamperedData = Arrays.copyOf(plainData, plainData.length + 1);
+    assertFalse(messageSigner.verifyMessage(getClass().getResourceAsStream(publicKeyFilename), tamperedData, signature));
+    assertNull(messageSigner.signMessage(getClass().getResourceAsStream(privateKeyFilename), userId, "wrongpassword", plainData));
+  }
+
+  @After
+  public void tearDown() {
+    messageEncryptor = null;
+    messageSigner = null;
+  }
+
+}
@@ -0,0 +1,177 @@
+package me.sniggle.pgp.crypt;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests encrypting, decrypting, signing and verifying data pushed in chunks
+ */
+@RunWith(Parameterized.class)
+public class PGPMessageEncryptorChunkProcessorTest {
+
+  private MessageEncryptor messageEncryptor;
+  private MessageSigner messageSigner;
+  private final String publicKeyFilename;
+  private final String privateKeyFilename;
+  private final String userId;
+  private final int chunkLength;
+  private final boolean direct;
+  private final byte[] plainData;
+
+  /**
+   * collects the pushed output and the terminal signal
+   */
+  private static final class CollectingSubscriber<R> implements ChunkSubscriber<R> {
+
+    private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+    private int signals = 0;
+    private R result;
+    private Throwable cause;
+
+    @Override
+    public void onNext(ByteBuffer chunk) {
+      assertEquals(0, signals);
+      while( chunk.hasRemaining() ) {
+        data.write(chunk.get());
+      }
+    }
+
+    @Override
+    public void onComplete(R result) {
+      signals++;
+      this.result = result;
+    }
+
+    @Override
+    public void onError(Throwable cause) {
+      signals++;
+      this.cause = cause;
+    }
+
+  }
+
+  public PGPMessageEncryptorChunkProcessorTest(String publicKeyFilename, String privateKeyFilename, String userId, int plainDataLength, int chunkLength, boolean direct) {
+    this.publicKeyFilename = publicKeyFilename;
+    this.privateKeyFilename = privateKeyFilename;
+    this.userId = userId;
+    this.chunkLength = chunkLength;
+    this.direct = direct;
+    this.plainData = new byte[plainDataLength];
+    new Random(plainDataLength).nextBytes(plainData);
+  }
+
+  @Parameterized.Parameters
+  public static Collection<Object[]> data() {
+    return Arrays.asList( new Object[][] {
+        { "testcase-1-pub.asc", "testcase-1-sec.asc", "Test Case 1 (PGP key for simple-pgp testcase) <testcase-1@sniggleme.info>", 0, 1, false },
+        { "testcase-1-pub.asc", "testcase-1-sec.asc", "Test Case 1 (PGP key for simple-pgp testcase) <testcase-1@sniggleme.info>", 3000, 1, false },
+        { "testcase-2-pub.asc", "testcase-2-sec.asc", "Test Case 2 (PGP key for test case of simple-pgp) <testcase-2@sniggleme.info>", 1024 * 1024 + 17, 1000, true },
+        { "testcase-2-pub.asc", "testcase-2-sec.asc", "Test Case 2 (PGP key for test case of simple-pgp) <testcase-2@sniggleme.info>", 1024 * 1024, 256 * 1024, false }
+    });
+  }
+
+  @Before
+  public void setUp() {
+    messageEncryptor = PGPWrapperFactory.getEncyptor();
+    messageSigner = PGPWrapperFactory.getSigner();
+  }
+
+  private void push(ChunkProcessor processor, byte[] data) {
+    pushChunks(processor, data);
+    processor.onComplete();
+  }
+
+  private void pushChunks(ChunkProcessor processor, byte[] data) {
+    for( int offset = 0; offset < data.length; offset += chunkLength ) {
+      int length = Math.min(chunkLength, data.length - offset);
+      ByteBuffer chunk = direct ? ByteBuffer.allocateDirect(length) : ByteBuffer.allocate(length);
+      chunk.put(data, offset, length).flip();
+      processor.onNext(chunk);
+    }
+  }
+
+  @Test
+  public void testEncryptDecrypt() {
+    CollectingSubscriber<Boolean> encrypted = new CollectingSubscriber<>();
+    push(messageEncryptor.encryptingProcessor(getClass().getResourceAsStream(publicKeyFilename), getClass().getResourceAsStream(privateKeyFilename), userId, "testpassword", "data.bin", encrypted), plainData);
+    assertNull(encrypted.cause);
+    assertEquals(1, encrypted.signals);
+    assertTrue(encrypted.result);
+    CollectingSubscriber<VerificationResult> decrypted = new CollectingSubscriber<>();
+    ChunkProcessor decryptingProcessor = messageEncryptor.decryptingProcessor("testpassword", getClass().getResourceAsStream(privateKeyFilename), getClass().getResourceAsStream(publicKeyFilename), decrypted);
+    pushChunks(decryptingProcessor, encrypted.data.toByteArray());
+    assertEquals(0, decrypted.signals);
+    assertEquals(plainData.length > 4 * PGPDecryptingChunkProcessor.READ_AHEAD, decrypted.data.size() > 0);
+    decryptingProcessor.onComplete();
+    assertNull(decrypted.cause);
+    assertEquals(1, decrypted.signals);
+    assertTrue(decrypted.result.isValid());
+    assertTrue(decrypted.result.isSignatureVerified());
+    assertTrue(decrypted.result.isIntegrityVerified());
+    assertArrayEquals(plainData, decrypted.data.toByteArray());
+  }
+
+  @Test
+  public void testDecryptStreamEncrypted() {
+    ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+    assertTrue(messageEncryptor.encrypt(getClass().getResourceAsStream(publicKeyFilename), "data.bin", new ByteArrayInputStream(plainData), encrypted));
+    CollectingSubscriber<VerificationResult> decrypted = new CollectingSubscriber<>();
+    push(messageEncryptor.decryptingProcessor("testpassword", getClass().getResourceAsStream(privateKeyFilename), null, decrypted), encrypted.toByteArray());
+    assertNull(decrypted.cause);
+    assertTrue(decrypted.result.isDecrypted());
+    assertFalse(decrypted.result.isSigned());
+    assertArrayEquals(plainData, decrypted.data.toByteArray());
+  }
+
+  @Test
+  public void testDecryptWrongPassword() {
+    ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+    assertTrue(messageEncryptor.encrypt(getClass().getResourceAsStream(publicKeyFilename), "data.bin", new ByteArrayInputStream(plainData), encrypted));
+    CollectingSubscriber<VerificationResult> decrypted = new CollectingSubscriber<>();
+    push(messageEncryptor.decryptingProcessor("wrongpassword", getClass().getResourceAsStream(privateKeyFilename), null, decrypted), encrypted.toByteArray());
+    assertEquals(1, decrypted.signals);
+    assertNotNull(decrypted.cause);
+  }
+
+  @Test
+  public void testSignVerify() {
+    CollectingSubscriber<Boolean> signature = new CollectingSubscriber<>();
+    push(messageSigner.signingProcessor(getClass().getResourceAsStream(privateKeyFilename), userId, "testpassword", signature), plainData);
+    assertNull(signature.cause);
+    assertTrue(signature.result);
+    assertTrue(messageSigner.verifyMessage(getClass().getResourceAsStream(publicKeyFilename), plainData, signature.data.toByteArray()));
+    CollectingSubscriber<Boolean> verdict = new CollectingSubscriber<>();
+    push(messageSigner.verifyingProcessor(getClass().getResourceAsStream(publicKeyFilename), new ByteArrayInputStream(signature.data.toByteArray()), verdict), plainData);
+    assertNull(verdict.cause);
+    assertEquals(0, verdict.data.size());
+    assertTrue(verdict.result);
+    byte[] tampered = Arrays.copyOf(plainData, plainData.length + 1);
+    verdict = new CollectingSubscriber<>();
+    push(messageSigner.verifyingProcessor(getClass().getResourceAsStream(publicKeyFilename), new ByteArrayInputStream(signature.data.toByteArray()), verdict), tampered);
+    assertFalse(verdict.result);
+  }
+
+  @After
+  public void tearDown() {
+    messageEncryptor = null;
+    messageSigner = null;
+  }
+
+}
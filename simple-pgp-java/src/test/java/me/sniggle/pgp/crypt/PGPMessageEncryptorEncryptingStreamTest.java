@@ -0,0 +1,105 @@
+package me.sniggle.pgp.crypt;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Collection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests writing the plain data of messages to an encrypting stream
+ */
+@RunWith(Parameterized.class)
+public class PGPMessageEncryptorEncryptingStreamTest {
+
+  private MessageEncryptor messageEncryptor;
+  private final String publicKeyFilename;
+  private final String privateKeyFilename;
+  private final String userId;
+
+  public PGPMessageEncryptorEncryptingStreamTest(String publicKeyFilename, String privateKeyFilename, String userId) {
+    this.publicKeyFilename = publicKeyFilename;
+    this.privateKeyFilename = privateKeyFilename;
+    this.userId = userId;
+  }
+
+  @Parameterized.Parameters
+  public static Collection<Object[]> data() {
+    return Arrays.asList( new Object[][] {
+        { "testcase-1-pub.asc", "testcase-1-sec.asc", "Test Case 1 (PGP key for simple-pgp testcase) <testcase-1@sniggleme.info>" },
+        { "testcase-2-pub.asc", "testcase-2-sec.asc", "Test Case 2 (PGP key for test case of simple-pgp) <testcase-2@sniggleme.info>" }
+    });
+  }
+
+  @Before
+  public void setUp() {
+    messageEncryptor = PGPWrapperFactory.getEncyptor();
+  }
+
+  private VerificationResult verify(byte[] encrypted, ByteArrayOutputStream plainText) {
+    VerificationResult result = messageEncryptor.verify("testpassword", getClass().getResourceAsStream(privateKeyFilename), getClass().getResourceAsStream(publicKeyFilename), new ByteArrayInputStream(encrypted));
+    assertTrue(messageEncryptor.decrypt("testpassword", getClass().getResourceAsStream(privateKeyFilename), new ByteArrayInputStream(encrypted), plainText));
+    return result;
+  }
+
+  @Test
+  public void testEncryptingStream() throws IOException {
+    ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+    try( EncryptingOutputStream encryptingStream = messageEncryptor.encryptingStream(getClass().getResourceAsStream(publicKeyFilename), "test-message.txt", encrypted) ) {
+      assertNotNull(encryptingStream);
+      encryptingStream.write("Hello ".getBytes());
+      encryptingStream.write('W');
+      encryptingStream.write("orld!".getBytes());
+    }
+    ByteArrayOutputStream plainText = new ByteArrayOutputStream();
+    VerificationResult result = verify(encrypted.toByteArray(), plainText);
+    assertTrue(result.isValid());
+    assertFalse(result.isSigned());
+    assertEquals("Hello World!", new String(plainText.toByteArray()));
+  }
+
+  @Test
+  public void testEncryptingChannel() throws IOException {
+    for( ByteBuffer buffer : new ByteBuffer[] { ByteBuffer.allocate(12), ByteBuffer.allocateDirect(12) } ) {
+      ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+      EncryptingOutputStream encryptingStream = messageEncryptor.encryptingStream(getClass().getResourceAsStream(publicKeyFilename), getClass().getResourceAsStream(privateKeyFilename),
+          userId, "testpassword", "test-message.txt", encrypted);
+      WritableByteChannel channel = encryptingStream.getChannel();
+      buffer.put("Hello World!".getBytes());
+      buffer.flip();
+      assertEquals(12, channel.write(buffer));
+      assertFalse(buffer.hasRemaining());
+      channel.close();
+      ByteArrayOutputStream plainText = new ByteArrayOutputStream();
+      VerificationResult result = verify(encrypted.toByteArray(), plainText);
+      assertTrue(result.isValid());
+      assertTrue(result.isSignatureVerified());
+      assertEquals("Hello World!", new String(plainText.toByteArray()));
+    }
+  }
+
+  @Test
+  public void testEncryptingStreamWithoutPublicKey() {
+    assertNull(messageEncryptor.encryptingStream(new ByteArrayInputStream(new byte[0]), "test-message.txt", new ByteArrayOutputStream()));
+  }
+
+  @After
+  public void tearDown() {
+    messageEncryptor = null;
+  }
+
+}
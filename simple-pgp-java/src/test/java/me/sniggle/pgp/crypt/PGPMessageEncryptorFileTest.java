@@ -0,0 +1,102 @@
+package me.sniggle.pgp.crypt;
+
+import org.bouncycastle.bcpg.CompressionAlgorithmTags;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the encryption and decryption of files
+ */
+@RunWith(Parameterized.class)
+public class PGPMessageEncryptorFileTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private MessageEncryptor messageEncryptor;
+  private final String publicKeyFilename;
+  private final String privateKeyFilename;
+  private final String userId;
+  private final int size;
+
+  public PGPMessageEncryptorFileTest(String publicKeyFilename, String privateKeyFilename, String userId, int size) {
+    this.publicKeyFilename = publicKeyFilename;
+    this.privateKeyFilename = privateKeyFilename;
+    this.userId = userId;
+    this.size = size;
+  }
+
+  @Parameterized.Parameters
+  public static Collection<Object[]> data() {
+    return Arrays.asList( new Object[][] {
+        { "testcase-1-pub.asc", "testcase-1-sec.asc", "Test Case 1 (PGP key for simple-pgp testcase) <testcase-1@sniggleme.info>", 12 },
+        { "testcase-2-pub.asc", "testcase-2-sec.asc", "Test Case 2 (PGP key for test case of simple-pgp) <testcase-2@sniggleme.info>", 1024 * 1024 + 17 }
+    });
+  }
+
+  @Before
+  public void setUp() {
+    messageEncryptor = PGPWrapperFactory.getEncyptor();
+  }
+
+  private Path createPlainFile() throws IOException {
+    byte[] data = new byte[size];
+    new Random(size).nextBytes(data);
+    return Files.write(temporaryFolder.newFile("plain.bin").toPath(), data);
+  }
+
+  @Test
+  public void testEncryptAndDecryptFile() throws IOException {
+    Path plainFile = createPlainFile();
+    Path encryptedFile = temporaryFolder.newFile("plain.bin.asc").toPath();
+    Path decryptedFile = temporaryFolder.newFile("decrypted.bin").toPath();
+    assertTrue(messageEncryptor.encrypt(getClass().getResourceAsStream(publicKeyFilename), getClass().getResourceAsStream(privateKeyFilename), userId, "testpassword", plainFile, encryptedFile));
+    assertTrue(messageEncryptor.decrypt("testpassword", getClass().getResourceAsStream(privateKeyFilename), getClass().getResourceAsStream(publicKeyFilename), encryptedFile, decryptedFile));
+    assertArrayEquals(Files.readAllBytes(plainFile), Files.readAllBytes(decryptedFile));
+    assertTrue(messageEncryptor.verify("testpassword", getClass().getResourceAsStream(privateKeyFilename), getClass().getResourceAsStream(publicKeyFilename),
+        Files.newInputStream(encryptedFile)).isSignatureVerified());
+  }
+
+  @Test
+  public void testEncryptUncompressedFile() throws IOException {
+    ((PGPMessageEncryptor) messageEncryptor).setCompressionAlgorithm(CompressionAlgorithmTags.UNCOMPRESSED);
+    Path plainFile = createPlainFile();
+    Path encryptedFile = temporaryFolder.newFile("plain.bin.asc").toPath();
+    Path decryptedFile = temporaryFolder.newFile("decrypted.bin").toPath();
+    assertTrue(messageEncryptor.encrypt(getClass().getResourceAsStream(publicKeyFilename), plainFile, encryptedFile));
+    byte[] encryptedData = Files.readAllBytes(encryptedFile);
+    assertTrue(encryptedData.length > size);
+    assertNotEquals(0, encryptedData[encryptedData.length - 1]);
+    assertTrue(messageEncryptor.decrypt("testpassword", getClass().getResourceAsStream(privateKeyFilename), null, encryptedFile, decryptedFile));
+    assertArrayEquals(Files.readAllBytes(plainFile), Files.readAllBytes(decryptedFile));
+  }
+
+  @Test
+  public void testEncryptMissingFile() throws IOException {
+    assertFalse(messageEncryptor.encrypt(getClass().getResourceAsStream(publicKeyFilename), temporaryFolder.getRoot().toPath().resolve("missing.bin"),
+        temporaryFolder.getRoot().toPath().resolve("missing.bin.asc")));
+  }
+
+  @After
+  public void tearDown() {
+    messageEncryptor = null;
+  }
+
+}
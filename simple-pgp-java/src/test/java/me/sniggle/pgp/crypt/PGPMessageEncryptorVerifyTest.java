@@ -0,0 +1,131 @@
+package me.sniggle.pgp.crypt;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the verification of encrypted messages without producing the plain data
+ */
+@RunWith(Parameterized.class)
+public class PGPMessageEncryptorVerifyTest {
+
+  private MessageEncryptor messageEncryptor;
+  private final String publicKeyFilename;
+  private final String privateKeyFilename;
+  private final String userId;
+  private final String encryptedDataFilename;
+  private final String otherPublicKeyFilename;
+  private final String otherPrivateKeyFilename;
+
+  public PGPMessageEncryptorVerifyTest(String publicKeyFilename, String privateKeyFilename, String userId, String encryptedDataFilename, String otherPublicKeyFilename, String otherPrivateKeyFilename) {
+    this.publicKeyFilename = publicKeyFilename;
+    this.privateKeyFilename = privateKeyFilename;
+    this.userId = userId;
+    this.encryptedDataFilename = encryptedDataFilename;
+    this.otherPublicKeyFilename = otherPublicKeyFilename;
+    this.otherPrivateKeyFilename = otherPrivateKeyFilename;
+  }
+
+  @Parameterized.Parameters
+  public static Collection<Object[]> data() {
+    return Arrays.asList( new Object[][] {
+        { "testcase-1-pub.asc", "testcase-1-sec.asc", "Test Case 1 (PGP key for simple-pgp testcase) <testcase-1@sniggleme.info>", "test-message.txt.tc1.gpg", "testcase-2-pub.asc", "testcase-2-sec.asc" },
+        { "testcase-2-pub.asc", "testcase-2-sec.asc", "Test Case 2 (PGP key for test case of simple-pgp) <testcase-2@sniggleme.info>", "test-message.txt.tc2.gpg", "testcase-1-pub.asc", "testcase-1-sec.asc" }
+    });
+  }
+
+  @Before
+  public void setUp() {
+    messageEncryptor = PGPWrapperFactory.getEncyptor();
+  }
+
+  private byte[] encryptAndSign() {
+    ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+    assertTrue(messageEncryptor.encrypt(getClass().getResourceAsStream(publicKeyFilename), getClass().getResourceAsStream(privateKeyFilename), userId, "testpassword",
+        "test-message.txt", getClass().getResourceAsStream("test-message.txt"), encrypted));
+    return encrypted.toByteArray();
+  }
+
+  @Test
+  public void testVerify() {
+    VerificationResult result = messageEncryptor.verify("testpassword", getClass().getResourceAsStream(privateKeyFilename), null, getClass().getResourceAsStream(encryptedDataFilename));
+    assertTrue(result.isValid());
+    assertTrue(result.isDecrypted());
+    assertTrue(result.isIntegrityProtected());
+    assertTrue(result.isIntegrityVerified());
+    assertFalse(result.isSigned());
+    assertEquals("Hello World!".length(), result.getLength());
+  }
+
+  @Test
+  public void testVerifySigned() {
+    byte[] encrypted = encryptAndSign();
+    VerificationResult result = messageEncryptor.verify("testpassword", getClass().getResourceAsStream(privateKeyFilename), getClass().getResourceAsStream(publicKeyFilename), new ByteArrayInputStream(encrypted));
+    assertTrue(result.isValid());
+    assertTrue(result.isSigned());
+    assertTrue(result.isSignatureChecked());
+    assertTrue(result.isSignatureVerified());
+    assertTrue(result.getSignerKeyId() != 0L);
+
+    result = messageEncryptor.verify("testpassword", getClass().getResourceAsStream(privateKeyFilename), getClass().getResourceAsStream(otherPublicKeyFilename), new ByteArrayInputStream(encrypted));
+    assertFalse(result.isValid());
+    assertTrue(result.isDecrypted());
+    assertTrue(result.isSigned());
+    assertFalse(result.isSignatureVerified());
+  }
+
+  @Test
+  public void testVerifyWithWrongPrivateKey() {
+    VerificationResult result = messageEncryptor.verify("testpassword", getClass().getResourceAsStream(otherPrivateKeyFilename), null, getClass().getResourceAsStream(encryptedDataFilename));
+    assertFalse(result.isValid());
+    assertFalse(result.isDecrypted());
+    assertNotNull(result.getFailure());
+  }
+
+  @Test
+  public void testVerifyConcurrently() throws Exception {
+    final byte[] encrypted = encryptAndSign();
+    ExecutorService executorService = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<VerificationResult>> results = new ArrayList<>();
+      for( int i = 0; i < 8; i++ ) {
+        results.add(executorService.submit(new Callable<VerificationResult>() {
+          @Override
+          public VerificationResult call() {
+            return messageEncryptor.verify("testpassword", getClass().getResourceAsStream(privateKeyFilename), getClass().getResourceAsStream(publicKeyFilename), new ByteArrayInputStream(encrypted));
+          }
+        }));
+      }
+      for( Future<VerificationResult> result : results ) {
+        assertTrue(result.get().isValid());
+      }
+    } finally {
+      executorService.shutdown();
+    }
+  }
+
+  @After
+  public void tearDown() {
+    messageEncryptor = null;
+  }
+
+}
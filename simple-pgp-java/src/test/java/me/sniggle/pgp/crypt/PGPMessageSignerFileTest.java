@@ -0,0 +1,75 @@
+package me.sniggle.pgp.crypt;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests signing and verifying files
+ */
+@RunWith(Parameterized.class)
+public class PGPMessageSignerFileTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final String userId;
+  private final String privateKeyFilename;
+  private final String publicKeyFilename;
+  private final int size;
+  private MessageSigner messageSigner;
+
+  public PGPMessageSignerFileTest(String userId, String privateKeyFilename, String publicKeyFilename, int size) {
+    this.userId = userId;
+    this.privateKeyFilename = privateKeyFilename;
+    this.publicKeyFilename = publicKeyFilename;
+    this.size = size;
+  }
+
+  @Parameterized.Parameters
+  public static Collection<Object[]> data() {
+    return Arrays.asList(new Object[][]{
+        { "Test Case 1 (PGP key for simple-pgp testcase) <testcase-1@sniggleme.info>", "testcase-1-sec.asc", "testcase-1-pub.asc", 12 },
+        { "Test Case 2 (PGP key for test case of simple-pgp) <testcase-2@sniggleme.info>", "testcase-2-sec.asc", "testcase-2-pub.asc", 1024 * 1024 + 17 }
+    });
+  }
+
+  @Before
+  public void setUp() {
+    messageSigner = PGPWrapperFactory.getSigner();
+  }
+
+  @Test
+  public void testSignAndVerifyFile() throws IOException {
+    byte[] data = new byte[size];
+    new Random(size).nextBytes(data);
+    Path messageFile = Files.write(temporaryFolder.newFile("message.bin").toPath(), data);
+    Path signatureFile = temporaryFolder.newFile("message.bin.sig").toPath();
+    assertTrue(messageSigner.signMessage(getClass().getResourceAsStream(privateKeyFilename), userId, "testpassword", messageFile, signatureFile));
+    assertTrue(messageSigner.verifyMessage(getClass().getResourceAsStream(publicKeyFilename), messageFile, signatureFile));
+
+    data[0] ^= 1;
+    Files.write(messageFile, data);
+    assertFalse(messageSigner.verifyMessage(getClass().getResourceAsStream(publicKeyFilename), messageFile, signatureFile));
+  }
+
+  @After
+  public void tearDown() {
+    messageSigner = null;
+  }
+
+}